@@ -0,0 +1,393 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.benchmarks;
+
+import it.unich.jgmp.MPF;
+import it.unich.jgmp.MPQ;
+import it.unich.jgmp.MPZ;
+
+/**
+ * The assignment operations of a mutable number type, used by a
+ * {@link Program} to evaluate an {@link Expression}. As in GMP, the target of
+ * an operation may be one of its operands.
+ *
+ * The operations which are not available for every type are declared by the
+ * nested interfaces, and an arithmetic supports them by implementing the
+ * corresponding interface. Programs check the supported operations at compile
+ * time.
+ */
+public abstract class Arithmetic<T> {
+
+    /**
+     * The operations of programs.
+     */
+    public enum Operation {
+        COPY, LOAD, ADD, SUB, MUL, DIV, NEG, MUL_2EXP, NEXTPRIME;
+
+        /**
+         * Returns whether the operation is binary and commutative.
+         */
+        boolean isCommutative() {
+            return this == ADD || this == MUL;
+        }
+    }
+
+    /**
+     * An arithmetic where the second operand of additions, subtractions and
+     * multiplications may be a long, which avoids loading it into a register.
+     */
+    public interface LongOperands<T> {
+        void add(T target, T a, long b);
+
+        void sub(T target, T a, long b);
+
+        void mul(T target, T a, long b);
+    }
+
+    /**
+     * An arithmetic where the divisor may be a long.
+     */
+    public interface LongDivisor<T> {
+        void div(T target, T a, long b);
+    }
+
+    /**
+     * An arithmetic with multiplication by powers of two. The exponent is never
+     * negative.
+     */
+    public interface PowersOfTwo<T> {
+        void mul2Exp(T target, T a, long b);
+    }
+
+    /**
+     * An arithmetic with a next prime operation.
+     */
+    public interface Primes<T> {
+        void nextprime(T target, T a);
+    }
+
+    /**
+     * Returns a new number, which is used as a register.
+     */
+    public abstract T create();
+
+    public abstract void set(T target, T a);
+
+    public abstract void set(T target, long a);
+
+    public abstract void add(T target, T a, T b);
+
+    public abstract void sub(T target, T a, T b);
+
+    public abstract void mul(T target, T a, T b);
+
+    public abstract void div(T target, T a, T b);
+
+    public abstract void neg(T target, T a);
+
+    /**
+     * Returns whether the operation is supported.
+     */
+    public final boolean supports(Operation operation) {
+        switch (operation) {
+            case MUL_2EXP:
+                return this instanceof PowersOfTwo;
+            case NEXTPRIME:
+                return this instanceof Primes;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Returns whether the second operand of the operation may be a long. This
+     * is always the case for the exponent of {@code MUL_2EXP}.
+     */
+    public final boolean hasLongOperand(Operation operation) {
+        switch (operation) {
+            case ADD:
+            case SUB:
+            case MUL:
+                return this instanceof LongOperands;
+            case DIV:
+                return this instanceof LongDivisor;
+            case MUL_2EXP:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the arithmetic of MPZ, where the division truncates towards zero.
+     */
+    public static Arithmetic<MPZ> mpz() {
+        return MPZArithmetic.INSTANCE;
+    }
+
+    /**
+     * Returns the arithmetic of MPQ.
+     */
+    public static Arithmetic<MPQ> mpq() {
+        return MPQArithmetic.INSTANCE;
+    }
+
+    /**
+     * Returns the arithmetic of MPF, whose registers have the specified
+     * precision.
+     */
+    public static Arithmetic<MPF> mpf(long prec) {
+        return new MPFArithmetic(prec);
+    }
+
+    private static class MPZArithmetic extends Arithmetic<MPZ>
+            implements LongOperands<MPZ>, PowersOfTwo<MPZ>, Primes<MPZ> {
+        static final MPZArithmetic INSTANCE = new MPZArithmetic();
+
+        @Override
+        public MPZ create() {
+            return new MPZ();
+        }
+
+        @Override
+        public void set(MPZ target, MPZ a) {
+            target.set(a);
+        }
+
+        @Override
+        public void set(MPZ target, long a) {
+            target.set(a);
+        }
+
+        @Override
+        public void add(MPZ target, MPZ a, MPZ b) {
+            target.addAssign(a, b);
+        }
+
+        @Override
+        public void sub(MPZ target, MPZ a, MPZ b) {
+            target.subAssign(a, b);
+        }
+
+        @Override
+        public void mul(MPZ target, MPZ a, MPZ b) {
+            target.mulAssign(a, b);
+        }
+
+        @Override
+        public void div(MPZ target, MPZ a, MPZ b) {
+            target.tdivqAssign(a, b);
+        }
+
+        @Override
+        public void neg(MPZ target, MPZ a) {
+            target.negAssign(a);
+        }
+
+        @Override
+        public void add(MPZ target, MPZ a, long b) {
+            if (b >= 0)
+                target.addUiAssign(a, b);
+            else if (b != Long.MIN_VALUE)
+                target.subUiAssign(a, -b);
+            else
+                target.addAssign(a, new MPZ(b));
+        }
+
+        @Override
+        public void sub(MPZ target, MPZ a, long b) {
+            if (b >= 0)
+                target.subUiAssign(a, b);
+            else if (b != Long.MIN_VALUE)
+                target.addUiAssign(a, -b);
+            else
+                target.subAssign(a, new MPZ(b));
+        }
+
+        @Override
+        public void mul(MPZ target, MPZ a, long b) {
+            target.mulAssign(a, b);
+        }
+
+        @Override
+        public void mul2Exp(MPZ target, MPZ a, long b) {
+            target.mul2ExpAssign(a, b);
+        }
+
+        @Override
+        public void nextprime(MPZ target, MPZ a) {
+            target.nextprimeAssign(a);
+        }
+    }
+
+    private static class MPQArithmetic extends Arithmetic<MPQ> implements PowersOfTwo<MPQ> {
+        static final MPQArithmetic INSTANCE = new MPQArithmetic();
+
+        @Override
+        public MPQ create() {
+            return new MPQ();
+        }
+
+        @Override
+        public void set(MPQ target, MPQ a) {
+            target.set(a);
+        }
+
+        @Override
+        public void set(MPQ target, long a) {
+            target.set(a);
+        }
+
+        @Override
+        public void add(MPQ target, MPQ a, MPQ b) {
+            target.addAssign(a, b);
+        }
+
+        @Override
+        public void sub(MPQ target, MPQ a, MPQ b) {
+            target.subAssign(a, b);
+        }
+
+        @Override
+        public void mul(MPQ target, MPQ a, MPQ b) {
+            target.mulAssign(a, b);
+        }
+
+        @Override
+        public void div(MPQ target, MPQ a, MPQ b) {
+            target.divAssign(a, b);
+        }
+
+        @Override
+        public void neg(MPQ target, MPQ a) {
+            target.negAssign(a);
+        }
+
+        @Override
+        public void mul2Exp(MPQ target, MPQ a, long b) {
+            target.mul2ExpAssign(a, b);
+        }
+    }
+
+    private static class MPFArithmetic extends Arithmetic<MPF>
+            implements LongOperands<MPF>, LongDivisor<MPF>, PowersOfTwo<MPF> {
+        final long prec;
+
+        MPFArithmetic(long prec) {
+            this.prec = prec;
+        }
+
+        /**
+         * Returns a new MPF with the value of b, for the operands whose absolute
+         * value does not fit in a long.
+         */
+        MPF create(long b) {
+            MPF x = create();
+            x.set(b);
+            return x;
+        }
+
+        @Override
+        public MPF create() {
+            return MPF.init2(prec);
+        }
+
+        @Override
+        public void set(MPF target, MPF a) {
+            target.set(a);
+        }
+
+        @Override
+        public void set(MPF target, long a) {
+            target.set(a);
+        }
+
+        @Override
+        public void add(MPF target, MPF a, MPF b) {
+            target.addAssign(a, b);
+        }
+
+        @Override
+        public void sub(MPF target, MPF a, MPF b) {
+            target.subAssign(a, b);
+        }
+
+        @Override
+        public void mul(MPF target, MPF a, MPF b) {
+            target.mulAssign(a, b);
+        }
+
+        @Override
+        public void div(MPF target, MPF a, MPF b) {
+            target.divAssign(a, b);
+        }
+
+        @Override
+        public void neg(MPF target, MPF a) {
+            target.negAssign(a);
+        }
+
+        @Override
+        public void add(MPF target, MPF a, long b) {
+            if (b >= 0)
+                target.addUiAssign(a, b);
+            else if (b != Long.MIN_VALUE)
+                target.subUiAssign(a, -b);
+            else
+                target.addAssign(a, create(b));
+        }
+
+        @Override
+        public void sub(MPF target, MPF a, long b) {
+            if (b >= 0)
+                target.subUiAssign(a, b);
+            else if (b != Long.MIN_VALUE)
+                target.addUiAssign(a, -b);
+            else
+                target.subAssign(a, create(b));
+        }
+
+        @Override
+        public void mul(MPF target, MPF a, long b) {
+            if (b >= 0)
+                target.mulUiAssign(a, b);
+            else if (b != Long.MIN_VALUE) {
+                target.mulUiAssign(a, -b);
+                target.negAssign(target);
+            } else
+                target.mulAssign(a, create(b));
+        }
+
+        @Override
+        public void div(MPF target, MPF a, long b) {
+            if (b >= 0)
+                target.divUiAssign(a, b);
+            else if (b != Long.MIN_VALUE) {
+                target.divUiAssign(a, -b);
+                target.negAssign(target);
+            } else
+                target.divAssign(a, create(b));
+        }
+
+        @Override
+        public void mul2Exp(MPF target, MPF a, long b) {
+            target.mul2ExpAssign(a, b);
+        }
+    }
+
+}
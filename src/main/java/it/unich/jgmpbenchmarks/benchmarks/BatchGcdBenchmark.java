@@ -0,0 +1,422 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.benchmarks;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.RunnerException;
+
+import it.unich.jgmp.MPZ;
+import it.unich.jgmpbenchmarks.launcher.Launcher;
+import it.unich.jgmpbenchmarks.launcher.NativeLibrary;
+import it.unich.jgmpbenchmarks.launcher.Preflight;
+import it.unich.jgmpbenchmarks.profilers.HeapMemoryProfiler;
+import it.unich.jgmpbenchmarks.profilers.NativeMemoryProfiler;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 3, jvmArgs = { "-Xms8G", "-Xmx8G" })
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+
+/**
+ * Benchmarks for JGMP: finding the factors shared by a set of moduli, that is
+ * gcd(N_i, N_0 ... N_{i-1} N_{i+1} ... N_{n-1}) for each modulus N_i.
+ *
+ * The batch kernels use the product tree and remainder tree of Bernstein: the
+ * product P of all moduli is reduced modulo N_i^2 going down the tree, and the
+ * result for N_i is gcd(N_i, (P mod N_i^2) / N_i). The parallel kernels compute
+ * the nodes of each level of both trees on a fork/join pool. The pairwise
+ * kernels compute the gcd of every pair of moduli, and combine the non-trivial
+ * ones with lcm: the results are the same for square-free moduli, such as RSA
+ * moduli. Since pairwise kernels are quadratic, they are run on fewer moduli.
+ *
+ * Generating 10^5 RSA moduli of 4096 bits would take hours, hence the moduli
+ * are products of distinct 31-bit primes, taken in order from a sieve. They are
+ * square-free and coprime, except for a few moduli which have an additional
+ * shared prime, so that the kernels have something to find.
+ *
+ * The product tree has the size of all the moduli on each level, hence the
+ * suite uses the GC and heap profilers together with the native profiler.
+ */
+public class BatchGcdBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class TreeState {
+        @Param({ "1000", "10000", "100000" })
+        public int moduli;
+
+        @Param({ "1024", "4096" })
+        public int bits;
+
+        BigInteger[] nBigInteger;
+        MPZ[] nMPZ;
+        us.altio.gmp4j.BigInteger[] nGMP4J;
+
+        @Setup
+        public void setup() {
+            nBigInteger = randomModuli(moduli, bits, new Random(moduli * 31 + bits));
+            nMPZ = BenchmarkUtils.toMPZ(nBigInteger);
+            if (NativeLibrary.GMP4J.isAvailable())
+                nGMP4J = BenchmarkUtils.convert(nBigInteger, us.altio.gmp4j.BigInteger.class,
+                        us.altio.gmp4j.BigInteger::new);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class PairwiseState {
+        @Param({ "1000", "10000" })
+        public int moduli;
+
+        @Param({ "1024", "4096" })
+        public int bits;
+
+        BigInteger[] nBigInteger;
+        MPZ[] nMPZ;
+        us.altio.gmp4j.BigInteger[] nGMP4J;
+
+        @Setup
+        public void setup() {
+            nBigInteger = randomModuli(moduli, bits, new Random(moduli * 31 + bits));
+            nMPZ = BenchmarkUtils.toMPZ(nBigInteger);
+            if (NativeLibrary.GMP4J.isAvailable())
+                nGMP4J = BenchmarkUtils.convert(nBigInteger, us.altio.gmp4j.BigInteger.class,
+                        us.altio.gmp4j.BigInteger::new);
+        }
+    }
+
+    @Benchmark
+    public MPZ[] batchGcdMPZ(TreeState s) {
+        return batchGcdMPZ(s.nMPZ, null);
+    }
+
+    @Benchmark
+    public MPZ[] batchGcdMPZParallel(TreeState s, ParallelState state) {
+        return batchGcdMPZ(s.nMPZ, state.pool);
+    }
+
+    @Benchmark
+    public BigInteger[] batchGcdBigInteger(TreeState s) {
+        return batchGcdBigInteger(s.nBigInteger, null);
+    }
+
+    @Benchmark
+    public BigInteger[] batchGcdBigIntegerParallel(TreeState s, ParallelState state) {
+        return batchGcdBigInteger(s.nBigInteger, state.pool);
+    }
+
+    @Benchmark
+    public us.altio.gmp4j.BigInteger[] batchGcdGMP4J(TreeState s) {
+        return batchGcdGMP4J(s.nGMP4J, null);
+    }
+
+    @Benchmark
+    public us.altio.gmp4j.BigInteger[] batchGcdGMP4JParallel(TreeState s, ParallelState state) {
+        return batchGcdGMP4J(s.nGMP4J, state.pool);
+    }
+
+    @Benchmark
+    public MPZ[] pairwiseGcdMPZ(PairwiseState s) {
+        return pairwiseGcdMPZ(s.nMPZ);
+    }
+
+    @Benchmark
+    public BigInteger[] pairwiseGcdBigInteger(PairwiseState s) {
+        return pairwiseGcdBigInteger(s.nBigInteger);
+    }
+
+    @Benchmark
+    public us.altio.gmp4j.BigInteger[] pairwiseGcdGMP4J(PairwiseState s) {
+        return pairwiseGcdGMP4J(s.nGMP4J);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Launcher.run(BatchGcdBenchmark.class, args);
+    }
+
+    public static void preflight(Preflight p) {
+        p.size("moduli");
+        // square-free moduli made of few primes, so that many factors are shared
+        Random random = new Random(0);
+        BigInteger[] primes = new BigInteger[30];
+        for (int i = 0; i < primes.length; i++)
+            primes[i] = BigInteger.probablePrime(64, random);
+        BigInteger[] n = new BigInteger[41];
+        for (int i = 0; i < n.length; i++) {
+            int a = random.nextInt(primes.length), b = random.nextInt(primes.length - 1);
+            n[i] = primes[a].multiply(primes[b < a ? b : b + 1]);
+        }
+        BigInteger product = Arrays.stream(n).reduce(BigInteger.ONE, BigInteger::multiply);
+        BigInteger[] res = Arrays.stream(n).map(x -> x.gcd(product.divide(x))).toArray(BigInteger[]::new);
+        BigInteger[] single = { n[0] };
+        p.check("batchGcdBigInteger.*", () -> Arrays.equals(res, batchGcdBigInteger(n, null))
+                && Arrays.equals(res, batchGcdBigInteger(n, p.pool()))
+                && batchGcdBigInteger(single, null)[0].equals(BigInteger.ONE));
+        p.check("pairwiseGcdBigInteger", () -> Arrays.equals(res, pairwiseGcdBigInteger(n)));
+        p.check("batchGcdGMP4J.*|pairwiseGcdGMP4J", () -> {
+            us.altio.gmp4j.BigInteger[] nGMP4J = BenchmarkUtils.convert(n, us.altio.gmp4j.BigInteger.class,
+                    us.altio.gmp4j.BigInteger::new);
+            us.altio.gmp4j.BigInteger[] resGMP4J = BenchmarkUtils.convert(res,
+                    us.altio.gmp4j.BigInteger.class, us.altio.gmp4j.BigInteger::new);
+            return Arrays.equals(resGMP4J, batchGcdGMP4J(nGMP4J, null))
+                    && Arrays.equals(resGMP4J, batchGcdGMP4J(nGMP4J, p.pool()))
+                    && Arrays.equals(resGMP4J, pairwiseGcdGMP4J(nGMP4J));
+        }, NativeLibrary.GMP4J);
+        if (p.require(".*MPZ.*", NativeLibrary.JGMP)) {
+            MPZ[] nMPZ = BenchmarkUtils.toMPZ(n);
+            MPZ[] resMPZ = BenchmarkUtils.toMPZ(res);
+            p.check("batchGcdMPZ", () -> Arrays.equals(resMPZ, batchGcdMPZ(nMPZ, null))
+                    && batchGcdMPZ(new MPZ[] { nMPZ[0] }, null)[0].equals(new MPZ(1)));
+            p.check("batchGcdMPZParallel", () -> Arrays.equals(resMPZ, batchGcdMPZ(nMPZ, p.pool())));
+            p.check("pairwiseGcdMPZ", () -> Arrays.equals(resMPZ, pairwiseGcdMPZ(nMPZ)));
+        }
+        // the two families agree on the generated moduli, and find the shared primes
+        BigInteger[] moduli = randomModuli(200, 256, new Random(200 * 31 + 256));
+        p.check("batchGcdBigInteger|pairwiseGcdBigInteger", () -> {
+            BigInteger[] g = batchGcdBigInteger(moduli, null);
+            return Arrays.equals(g, pairwiseGcdBigInteger(moduli))
+                    && Arrays.stream(g).anyMatch(x -> !x.equals(BigInteger.ONE));
+        });
+        p.check("batchGcdMPZ|pairwiseGcdMPZ", () -> {
+            MPZ[] m = BenchmarkUtils.toMPZ(moduli);
+            MPZ[] g = batchGcdMPZ(m, null);
+            return Arrays.equals(g, pairwiseGcdMPZ(m)) && Arrays.stream(g).anyMatch(x -> x.cmp(1) != 0);
+        }, NativeLibrary.JGMP);
+        p.profiler(GCProfiler.class);
+        p.profiler(HeapMemoryProfiler.class);
+        p.profiler(NativeMemoryProfiler.class);
+    }
+
+    /* Utility methods */
+
+    /**
+     * Returns square-free moduli of at least the specified number of bits. The
+     * factors are consecutive primes from a random point between 2^30 and 2^31,
+     * and about one modulus in a hundred is also multiplied by one of a few
+     * shared primes.
+     */
+    static BigInteger[] randomModuli(int moduli, int bits, Random random) {
+        int factors = (bits + 29) / 30;
+        int shared = moduli / 200 + 2;
+        int[] primes = primes((1 << 30) + random.nextInt(1 << 28), moduli * factors + shared);
+        BigInteger[] n = new BigInteger[moduli];
+        for (int i = 0; i < moduli; i++) {
+            BigInteger x = BigInteger.ONE;
+            for (int j = i * factors; j < (i + 1) * factors; j++)
+                x = x.multiply(BigInteger.valueOf(primes[j]));
+            if (random.nextInt(100) == 0)
+                x = x.multiply(BigInteger.valueOf(primes[moduli * factors + random.nextInt(shared)]));
+            n[i] = x;
+        }
+        return n;
+    }
+
+    /**
+     * Returns the first count primes not smaller than from, with a segmented
+     * sieve of Eratosthenes.
+     */
+    static int[] primes(int from, int count) {
+        int limit = (int) Math.sqrt(Integer.MAX_VALUE) + 1;
+        boolean[] composite = new boolean[limit + 1];
+        int[] small = new int[limit];
+        int smallCount = 0;
+        for (int i = 2; i <= limit; i++) {
+            if (composite[i])
+                continue;
+            small[smallCount++] = i;
+            for (long j = (long) i * i; j <= limit; j += i)
+                composite[(int) j] = true;
+        }
+        int[] primes = new int[count];
+        boolean[] segment = new boolean[1 << 20];
+        int found = 0;
+        for (long low = from; found < count; low += segment.length) {
+            if (low + segment.length > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Not enough primes below 2^31");
+            Arrays.fill(segment, false);
+            for (int k = 0; k < smallCount; k++) {
+                long p = small[k];
+                for (long j = Math.max(p * p, (low + p - 1) / p * p); j < low + segment.length; j += p)
+                    segment[(int) (j - low)] = true;
+            }
+            for (int i = 0; i < segment.length && found < count; i++)
+                if (!segment[i])
+                    primes[found++] = (int) (low + i);
+        }
+        return primes;
+    }
+
+    /* JGMP */
+    public static MPZ[] batchGcdMPZ(MPZ[] n, ForkJoinPool pool) {
+        MPZ[][] tree = productTreeMPZ(n, pool);
+        MPZ[] r = tree[tree.length - 1];
+        for (int level = tree.length - 2; level >= 0; level--) {
+            MPZ[] nodes = tree[level], parents = r, next = new MPZ[nodes.length];
+            BenchmarkUtils.forEachRow(pool, 0, nodes.length, i -> {
+                MPZ t = new MPZ();
+                t.mulAssign(nodes[i], nodes[i]);
+                next[i] = t.modAssign(parents[i / 2], t);
+            });
+            tree[level + 1] = null;
+            r = next;
+        }
+        MPZ[] remainders = r, g = new MPZ[n.length];
+        BenchmarkUtils.forEachRow(pool, 0, n.length, i -> {
+            MPZ t = new MPZ();
+            t.divexactAssign(remainders[i], n[i]);
+            g[i] = t.gcdAssign(t, n[i]);
+        });
+        return g;
+    }
+
+    /**
+     * Returns the levels of the product tree of n, from the leaves to the root.
+     */
+    static MPZ[][] productTreeMPZ(MPZ[] n, ForkJoinPool pool) {
+        int height = 1;
+        for (int length = n.length; length > 1; length = (length + 1) / 2)
+            height++;
+        MPZ[][] tree = new MPZ[height][];
+        tree[0] = n;
+        for (int level = 1; level < height; level++) {
+            MPZ[] prev = tree[level - 1], next = new MPZ[(prev.length + 1) / 2];
+            BenchmarkUtils.forEachRow(pool, 0, next.length,
+                    i -> next[i] = 2 * i + 1 < prev.length ? prev[2 * i].mul(prev[2 * i + 1]) : prev[2 * i]);
+            tree[level] = next;
+        }
+        return tree;
+    }
+
+    /* JGMP */
+    public static MPZ[] pairwiseGcdMPZ(MPZ[] n) {
+        MPZ[] g = new MPZ[n.length];
+        for (int i = 0; i < n.length; i++)
+            g[i] = new MPZ(1);
+        MPZ d = new MPZ();
+        for (int i = 0; i < n.length; i++)
+            for (int j = i + 1; j < n.length; j++) {
+                d.gcdAssign(n[i], n[j]);
+                if (d.cmp(1) != 0) {
+                    g[i].lcmAssign(g[i], d);
+                    g[j].lcmAssign(g[j], d);
+                }
+            }
+        return g;
+    }
+
+    /* BigInteger */
+    public static BigInteger[] batchGcdBigInteger(BigInteger[] n, ForkJoinPool pool) {
+        BigInteger[][] tree = productTreeBigInteger(n, pool);
+        BigInteger[] r = tree[tree.length - 1];
+        for (int level = tree.length - 2; level >= 0; level--) {
+            BigInteger[] nodes = tree[level], parents = r, next = new BigInteger[nodes.length];
+            BenchmarkUtils.forEachRow(pool, 0, nodes.length,
+                    i -> next[i] = parents[i / 2].mod(nodes[i].multiply(nodes[i])));
+            tree[level + 1] = null;
+            r = next;
+        }
+        BigInteger[] remainders = r, g = new BigInteger[n.length];
+        BenchmarkUtils.forEachRow(pool, 0, n.length, i -> g[i] = remainders[i].divide(n[i]).gcd(n[i]));
+        return g;
+    }
+
+    static BigInteger[][] productTreeBigInteger(BigInteger[] n, ForkJoinPool pool) {
+        int height = 1;
+        for (int length = n.length; length > 1; length = (length + 1) / 2)
+            height++;
+        BigInteger[][] tree = new BigInteger[height][];
+        tree[0] = n;
+        for (int level = 1; level < height; level++) {
+            BigInteger[] prev = tree[level - 1], next = new BigInteger[(prev.length + 1) / 2];
+            BenchmarkUtils.forEachRow(pool, 0, next.length,
+                    i -> next[i] = 2 * i + 1 < prev.length ? prev[2 * i].multiply(prev[2 * i + 1]) : prev[2 * i]);
+            tree[level] = next;
+        }
+        return tree;
+    }
+
+    /* BigInteger */
+    public static BigInteger[] pairwiseGcdBigInteger(BigInteger[] n) {
+        BigInteger[] g = new BigInteger[n.length];
+        Arrays.fill(g, BigInteger.ONE);
+        for (int i = 0; i < n.length; i++)
+            for (int j = i + 1; j < n.length; j++) {
+                BigInteger d = n[i].gcd(n[j]);
+                if (!d.equals(BigInteger.ONE)) {
+                    g[i] = g[i].divide(g[i].gcd(d)).multiply(d);
+                    g[j] = g[j].divide(g[j].gcd(d)).multiply(d);
+                }
+            }
+        return g;
+    }
+
+    /* GMP4J */
+    public static us.altio.gmp4j.BigInteger[] batchGcdGMP4J(us.altio.gmp4j.BigInteger[] n, ForkJoinPool pool) {
+        us.altio.gmp4j.BigInteger[][] tree = productTreeGMP4J(n, pool);
+        us.altio.gmp4j.BigInteger[] r = tree[tree.length - 1];
+        for (int level = tree.length - 2; level >= 0; level--) {
+            us.altio.gmp4j.BigInteger[] nodes = tree[level], parents = r,
+                    next = new us.altio.gmp4j.BigInteger[nodes.length];
+            BenchmarkUtils.forEachRow(pool, 0, nodes.length,
+                    i -> next[i] = parents[i / 2].mod(nodes[i].multiply(nodes[i])));
+            tree[level + 1] = null;
+            r = next;
+        }
+        us.altio.gmp4j.BigInteger[] remainders = r, g = new us.altio.gmp4j.BigInteger[n.length];
+        BenchmarkUtils.forEachRow(pool, 0, n.length, i -> g[i] = remainders[i].divide(n[i]).gcd(n[i]));
+        return g;
+    }
+
+    static us.altio.gmp4j.BigInteger[][] productTreeGMP4J(us.altio.gmp4j.BigInteger[] n, ForkJoinPool pool) {
+        int height = 1;
+        for (int length = n.length; length > 1; length = (length + 1) / 2)
+            height++;
+        us.altio.gmp4j.BigInteger[][] tree = new us.altio.gmp4j.BigInteger[height][];
+        tree[0] = n;
+        for (int level = 1; level < height; level++) {
+            us.altio.gmp4j.BigInteger[] prev = tree[level - 1],
+                    next = new us.altio.gmp4j.BigInteger[(prev.length + 1) / 2];
+            BenchmarkUtils.forEachRow(pool, 0, next.length,
+                    i -> next[i] = 2 * i + 1 < prev.length ? prev[2 * i].multiply(prev[2 * i + 1]) : prev[2 * i]);
+            tree[level] = next;
+        }
+        return tree;
+    }
+
+    /* GMP4J */
+    public static us.altio.gmp4j.BigInteger[] pairwiseGcdGMP4J(us.altio.gmp4j.BigInteger[] n) {
+        us.altio.gmp4j.BigInteger[] g = new us.altio.gmp4j.BigInteger[n.length];
+        Arrays.fill(g, us.altio.gmp4j.BigInteger.ONE);
+        for (int i = 0; i < n.length; i++)
+            for (int j = i + 1; j < n.length; j++) {
+                us.altio.gmp4j.BigInteger d = n[i].gcd(n[j]);
+                if (!d.equals(us.altio.gmp4j.BigInteger.ONE)) {
+                    g[i] = g[i].divide(g[i].gcd(d)).multiply(d);
+                    g[j] = g[j].divide(g[j].gcd(d)).multiply(d);
+                }
+            }
+        return g;
+    }
+
+}
@@ -0,0 +1,256 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.benchmarks;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.RunnerException;
+
+import it.unich.jgmp.MPZ;
+import it.unich.jgmp.RandState;
+import it.unich.jgmpbenchmarks.launcher.Launcher;
+import it.unich.jgmpbenchmarks.launcher.NativeLibrary;
+import it.unich.jgmpbenchmarks.launcher.Preflight;
+import it.unich.jgmpbenchmarks.profilers.LatencyProfiler;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 3, jvmArgs = { "-Xms2G", "-Xmx2G" })
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+
+/**
+ * Benchmarks for JGMP: generating a batch of independent probable primes with
+ * random starting points, as in a key generation service.
+ *
+ * Each operation submits {@code batch} tasks to an executor, which may be a
+ * fixed pool of platform threads, a fork/join pool or, on Java 21 and later,
+ * an executor starting a virtual thread for each task. The pools have a thread
+ * for each available processor. The score is the number of batches per second,
+ * while the {@link LatencyProfiler} reports the percentiles of the latency of
+ * the single primes. Comparing the executors shows whether native calls
+ * occupying the carrier threads limit the scaling of virtual threads. Pinning
+ * events may be traced by adding {@code -Djdk.tracePinnedThreads=short} to the
+ * JVM arguments.
+ */
+public class BatchPrimeBenchmark {
+
+    @Param({ "512", "1024", "2048" })
+    public int bits;
+
+    @Param({ "16", "64" })
+    public int batch;
+
+    @Param({ "platform", "forkjoin", "virtual" })
+    public String executor;
+
+    ExecutorService service;
+
+    RandState[] randStates;
+
+    @Setup
+    public void setup() {
+        service = newExecutor(executor);
+        if (NativeLibrary.JGMP.isAvailable())
+            randStates = randStates(batch);
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Benchmark
+    public List<MPZ> batchMPZ() throws InterruptedException, ExecutionException {
+        return batchMPZ(bits, randStates, service);
+    }
+
+    @Benchmark
+    public List<BigInteger> batchBigInteger() throws InterruptedException, ExecutionException {
+        return batchBigInteger(bits, batch, service);
+    }
+
+    @Benchmark
+    public List<us.altio.gmp4j.BigInteger> batchGMP4J() throws InterruptedException, ExecutionException {
+        return batchGMP4J(bits, batch, service);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Launcher.run(BatchPrimeBenchmark.class, args);
+    }
+
+    public static void preflight(Preflight p) {
+        p.size("bits");
+        List<String> executors = new ArrayList<>(List.of("platform", "forkjoin", "virtual"));
+        try {
+            newVirtualThreadExecutor().shutdown();
+        } catch (UnsupportedOperationException e) {
+            System.err.println("Cannot launch virtual thread benchmarks: " + e);
+            executors.remove("virtual");
+        }
+        p.param("executor", executors.toArray(new String[0]));
+        p.check("batchMPZ", () -> checkBatch(executors, service -> batchMPZ(256, randStates(8), service),
+                m -> m.sizeinbase(2) == 256 && m.isProbabPrime(25) != MPZ.PrimalityStatus.NON_PRIME),
+                NativeLibrary.JGMP);
+        p.check("batchBigInteger", () -> checkBatch(executors, service -> batchBigInteger(256, 8, service),
+                b -> b.bitLength() == 256 && b.isProbablePrime(100)));
+        p.check("batchGMP4J", () -> checkBatch(executors, service -> batchGMP4J(256, 8, service),
+                b -> b.bitLength() == 256 && b.isProbablePrime(100)), NativeLibrary.GMP4J);
+        p.profiler(LatencyProfiler.class);
+    }
+
+    /**
+     * A kernel generating a batch of primes on an executor.
+     */
+    @FunctionalInterface
+    interface BatchKernel<T> {
+        List<T> generate(ExecutorService service) throws InterruptedException, ExecutionException;
+    }
+
+    /**
+     * Returns whether all the primes generated by the kernel on each executor
+     * are valid.
+     */
+    static <T> boolean checkBatch(List<String> executors, BatchKernel<T> kernel, Predicate<T> valid)
+            throws InterruptedException, ExecutionException {
+        for (String executor : executors) {
+            ExecutorService service = newExecutor(executor);
+            try {
+                if (!kernel.generate(service).stream().allMatch(valid))
+                    return false;
+            } finally {
+                service.shutdown();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns n random states with random seeds, one for each task of a batch,
+     * so that concurrent tasks never share a state.
+     */
+    static RandState[] randStates(int n) {
+        RandState[] states = new RandState[n];
+        for (int i = 0; i < n; i++) {
+            states[i] = new RandState();
+            states[i].seedUi(ThreadLocalRandom.current().nextLong());
+        }
+        return states;
+    }
+
+    /**
+     * Returns a new executor of the specified kind, which may be
+     * {@code platform}, {@code forkjoin} or {@code virtual}.
+     */
+    public static ExecutorService newExecutor(String kind) {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        switch (kind) {
+            case "platform":
+                return Executors.newFixedThreadPool(cpus);
+            case "forkjoin":
+                return new ForkJoinPool(cpus);
+            case "virtual":
+                return newVirtualThreadExecutor();
+            default:
+                throw new IllegalArgumentException("Unknown executor " + kind);
+        }
+    }
+
+    /**
+     * Returns an executor starting a new virtual thread for each task. Since
+     * the project targets Java 11, the executor is obtained by reflection.
+     *
+     * @throws UnsupportedOperationException if virtual threads are not available
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21", e);
+        }
+    }
+
+    /**
+     * Runs the task on the indexes from 0 to {@code batch - 1} on the executor
+     * and returns the results. The recorded latency of each task goes from its
+     * submission to its completion, hence it includes the time spent waiting for
+     * a thread.
+     */
+    static <T> List<T> generate(int batch, ExecutorService service, IntFunction<T> task)
+            throws InterruptedException, ExecutionException {
+        List<Future<T>> futures = new ArrayList<>(batch);
+        for (int i = 0; i < batch; i++) {
+            int index = i;
+            long start = System.nanoTime();
+            futures.add(service.submit(() -> {
+                T result = task.apply(index);
+                LatencyProfiler.record(System.nanoTime() - start);
+                return result;
+            }));
+        }
+        List<T> results = new ArrayList<>(batch);
+        for (Future<T> f : futures)
+            results.add(f.get());
+        return results;
+    }
+
+    /* JGMP: the i-th task draws its starting point from the i-th random state */
+    public static List<MPZ> batchMPZ(int bits, RandState[] states, ExecutorService service)
+            throws InterruptedException, ExecutionException {
+        MPZ high = new MPZ(1);
+        high.mul2ExpAssign(high, bits - 1);
+        return generate(states.length, service, i -> {
+            MPZ m = MPZ.urandomb(states[i], bits - 1);
+            m.addAssign(m, high);
+            m.nextprimeAssign(m);
+            return m;
+        });
+    }
+
+    /* BigInteger */
+    public static List<BigInteger> batchBigInteger(int bits, int batch, ExecutorService service)
+            throws InterruptedException, ExecutionException {
+        return generate(batch, service, i -> {
+            BigInteger b = new BigInteger(bits - 1, ThreadLocalRandom.current()).setBit(bits - 1);
+            return b.nextProbablePrime();
+        });
+    }
+
+    /* GMP4J: the random starting point is converted from a BigInteger */
+    public static List<us.altio.gmp4j.BigInteger> batchGMP4J(int bits, int batch, ExecutorService service)
+            throws InterruptedException, ExecutionException {
+        return generate(batch, service, i -> {
+            BigInteger b = new BigInteger(bits - 1, ThreadLocalRandom.current()).setBit(bits - 1);
+            return new us.altio.gmp4j.BigInteger(b).nextProbablePrime();
+        });
+    }
+
+}
@@ -0,0 +1,167 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.benchmarks;
+
+import java.lang.reflect.Array;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+import it.unich.jgmp.MPZ;
+
+/**
+ * Utility methods shared by the benchmark suites: generation of random inputs,
+ * conversions between numeric types and row-parallel loops.
+ */
+public class BenchmarkUtils {
+
+    private BenchmarkUtils() {
+    }
+
+    /**
+     * Returns a vector of non-negative random numbers of at most the given number
+     * of bits.
+     */
+    public static BigInteger[] randomVector(int n, int bits, Random random) {
+        BigInteger[] result = new BigInteger[n];
+        for (int i = 0; i < n; i++)
+            result[i] = new BigInteger(bits, random);
+        return result;
+    }
+
+    /**
+     * Returns an n × m matrix of non-negative random numbers of at most the given
+     * number of bits.
+     */
+    public static BigInteger[][] randomMatrix(int n, int m, int bits, Random random) {
+        BigInteger[][] result = new BigInteger[n][m];
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < m; j++)
+                result[i][j] = new BigInteger(bits, random);
+        return result;
+    }
+
+    /**
+     * Converts a vector of BigIntegers into a vector of a different numeric type.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T[] convert(BigInteger[] a, Class<T> clazz, Function<BigInteger, T> f) {
+        T[] result = (T[]) Array.newInstance(clazz, a.length);
+        for (int i = 0; i < a.length; i++)
+            result[i] = f.apply(a[i]);
+        return result;
+    }
+
+    /**
+     * Converts a matrix of BigIntegers into a matrix of a different numeric type.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T[][] convert(BigInteger[][] a, Class<T> clazz, Function<BigInteger, T> f) {
+        T[][] result = (T[][]) Array.newInstance(clazz, a.length, a.length == 0 ? 0 : a[0].length);
+        for (int i = 0; i < a.length; i++)
+            for (int j = 0; j < a[i].length; j++)
+                result[i][j] = f.apply(a[i][j]);
+        return result;
+    }
+
+    /**
+     * Converts x to an MPZ through its binary representation, which takes linear
+     * time.
+     */
+    public static MPZ toMPZ(BigInteger x) {
+        MPZ result = new MPZ();
+        if (x.signum() == 0)
+            return result;
+        byte[] magnitude = x.abs().toByteArray();
+        ByteBuffer b = ByteBuffer.allocateDirect(magnitude.length).put(magnitude).flip();
+        result.bufferImportAssign(1, 1, 1, 0, b);
+        return x.signum() < 0 ? result.negAssign(result) : result;
+    }
+
+    /**
+     * Converts a vector of BigIntegers into a vector of MPZs.
+     */
+    public static MPZ[] toMPZ(BigInteger[] a) {
+        return convert(a, MPZ.class, BenchmarkUtils::toMPZ);
+    }
+
+    /**
+     * Converts a matrix of BigIntegers into a matrix of MPZs.
+     */
+    public static MPZ[][] toMPZ(BigInteger[][] a) {
+        return convert(a, MPZ.class, BenchmarkUtils::toMPZ);
+    }
+
+    /**
+     * Converts x to a BigInteger through its binary representation, which takes
+     * linear time.
+     */
+    public static BigInteger toBigInteger(MPZ x) {
+        if (x.sgn() == 0)
+            return BigInteger.ZERO;
+        ByteBuffer b = x.bufferExport(1, 1, 1, 0);
+        byte[] magnitude = new byte[b.remaining()];
+        b.get(magnitude);
+        return new BigInteger(x.sgn(), magnitude);
+    }
+
+    /**
+     * Applies the kernel to the rows in [from, to), either sequentially if pool
+     * is null, or on the pool.
+     */
+    public static void forEachRow(ForkJoinPool pool, int from, int to, IntConsumer kernel) {
+        if (pool == null) {
+            for (int i = from; i < to; i++)
+                kernel.accept(i);
+        } else if (from < to) {
+            pool.invoke(new RowTask(kernel, from, to));
+        }
+    }
+
+    /**
+     * Fork/join task which applies a kernel to a range of rows, splitting the
+     * range until it contains a single row.
+     */
+    static class RowTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final IntConsumer kernel;
+        final int from, to;
+
+        RowTask(IntConsumer kernel, int from, int to) {
+            this.kernel = kernel;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                for (int i = from; i < to; i++)
+                    kernel.accept(i);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RowTask(kernel, from, mid), new RowTask(kernel, mid, to));
+            }
+        }
+    }
+}
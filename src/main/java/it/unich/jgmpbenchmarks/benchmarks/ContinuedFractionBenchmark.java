@@ -17,19 +17,24 @@
  */
 package it.unich.jgmpbenchmarks.benchmarks;
 
+import java.math.BigInteger;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BinaryOperator;
 
 import org.apache.commons.numbers.fraction.BigFraction;
 import org.apfloat.Apint;
 import org.apfloat.Aprational;
 import org.jscience.mathematics.number.Rational;
 import org.openjdk.jmh.annotations.*;
-import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
-import org.openjdk.jmh.runner.options.Options;
-import org.openjdk.jmh.runner.options.OptionsBuilder;
 
 import it.unich.jgmp.MPQ;
+import it.unich.jgmp.MPZ;
+import it.unich.jgmpbenchmarks.launcher.Launcher;
+import it.unich.jgmpbenchmarks.launcher.NativeLibrary;
+import it.unich.jgmpbenchmarks.launcher.Preflight;
 
 @BenchmarkMode(Mode.AverageTime)
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
@@ -41,51 +46,170 @@ import it.unich.jgmp.MPQ;
 /**
  * Benchmarks for JGMP: using continued fractions for approximating pi with
  * rationals.
+ *
+ * Besides the backward evaluation with rationals, the continued fraction
+ * 3 + 1^2/(6 + 3^2/(6 + 5^2/(6 + ...))) is evaluated through the convergent
+ * recurrence, representing each step as the integer matrix [[6, 1], [(2k-1)^2,
+ * 0]]. The matrices are multiplied with a sequential fold, with a balanced
+ * product tree or with a parallel product tree, and the resulting fraction is
+ * reduced with a single gcd at the end.
  */
 public class ContinuedFractionBenchmark {
 
-    @Param({ "1", "10", "100", "1000" })
-    public int steps;
+    /**
+     * Number of matrices below which the parallel product tree stops forking new
+     * tasks.
+     */
+    final static int PARALLEL_THRESHOLD = 256;
+
+    /**
+     * The body of the loop of the compiled kernel, followed by the final step.
+     */
+    final static Program<MPQ> CONTINUED_FRACTION_STEP = continuedFractionStep().compile(Arithmetic.mpq());
+
+    final static Program<MPQ> CONTINUED_FRACTION_LAST = Expression.variable(0).add(3).compile(Arithmetic.mpq());
+
+    /**
+     * The number of steps of the kernels which evaluate the fraction backward,
+     * with a gcd at each step.
+     */
+    @State(Scope.Benchmark)
+    public static class StepsState {
+        @Param({ "1", "10", "100", "1000" })
+        public int steps;
+    }
+
+    /**
+     * The number of steps of the kernels which multiply the step matrices, with
+     * a single gcd at the end.
+     */
+    @State(Scope.Benchmark)
+    public static class DeepStepsState {
+        @Param({ "1", "10", "100", "1000", "10000", "100000" })
+        public int steps;
+    }
+
+    @Benchmark
+    public MPQ continuedFractionMPQ(StepsState s) {
+        return continuedFractionMPQ(s.steps);
+    }
+
+    @Benchmark
+    public MPQ continuedFractionMPQImmutable(StepsState s) {
+        return continuedFractionMPQImmutable(s.steps);
+    }
+
+    @Benchmark
+    public MPQ continuedFractionMPQCompiled(StepsState s) {
+        return continuedFractionMPQCompiled(s.steps);
+    }
+
+    @Benchmark
+    public Rational continuedFractionRational(StepsState s) {
+        return continuedFractionRational(s.steps);
+    }
+
+    @Benchmark
+    public BigFraction continuedFractionBigFraction(StepsState s) {
+        return continuedFractionBigFraction(s.steps);
+    }
+
+    @Benchmark
+    public Aprational continuedFractionAprational(StepsState s) {
+        return continuedFractionAprational(s.steps);
+    }
+
+    @Benchmark
+    public MPQ continuedFractionMPZFold(DeepStepsState s) {
+        return continuedFractionMPZFold(s.steps);
+    }
+
+    @Benchmark
+    public MPQ continuedFractionMPZHybridFold(DeepStepsState s) {
+        return continuedFractionMPZHybridFold(s.steps);
+    }
+
+    @Benchmark
+    public MPQ continuedFractionMPZTree(DeepStepsState s) {
+        return continuedFractionMPZTree(s.steps);
+    }
+
+    @Benchmark
+    public MPQ continuedFractionMPZParallel(DeepStepsState s, ParallelState state) {
+        return continuedFractionMPZParallel(s.steps, state.pool);
+    }
+
+    @Benchmark
+    public BigFraction continuedFractionBigIntegerFold(DeepStepsState s) {
+        return continuedFractionBigIntegerFold(s.steps);
+    }
 
     @Benchmark
-    public MPQ continuedFractionMPQ() {
-        return continuedFractionMPQ(steps);
+    public BigFraction continuedFractionBigIntegerTree(DeepStepsState s) {
+        return continuedFractionBigIntegerTree(s.steps);
     }
 
     @Benchmark
-    public MPQ continuedFractionMPQImmutable() {
-        return continuedFractionMPQImmutable(steps);
+    public BigFraction continuedFractionBigIntegerParallel(DeepStepsState s, ParallelState state) {
+        return continuedFractionBigIntegerParallel(s.steps, state.pool);
     }
 
     @Benchmark
-    public Rational continuedFractionRational() {
-        return continuedFractionRational(steps);
+    public Aprational continuedFractionApintFold(DeepStepsState s) {
+        return continuedFractionApintFold(s.steps);
     }
 
     @Benchmark
-    public BigFraction continuedFractionBigFraction() {
-        return continuedFractionBigFraction(steps);
+    public Aprational continuedFractionApintTree(DeepStepsState s) {
+        return continuedFractionApintTree(s.steps);
     }
 
     @Benchmark
-    public Aprational continuedFractionAprational() {
-        return continuedFractionAprational(steps);
+    public Aprational continuedFractionApintParallel(DeepStepsState s, ParallelState state) {
+        return continuedFractionApintParallel(s.steps, state.pool);
     }
 
     public static void main(String[] args) throws RunnerException {
-        if (!continuedFractionMPQ(3).equals(new MPQ(1321, 420)))
-            throw new Error("Invalid MPQ result");
-        if (!continuedFractionMPQImmutable(3).equals(new MPQ(1321, 420)))
-            throw new Error("Invalid MPQ Immutable result");
-        if (!continuedFractionRational(3).equals(Rational.valueOf(1321, 420)))
-            throw new Error("Invalid Rational result");
-        if (!continuedFractionBigFraction(3).equals(BigFraction.of(1321, 420)))
-            throw new Error("Invalid BigFraction result");
-        if (!continuedFractionAprational(3).equals(new Aprational(new Apint(1321), new Apint(420))))
-            throw new Error("Invalid Aprational result");
+        Launcher.run(ContinuedFractionBenchmark.class, args);
+    }
 
-        Options opt = new OptionsBuilder().include("ContinuedFractionBenchmark").build();
-        new Runner(opt).run();
+    public static void preflight(Preflight p) {
+        p.size("steps");
+        p.check("continuedFractionMPQ", () -> continuedFractionMPQ(3).equals(new MPQ(1321, 420)), NativeLibrary.JGMP);
+        p.check("continuedFractionMPQImmutable", () -> continuedFractionMPQImmutable(3).equals(new MPQ(1321, 420)),
+                NativeLibrary.JGMP);
+        p.check("continuedFractionMPQCompiled", () -> CONTINUED_FRACTION_STEP.registers() == 5
+                && continuedFractionMPQCompiled(3).equals(new MPQ(1321, 420))
+                && continuedFractionMPQCompiled(100).equals(continuedFractionMPQ(100)), NativeLibrary.JGMP);
+        p.check("continuedFractionRational", () -> continuedFractionRational(3).equals(Rational.valueOf(1321, 420)));
+        p.check("continuedFractionBigFraction",
+                () -> continuedFractionBigFraction(3).equals(BigFraction.of(1321, 420)));
+        p.check("continuedFractionAprational",
+                () -> continuedFractionAprational(3).equals(new Aprational(new Apint(1321), new Apint(420))));
+        p.check("continuedFractionMPZFold", () -> continuedFractionMPZFold(3).equals(new MPQ(1321, 420)),
+                NativeLibrary.JGMP);
+        p.check("continuedFractionMPZHybridFold",
+                () -> continuedFractionMPZHybridFold(3).equals(new MPQ(1321, 420))
+                        && continuedFractionMPZHybridFold(100).equals(continuedFractionMPQ(100)),
+                NativeLibrary.JGMP);
+        p.check("continuedFractionMPZTree", () -> continuedFractionMPZTree(3).equals(new MPQ(1321, 420)),
+                NativeLibrary.JGMP);
+        p.check("continuedFractionBigIntegerFold",
+                () -> continuedFractionBigIntegerFold(3).equals(BigFraction.of(1321, 420)));
+        p.check("continuedFractionBigIntegerTree",
+                () -> continuedFractionBigIntegerTree(3).equals(BigFraction.of(1321, 420)));
+        p.check("continuedFractionApintFold",
+                () -> continuedFractionApintFold(3).equals(new Aprational(new Apint(1321), new Apint(420))));
+        p.check("continuedFractionApintTree",
+                () -> continuedFractionApintTree(3).equals(new Aprational(new Apint(1321), new Apint(420))));
+
+        int big = 500;
+        p.check("continuedFractionMPZParallel",
+                () -> continuedFractionMPZParallel(big, p.pool()).equals(continuedFractionMPQ(big)), NativeLibrary.JGMP);
+        p.check("continuedFractionBigIntegerParallel",
+                () -> continuedFractionBigIntegerParallel(big, p.pool()).equals(continuedFractionBigFraction(big)));
+        p.check("continuedFractionApintParallel",
+                () -> continuedFractionApintParallel(big, p.pool()).equals(continuedFractionApintFold(big)));
     }
 
     /* JGMP */
@@ -118,6 +242,26 @@ public class ContinuedFractionBenchmark {
         return value.add(new MPQ(3));
     }
 
+    /**
+     * Returns the expression value = n^2 / (value + 6), where value is the
+     * variable and n = 2 steps - 1 is the parameter.
+     */
+    static Expression continuedFractionStep() {
+        Expression n = Expression.parameter(0);
+        return n.mul(n).div(Expression.variable(0).add(6));
+    }
+
+    /* JGMP */
+    public static MPQ continuedFractionMPQCompiled(int steps) {
+        Program.Evaluator<MPQ> step = CONTINUED_FRACTION_STEP.evaluator();
+        MPQ value = new MPQ();
+        while (steps >= 1) {
+            step.evaluate(value, value, 2 * steps - 1);
+            steps -= 1;
+        }
+        return CONTINUED_FRACTION_LAST.evaluator().evaluate(value, value);
+    }
+
     /* JScience */
     public static Rational continuedFractionRational(int steps) {
         Rational value = Rational.ZERO;
@@ -162,4 +306,251 @@ public class ContinuedFractionBenchmark {
         return value;
     }
 
+    /**
+     * A sequential algorithm computing the product of the step matrices in the
+     * range [from, to].
+     */
+    @FunctionalInterface
+    interface MatrixProduct<T> {
+        T[] product(int from, int to);
+    }
+
+    /**
+     * Fork/join task computing the product of the step matrices in the range
+     * [from, to]. Ranges shorter than {@code PARALLEL_THRESHOLD} are delegated to
+     * a sequential product tree.
+     */
+    static class MatrixProductTask<T> extends RecursiveTask<T[]> {
+        private static final long serialVersionUID = 1L;
+
+        final int from, to;
+        final MatrixProduct<T> sequential;
+        final BinaryOperator<T[]> multiply;
+
+        MatrixProductTask(int from, int to, MatrixProduct<T> sequential, BinaryOperator<T[]> multiply) {
+            this.from = from;
+            this.to = to;
+            this.sequential = sequential;
+            this.multiply = multiply;
+        }
+
+        @Override
+        protected T[] compute() {
+            if (to - from < PARALLEL_THRESHOLD)
+                return sequential.product(from, to);
+            int mid = (from + to) >>> 1;
+            MatrixProductTask<T> left = new MatrixProductTask<>(from, mid, sequential, multiply);
+            MatrixProductTask<T> right = new MatrixProductTask<>(mid + 1, to, sequential, multiply);
+            left.fork();
+            T[] r = right.compute();
+            return multiply.apply(left.join(), r);
+        }
+    }
+
+    /* JGMP */
+    public static MPQ continuedFractionMPZFold(int steps) {
+        MPZ h = new MPZ(3);
+        MPZ hPrev = new MPZ(1);
+        MPZ k = new MPZ(1);
+        MPZ kPrev = new MPZ(0);
+        MPZ six = new MPZ(6);
+        for (int i = 1; i <= steps; i++) {
+            long a = (2L * i - 1) * (2L * i - 1);
+            hPrev.mulAssign(hPrev, a);
+            hPrev.addmulAssign(h, six);
+            h.swap(hPrev);
+            kPrev.mulAssign(kPrev, a);
+            kPrev.addmulAssign(k, six);
+            k.swap(kPrev);
+        }
+        return reduceMPZ(h, k);
+    }
+
+    /* JGMP */
+    public static MPQ continuedFractionMPZHybridFold(int steps) {
+        HybridInteger h = new HybridInteger(3);
+        HybridInteger hPrev = new HybridInteger(1);
+        HybridInteger k = new HybridInteger(1);
+        HybridInteger kPrev = new HybridInteger(0);
+        for (int i = 1; i <= steps; i++) {
+            long a = (2L * i - 1) * (2L * i - 1);
+            hPrev.mulAssign(hPrev, a);
+            hPrev.addmulAssign(h, 6);
+            h.swap(hPrev);
+            kPrev.mulAssign(kPrev, a);
+            kPrev.addmulAssign(k, 6);
+            k.swap(kPrev);
+        }
+        return reduceMPZ(h.getMPZ(), k.getMPZ());
+    }
+
+    /* JGMP */
+    public static MPZ[] multiplyMPZ(MPZ[] a, MPZ[] b) {
+        MPZ t = new MPZ();
+        t.mulAssign(a[0], b[1]);
+        t.addmulAssign(a[1], b[3]);
+        a[0].mulAssign(a[0], b[0]);
+        a[0].addmulAssign(a[1], b[2]);
+        a[1] = t;
+        t = new MPZ();
+        t.mulAssign(a[2], b[1]);
+        t.addmulAssign(a[3], b[3]);
+        a[2].mulAssign(a[2], b[0]);
+        a[2].addmulAssign(a[3], b[2]);
+        a[3] = t;
+        return a;
+    }
+
+    /* JGMP */
+    public static MPZ[] productMPZ(int from, int to) {
+        if (from == to) {
+            long a = (2L * from - 1) * (2L * from - 1);
+            return new MPZ[] { new MPZ(6), new MPZ(1), new MPZ(a), new MPZ(0) };
+        }
+        int mid = (from + to) >>> 1;
+        return multiplyMPZ(productMPZ(from, mid), productMPZ(mid + 1, to));
+    }
+
+    /* JGMP */
+    public static MPQ reduceMPZ(MPZ h, MPZ k) {
+        MPQ value = new MPQ();
+        value.setNum(h);
+        value.setDen(k);
+        value.canonicalize();
+        return value;
+    }
+
+    /* JGMP */
+    public static MPQ convergentMPZ(MPZ[] m) {
+        MPZ h = new MPZ(m[2]);
+        h.addmulAssign(m[0], new MPZ(3));
+        return reduceMPZ(h, m[0]);
+    }
+
+    /* JGMP */
+    public static MPQ continuedFractionMPZTree(int steps) {
+        if (steps == 0)
+            return new MPQ(3);
+        return convergentMPZ(productMPZ(1, steps));
+    }
+
+    /* JGMP */
+    public static MPQ continuedFractionMPZParallel(int steps, ForkJoinPool pool) {
+        if (steps == 0)
+            return new MPQ(3);
+        return convergentMPZ(pool.invoke(new MatrixProductTask<>(1, steps, ContinuedFractionBenchmark::productMPZ,
+                ContinuedFractionBenchmark::multiplyMPZ)));
+    }
+
+    /* BigInteger */
+    public static BigFraction continuedFractionBigIntegerFold(int steps) {
+        BigInteger h = BigInteger.valueOf(3);
+        BigInteger hPrev = BigInteger.ONE;
+        BigInteger k = BigInteger.ONE;
+        BigInteger kPrev = BigInteger.ZERO;
+        BigInteger six = BigInteger.valueOf(6);
+        for (int i = 1; i <= steps; i++) {
+            BigInteger a = BigInteger.valueOf((2L * i - 1) * (2L * i - 1));
+            BigInteger t = h;
+            h = h.multiply(six).add(hPrev.multiply(a));
+            hPrev = t;
+            t = k;
+            k = k.multiply(six).add(kPrev.multiply(a));
+            kPrev = t;
+        }
+        return BigFraction.of(h, k);
+    }
+
+    /* BigInteger */
+    public static BigInteger[] multiplyBigInteger(BigInteger[] a, BigInteger[] b) {
+        return new BigInteger[] { a[0].multiply(b[0]).add(a[1].multiply(b[2])),
+                a[0].multiply(b[1]).add(a[1].multiply(b[3])), a[2].multiply(b[0]).add(a[3].multiply(b[2])),
+                a[2].multiply(b[1]).add(a[3].multiply(b[3])) };
+    }
+
+    /* BigInteger */
+    public static BigInteger[] productBigInteger(int from, int to) {
+        if (from == to) {
+            long a = (2L * from - 1) * (2L * from - 1);
+            return new BigInteger[] { BigInteger.valueOf(6), BigInteger.ONE, BigInteger.valueOf(a), BigInteger.ZERO };
+        }
+        int mid = (from + to) >>> 1;
+        return multiplyBigInteger(productBigInteger(from, mid), productBigInteger(mid + 1, to));
+    }
+
+    /* BigInteger */
+    public static BigFraction convergentBigInteger(BigInteger[] m) {
+        return BigFraction.of(m[0].multiply(BigInteger.valueOf(3)).add(m[2]), m[0]);
+    }
+
+    /* BigInteger */
+    public static BigFraction continuedFractionBigIntegerTree(int steps) {
+        if (steps == 0)
+            return BigFraction.of(3);
+        return convergentBigInteger(productBigInteger(1, steps));
+    }
+
+    /* BigInteger */
+    public static BigFraction continuedFractionBigIntegerParallel(int steps, ForkJoinPool pool) {
+        if (steps == 0)
+            return BigFraction.of(3);
+        return convergentBigInteger(pool.invoke(new MatrixProductTask<>(1, steps,
+                ContinuedFractionBenchmark::productBigInteger, ContinuedFractionBenchmark::multiplyBigInteger)));
+    }
+
+    /* Apfloat */
+    public static Aprational continuedFractionApintFold(int steps) {
+        Apint h = new Apint(3);
+        Apint hPrev = Apint.ONE;
+        Apint k = Apint.ONE;
+        Apint kPrev = Apint.ZERO;
+        Apint six = new Apint(6);
+        for (int i = 1; i <= steps; i++) {
+            Apint a = new Apint((2L * i - 1) * (2L * i - 1));
+            Apint t = h;
+            h = h.multiply(six).add(hPrev.multiply(a));
+            hPrev = t;
+            t = k;
+            k = k.multiply(six).add(kPrev.multiply(a));
+            kPrev = t;
+        }
+        return new Aprational(h, k);
+    }
+
+    /* Apfloat */
+    public static Apint[] multiplyApint(Apint[] a, Apint[] b) {
+        return new Apint[] { a[0].multiply(b[0]).add(a[1].multiply(b[2])), a[0].multiply(b[1]).add(a[1].multiply(b[3])),
+                a[2].multiply(b[0]).add(a[3].multiply(b[2])), a[2].multiply(b[1]).add(a[3].multiply(b[3])) };
+    }
+
+    /* Apfloat */
+    public static Apint[] productApint(int from, int to) {
+        if (from == to) {
+            long a = (2L * from - 1) * (2L * from - 1);
+            return new Apint[] { new Apint(6), Apint.ONE, new Apint(a), Apint.ZERO };
+        }
+        int mid = (from + to) >>> 1;
+        return multiplyApint(productApint(from, mid), productApint(mid + 1, to));
+    }
+
+    /* Apfloat */
+    public static Aprational convergentApint(Apint[] m) {
+        return new Aprational(m[0].multiply(new Apint(3)).add(m[2]), m[0]);
+    }
+
+    /* Apfloat */
+    public static Aprational continuedFractionApintTree(int steps) {
+        if (steps == 0)
+            return new Apint(3);
+        return convergentApint(productApint(1, steps));
+    }
+
+    /* Apfloat */
+    public static Aprational continuedFractionApintParallel(int steps, ForkJoinPool pool) {
+        if (steps == 0)
+            return new Apint(3);
+        return convergentApint(pool.invoke(new MatrixProductTask<>(1, steps, ContinuedFractionBenchmark::productApint,
+                ContinuedFractionBenchmark::multiplyApint)));
+    }
+
 }
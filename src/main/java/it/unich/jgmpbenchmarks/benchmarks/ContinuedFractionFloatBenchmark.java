@@ -19,20 +19,28 @@ package it.unich.jgmpbenchmarks.benchmarks;
 
 import java.math.BigDecimal;
 import java.math.MathContext;
-import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
+import javolution.context.LocalContext;
 import org.apfloat.Apfloat;
-import org.apfloat.ApfloatContext;
 import org.jscience.mathematics.number.FloatingPoint;
 import org.kframework.mpfr.BigFloat;
 import org.kframework.mpfr.BinaryMathContext;
 import org.openjdk.jmh.annotations.*;
-import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.ThreadParams;
 import org.openjdk.jmh.runner.RunnerException;
-import org.openjdk.jmh.runner.options.OptionsBuilder;
 
 import it.unich.jgmp.MPF;
+import it.unich.jgmpbenchmarks.launcher.Launcher;
+import it.unich.jgmpbenchmarks.launcher.NativeLibrary;
+import it.unich.jgmpbenchmarks.launcher.Preflight;
 
 @BenchmarkMode(Mode.AverageTime)
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
@@ -44,10 +52,21 @@ import it.unich.jgmp.MPF;
 /**
  * Benchmarks for JGMP: using continued fractions for approximating pi with
  * floats.
+ *
+ * The precision is converted once in a {@link PrecisionContext} and passed to
+ * the kernels, which never change process-wide defaults. The only exceptions
+ * are the immutable MPF kernel, which relies on the default precision of MPF,
+ * and the JScience kernel, which relies on the number of digits of the current
+ * javolution context. Both are set once in the setup methods. The
+ * {@code Mixed} benchmarks run several threads concurrently, each with a
+ * different precision.
  */
 public class ContinuedFractionFloatBenchmark {
 
-    final static double PRECISION_CONVERSION = 1 / Math.log10(2);
+    /**
+     * Number of threads used by the mixed precision benchmarks.
+     */
+    final static int MIXED_THREADS = 4;
 
     @Param({ "1", "10", "100", "1000" })
     public int steps;
@@ -55,74 +74,194 @@ public class ContinuedFractionFloatBenchmark {
     @Param({ "1024" })
     public int prec;
 
+    PrecisionContext context;
+
+    /**
+     * The programs of the compiled kernel, for the precision of the context.
+     */
+    Program<MPF> stepMPF, lastMPF;
+
+    @Setup
+    public void setup() {
+        context = new PrecisionContext(prec);
+        stepMPF = compileStepMPF(context);
+        lastMPF = compileLastMPF(context);
+        MPF.setDefaultPrec(prec);
+        FloatingPoint.setDigits(context.digits);
+    }
+
+    /**
+     * Per-thread state for the mixed precision benchmarks. The thread with index
+     * i uses a precision of prec * 2^(i mod 3).
+     */
+    @State(Scope.Thread)
+    public static class ThreadContext {
+        PrecisionContext context;
+
+        @Setup
+        public void setup(BenchmarkParams benchmarkParams, ThreadParams threadParams) {
+            int prec = Integer.parseInt(benchmarkParams.getParam("prec"));
+            context = new PrecisionContext(prec << (threadParams.getThreadIndex() % 3));
+            LocalContext.enter();
+            FloatingPoint.setDigits(context.digits);
+        }
+
+        @TearDown
+        public void tearDown() {
+            LocalContext.exit();
+        }
+    }
+
     @Benchmark
     public BigDecimal continuedFractionBigDecimal() {
-        return continuedFractionBigDecimal(steps, prec);
+        return continuedFractionBigDecimal(steps, context);
     }
 
     @Benchmark
     public MPF continuedFractionMPF() {
-        return continuedFractionMPF(steps, prec);
+        return continuedFractionMPF(steps, context);
     }
 
     @Benchmark
     public MPF continuedFractionMPFImmutable() {
-        return continuedFractionMPFImmutable(steps, prec);
+        return continuedFractionMPFImmutable(steps);
+    }
+
+    @Benchmark
+    public MPF continuedFractionMPFCompiled() {
+        return continuedFractionMPFCompiled(steps, context, stepMPF, lastMPF);
     }
 
     @Benchmark
     public FloatingPoint continuedFractionFloatingPoint() {
-        return continuedFractionFloatingPoint(steps, prec);
+        return continuedFractionFloatingPoint(steps);
     }
 
     @Benchmark
     public Apfloat continuedFractionApfloat() {
-        return continuedFractionApfloat(steps, prec, 10);
+        return continuedFractionApfloat(steps, context, 10);
     }
 
     @Benchmark
     public Apfloat continuedFractionApfloatBinary() {
-        return continuedFractionApfloat(steps, prec, 2);
+        return continuedFractionApfloat(steps, context, 2);
     }
 
     @Benchmark
     public BigFloat continuedFractionBigFloat() {
-        return continuedFractionBigFloat(steps, prec);
+        return continuedFractionBigFloat(steps, context);
+    }
+
+    @Benchmark
+    @Threads(MIXED_THREADS)
+    public BigDecimal continuedFractionBigDecimalMixed(ThreadContext thread) {
+        return continuedFractionBigDecimal(steps, thread.context);
+    }
+
+    @Benchmark
+    @Threads(MIXED_THREADS)
+    public MPF continuedFractionMPFMixed(ThreadContext thread) {
+        return continuedFractionMPF(steps, thread.context);
+    }
+
+    @Benchmark
+    @Threads(MIXED_THREADS)
+    public FloatingPoint continuedFractionFloatingPointMixed(ThreadContext thread) {
+        return continuedFractionFloatingPoint(steps);
+    }
+
+    @Benchmark
+    @Threads(MIXED_THREADS)
+    public Apfloat continuedFractionApfloatMixed(ThreadContext thread) {
+        return continuedFractionApfloat(steps, thread.context, 10);
+    }
+
+    @Benchmark
+    @Threads(MIXED_THREADS)
+    public BigFloat continuedFractionBigFloatMixed(ThreadContext thread) {
+        return continuedFractionBigFloat(steps, thread.context);
     }
 
     public static void main(String[] args) throws RunnerException {
+        Launcher.run(ContinuedFractionFloatBenchmark.class, args);
+    }
+
+    public static void preflight(Preflight p) {
+        p.size("steps");
+        PrecisionContext context = new PrecisionContext(128);
         String resBigDecimal = "3.14159241097198067426258886021672643729";
-        if (!continuedFractionBigDecimal(100, 128).toString().equals(resBigDecimal))
-            throw new Error("Invalid BigDecimal result");
+        p.check("continuedFractionBigDecimal",
+                () -> continuedFractionBigDecimal(100, context).toString().equals(resBigDecimal));
         String resMPF = "3.141592410971980674262588860216726437293";
-        if (!continuedFractionMPF(100, 128).toString().equals(resMPF))
-            throw new Error("Invalid MPF result");
-        if (!continuedFractionMPFImmutable(100, 128).toString().equals(resMPF))
-            throw new Error("Invalid MPF Immutable result");
+        p.check("continuedFractionMPF", () -> continuedFractionMPF(100, context).toString().equals(resMPF),
+                NativeLibrary.JGMP);
+        p.check("continuedFractionMPFImmutable", () -> {
+            MPF.setDefaultPrec(128);
+            return continuedFractionMPFImmutable(100).toString().equals(resMPF);
+        }, NativeLibrary.JGMP);
+        p.check("continuedFractionMPFCompiled",
+                () -> continuedFractionMPFCompiled(100, context, compileStepMPF(context), compileLastMPF(context))
+                        .toString().equals(resMPF),
+                NativeLibrary.JGMP);
         String resFloatingPoint = "0.31415924109719806742625888602167264372E1";
-        if (!continuedFractionFloatingPoint(100, 128).toString().equals(resFloatingPoint))
-            throw new Error("Invalid FloatingPoint result");
+        p.check("continuedFractionFloatingPoint",
+                () -> floatingPoint(100, context).toString().equals(resFloatingPoint));
         String resApfloat = "3.14159241097198067426258886021672643729";
-        if (!continuedFractionApfloat(100, 128, 10).toString().equals(resApfloat))
-            throw new Error("Invalid Apfloat result");
-        if (!continuedFractionApfloat(100, 128, 2).toRadix(10).toString().equals(resApfloat))
-            throw new Error("Invalid Apfloat binary result");
-        OptionsBuilder ob = new OptionsBuilder();
-        ob.include("ContinuedFractionFloatBenchmark");
+        p.check("continuedFractionApfloat",
+                () -> continuedFractionApfloat(100, context, 10).toString().equals(resApfloat));
+        p.check("continuedFractionApfloatBinary",
+                () -> continuedFractionApfloat(100, context, 2).toRadix(10).toString().equals(resApfloat));
+        String resBigFloat = "3.141592410971980674262588860216726437296e+00";
+        p.check("continuedFractionBigFloat|continuedFractionBigFloatMixed",
+                () -> continuedFractionBigFloat(100, context).toString().replaceAll(",", ".").equals(resBigFloat),
+                NativeLibrary.MPFR);
+        p.check("continuedFraction(BigDecimal|MPF|FloatingPoint|Apfloat)Mixed",
+                ContinuedFractionFloatBenchmark::checkMixed, NativeLibrary.JGMP);
+    }
+
+    /**
+     * Checks that kernels running concurrently with different precisions give
+     * the same results as sequential runs.
+     */
+    static boolean checkMixed() throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(MIXED_THREADS);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 3 * MIXED_THREADS; i++) {
+                PrecisionContext context = new PrecisionContext(128 << (i % 3));
+                expected.add(continuedFractionBigDecimal(100, context) + " " + continuedFractionMPF(100, context) + " "
+                        + continuedFractionApfloat(100, context, 10) + " " + floatingPoint(100, context));
+                futures.add(executor.submit(() -> continuedFractionBigDecimal(100, context) + " "
+                        + continuedFractionMPF(100, context) + " " + continuedFractionApfloat(100, context, 10) + " "
+                        + floatingPoint(100, context)));
+            }
+            for (int i = 0; i < futures.size(); i++)
+                if (!futures.get(i).get().equals(expected.get(i)))
+                    return false;
+            return true;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Runs the JScience kernel in a new javolution local context with the digits
+     * of the given precision context.
+     */
+    static FloatingPoint floatingPoint(int steps, PrecisionContext context) {
+        LocalContext.enter();
         try {
-            String resBigFloat = "3.141592410971980674262588860216726437296e+00";
-            if (!continuedFractionBigFloat(100, 128).toString().replaceAll(",", ".").equals(resBigFloat))
-                throw new Error("Invalid BigFloat result");
-        } catch (LinkageError e) {
-            System.err.println("Cannot launch MPFR benchmarks: " + e);
-            ob.exclude("ContinuedFractionFloatBenchmark\\.continuedFractionBigFloat");
+            FloatingPoint.setDigits(context.digits);
+            return continuedFractionFloatingPoint(steps);
+        } finally {
+            LocalContext.exit();
         }
-        new Runner(ob.build()).run();
     }
 
     /* BigDecimal */
-    public static BigDecimal continuedFractionBigDecimal(int steps, int prec) {
-        MathContext mc = new MathContext((int) (prec / PRECISION_CONVERSION));
+    public static BigDecimal continuedFractionBigDecimal(int steps, PrecisionContext context) {
+        MathContext mc = context.mathContext;
         BigDecimal value = BigDecimal.ZERO;
         BigDecimal six = BigDecimal.valueOf(6);
         while (steps >= 1) {
@@ -137,10 +276,13 @@ public class ContinuedFractionFloatBenchmark {
     }
 
     /* JGMP */
-    public static MPF continuedFractionMPF(int steps, int prec) {
-        MPF value = MPF.init2(prec);
-        MPF numerator = new MPF();
-        MPF six = new MPF(6);
+    public static MPF continuedFractionMPF(int steps, PrecisionContext context) {
+        MPF value = MPF.init2(context.prec);
+        MPF numerator = MPF.init2(context.prec);
+        MPF six = MPF.init2(context.prec);
+        MPF three = MPF.init2(context.prec);
+        six.set(6);
+        three.set(3);
         while (steps >= 1) {
             value.addAssign(six);
             numerator.set(2 * steps - 1);
@@ -148,13 +290,12 @@ public class ContinuedFractionFloatBenchmark {
             value.divAssign(numerator, value);
             steps -= 1;
         }
-        value.addAssign(new MPF(3));
+        value.addAssign(three);
         return value;
     }
 
-    /* JGMP */
-    public static MPF continuedFractionMPFImmutable(int steps, int prec) {
-        MPF.setDefaultPrec(prec);
+    /* JGMP: the precision is the default precision of MPF */
+    public static MPF continuedFractionMPFImmutable(int steps) {
         MPF value = new MPF();
         MPF six = new MPF(6);
         while (steps >= 1) {
@@ -167,9 +308,36 @@ public class ContinuedFractionFloatBenchmark {
         return value.add(new MPF(3));
     }
 
-    /* JScience */
-    public static FloatingPoint continuedFractionFloatingPoint(int steps, int prec) {
-        FloatingPoint.setDigits((int) (prec / PRECISION_CONVERSION));
+    /**
+     * Returns the body of the loop of the compiled kernel, for the precision of
+     * the context.
+     */
+    static Program<MPF> compileStepMPF(PrecisionContext context) {
+        return ContinuedFractionBenchmark.continuedFractionStep().compile(Arithmetic.mpf(context.prec));
+    }
+
+    /**
+     * Returns the final step of the compiled kernel, for the precision of the
+     * context.
+     */
+    static Program<MPF> compileLastMPF(PrecisionContext context) {
+        return Expression.variable(0).add(3).compile(Arithmetic.mpf(context.prec));
+    }
+
+    /* JGMP: the programs are compiled for the precision of the context */
+    public static MPF continuedFractionMPFCompiled(int steps, PrecisionContext context, Program<MPF> stepProgram,
+            Program<MPF> lastProgram) {
+        Program.Evaluator<MPF> step = stepProgram.evaluator();
+        MPF value = MPF.init2(context.prec);
+        while (steps >= 1) {
+            step.evaluate(value, value, 2 * steps - 1);
+            steps -= 1;
+        }
+        return lastProgram.evaluator().evaluate(value, value);
+    }
+
+    /* JScience: the precision is the number of digits of the current context */
+    public static FloatingPoint continuedFractionFloatingPoint(int steps) {
         FloatingPoint value = FloatingPoint.ZERO;
         FloatingPoint six = FloatingPoint.valueOf(6);
         while (steps >= 1) {
@@ -184,26 +352,25 @@ public class ContinuedFractionFloatBenchmark {
     }
 
     /* Apfloat */
-    public static Apfloat continuedFractionApfloat(int steps, int prec, int radix) {
-        ApfloatContext.getContext().setDefaultRadix(radix);
-        int precision = radix == 10 ? (int) (prec / PRECISION_CONVERSION) : prec;
-        Apfloat value = new Apfloat(0);
-        Apfloat six = new Apfloat(6);
+    public static Apfloat continuedFractionApfloat(int steps, PrecisionContext context, int radix) {
+        long precision = context.apfloatPrecision(radix);
+        Apfloat value = new Apfloat(0, Apfloat.INFINITE, radix);
+        Apfloat six = new Apfloat(6, Apfloat.INFINITE, radix);
         while (steps >= 1) {
             value = value.add(six);
-            Apfloat numerator = new Apfloat(2 * steps - 1, precision);
+            Apfloat numerator = new Apfloat(2 * steps - 1, precision, radix);
             numerator = numerator.multiply(numerator);
             value = numerator.divide(value);
             steps -= 1;
         }
-        value = value.add(new Apfloat(3));
+        value = value.add(new Apfloat(3, Apfloat.INFINITE, radix));
         return value;
     }
 
     /* MPFR */
-    public static BigFloat continuedFractionBigFloat(int steps, int prec) {
-        BigFloat value = BigFloat.zero(prec);
-        BinaryMathContext c = new BinaryMathContext(prec, RoundingMode.HALF_EVEN);
+    public static BigFloat continuedFractionBigFloat(int steps, PrecisionContext context) {
+        BinaryMathContext c = context.binaryMathContext;
+        BigFloat value = BigFloat.zero(c.precision);
         BigFloat six = new BigFloat(6, c);
         while (steps >= 1) {
             value = value.add(six, c);
@@ -0,0 +1,338 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.benchmarks;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.concurrent.TimeUnit;
+
+import org.apfloat.Apfloat;
+import org.kframework.mpfr.BigFloat;
+import org.kframework.mpfr.BinaryMathContext;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.RunnerException;
+
+import it.unich.jgmp.MPF;
+import it.unich.jgmp.MPZ;
+import it.unich.jgmpbenchmarks.launcher.Launcher;
+import it.unich.jgmpbenchmarks.launcher.NativeLibrary;
+import it.unich.jgmpbenchmarks.launcher.Preflight;
+import it.unich.jgmpbenchmarks.profilers.StepProfiler;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 5, jvmArgs = { "-Xms2G", "-Xmx2G" })
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+
+/**
+ * Benchmarks for JGMP: approximating pi with the same continued fraction of
+ * {@link ContinuedFractionFloatBenchmark}, but computing the convergents p_k /
+ * q_k forward with integer recurrences until a given precision is reached.
+ *
+ * The distance between two consecutive convergents is (a_1 ... a_k) / (q_k
+ * q_{k-1}), and since the convergents alternate around pi this bounds the
+ * error. Floats are only built at the end, from the final convergent. The
+ * continued fraction converges as 1/k^3, hence the precisions here are much
+ * smaller than the {@code prec} used by {@link ContinuedFractionFloatBenchmark}.
+ * The refine kernels start from a stream which is already {@code REFINE_DELTA}
+ * bits short of the requested precision. The {@link StepProfiler} reports the
+ * number of steps performed by each kernel.
+ */
+public class ContinuedFractionStreamBenchmark {
+
+    final static double PRECISION_CONVERSION = 1 / Math.log10(2);
+
+    /**
+     * Number of bits of precision already available in the streams which are
+     * refined by the incremental benchmarks.
+     */
+    final static int REFINE_DELTA = 8;
+
+    @Param({ "16", "24", "32", "40", "48" })
+    public int bits;
+
+    ConvergentStreamMPZ baseMPZ;
+
+    ConvergentStreamBigInteger baseBigInteger;
+
+    @Setup
+    public void setup() {
+        baseMPZ = new ConvergentStreamMPZ().advance(bits - REFINE_DELTA);
+        baseBigInteger = new ConvergentStreamBigInteger().advance(bits - REFINE_DELTA);
+    }
+
+    @Benchmark
+    public MPF streamMPF() {
+        ConvergentStreamMPZ stream = new ConvergentStreamMPZ().advance(bits);
+        StepProfiler.record(stream.steps());
+        return stream.toMPF(bits);
+    }
+
+    @Benchmark
+    public MPF streamMPFRefine() {
+        ConvergentStreamMPZ stream = baseMPZ.copy().advance(bits);
+        StepProfiler.record(stream.steps() - baseMPZ.steps());
+        return stream.toMPF(bits);
+    }
+
+    @Benchmark
+    public BigDecimal streamBigDecimal() {
+        return stream().toBigDecimal(bits);
+    }
+
+    @Benchmark
+    public BigDecimal streamBigDecimalRefine() {
+        return refine().toBigDecimal(bits);
+    }
+
+    @Benchmark
+    public Apfloat streamApfloat() {
+        return stream().toApfloat(bits);
+    }
+
+    @Benchmark
+    public Apfloat streamApfloatRefine() {
+        return refine().toApfloat(bits);
+    }
+
+    @Benchmark
+    public BigFloat streamBigFloat() {
+        return stream().toBigFloat(bits);
+    }
+
+    @Benchmark
+    public BigFloat streamBigFloatRefine() {
+        return refine().toBigFloat(bits);
+    }
+
+    /**
+     * Returns a new BigInteger stream advanced to the requested precision.
+     */
+    ConvergentStreamBigInteger stream() {
+        ConvergentStreamBigInteger stream = new ConvergentStreamBigInteger().advance(bits);
+        StepProfiler.record(stream.steps());
+        return stream;
+    }
+
+    /**
+     * Returns a copy of the base BigInteger stream, refined to the requested
+     * precision.
+     */
+    ConvergentStreamBigInteger refine() {
+        ConvergentStreamBigInteger stream = baseBigInteger.copy().advance(bits);
+        StepProfiler.record(stream.steps() - baseBigInteger.steps());
+        return stream;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Launcher.run(ContinuedFractionStreamBenchmark.class, args);
+    }
+
+    public static void preflight(Preflight p) {
+        p.size("bits");
+        double error = Math.scalb(1.0, -14);
+        p.check("streamMPF", () -> Math.abs(new ConvergentStreamMPZ().advance(16).toMPF(16).getD() - Math.PI) <= error,
+                NativeLibrary.JGMP);
+        p.check("streamMPFRefine", () -> new ConvergentStreamMPZ().advance(8).advance(16).toMPF(16)
+                .equals(new ConvergentStreamMPZ().advance(16).toMPF(16)), NativeLibrary.JGMP);
+        p.check("streamBigDecimal|streamBigDecimalRefine", () -> Math
+                .abs(new ConvergentStreamBigInteger().advance(16).toBigDecimal(16).doubleValue() - Math.PI) <= error);
+        p.check("streamApfloat|streamApfloatRefine", () -> Math
+                .abs(new ConvergentStreamBigInteger().advance(16).toApfloat(16).doubleValue() - Math.PI) <= error);
+        p.check("streamBigFloat|streamBigFloatRefine", () -> Math
+                .abs(new ConvergentStreamBigInteger().advance(16).toBigFloat(16).doubleValue() - Math.PI) <= error,
+                NativeLibrary.MPFR);
+        p.profiler(StepProfiler.class);
+    }
+
+    /**
+     * Stream of the convergents of the continued fraction, computed in place with
+     * MPZ.
+     */
+    public static class ConvergentStreamMPZ {
+        final MPZ p, pPrev, q, qPrev, d;
+        final MPZ six = new MPZ(6);
+        int k;
+
+        public ConvergentStreamMPZ() {
+            p = new MPZ(3);
+            pPrev = new MPZ(1);
+            q = new MPZ(1);
+            qPrev = new MPZ(0);
+            d = new MPZ(1);
+        }
+
+        ConvergentStreamMPZ(ConvergentStreamMPZ other) {
+            p = new MPZ(other.p);
+            pPrev = new MPZ(other.pPrev);
+            q = new MPZ(other.q);
+            qPrev = new MPZ(other.qPrev);
+            d = new MPZ(other.d);
+            k = other.k;
+        }
+
+        /**
+         * Returns an independent copy of this stream.
+         */
+        public ConvergentStreamMPZ copy() {
+            return new ConvergentStreamMPZ(this);
+        }
+
+        /**
+         * Returns the number of steps performed so far.
+         */
+        public int steps() {
+            return k;
+        }
+
+        /**
+         * Moves to the next convergent.
+         */
+        public void step() {
+            k += 1;
+            long a = (2L * k - 1) * (2L * k - 1);
+            pPrev.mulAssign(pPrev, a);
+            pPrev.addmulAssign(p, six);
+            p.swap(pPrev);
+            qPrev.mulAssign(qPrev, a);
+            qPrev.addmulAssign(q, six);
+            q.swap(qPrev);
+            d.mulAssign(d, a);
+        }
+
+        /**
+         * Returns a lower bound of the number of correct bits of the current
+         * convergent.
+         */
+        public long accuracy() {
+            return q.sizeinbase(2) + qPrev.sizeinbase(2) - 2 - d.sizeinbase(2);
+        }
+
+        /**
+         * Moves forward until the current convergent has at least the specified
+         * number of correct bits.
+         */
+        public ConvergentStreamMPZ advance(long prec) {
+            while (k == 0 || accuracy() < prec)
+                step();
+            return this;
+        }
+
+        public MPF toMPF(long prec) {
+            MPF value = MPF.init2(prec);
+            MPF den = MPF.init2(prec);
+            value.set(p);
+            den.set(q);
+            value.divAssign(value, den);
+            return value;
+        }
+    }
+
+    /**
+     * Stream of the convergents of the continued fraction, computed with
+     * BigInteger.
+     */
+    public static class ConvergentStreamBigInteger {
+        final static BigInteger SIX = BigInteger.valueOf(6);
+
+        BigInteger p, pPrev, q, qPrev, d;
+        int k;
+
+        public ConvergentStreamBigInteger() {
+            p = BigInteger.valueOf(3);
+            pPrev = BigInteger.ONE;
+            q = BigInteger.ONE;
+            qPrev = BigInteger.ZERO;
+            d = BigInteger.ONE;
+        }
+
+        /**
+         * Returns an independent copy of this stream.
+         */
+        public ConvergentStreamBigInteger copy() {
+            ConvergentStreamBigInteger other = new ConvergentStreamBigInteger();
+            other.p = p;
+            other.pPrev = pPrev;
+            other.q = q;
+            other.qPrev = qPrev;
+            other.d = d;
+            other.k = k;
+            return other;
+        }
+
+        /**
+         * Returns the number of steps performed so far.
+         */
+        public int steps() {
+            return k;
+        }
+
+        /**
+         * Moves to the next convergent.
+         */
+        public void step() {
+            k += 1;
+            BigInteger a = BigInteger.valueOf((2L * k - 1) * (2L * k - 1));
+            BigInteger t = p;
+            p = p.multiply(SIX).add(pPrev.multiply(a));
+            pPrev = t;
+            t = q;
+            q = q.multiply(SIX).add(qPrev.multiply(a));
+            qPrev = t;
+            d = d.multiply(a);
+        }
+
+        /**
+         * Returns a lower bound of the number of correct bits of the current
+         * convergent.
+         */
+        public long accuracy() {
+            return (long) q.bitLength() + qPrev.bitLength() - 2 - d.bitLength();
+        }
+
+        /**
+         * Moves forward until the current convergent has at least the specified
+         * number of correct bits.
+         */
+        public ConvergentStreamBigInteger advance(long prec) {
+            while (k == 0 || accuracy() < prec)
+                step();
+            return this;
+        }
+
+        public BigDecimal toBigDecimal(int prec) {
+            MathContext mc = new MathContext((int) (prec / PRECISION_CONVERSION) + 1, RoundingMode.HALF_EVEN);
+            return new BigDecimal(p).divide(new BigDecimal(q), mc);
+        }
+
+        public Apfloat toApfloat(int prec) {
+            long digits = (long) (prec / PRECISION_CONVERSION) + 1;
+            return new Apfloat(p, digits).divide(new Apfloat(q, digits));
+        }
+
+        public BigFloat toBigFloat(int prec) {
+            BinaryMathContext c = new BinaryMathContext(prec, RoundingMode.HALF_EVEN);
+            return new BigFloat(p, c).divide(new BigFloat(q, c), c);
+        }
+    }
+
+}
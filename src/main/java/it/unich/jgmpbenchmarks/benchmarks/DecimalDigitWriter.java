@@ -0,0 +1,198 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.benchmarks;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import it.unich.jgmp.MPZ;
+
+/**
+ * Writes the decimal representation of big integers to a channel, without
+ * building a string with all the digits.
+ *
+ * A number below 10^(CHUNK 2^k) is divided by 10^(CHUNK 2^(k-1)), and the
+ * quotient and the remainder are written recursively, the latter padded with
+ * zeros. Chunks of {@code CHUNK} digits are converted with {@code toString}
+ * and copied to a buffer, which is written to the channel when full. The cost
+ * is that of a few multiplications of the size of the number, as for the
+ * subquadratic conversion of GMP, but only the quotients and remainders on the
+ * current path of the recursion are alive. The powers of 10 are cached across
+ * calls. Instances are not thread safe.
+ */
+public class DecimalDigitWriter {
+
+    /**
+     * Number of digits converted at once by {@code toString}.
+     */
+    public final static int CHUNK = 1024;
+
+    final WritableByteChannel channel;
+
+    final ByteBuffer buffer;
+
+    /**
+     * The powers 10^(CHUNK 2^k), for k = 0, 1, ...
+     */
+    private final List<MPZ> powersMPZ = new ArrayList<>();
+
+    private final List<BigInteger> powersBigInteger = new ArrayList<>();
+
+    /**
+     * Scratch MPZs for quotients and remainders, two for each level of
+     * recursion.
+     */
+    private final List<MPZ> scratch = new ArrayList<>();
+
+    private final byte[] zeros = "0".repeat(CHUNK).getBytes(StandardCharsets.US_ASCII);
+
+    private long written;
+
+    public DecimalDigitWriter(WritableByteChannel channel, int bufferSize) {
+        if (bufferSize < CHUNK)
+            throw new IllegalArgumentException("Buffer smaller than a chunk");
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    MPZ powerMPZ(int k) {
+        while (powersMPZ.size() <= k) {
+            MPZ p = new MPZ();
+            if (powersMPZ.isEmpty())
+                p.powUiAssign(new MPZ(10), CHUNK);
+            else
+                p.mulAssign(powersMPZ.get(powersMPZ.size() - 1), powersMPZ.get(powersMPZ.size() - 1));
+            powersMPZ.add(p);
+        }
+        return powersMPZ.get(k);
+    }
+
+    BigInteger powerBigInteger(int k) {
+        while (powersBigInteger.size() <= k)
+            powersBigInteger.add(powersBigInteger.isEmpty() ? BigInteger.TEN.pow(CHUNK)
+                    : powersBigInteger.get(powersBigInteger.size() - 1).pow(2));
+        return powersBigInteger.get(k);
+    }
+
+    MPZ scratch(int i) {
+        while (scratch.size() <= i)
+            scratch.add(new MPZ());
+        return scratch.get(i);
+    }
+
+    void put(byte[] bytes, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            int n = Math.min(length - offset, buffer.remaining());
+            buffer.put(bytes, offset, n);
+            offset += n;
+            if (!buffer.hasRemaining())
+                flush();
+        }
+        written += length;
+    }
+
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    void putChunk(String s, boolean pad) throws IOException {
+        if (pad)
+            put(zeros, CHUNK - s.length());
+        byte[] b = s.getBytes(StandardCharsets.US_ASCII);
+        put(b, b.length);
+    }
+
+    /**
+     * Writes x and returns the number of bytes written.
+     */
+    public long write(MPZ x) throws IOException {
+        written = 0;
+        MPZ abs = scratch(0);
+        abs.absAssign(x);
+        if (x.sgn() < 0)
+            put(new byte[] { '-' }, 1);
+        int k = 0;
+        while (abs.cmp(powerMPZ(k)) >= 0)
+            k++;
+        write(abs, k, false, 1);
+        flush();
+        return written;
+    }
+
+    /**
+     * Writes x, which is non-negative and below 10^(CHUNK 2^k), using the scratch
+     * MPZs from position s.
+     */
+    void write(MPZ x, int k, boolean pad, int s) throws IOException {
+        if (k == 0) {
+            putChunk(x.toString(), pad);
+            return;
+        }
+        MPZ power = powerMPZ(k - 1);
+        MPZ q = scratch(s), r = scratch(s + 1);
+        q.tdivqAssign(x, power);
+        r.mulAssign(q, power);
+        r.subAssign(x, r);
+        if (!pad && q.sgn() == 0) {
+            write(r, k - 1, false, s + 2);
+        } else {
+            write(q, k - 1, pad, s + 2);
+            write(r, k - 1, true, s + 2);
+        }
+    }
+
+    /**
+     * Writes x and returns the number of bytes written.
+     */
+    public long write(BigInteger x) throws IOException {
+        written = 0;
+        if (x.signum() < 0)
+            put(new byte[] { '-' }, 1);
+        BigInteger abs = x.abs();
+        int k = 0;
+        while (abs.compareTo(powerBigInteger(k)) >= 0)
+            k++;
+        write(abs, k, false);
+        flush();
+        return written;
+    }
+
+    void write(BigInteger x, int k, boolean pad) throws IOException {
+        if (k == 0) {
+            putChunk(x.toString(), pad);
+            return;
+        }
+        BigInteger[] qr = x.divideAndRemainder(powerBigInteger(k - 1));
+        if (!pad && qr[0].signum() == 0) {
+            write(qr[1], k - 1, false);
+        } else {
+            write(qr[0], k - 1, pad);
+            write(qr[1], k - 1, true);
+        }
+    }
+
+}
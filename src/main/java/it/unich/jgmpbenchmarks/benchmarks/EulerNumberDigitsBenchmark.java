@@ -18,17 +18,27 @@
 package it.unich.jgmpbenchmarks.benchmarks;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
 import java.math.RoundingMode;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BinaryOperator;
 
+import org.apfloat.Apfloat;
+import org.apfloat.Apint;
+import org.javatuples.Pair;
+import org.kframework.mpfr.BigFloat;
+import org.kframework.mpfr.BinaryMathContext;
 import org.openjdk.jmh.annotations.*;
-import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
-import org.openjdk.jmh.runner.options.Options;
-import org.openjdk.jmh.runner.options.OptionsBuilder;
-
-import java.util.concurrent.TimeUnit;
 
-import it.unich.jgmp.*;
+import it.unich.jgmp.MPF;
+import it.unich.jgmp.MPZ;
+import it.unich.jgmpbenchmarks.launcher.Launcher;
+import it.unich.jgmpbenchmarks.launcher.NativeLibrary;
+import it.unich.jgmpbenchmarks.launcher.Preflight;
 
 @BenchmarkMode(Mode.AverageTime)
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
@@ -38,60 +48,274 @@ import it.unich.jgmp.*;
 @Measurement(iterations = 5)
 
 /**
- * Benchmarks for JGMP: computing an approximation of the Euler's number with
+ * Benchmarks for JGMP: computing the digits of the Euler's number with the
+ * binary splitting algorithm.
+ *
+ * The series e = 1 + 1/1! + 1/2! + ... is summed exactly as a single fraction
+ * P/Q with integer arithmetic, and only the final division is performed with
  * floats.
  */
 public class EulerNumberDigitsBenchmark {
 
-    @Param({ "10" })
-    public int n;
+    final static double PRECISION_CONVERSION = 1 / Math.log10(2);
+
+    /**
+     * Length of the ranges below which the parallel binary splitting stops
+     * forking new tasks.
+     */
+    final static int PARALLEL_THRESHOLD = 256;
 
-    @Param({ "30" })
-    public int scale;
+    @Param({ "100", "1000", "10000", "100000", "1000000" })
+    public int digits;
 
     @Benchmark
-    public MPF eulerMPZ() {
-        return eulerMPZ(n, scale);
+    public MPF eulerMPF() {
+        return eulerMPF(digits);
+    }
+
+    @Benchmark
+    public MPF eulerMPFParallel(ParallelState state) {
+        return eulerMPFParallel(digits, state.pool);
     }
 
     @Benchmark
     public BigDecimal eulerBigDecimal() {
-        return eulerBigDecimal(n, scale);
+        return eulerBigDecimal(digits);
+    }
+
+    @Benchmark
+    public BigDecimal eulerBigDecimalParallel(ParallelState state) {
+        return eulerBigDecimalParallel(digits, state.pool);
+    }
+
+    @Benchmark
+    public Apfloat eulerApfloat() {
+        return eulerApfloat(digits);
+    }
+
+    @Benchmark
+    public Apfloat eulerApfloatParallel(ParallelState state) {
+        return eulerApfloatParallel(digits, state.pool);
+    }
+
+    @Benchmark
+    public BigFloat eulerBigFloat() {
+        return eulerBigFloat(digits);
+    }
+
+    @Benchmark
+    public BigFloat eulerBigFloatParallel(ParallelState state) {
+        return eulerBigFloatParallel(digits, state.pool);
     }
 
     public static void main(String[] args) throws RunnerException {
-        System.out.println(eulerBigDecimal(30, 39));
-        System.out.println(eulerMPZ(30, 30));
-        Options opt = new OptionsBuilder().build();
+        Launcher.run(EulerNumberDigitsBenchmark.class, args);
+    }
 
-        new Runner(opt).run();
+    public static void preflight(Preflight p) {
+        p.size("digits");
+        String res = "2.71828182845904523536028747135266249775";
+        p.check("eulerMPF", () -> eulerMPF(100).toString().startsWith(res), NativeLibrary.JGMP);
+        p.check("eulerMPFParallel", () -> eulerMPFParallel(3000, p.pool()).toString().startsWith(res),
+                NativeLibrary.JGMP);
+        p.check("eulerBigDecimal", () -> eulerBigDecimal(100).toString().startsWith(res));
+        p.check("eulerBigDecimalParallel", () -> eulerBigDecimalParallel(3000, p.pool()).toString().startsWith(res));
+        p.check("eulerApfloat", () -> eulerApfloat(100).toString().startsWith(res));
+        p.check("eulerApfloatParallel", () -> eulerApfloatParallel(3000, p.pool()).toString().startsWith(res));
+        p.check("eulerBigFloat", () -> eulerBigFloat(100).toString().replaceAll(",", ".").startsWith(res),
+                NativeLibrary.MPFR);
+        p.check("eulerBigFloatParallel",
+                () -> eulerBigFloatParallel(3000, p.pool()).toString().replaceAll(",", ".").startsWith(res),
+                NativeLibrary.MPFR);
     }
 
-    /* JGMP */
-    public static MPF eulerMPZ(int x, int scale) {
-        MPF.setDefaultPrec(128);
-        MPF one = new MPF(1);
-        MPF fact = new MPF(1); // fact = n!
-        MPF e = new MPF(1);
-        for (int i = 1; i <= x; i++) {
-            e.addAssign(e, one.div(fact));
-            fact.mulUiAssign(fact, i + 1);
+    /**
+     * Returns the number of terms of the series needed to get the specified
+     * number of decimal digits, i.e., the smallest n such that n! > 10^(digits +
+     * 1).
+     */
+    public static int terms(int digits) {
+        double log = 0;
+        int n = 1;
+        while (log <= digits + 1) {
+            n += 1;
+            log += Math.log10(n);
         }
-        return e;
+        return n;
     }
 
-    /* BigDecimal */
-    public static BigDecimal eulerBigDecimal(int x, int scale) {
-        BigDecimal one = BigDecimal.ONE;
-        BigDecimal n = BigDecimal.ONE;
-        BigDecimal fact = BigDecimal.ONE; // fact = n!
-        BigDecimal e = BigDecimal.ONE;
-        for (int i = 1; i <= x; i++) {
-            e = e.add(one.divide(fact, scale, RoundingMode.FLOOR));
-            n = n.add(one);
-            fact = fact.multiply(n);
+    /**
+     * A sequential binary splitting algorithm, computing the pair (P, Q) for the
+     * terms in the range [a, b).
+     */
+    @FunctionalInterface
+    interface BinarySplitting<T> {
+        Pair<T, T> split(int a, int b);
+    }
+
+    /**
+     * Fork/join task for the binary splitting algorithm. Ranges shorter than
+     * {@code PARALLEL_THRESHOLD} are delegated to the sequential algorithm.
+     */
+    static class SplitTask<T> extends RecursiveTask<Pair<T, T>> {
+        private static final long serialVersionUID = 1L;
+
+        final int a, b;
+        final BinarySplitting<T> sequential;
+        final BinaryOperator<Pair<T, T>> combine;
+
+        SplitTask(int a, int b, BinarySplitting<T> sequential, BinaryOperator<Pair<T, T>> combine) {
+            this.a = a;
+            this.b = b;
+            this.sequential = sequential;
+            this.combine = combine;
+        }
+
+        @Override
+        protected Pair<T, T> compute() {
+            if (b - a < PARALLEL_THRESHOLD)
+                return sequential.split(a, b);
+            int m = (a + b) >>> 1;
+            SplitTask<T> left = new SplitTask<>(a, m, sequential, combine);
+            SplitTask<T> right = new SplitTask<>(m, b, sequential, combine);
+            left.fork();
+            Pair<T, T> r = right.compute();
+            return combine.apply(left.join(), r);
         }
+    }
+
+    /* JGMP */
+    public static Pair<MPZ, MPZ> combineMPZ(Pair<MPZ, MPZ> left, Pair<MPZ, MPZ> right) {
+        MPZ p = left.getValue0();
+        MPZ q = left.getValue1();
+        p.mulAssign(p, right.getValue1());
+        p.addAssign(p, right.getValue0());
+        q.mulAssign(q, right.getValue1());
+        return left;
+    }
+
+    /* JGMP */
+    public static Pair<MPZ, MPZ> splitMPZ(int a, int b) {
+        if (b - a == 1)
+            return Pair.with(new MPZ(1), new MPZ(b));
+        int m = (a + b) >>> 1;
+        return combineMPZ(splitMPZ(a, m), splitMPZ(m, b));
+    }
+
+    /* JGMP */
+    public static MPF finalizeMPF(Pair<MPZ, MPZ> pq, int digits) {
+        long prec = (long) (digits * PRECISION_CONVERSION) + 64;
+        MPZ p = pq.getValue0();
+        MPZ q = pq.getValue1();
+        p.addAssign(p, q);
+        MPF e = MPF.init2(prec);
+        MPF den = MPF.init2(prec);
+        e.set(p);
+        den.set(q);
+        e.divAssign(e, den);
         return e;
     }
 
+    /* JGMP */
+    public static MPF eulerMPF(int digits) {
+        return finalizeMPF(splitMPZ(0, terms(digits)), digits);
+    }
+
+    /* JGMP */
+    public static MPF eulerMPFParallel(int digits, ForkJoinPool pool) {
+        SplitTask<MPZ> task = new SplitTask<>(0, terms(digits), EulerNumberDigitsBenchmark::splitMPZ,
+                EulerNumberDigitsBenchmark::combineMPZ);
+        return finalizeMPF(pool.invoke(task), digits);
+    }
+
+    /* BigInteger */
+    public static Pair<BigInteger, BigInteger> combineBigInteger(Pair<BigInteger, BigInteger> left,
+            Pair<BigInteger, BigInteger> right) {
+        BigInteger p = left.getValue0().multiply(right.getValue1()).add(right.getValue0());
+        BigInteger q = left.getValue1().multiply(right.getValue1());
+        return Pair.with(p, q);
+    }
+
+    /* BigInteger */
+    public static Pair<BigInteger, BigInteger> splitBigInteger(int a, int b) {
+        if (b - a == 1)
+            return Pair.with(BigInteger.ONE, BigInteger.valueOf(b));
+        int m = (a + b) >>> 1;
+        return combineBigInteger(splitBigInteger(a, m), splitBigInteger(m, b));
+    }
+
+    /* BigInteger */
+    public static Pair<BigInteger, BigInteger> splitBigIntegerParallel(int digits, ForkJoinPool pool) {
+        return pool.invoke(new SplitTask<>(0, terms(digits), EulerNumberDigitsBenchmark::splitBigInteger,
+                EulerNumberDigitsBenchmark::combineBigInteger));
+    }
+
+    /* BigDecimal */
+    public static BigDecimal finalizeBigDecimal(Pair<BigInteger, BigInteger> pq, int digits) {
+        MathContext mc = new MathContext(digits + 1, RoundingMode.FLOOR);
+        BigDecimal p = new BigDecimal(pq.getValue0().add(pq.getValue1()));
+        return p.divide(new BigDecimal(pq.getValue1()), mc);
+    }
+
+    /* BigDecimal */
+    public static BigDecimal eulerBigDecimal(int digits) {
+        return finalizeBigDecimal(splitBigInteger(0, terms(digits)), digits);
+    }
+
+    /* BigDecimal */
+    public static BigDecimal eulerBigDecimalParallel(int digits, ForkJoinPool pool) {
+        return finalizeBigDecimal(splitBigIntegerParallel(digits, pool), digits);
+    }
+
+    /* Apfloat */
+    public static Pair<Apint, Apint> combineApint(Pair<Apint, Apint> left, Pair<Apint, Apint> right) {
+        Apint p = left.getValue0().multiply(right.getValue1()).add(right.getValue0());
+        Apint q = left.getValue1().multiply(right.getValue1());
+        return Pair.with(p, q);
+    }
+
+    /* Apfloat */
+    public static Pair<Apint, Apint> splitApint(int a, int b) {
+        if (b - a == 1)
+            return Pair.with(Apint.ONE, new Apint(b));
+        int m = (a + b) >>> 1;
+        return combineApint(splitApint(a, m), splitApint(m, b));
+    }
+
+    /* Apfloat */
+    public static Apfloat finalizeApfloat(Pair<Apint, Apint> pq, int digits) {
+        Apfloat p = pq.getValue0().add(pq.getValue1()).precision(digits + 1);
+        return p.divide(pq.getValue1().precision(digits + 1));
+    }
+
+    /* Apfloat */
+    public static Apfloat eulerApfloat(int digits) {
+        return finalizeApfloat(splitApint(0, terms(digits)), digits);
+    }
+
+    /* Apfloat */
+    public static Apfloat eulerApfloatParallel(int digits, ForkJoinPool pool) {
+        SplitTask<Apint> task = new SplitTask<>(0, terms(digits), EulerNumberDigitsBenchmark::splitApint,
+                EulerNumberDigitsBenchmark::combineApint);
+        return finalizeApfloat(pool.invoke(task), digits);
+    }
+
+    /* MPFR */
+    public static BigFloat finalizeBigFloat(Pair<BigInteger, BigInteger> pq, int digits) {
+        int prec = (int) (digits * PRECISION_CONVERSION) + 64;
+        BinaryMathContext c = new BinaryMathContext(prec, RoundingMode.HALF_EVEN);
+        BigFloat p = new BigFloat(pq.getValue0().add(pq.getValue1()), c);
+        return p.divide(new BigFloat(pq.getValue1(), c), c);
+    }
+
+    /* MPFR */
+    public static BigFloat eulerBigFloat(int digits) {
+        return finalizeBigFloat(splitBigInteger(0, terms(digits)), digits);
+    }
+
+    /* MPFR */
+    public static BigFloat eulerBigFloatParallel(int digits, ForkJoinPool pool) {
+        return finalizeBigFloat(splitBigIntegerParallel(digits, pool), digits);
+    }
+
 }
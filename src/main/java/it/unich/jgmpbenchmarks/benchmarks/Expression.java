@@ -0,0 +1,183 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.benchmarks;
+
+import it.unich.jgmpbenchmarks.benchmarks.Arithmetic.Operation;
+
+/**
+ * An arithmetic expression, written in the style of the immutable API of JGMP
+ * and compiled into a {@link Program} of assignment operations.
+ *
+ * The leaves are variables, which are numbers given at each evaluation,
+ * parameters, which are longs given at each evaluation, and constants. An
+ * expression may be used several times as an operand, and it is then computed
+ * only once. Expressions are immutable, and building them does not allocate
+ * any number.
+ */
+public final class Expression {
+
+    enum Kind {
+        VARIABLE, PARAMETER, CONSTANT, OPERATION
+    }
+
+    final Kind kind;
+
+    final Operation operation;
+
+    final Expression left, right;
+
+    /**
+     * The index of a variable or parameter, or the value of a constant.
+     */
+    final long value;
+
+    private Expression(Kind kind, Operation operation, Expression left, Expression right, long value) {
+        this.kind = kind;
+        this.operation = operation;
+        this.left = left;
+        this.right = right;
+        this.value = value;
+    }
+
+    private Expression(Operation operation, Expression left, Expression right) {
+        this(Kind.OPERATION, operation, left, right, 0);
+    }
+
+    /**
+     * Returns the variable with the specified index.
+     */
+    public static Expression variable(int index) {
+        if (index < 0)
+            throw new IllegalArgumentException("Negative index");
+        return new Expression(Kind.VARIABLE, null, null, null, index);
+    }
+
+    /**
+     * Returns the parameter with the specified index.
+     */
+    public static Expression parameter(int index) {
+        if (index < 0)
+            throw new IllegalArgumentException("Negative index");
+        return new Expression(Kind.PARAMETER, null, null, null, index);
+    }
+
+    public static Expression constant(long value) {
+        return new Expression(Kind.CONSTANT, null, null, null, value);
+    }
+
+    /**
+     * Returns whether the value of this expression is a long.
+     */
+    boolean isLong() {
+        return kind == Kind.PARAMETER || kind == Kind.CONSTANT;
+    }
+
+    public Expression add(Expression e) {
+        return new Expression(Operation.ADD, this, e);
+    }
+
+    public Expression add(long c) {
+        return add(constant(c));
+    }
+
+    public Expression sub(Expression e) {
+        return new Expression(Operation.SUB, this, e);
+    }
+
+    public Expression sub(long c) {
+        return sub(constant(c));
+    }
+
+    public Expression mul(Expression e) {
+        return new Expression(Operation.MUL, this, e);
+    }
+
+    public Expression mul(long c) {
+        return mul(constant(c));
+    }
+
+    public Expression div(Expression e) {
+        return new Expression(Operation.DIV, this, e);
+    }
+
+    public Expression div(long c) {
+        return div(constant(c));
+    }
+
+    public Expression neg() {
+        return new Expression(Operation.NEG, this, null);
+    }
+
+    /**
+     * Returns this expression times 2^e, where e is a parameter or a constant.
+     * The exponent must be non-negative: a negative parameter is rejected when
+     * the program is evaluated.
+     */
+    public Expression mul2Exp(Expression e) {
+        if (!e.isLong())
+            throw new IllegalArgumentException("Exponent is not a parameter or a constant");
+        if (e.kind == Kind.CONSTANT && e.value < 0)
+            throw new IllegalArgumentException("Exponent " + e.value + " is negative");
+        return new Expression(Operation.MUL_2EXP, this, e);
+    }
+
+    public Expression mul2Exp(long c) {
+        return mul2Exp(constant(c));
+    }
+
+    public Expression nextprime() {
+        return new Expression(Operation.NEXTPRIME, this, null);
+    }
+
+    /**
+     * Compiles this expression for the specified arithmetic.
+     */
+    public <T> Program<T> compile(Arithmetic<T> arithmetic) {
+        return new Program<>(arithmetic, this);
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case VARIABLE:
+                return "x" + value;
+            case PARAMETER:
+                return "p" + value;
+            case CONSTANT:
+                return Long.toString(value);
+            default:
+                switch (operation) {
+                    case ADD:
+                        return "(" + left + " + " + right + ")";
+                    case SUB:
+                        return "(" + left + " - " + right + ")";
+                    case MUL:
+                        return "(" + left + " * " + right + ")";
+                    case DIV:
+                        return "(" + left + " / " + right + ")";
+                    case NEG:
+                        return "-" + left;
+                    case MUL_2EXP:
+                        return "(" + left + " << " + right + ")";
+                    default:
+                        return operation.toString().toLowerCase() + "(" + left + ")";
+                }
+        }
+    }
+
+}
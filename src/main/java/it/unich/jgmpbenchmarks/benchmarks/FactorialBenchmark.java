@@ -1,4 +1,3 @@
-
 /**
  * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
  *                      Gianluca Amato <gianluca.amato@unich.it>
@@ -19,17 +18,22 @@
 package it.unich.jgmpbenchmarks.benchmarks;
 
 import java.math.BigInteger;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BinaryOperator;
 
 import org.apfloat.Apint;
 import org.jscience.mathematics.number.LargeInteger;
 import org.openjdk.jmh.annotations.*;
-import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.profile.GCProfiler;
 import org.openjdk.jmh.runner.RunnerException;
-import org.openjdk.jmh.runner.options.OptionsBuilder;
 
 import it.unich.jgmp.AllocationMonitor;
 import it.unich.jgmp.MPZ;
+import it.unich.jgmpbenchmarks.launcher.Launcher;
+import it.unich.jgmpbenchmarks.launcher.NativeLibrary;
+import it.unich.jgmpbenchmarks.launcher.Preflight;
 
 @BenchmarkMode(Mode.AverageTime)
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
@@ -40,18 +44,59 @@ import it.unich.jgmp.MPZ;
 
 /**
  * Benchmarks for JGMP: computing the factorial of a number.
+ *
+ * The naive kernels multiply the numbers one at a time and are quadratic, hence
+ * the factorial of 10^6 is only computed by the fast, tree and parallel
+ * kernels.
  */
 public class FactorialBenchmark {
 
-    @Param({ "1", "10", "100", "1000", "10000", "100000" })
-    public int fact;
+    /**
+     * Length of the ranges which are multiplied sequentially at the leaves of
+     * the product trees.
+     */
+    final static int LEAF_SIZE = 16;
+
+    /**
+     * Length of the ranges below which the parallel product trees stop forking
+     * new tasks.
+     */
+    final static int PARALLEL_THRESHOLD = 1024;
+
+    /**
+     * The body of the loop of the compiled kernel, f = f * x.
+     */
+    final static Program<MPZ> FACTORIAL_STEP = Expression.variable(0).mul(Expression.parameter(0))
+            .compile(Arithmetic.mpz());
+
+    /**
+     * The argument of the quadratic kernels.
+     */
+    @State(Scope.Benchmark)
+    public static class FactState {
+        @Param({ "1", "10", "100", "1000", "10000", "100000" })
+        public int fact;
+    }
+
+    /**
+     * The argument of the subquadratic kernels.
+     */
+    @State(Scope.Benchmark)
+    public static class LargeFactState {
+        @Param({ "1", "10", "100", "1000", "10000", "100000", "1000000" })
+        public int fact;
+    }
 
     @Param({ "no", "manual", "monitor"})
     public String gcMmode;
 
     public boolean manualGc;
 
-    @Setup
+    /**
+     * Enables the allocation monitor at each iteration, since the native
+     * profiler disables it at the end of its iterations.
+     */
+    @Setup(Level.Iteration)
     public void setup() {
         if (gcMmode.equals("monitor"))
             AllocationMonitor.enable();
@@ -59,78 +104,149 @@ public class FactorialBenchmark {
     }
 
     @Benchmark
-    public MPZ factorialMPZfast() {
+    public MPZ factorialMPZfast(LargeFactState f) {
+        if (manualGc) System.gc();
+        return MPZ.facUi(f.fact);
+    }
+
+    @Benchmark
+    public MPZ factorialMPZ(FactState f) {
+        if (manualGc) System.gc();
+        return factorialMPZ(f.fact);
+    }
+
+    @Benchmark
+    public MPZ factorialMPZTree(LargeFactState f) {
+        if (manualGc) System.gc();
+        return factorialMPZTree(f.fact);
+    }
+
+    @Benchmark
+    public MPZ factorialMPZParallel(LargeFactState f, ParallelState state) {
         if (manualGc) System.gc();
-        return MPZ.facUi(fact);
+        return factorialMPZParallel(f.fact, state.pool);
     }
 
     @Benchmark
-    public MPZ factorialMPZ() {
+    public HybridInteger factorialMPZHybrid(FactState f) {
         if (manualGc) System.gc();
-        return factorialMPZ(fact);
+        return factorialMPZHybrid(f.fact);
     }
 
     @Benchmark
-    public MPZ factorialMPZImmutable() {
+    public MPZ factorialMPZImmutable(FactState f) {
         if (manualGc) System.gc();
-        return factorialMPZImmutable(fact);
+        return factorialMPZImmutable(f.fact);
     }
 
     @Benchmark
-    public BigInteger factorialBigInteger() {
+    public MPZ factorialMPZCompiled(FactState f) {
         if (manualGc) System.gc();
-        return factorialBigInteger(fact);
+        return factorialMPZCompiled(f.fact);
     }
 
     @Benchmark
-    public LargeInteger factorialLargeInteger() {
+    public BigInteger factorialBigInteger(FactState f) {
         if (manualGc) System.gc();
-        return factorialLargeInteger(fact);
+        return factorialBigInteger(f.fact);
     }
 
     @Benchmark
-    public Apint factorialApint() {
+    public BigInteger factorialBigIntegerTree(LargeFactState f) {
         if (manualGc) System.gc();
-        return factorialApint(fact);
+        return factorialBigIntegerTree(f.fact);
     }
 
     @Benchmark
-    public us.altio.gmp4j.BigInteger factorialGMP4J() {
+    public BigInteger factorialBigIntegerParallel(LargeFactState f, ParallelState state) {
         if (manualGc) System.gc();
-        return factorialGMP4J(fact);
+        return factorialBigIntegerParallel(f.fact, state.pool);
     }
 
     @Benchmark
-    public us.altio.gmp4j.BigInteger factorialGMP4Jfast() {
+    public LargeInteger factorialLargeInteger(FactState f) {
         if (manualGc) System.gc();
-        return us.altio.gmp4j.BigInteger.factorial(fact);
+        return factorialLargeInteger(f.fact);
+    }
+
+    @Benchmark
+    public LargeInteger factorialLargeIntegerTree(LargeFactState f) {
+        if (manualGc) System.gc();
+        return factorialLargeIntegerTree(f.fact);
+    }
+
+    @Benchmark
+    public LargeInteger factorialLargeIntegerParallel(LargeFactState f, ParallelState state) {
+        if (manualGc) System.gc();
+        return factorialLargeIntegerParallel(f.fact, state.pool);
+    }
+
+    @Benchmark
+    public Apint factorialApint(FactState f) {
+        if (manualGc) System.gc();
+        return factorialApint(f.fact);
+    }
+
+    @Benchmark
+    public Apint factorialApintTree(LargeFactState f) {
+        if (manualGc) System.gc();
+        return factorialApintTree(f.fact);
+    }
+
+    @Benchmark
+    public Apint factorialApintParallel(LargeFactState f, ParallelState state) {
+        if (manualGc) System.gc();
+        return factorialApintParallel(f.fact, state.pool);
+    }
+
+    @Benchmark
+    public us.altio.gmp4j.BigInteger factorialGMP4J(FactState f) {
+        if (manualGc) System.gc();
+        return factorialGMP4J(f.fact);
+    }
+
+    @Benchmark
+    public us.altio.gmp4j.BigInteger factorialGMP4Jfast(LargeFactState f) {
+        if (manualGc) System.gc();
+        return us.altio.gmp4j.BigInteger.factorial(f.fact);
     }
 
     public static void main(String[] args) throws RunnerException {
+        Launcher.run(FactorialBenchmark.class, args);
+    }
+
+    public static void preflight(Preflight p) {
+        p.size("fact");
         String res = "265252859812191058636308480000000";
-        if (!factorialBigInteger(30).equals(new BigInteger(res)))
-            throw new Error("Invalid BigInteger result");
-        if (!factorialMPZ(30).equals(new MPZ(res)))
-            throw new Error("Invalid MPZ result");
-        if (!factorialMPZImmutable(30).equals(new MPZ(res)))
-            throw new Error("Invalid MPZ Immutable result");
-        if (!factorialLargeInteger(30).equals(LargeInteger.valueOf(res)))
-            throw new Error("Invalid LargeInteger result");
-        if (!factorialApint(30).equals(new Apint(res)))
-            throw new Error("Invalid Apint result");
-
-        OptionsBuilder ob = new OptionsBuilder();
-        ob.include("FactorialBenchmark");
-        try {
-            if (!factorialGMP4J(30).equals(new us.altio.gmp4j.BigInteger(res)))
-                throw new Error("Invalid GMP4J result");
-        } catch (LinkageError e) {
-            System.err.println("Cannot launch GMP4J benchmarks: " + e);
-            ob.exclude("FactorialBenchmark\\.factorialGMP4J");
-            ob.exclude("FactorialBenchmark\\.factorialGMP4Jfast");
-        }
-        ob.addProfiler("gc");
-        new Runner(ob.build()).run();
+        p.check("factorialBigInteger", () -> factorialBigInteger(30).equals(new BigInteger(res)));
+        p.check("factorialMPZfast", () -> MPZ.facUi(30).equals(new MPZ(res)), NativeLibrary.JGMP);
+        p.check("factorialMPZ", () -> factorialMPZ(30).equals(new MPZ(res)), NativeLibrary.JGMP);
+        p.check("factorialMPZImmutable", () -> factorialMPZImmutable(30).equals(new MPZ(res)), NativeLibrary.JGMP);
+        p.check("factorialMPZCompiled",
+                () -> FACTORIAL_STEP.registers() == 2 && factorialMPZCompiled(30).equals(new MPZ(res)),
+                NativeLibrary.JGMP);
+        p.check("factorialMPZHybrid", () -> factorialMPZHybrid(20).isSmall()
+                && factorialMPZHybrid(20).getMPZ().equals(MPZ.facUi(20))
+                && factorialMPZHybrid(30).getMPZ().equals(new MPZ(res)), NativeLibrary.JGMP);
+        p.check("factorialLargeInteger", () -> factorialLargeInteger(30).equals(LargeInteger.valueOf(res)));
+        p.check("factorialApint", () -> factorialApint(30).equals(new Apint(res)));
+        p.check("factorialGMP4J|factorialGMP4Jfast",
+                () -> factorialGMP4J(30).equals(new us.altio.gmp4j.BigInteger(res)), NativeLibrary.GMP4J);
+
+        int big = 5000;
+        p.check("factorialMPZTree", () -> factorialMPZTree(big).equals(MPZ.facUi(big)), NativeLibrary.JGMP);
+        p.check("factorialMPZParallel", () -> factorialMPZParallel(big, p.pool()).equals(MPZ.facUi(big)),
+                NativeLibrary.JGMP);
+        p.check("factorialBigIntegerTree", () -> factorialBigIntegerTree(big).equals(factorialBigInteger(big)));
+        p.check("factorialBigIntegerParallel",
+                () -> factorialBigIntegerParallel(big, p.pool()).equals(factorialBigInteger(big)));
+        p.check("factorialLargeIntegerTree",
+                () -> factorialLargeIntegerTree(big).equals(factorialLargeInteger(big)));
+        p.check("factorialLargeIntegerParallel",
+                () -> factorialLargeIntegerParallel(big, p.pool()).equals(factorialLargeInteger(big)));
+        p.check("factorialApintTree", () -> factorialApintTree(big).equals(factorialApint(big)));
+        p.check("factorialApintParallel", () -> factorialApintParallel(big, p.pool()).equals(factorialApint(big)));
+        p.profiler(GCProfiler.class);
     }
 
     /* JGMP */
@@ -153,6 +269,27 @@ public class FactorialBenchmark {
         return f;
     }
 
+    /* JGMP */
+    public static MPZ factorialMPZCompiled(int x) {
+        Program.Evaluator<MPZ> step = FACTORIAL_STEP.evaluator();
+        MPZ f = new MPZ(1);
+        while (x >= 1) {
+            step.evaluate(f, f, x);
+            x -= 1;
+        }
+        return f;
+    }
+
+    /* JGMP */
+    public static HybridInteger factorialMPZHybrid(int x) {
+        HybridInteger f = new HybridInteger(1);
+        while (x >= 1) {
+            f.mulAssign(f, x);
+            x -= 1;
+        }
+        return f;
+    }
+
     /* BigInteger */
     public static BigInteger factorialBigInteger(int x) {
         BigInteger f = BigInteger.ONE;
@@ -193,4 +330,138 @@ public class FactorialBenchmark {
         return f;
     }
 
+    /**
+     * Fork/join task computing the product of all the integers in the range
+     * [from, to]. Ranges shorter than {@code PARALLEL_THRESHOLD} are delegated
+     * to a sequential product tree.
+     */
+    static class ProductTask<T> extends RecursiveTask<T> {
+        private static final long serialVersionUID = 1L;
+
+        final int from, to;
+        final ProductTree<T> sequential;
+        final BinaryOperator<T> multiply;
+
+        ProductTask(int from, int to, ProductTree<T> sequential, BinaryOperator<T> multiply) {
+            this.from = from;
+            this.to = to;
+            this.sequential = sequential;
+            this.multiply = multiply;
+        }
+
+        @Override
+        protected T compute() {
+            if (to - from < PARALLEL_THRESHOLD)
+                return sequential.product(from, to);
+            int mid = (from + to) >>> 1;
+            ProductTask<T> left = new ProductTask<>(from, mid, sequential, multiply);
+            ProductTask<T> right = new ProductTask<>(mid + 1, to, sequential, multiply);
+            left.fork();
+            T r = right.compute();
+            return multiply.apply(left.join(), r);
+        }
+    }
+
+    /**
+     * A sequential algorithm for computing the product of all the integers in the
+     * range [from, to].
+     */
+    @FunctionalInterface
+    interface ProductTree<T> {
+        T product(int from, int to);
+    }
+
+    /* JGMP */
+    public static MPZ productMPZ(int from, int to) {
+        if (to - from < LEAF_SIZE) {
+            MPZ f = new MPZ(1);
+            for (int i = from; i <= to; i++)
+                f.mulAssign(f, i);
+            return f;
+        }
+        int mid = (from + to) >>> 1;
+        MPZ f = productMPZ(from, mid);
+        f.mulAssign(f, productMPZ(mid + 1, to));
+        return f;
+    }
+
+    /* JGMP */
+    public static MPZ factorialMPZTree(int x) {
+        return productMPZ(1, x);
+    }
+
+    /* JGMP */
+    public static MPZ factorialMPZParallel(int x, ForkJoinPool pool) {
+        return pool.invoke(new ProductTask<>(1, x, FactorialBenchmark::productMPZ, (a, b) -> {
+            a.mulAssign(a, b);
+            return a;
+        }));
+    }
+
+    /* BigInteger */
+    public static BigInteger productBigInteger(int from, int to) {
+        if (to - from < LEAF_SIZE) {
+            BigInteger f = BigInteger.ONE;
+            for (int i = from; i <= to; i++)
+                f = f.multiply(BigInteger.valueOf(i));
+            return f;
+        }
+        int mid = (from + to) >>> 1;
+        return productBigInteger(from, mid).multiply(productBigInteger(mid + 1, to));
+    }
+
+    /* BigInteger */
+    public static BigInteger factorialBigIntegerTree(int x) {
+        return productBigInteger(1, x);
+    }
+
+    /* BigInteger */
+    public static BigInteger factorialBigIntegerParallel(int x, ForkJoinPool pool) {
+        return pool.invoke(new ProductTask<>(1, x, FactorialBenchmark::productBigInteger, BigInteger::multiply));
+    }
+
+    /* JScience */
+    public static LargeInteger productLargeInteger(int from, int to) {
+        if (to - from < LEAF_SIZE) {
+            LargeInteger f = LargeInteger.ONE;
+            for (int i = from; i <= to; i++)
+                f = f.times(i);
+            return f;
+        }
+        int mid = (from + to) >>> 1;
+        return productLargeInteger(from, mid).times(productLargeInteger(mid + 1, to));
+    }
+
+    /* JScience */
+    public static LargeInteger factorialLargeIntegerTree(int x) {
+        return productLargeInteger(1, x);
+    }
+
+    /* JScience */
+    public static LargeInteger factorialLargeIntegerParallel(int x, ForkJoinPool pool) {
+        return pool.invoke(new ProductTask<>(1, x, FactorialBenchmark::productLargeInteger, LargeInteger::times));
+    }
+
+    /* Apfloat */
+    public static Apint productApint(int from, int to) {
+        if (to - from < LEAF_SIZE) {
+            Apint f = Apint.ONE;
+            for (int i = from; i <= to; i++)
+                f = f.multiply(new Apint(i));
+            return f;
+        }
+        int mid = (from + to) >>> 1;
+        return productApint(from, mid).multiply(productApint(mid + 1, to));
+    }
+
+    /* Apfloat */
+    public static Apint factorialApintTree(int x) {
+        return productApint(1, x);
+    }
+
+    /* Apfloat */
+    public static Apint factorialApintParallel(int x, ForkJoinPool pool) {
+        return pool.invoke(new ProductTask<>(1, x, FactorialBenchmark::productApint, Apint::multiply));
+    }
+
 }
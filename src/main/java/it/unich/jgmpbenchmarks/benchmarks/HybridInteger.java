@@ -0,0 +1,364 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.benchmarks;
+
+import it.unich.jgmp.MPZ;
+
+/**
+ * A mutable integer which is kept in a primitive long as long as it fits, and
+ * is promoted to an MPZ on overflow. The MPZ is allocated on the first
+ * promotion and reused afterwards, so that values which fit in 64 bits never
+ * cross into native code. Additions demote the value back to a long when
+ * possible, while multiplications only need to check the few cases where their
+ * results may shrink.
+ *
+ * The methods follow the conventions of the assignment methods of MPZ, and, as
+ * in GMP, the target may be one of the operands. A value is stored in the MPZ
+ * only when it does not fit in a long.
+ */
+public class HybridInteger {
+
+    /**
+     * Upper bound of the small path of {@link #nextprimeAssign}. Below this
+     * bound, products of residues fit in a long and the Miller-Rabin test with
+     * bases 2, 3, 5 and 7 is deterministic.
+     */
+    final static long SMALL_PRIME_LIMIT = 1L << 31;
+
+    final static long[] SMALL_PRIME_BASES = { 2, 3, 5, 7 };
+
+    long value;
+
+    boolean small = true;
+
+    MPZ big;
+
+    /**
+     * Scratch MPZ used for promoting small operands.
+     */
+    MPZ scratch;
+
+    public HybridInteger() {
+    }
+
+    public HybridInteger(long value) {
+        this.value = value;
+    }
+
+    public HybridInteger(MPZ value) {
+        set(value);
+    }
+
+    /**
+     * Returns whether the value is currently stored in a long.
+     */
+    public boolean isSmall() {
+        return small;
+    }
+
+    public HybridInteger set(long x) {
+        value = x;
+        small = true;
+        return this;
+    }
+
+    public HybridInteger set(MPZ x) {
+        if (x.fitsSlong())
+            return set(x.getSi());
+        big().set(x);
+        small = false;
+        return this;
+    }
+
+    public HybridInteger set(HybridInteger x) {
+        if (x.small)
+            return set(x.value);
+        big().set(x.big);
+        small = false;
+        return this;
+    }
+
+    public HybridInteger swap(HybridInteger x) {
+        long v = value;
+        value = x.value;
+        x.value = v;
+        boolean s = small;
+        small = x.small;
+        x.small = s;
+        MPZ b = big;
+        big = x.big;
+        x.big = b;
+        return this;
+    }
+
+    /**
+     * Returns a new MPZ with the same value.
+     */
+    public MPZ getMPZ() {
+        return small ? new MPZ(value) : new MPZ(big);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof HybridInteger))
+            return false;
+        HybridInteger x = (HybridInteger) o;
+        return small ? x.small && value == x.value : !x.small && big.equals(x.big);
+    }
+
+    @Override
+    public int hashCode() {
+        return small ? Long.hashCode(value) : big.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return small ? Long.toString(value) : big.toString();
+    }
+
+    MPZ big() {
+        if (big == null)
+            big = new MPZ();
+        return big;
+    }
+
+    /**
+     * Returns the value of x as an MPZ, using the scratch MPZ of this object if x
+     * is small.
+     */
+    MPZ mpz(HybridInteger x) {
+        if (!x.small)
+            return x.big;
+        if (scratch == null)
+            scratch = new MPZ();
+        return scratch.set(x.value);
+    }
+
+    /**
+     * Promotes the value to the MPZ.
+     */
+    void promote() {
+        if (small) {
+            big().set(value);
+            small = false;
+        }
+    }
+
+    /**
+     * Demotes the value to a long, if it fits.
+     */
+    void demote() {
+        if (!small && big.fitsSlong()) {
+            value = big.getSi();
+            small = true;
+        }
+    }
+
+    /**
+     * Adds the signed long x to the MPZ.
+     */
+    static void addLong(MPZ m, long x) {
+        if (x >= 0)
+            m.addUiAssign(m, x);
+        else if (x != Long.MIN_VALUE)
+            m.subUiAssign(m, -x);
+        else
+            // -x overflows
+            m.addAssign(m, new MPZ(x));
+    }
+
+    public HybridInteger addAssign(HybridInteger a, HybridInteger b) {
+        if (a.small && b.small) {
+            long x = a.value, y = b.value, r = x + y;
+            if (((x ^ r) & (y ^ r)) >= 0)
+                return set(r);
+        }
+        if (b.small) {
+            long y = b.value;
+            set(a);
+            promote();
+            addLong(big, y);
+        } else if (a.small) {
+            long x = a.value;
+            set(b);
+            promote();
+            addLong(big, x);
+        } else {
+            big().addAssign(a.big, b.big);
+            small = false;
+        }
+        demote();
+        return this;
+    }
+
+    public HybridInteger mulAssign(HybridInteger a, long y) {
+        if (y == 0)
+            return set(0);
+        if (a.small) {
+            long x = a.value, r = x * y;
+            if (Math.multiplyHigh(x, y) == (r >> 63))
+                return set(r);
+            big().set(x);
+            big.mulAssign(big, y);
+        } else {
+            big().mulAssign(a.big, y);
+        }
+        small = false;
+        // 2^63 * -1 fits in a long
+        if (y == -1)
+            demote();
+        return this;
+    }
+
+    public HybridInteger mulAssign(HybridInteger a, HybridInteger b) {
+        if (b.small)
+            return mulAssign(a, b.value);
+        if (a.small)
+            return mulAssign(b, a.value);
+        big().mulAssign(a.big, b.big);
+        small = false;
+        return this;
+    }
+
+    /**
+     * Adds a * y to this.
+     */
+    public HybridInteger addmulAssign(HybridInteger a, long y) {
+        if (a.small && small) {
+            long x = a.value, p = x * y;
+            if (Math.multiplyHigh(x, y) == (p >> 63)) {
+                long v = value, r = v + p;
+                if (((v ^ r) & (p ^ r)) >= 0)
+                    return set(r);
+            }
+        }
+        MPZ m = mpz(a);
+        promote();
+        if (y >= 0)
+            big.addmulUiAssign(m, y);
+        else if (y != Long.MIN_VALUE)
+            big.submulUiAssign(m, -y);
+        else
+            // -y overflows
+            big.addmulAssign(m, new MPZ(y));
+        demote();
+        return this;
+    }
+
+    /**
+     * Adds a * b to this.
+     */
+    public HybridInteger addmulAssign(HybridInteger a, HybridInteger b) {
+        if (b.small)
+            return addmulAssign(a, b.value);
+        if (a.small)
+            return addmulAssign(b, a.value);
+        promote();
+        big.addmulAssign(a.big, b.big);
+        demote();
+        return this;
+    }
+
+    /**
+     * Sets this to a * 2^n.
+     */
+    public HybridInteger mul2ExpAssign(HybridInteger a, long n) {
+        if (a.small) {
+            long x = a.value;
+            if (x == 0 || n < 64 && (x << n) >> n == x)
+                return set(x << n);
+            big().set(x);
+            big.mul2ExpAssign(big, n);
+        } else {
+            big().mul2ExpAssign(a.big, n);
+        }
+        small = false;
+        return this;
+    }
+
+    /**
+     * Sets this to the next prime greater than a. Below
+     * {@code SMALL_PRIME_LIMIT} the primes are searched with a deterministic
+     * test on longs, above they are delegated to MPZ.
+     */
+    public HybridInteger nextprimeAssign(HybridInteger a) {
+        if (a.small && a.value < SMALL_PRIME_LIMIT) {
+            long n = a.value < 2 ? 2 : a.value + 1;
+            if (n > 2 && n % 2 == 0)
+                n += 1;
+            while (n < SMALL_PRIME_LIMIT) {
+                if (isPrime(n))
+                    return set(n);
+                n += n == 2 ? 1 : 2;
+            }
+            set(SMALL_PRIME_LIMIT - 1);
+            a = this;
+        }
+        if (a.small) {
+            long x = a.value;
+            big().set(x);
+            big.nextprimeAssign(big);
+        } else {
+            big().nextprimeAssign(a.big);
+        }
+        small = false;
+        demote();
+        return this;
+    }
+
+    /**
+     * Deterministic primality test for 2 <= n < {@code SMALL_PRIME_LIMIT}.
+     */
+    static boolean isPrime(long n) {
+        if (n < 4)
+            return n >= 2;
+        if (n % 2 == 0)
+            return false;
+        long d = n - 1;
+        int s = Long.numberOfTrailingZeros(d);
+        d >>= s;
+        for (long base : SMALL_PRIME_BASES) {
+            if (base % n == 0)
+                continue;
+            long x = powmod(base, d, n);
+            if (x == 1 || x == n - 1)
+                continue;
+            boolean composite = true;
+            for (int r = 1; r < s && composite; r++) {
+                x = x * x % n;
+                composite = x != n - 1;
+            }
+            if (composite)
+                return false;
+        }
+        return true;
+    }
+
+    static long powmod(long b, long e, long n) {
+        long r = 1;
+        b %= n;
+        while (e > 0) {
+            if ((e & 1) != 0)
+                r = r * b % n;
+            b = b * b % n;
+            e >>= 1;
+        }
+        return r;
+    }
+
+}
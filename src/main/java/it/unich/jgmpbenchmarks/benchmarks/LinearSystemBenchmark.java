@@ -0,0 +1,506 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.benchmarks;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.apache.commons.numbers.fraction.BigFraction;
+import org.apfloat.Apint;
+import org.apfloat.Aprational;
+import org.jscience.mathematics.number.LargeInteger;
+import org.jscience.mathematics.number.Rational;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.RunnerException;
+
+import it.unich.jgmp.MPQ;
+import it.unich.jgmp.MPZ;
+import it.unich.jgmpbenchmarks.launcher.Launcher;
+import it.unich.jgmpbenchmarks.launcher.NativeLibrary;
+import it.unich.jgmpbenchmarks.launcher.Preflight;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 5, jvmArgs = { "-Xms2G", "-Xmx2G" })
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+
+/**
+ * Benchmarks for JGMP: solving a square linear system A x = b with integer
+ * coefficients.
+ *
+ * The Bareiss kernels use fraction-free elimination on integers, where every
+ * division is exact, followed by a fraction-free back substitution. They return
+ * the integers det(A) x_0, ..., det(A) x_{n-1} followed by det(A). The Gauss
+ * kernels use Gaussian elimination on rationals, which are canonicalized at
+ * every operation, and return x. The parallel kernels distribute the rows
+ * updated at each elimination step on a fork/join pool.
+ */
+public class LinearSystemBenchmark {
+
+    @Param({ "5", "10", "20", "50" })
+    public int size;
+
+    @Param({ "16", "64", "256" })
+    public int bits;
+
+    MPZ[][] aMPZ;
+    MPZ[] bMPZ;
+    BigInteger[][] aBigInteger;
+    BigInteger[] bBigInteger;
+    Apint[][] aApint;
+    Apint[] bApint;
+    MPQ[][] aMPQ;
+    MPQ[] bMPQ;
+    BigFraction[][] aBigFraction;
+    BigFraction[] bBigFraction;
+    Rational[][] aRational;
+    Rational[] bRational;
+    Aprational[][] aAprational;
+    Aprational[] bAprational;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(size * 31 + bits);
+        aBigInteger = BenchmarkUtils.randomMatrix(size, size, bits, random);
+        bBigInteger = BenchmarkUtils.randomVector(size, bits, random);
+        aMPZ = BenchmarkUtils.toMPZ(aBigInteger);
+        bMPZ = BenchmarkUtils.toMPZ(bBigInteger);
+        aApint = BenchmarkUtils.convert(aBigInteger, Apint.class, Apint::new);
+        bApint = BenchmarkUtils.convert(bBigInteger, Apint.class, Apint::new);
+        aMPQ = BenchmarkUtils.convert(aBigInteger, MPQ.class, x -> new MPQ(BenchmarkUtils.toMPZ(x)));
+        bMPQ = BenchmarkUtils.convert(bBigInteger, MPQ.class, x -> new MPQ(BenchmarkUtils.toMPZ(x)));
+        aBigFraction = BenchmarkUtils.convert(aBigInteger, BigFraction.class, BigFraction::of);
+        bBigFraction = BenchmarkUtils.convert(bBigInteger, BigFraction.class, BigFraction::of);
+        aRational = BenchmarkUtils.convert(aBigInteger, Rational.class,
+                x -> Rational.valueOf(LargeInteger.valueOf(x), LargeInteger.ONE));
+        bRational = BenchmarkUtils.convert(bBigInteger, Rational.class,
+                x -> Rational.valueOf(LargeInteger.valueOf(x), LargeInteger.ONE));
+        aAprational = BenchmarkUtils.convert(aBigInteger, Aprational.class, Apint::new);
+        bAprational = BenchmarkUtils.convert(bBigInteger, Aprational.class, Apint::new);
+    }
+
+    @Benchmark
+    public MPZ[] solveBareissMPZ() {
+        return solveBareissMPZ(aMPZ, bMPZ, null);
+    }
+
+    @Benchmark
+    public MPZ[] solveBareissMPZParallel(ParallelState state) {
+        return solveBareissMPZ(aMPZ, bMPZ, state.pool);
+    }
+
+    @Benchmark
+    public BigInteger[] solveBareissBigInteger() {
+        return solveBareissBigInteger(aBigInteger, bBigInteger, null);
+    }
+
+    @Benchmark
+    public BigInteger[] solveBareissBigIntegerParallel(ParallelState state) {
+        return solveBareissBigInteger(aBigInteger, bBigInteger, state.pool);
+    }
+
+    @Benchmark
+    public Apint[] solveBareissApint() {
+        return solveBareissApint(aApint, bApint, null);
+    }
+
+    @Benchmark
+    public Apint[] solveBareissApintParallel(ParallelState state) {
+        return solveBareissApint(aApint, bApint, state.pool);
+    }
+
+    @Benchmark
+    public MPQ[] solveGaussMPQ() {
+        return solveGaussMPQ(aMPQ, bMPQ, null);
+    }
+
+    @Benchmark
+    public MPQ[] solveGaussMPQParallel(ParallelState state) {
+        return solveGaussMPQ(aMPQ, bMPQ, state.pool);
+    }
+
+    @Benchmark
+    public BigFraction[] solveGaussBigFraction() {
+        return solveGaussBigFraction(aBigFraction, bBigFraction, null);
+    }
+
+    @Benchmark
+    public BigFraction[] solveGaussBigFractionParallel(ParallelState state) {
+        return solveGaussBigFraction(aBigFraction, bBigFraction, state.pool);
+    }
+
+    @Benchmark
+    public Rational[] solveGaussRational() {
+        return solveGaussRational(aRational, bRational, null);
+    }
+
+    @Benchmark
+    public Rational[] solveGaussRationalParallel(ParallelState state) {
+        return solveGaussRational(aRational, bRational, state.pool);
+    }
+
+    @Benchmark
+    public Aprational[] solveGaussAprational() {
+        return solveGaussAprational(aAprational, bAprational, null);
+    }
+
+    @Benchmark
+    public Aprational[] solveGaussAprationalParallel(ParallelState state) {
+        return solveGaussAprational(aAprational, bAprational, state.pool);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Launcher.run(LinearSystemBenchmark.class, args);
+    }
+
+    public static void preflight(Preflight p) {
+        p.size("size");
+        // the zero in the corner forces a row exchange
+        Random random = new Random(0);
+        BigInteger[][] a = BenchmarkUtils.randomMatrix(8, 8, 20, random);
+        BigInteger[] b = BenchmarkUtils.randomVector(8, 20, random);
+        a[0][0] = BigInteger.ZERO;
+        BigFraction[] res = solveGaussBigFraction(
+                BenchmarkUtils.convert(a, BigFraction.class, BigFraction::of),
+                BenchmarkUtils.convert(b, BigFraction.class, BigFraction::of), null);
+        BigFraction[] small = { BigFraction.of(-4), BigFraction.of(9, 2) };
+        p.check("solveGaussBigFraction.*", () -> Arrays.equals(small, solveGaussBigFraction(
+                new BigFraction[][] { { BigFraction.of(1), BigFraction.of(2) }, { BigFraction.of(3), BigFraction.of(4) } },
+                new BigFraction[] { BigFraction.of(5), BigFraction.of(6) }, null))
+                && Arrays.equals(res, solveGaussBigFraction(
+                        BenchmarkUtils.convert(a, BigFraction.class, BigFraction::of),
+                        BenchmarkUtils.convert(b, BigFraction.class, BigFraction::of), p.pool())));
+        p.check("solveBareissBigInteger", () -> Arrays.equals(res, bareissFractions(solveBareissBigInteger(a, b, null))));
+        p.check("solveBareissBigIntegerParallel",
+                () -> Arrays.equals(res, bareissFractions(solveBareissBigInteger(a, b, p.pool()))));
+        Apint[][] aApint = BenchmarkUtils.convert(a, Apint.class, Apint::new);
+        Apint[] bApint = BenchmarkUtils.convert(b, Apint.class, Apint::new);
+        p.check("solveBareissApint", () -> Arrays.equals(res, bareissFractions(solveBareissApint(aApint, bApint, null))));
+        p.check("solveBareissApintParallel",
+                () -> Arrays.equals(res, bareissFractions(solveBareissApint(aApint, bApint, p.pool()))));
+        Rational[][] aRational = BenchmarkUtils.convert(a, Rational.class,
+                x -> Rational.valueOf(LargeInteger.valueOf(x), LargeInteger.ONE));
+        Rational[] bRational = BenchmarkUtils.convert(b, Rational.class,
+                x -> Rational.valueOf(LargeInteger.valueOf(x), LargeInteger.ONE));
+        p.check("solveGaussRational", () -> Arrays.equals(res, fractions(solveGaussRational(aRational, bRational, null))));
+        p.check("solveGaussRationalParallel",
+                () -> Arrays.equals(res, fractions(solveGaussRational(aRational, bRational, p.pool()))));
+        Aprational[][] aAprational = BenchmarkUtils.convert(a, Aprational.class, Apint::new);
+        Aprational[] bAprational = BenchmarkUtils.convert(b, Aprational.class, Apint::new);
+        p.check("solveGaussAprational",
+                () -> Arrays.equals(res, fractions(solveGaussAprational(aAprational, bAprational, null))));
+        p.check("solveGaussAprationalParallel",
+                () -> Arrays.equals(res, fractions(solveGaussAprational(aAprational, bAprational, p.pool()))));
+        if (p.require(".*MPZ.*|.*MPQ.*", NativeLibrary.JGMP)) {
+            MPZ[][] aMPZ = BenchmarkUtils.toMPZ(a);
+            MPZ[] bMPZ = BenchmarkUtils.toMPZ(b);
+            MPQ[][] aMPQ = BenchmarkUtils.convert(a, MPQ.class, x -> new MPQ(BenchmarkUtils.toMPZ(x)));
+            MPQ[] bMPQ = BenchmarkUtils.convert(b, MPQ.class, x -> new MPQ(BenchmarkUtils.toMPZ(x)));
+            p.check("solveBareissMPZ", () -> Arrays.equals(res, bareissFractions(solveBareissMPZ(aMPZ, bMPZ, null)))
+                    && aMPZ[0][0].sgn() == 0);
+            p.check("solveBareissMPZParallel",
+                    () -> Arrays.equals(res, bareissFractions(solveBareissMPZ(aMPZ, bMPZ, p.pool()))));
+            p.check("solveGaussMPQ", () -> Arrays.equals(res, fractions(solveGaussMPQ(aMPQ, bMPQ, null)))
+                    && aMPQ[0][0].sgn() == 0);
+            p.check("solveGaussMPQParallel",
+                    () -> Arrays.equals(res, fractions(solveGaussMPQ(aMPQ, bMPQ, p.pool()))));
+        }
+    }
+
+    /* Utility methods */
+
+    /**
+     * Converts numbers whose string representation is a fraction n/d or an
+     * integer n into BigFractions.
+     */
+    static BigFraction[] fractions(Object[] x) {
+        BigFraction[] result = new BigFraction[x.length];
+        for (int i = 0; i < x.length; i++) {
+            String[] s = x[i].toString().replace(" ", "").split("/");
+            result[i] = BigFraction.of(new BigInteger(s[0]),
+                    s.length == 1 ? BigInteger.ONE : new BigInteger(s[1]));
+        }
+        return result;
+    }
+
+    /**
+     * Converts the result of a Bareiss kernel into the solution of the system.
+     */
+    static BigFraction[] bareissFractions(Object[] x) {
+        BigFraction[] f = fractions(x);
+        BigFraction[] result = new BigFraction[f.length - 1];
+        for (int i = 0; i < result.length; i++)
+            result[i] = f[i].divide(f[f.length - 1]);
+        return result;
+    }
+
+    /**
+     * Returns the augmented matrix [a | b], where the rows are new arrays.
+     */
+    static <T> T[][] augment(T[][] a, T[] b) {
+        T[][] m = Arrays.copyOf(a, a.length);
+        for (int i = 0; i < a.length; i++) {
+            m[i] = Arrays.copyOf(a[i], a.length + 1);
+            m[i][a.length] = b[i];
+        }
+        return m;
+    }
+
+    /**
+     * Moves to row k a row with a non-zero element in column k, starting from
+     * row k. Returns -1 if rows have been exchanged, 1 otherwise.
+     */
+    static <T> int pivot(T[][] m, int k, Predicate<T> isZero) {
+        for (int r = k; r < m.length; r++) {
+            if (!isZero.test(m[r][k])) {
+                if (r == k)
+                    return 1;
+                T[] t = m[r];
+                m[r] = m[k];
+                m[k] = t;
+                return -1;
+            }
+        }
+        throw new ArithmeticException("Singular matrix");
+    }
+
+    /* JGMP */
+    public static MPZ[] solveBareissMPZ(MPZ[][] a, MPZ[] b, ForkJoinPool pool) {
+        int n = a.length;
+        MPZ[][] m = augment(a, b);
+        for (MPZ[] row : m)
+            for (int j = 0; j <= n; j++)
+                row[j] = new MPZ(row[j]);
+        MPZ prev = new MPZ(1);
+        int sign = 1;
+        for (int k = 0; k < n; k++) {
+            sign *= pivot(m, k, x -> x.sgn() == 0);
+            int kk = k;
+            MPZ[] mk = m[k];
+            MPZ d = prev;
+            BenchmarkUtils.forEachRow(pool, k + 1, n, i -> {
+                MPZ[] mi = m[i];
+                MPZ t = new MPZ();
+                for (int j = kk + 1; j <= n; j++) {
+                    mi[j].mulAssign(mi[j], mk[kk]);
+                    t.mulAssign(mi[kk], mk[j]);
+                    mi[j].subAssign(mi[j], t);
+                    mi[j].divexactAssign(mi[j], d);
+                }
+            });
+            prev = mk[k];
+        }
+        MPZ det = m[n - 1][n - 1];
+        MPZ[] x = new MPZ[n + 1];
+        for (int i = n - 1; i >= 0; i--) {
+            MPZ s = new MPZ();
+            s.mulAssign(det, m[i][n]);
+            for (int j = i + 1; j < n; j++)
+                s.submulAssign(m[i][j], x[j]);
+            x[i] = s.divexactAssign(s, m[i][i]);
+        }
+        x[n] = new MPZ(det);
+        if (sign < 0)
+            for (MPZ xi : x)
+                xi.negAssign(xi);
+        return x;
+    }
+
+    /* BigInteger */
+    public static BigInteger[] solveBareissBigInteger(BigInteger[][] a, BigInteger[] b, ForkJoinPool pool) {
+        int n = a.length;
+        BigInteger[][] m = augment(a, b);
+        BigInteger prev = BigInteger.ONE;
+        int sign = 1;
+        for (int k = 0; k < n; k++) {
+            sign *= pivot(m, k, x -> x.signum() == 0);
+            int kk = k;
+            BigInteger[] mk = m[k];
+            BigInteger d = prev;
+            BenchmarkUtils.forEachRow(pool, k + 1, n, i -> {
+                BigInteger[] mi = m[i];
+                for (int j = kk + 1; j <= n; j++)
+                    mi[j] = mi[j].multiply(mk[kk]).subtract(mi[kk].multiply(mk[j])).divide(d);
+            });
+            prev = mk[k];
+        }
+        BigInteger det = m[n - 1][n - 1];
+        BigInteger[] x = new BigInteger[n + 1];
+        for (int i = n - 1; i >= 0; i--) {
+            BigInteger s = det.multiply(m[i][n]);
+            for (int j = i + 1; j < n; j++)
+                s = s.subtract(m[i][j].multiply(x[j]));
+            x[i] = s.divide(m[i][i]);
+        }
+        x[n] = det;
+        if (sign < 0)
+            for (int i = 0; i <= n; i++)
+                x[i] = x[i].negate();
+        return x;
+    }
+
+    /* Apfloat */
+    public static Apint[] solveBareissApint(Apint[][] a, Apint[] b, ForkJoinPool pool) {
+        int n = a.length;
+        Apint[][] m = augment(a, b);
+        Apint prev = Apint.ONE;
+        int sign = 1;
+        for (int k = 0; k < n; k++) {
+            sign *= pivot(m, k, x -> x.signum() == 0);
+            int kk = k;
+            Apint[] mk = m[k];
+            Apint d = prev;
+            BenchmarkUtils.forEachRow(pool, k + 1, n, i -> {
+                Apint[] mi = m[i];
+                for (int j = kk + 1; j <= n; j++)
+                    mi[j] = mi[j].multiply(mk[kk]).subtract(mi[kk].multiply(mk[j])).divide(d);
+            });
+            prev = mk[k];
+        }
+        Apint det = m[n - 1][n - 1];
+        Apint[] x = new Apint[n + 1];
+        for (int i = n - 1; i >= 0; i--) {
+            Apint s = det.multiply(m[i][n]);
+            for (int j = i + 1; j < n; j++)
+                s = s.subtract(m[i][j].multiply(x[j]));
+            x[i] = s.divide(m[i][i]);
+        }
+        x[n] = det;
+        if (sign < 0)
+            for (int i = 0; i <= n; i++)
+                x[i] = x[i].negate();
+        return x;
+    }
+
+    /* JGMP */
+    public static MPQ[] solveGaussMPQ(MPQ[][] a, MPQ[] b, ForkJoinPool pool) {
+        int n = a.length;
+        MPQ[][] m = augment(a, b);
+        for (MPQ[] row : m)
+            for (int j = 0; j <= n; j++)
+                row[j] = new MPQ(row[j]);
+        for (int k = 0; k < n; k++) {
+            pivot(m, k, x -> x.sgn() == 0);
+            int kk = k;
+            MPQ[] mk = m[k];
+            BenchmarkUtils.forEachRow(pool, k + 1, n, i -> {
+                MPQ[] mi = m[i];
+                MPQ f = new MPQ();
+                MPQ t = new MPQ();
+                f.divAssign(mi[kk], mk[kk]);
+                for (int j = kk + 1; j <= n; j++) {
+                    t.mulAssign(f, mk[j]);
+                    mi[j].subAssign(mi[j], t);
+                }
+            });
+        }
+        MPQ[] x = new MPQ[n];
+        MPQ t = new MPQ();
+        for (int i = n - 1; i >= 0; i--) {
+            MPQ s = new MPQ(m[i][n]);
+            for (int j = i + 1; j < n; j++) {
+                t.mulAssign(m[i][j], x[j]);
+                s.subAssign(s, t);
+            }
+            x[i] = s.divAssign(s, m[i][i]);
+        }
+        return x;
+    }
+
+    /* Apache Commons Numbers */
+    public static BigFraction[] solveGaussBigFraction(BigFraction[][] a, BigFraction[] b, ForkJoinPool pool) {
+        int n = a.length;
+        BigFraction[][] m = augment(a, b);
+        for (int k = 0; k < n; k++) {
+            pivot(m, k, x -> x.signum() == 0);
+            int kk = k;
+            BigFraction[] mk = m[k];
+            BenchmarkUtils.forEachRow(pool, k + 1, n, i -> {
+                BigFraction[] mi = m[i];
+                BigFraction f = mi[kk].divide(mk[kk]);
+                for (int j = kk + 1; j <= n; j++)
+                    mi[j] = mi[j].subtract(f.multiply(mk[j]));
+            });
+        }
+        BigFraction[] x = new BigFraction[n];
+        for (int i = n - 1; i >= 0; i--) {
+            BigFraction s = m[i][n];
+            for (int j = i + 1; j < n; j++)
+                s = s.subtract(m[i][j].multiply(x[j]));
+            x[i] = s.divide(m[i][i]);
+        }
+        return x;
+    }
+
+    /* JScience */
+    public static Rational[] solveGaussRational(Rational[][] a, Rational[] b, ForkJoinPool pool) {
+        int n = a.length;
+        Rational[][] m = augment(a, b);
+        for (int k = 0; k < n; k++) {
+            pivot(m, k, x -> x.getDividend().isZero());
+            int kk = k;
+            Rational[] mk = m[k];
+            BenchmarkUtils.forEachRow(pool, k + 1, n, i -> {
+                Rational[] mi = m[i];
+                Rational f = mi[kk].divide(mk[kk]);
+                for (int j = kk + 1; j <= n; j++)
+                    mi[j] = mi[j].minus(f.times(mk[j]));
+            });
+        }
+        Rational[] x = new Rational[n];
+        for (int i = n - 1; i >= 0; i--) {
+            Rational s = m[i][n];
+            for (int j = i + 1; j < n; j++)
+                s = s.minus(m[i][j].times(x[j]));
+            x[i] = s.divide(m[i][i]);
+        }
+        return x;
+    }
+
+    /* Apfloat */
+    public static Aprational[] solveGaussAprational(Aprational[][] a, Aprational[] b, ForkJoinPool pool) {
+        int n = a.length;
+        Aprational[][] m = augment(a, b);
+        for (int k = 0; k < n; k++) {
+            pivot(m, k, x -> x.signum() == 0);
+            int kk = k;
+            Aprational[] mk = m[k];
+            BenchmarkUtils.forEachRow(pool, k + 1, n, i -> {
+                Aprational[] mi = m[i];
+                Aprational f = mi[kk].divide(mk[kk]);
+                for (int j = kk + 1; j <= n; j++)
+                    mi[j] = mi[j].subtract(f.multiply(mk[j]));
+            });
+        }
+        Aprational[] x = new Aprational[n];
+        for (int i = n - 1; i >= 0; i--) {
+            Aprational s = m[i][n];
+            for (int j = i + 1; j < n; j++)
+                s = s.subtract(m[i][j].multiply(x[j]));
+            x[i] = s.divide(m[i][i]);
+        }
+        return x;
+    }
+
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.benchmarks;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+import it.unich.jgmp.MPZ;
+import it.unich.jgmp.nativelib.LibGMP;
+import it.unich.jgmp.nativelib.SizeT;
+
+/**
+ * A binary format for MPZs and arrays of MPZs, meant for checkpoints in direct
+ * or memory-mapped buffers.
+ *
+ * A value is a long with the signed number of 64-bit words of its absolute
+ * value, followed by the words, least significant first, in little-endian
+ * order. This is the layout of GMP limbs on 64-bit little-endian machines, so
+ * that {@code mpz_export} and {@code mpz_import} reduce to a copy. Values are
+ * exported and imported directly from the buffer, without intermediate Java
+ * arrays or buffers, and records remain aligned to 8 bytes. An array is a long
+ * with its length, followed by its values. Buffers must have little-endian byte
+ * order.
+ */
+public class MPZSerialization {
+
+    /**
+     * Parameters of {@code mpz_import} and {@code mpz_export}: 64-bit words,
+     * least significant first, little endian, no nails.
+     */
+    final static int ORDER = -1, SIZE = 8, ENDIAN = -1;
+
+    private MPZSerialization() {
+    }
+
+    /**
+     * Returns the number of bytes of the serialization of x.
+     */
+    public static long size(MPZ x) {
+        return Long.BYTES + (x.sgn() == 0 ? 0 : (x.sizeinbase(2) + 63) / 64 * SIZE);
+    }
+
+    /**
+     * Returns the number of bytes of the serialization of a.
+     */
+    public static long size(MPZ[] a) {
+        long size = Long.BYTES;
+        for (MPZ x : a)
+            size += size(x);
+        return size;
+    }
+
+    static void checkOrder(ByteBuffer b) {
+        if (b.order() != ByteOrder.LITTLE_ENDIAN)
+            throw new IllegalArgumentException("Buffer is not little endian");
+    }
+
+    /**
+     * Writes x at the current position of out, and advances the position. The
+     * limbs are exported with {@code mpz_export} straight into the memory of out,
+     * which must be a direct buffer.
+     */
+    public static ByteBuffer write(MPZ x, ByteBuffer out) {
+        checkOrder(out);
+        int sign = x.sgn();
+        if (sign == 0)
+            return out.putLong(0);
+        if (!out.isDirect())
+            throw new IllegalArgumentException("Buffer is not direct");
+        if (out.isReadOnly())
+            throw new ReadOnlyBufferException();
+        long words = (x.sizeinbase(2) + 63) / 64;
+        int length = Math.toIntExact(words * SIZE);
+        if (out.remaining() < Long.BYTES + length)
+            throw new BufferOverflowException();
+        out.putLong(sign < 0 ? -words : words);
+        Pointer limbs = Native.getDirectBufferPointer(out).share(out.position());
+        LibGMP.mpz_export(limbs, null, ORDER, new SizeT(SIZE), ENDIAN, new SizeT(0), x.getNative());
+        return out.position(out.position() + length);
+    }
+
+    /**
+     * Sets the result to the value at the current position of in, and advances
+     * the position.
+     */
+    public static MPZ read(ByteBuffer in, MPZ result) {
+        checkOrder(in);
+        long words = in.getLong();
+        if (words == 0)
+            return result.set(0);
+        int length = Math.toIntExact(Math.abs(words) * SIZE);
+        ByteBuffer limbs = in.slice();
+        limbs.limit(length);
+        result.bufferImportAssign(ORDER, SIZE, ENDIAN, 0, limbs);
+        in.position(in.position() + length);
+        if (words < 0)
+            result.negAssign(result);
+        return result;
+    }
+
+    /**
+     * Writes the array a at the current position of out, and advances the
+     * position.
+     */
+    public static ByteBuffer write(MPZ[] a, ByteBuffer out) {
+        checkOrder(out);
+        out.putLong(a.length);
+        for (MPZ x : a)
+            write(x, out);
+        return out;
+    }
+
+    /**
+     * Returns the array at the current position of in, and advances the
+     * position.
+     */
+    public static MPZ[] read(ByteBuffer in) {
+        checkOrder(in);
+        MPZ[] a = new MPZ[Math.toIntExact(in.getLong())];
+        for (int i = 0; i < a.length; i++)
+            a[i] = read(in, new MPZ());
+        return a;
+    }
+
+    /**
+     * Maps the first size bytes of a file in read-write mode, creating the file
+     * if needed, and returns the mapping with little-endian byte order. The
+     * mapping remains valid after the channel is closed.
+     */
+    public static MappedByteBuffer map(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedByteBuffer b = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            b.order(ByteOrder.LITTLE_ENDIAN);
+            return b;
+        }
+    }
+
+}
@@ -0,0 +1,669 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.benchmarks;
+
+import java.lang.reflect.Array;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import org.apfloat.Apint;
+import org.jscience.mathematics.number.LargeInteger;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.RunnerException;
+
+import it.unich.jgmp.MPZ;
+import it.unich.jgmpbenchmarks.launcher.Launcher;
+import it.unich.jgmpbenchmarks.launcher.NativeLibrary;
+import it.unich.jgmpbenchmarks.launcher.Preflight;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 5, jvmArgs = { "-Xms2G", "-Xmx2G" })
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+
+/**
+ * Benchmarks for JGMP: multiplication of square matrices of big integers, with
+ * naive, cache-blocked and row-parallel kernels. The packed kernel packs rows
+ * and columns in a {@link PackedMPZVector}, and computes each entry with a
+ * single multiplication.
+ */
+public class MatrixMultiplicationBenchmark {
+
+    /**
+     * Side of the square tiles used by the blocked kernels.
+     */
+    final static int BLOCK = 16;
+
+    @Param({ "10", "50", "100" })
+    public int size;
+
+    @Param({ "16", "64", "1024" })
+    public int bits;
+
+    BigInteger[][] aBigInteger, bBigInteger;
+    MPZ[][] aMPZ, bMPZ;
+    HybridInteger[][] aHybrid, bHybrid;
+    LargeInteger[][] aLargeInteger, bLargeInteger;
+    Apint[][] aApint, bApint;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(size * 31 + bits);
+        aBigInteger = BenchmarkUtils.randomMatrix(size, size, bits, random);
+        bBigInteger = BenchmarkUtils.randomMatrix(size, size, bits, random);
+        aMPZ = BenchmarkUtils.toMPZ(aBigInteger);
+        bMPZ = BenchmarkUtils.toMPZ(bBigInteger);
+        aHybrid = BenchmarkUtils.convert(aBigInteger, HybridInteger.class,
+                x -> new HybridInteger(BenchmarkUtils.toMPZ(x)));
+        bHybrid = BenchmarkUtils.convert(bBigInteger, HybridInteger.class,
+                x -> new HybridInteger(BenchmarkUtils.toMPZ(x)));
+        aLargeInteger = BenchmarkUtils.convert(aBigInteger, LargeInteger.class, LargeInteger::valueOf);
+        bLargeInteger = BenchmarkUtils.convert(bBigInteger, LargeInteger.class, LargeInteger::valueOf);
+        aApint = BenchmarkUtils.convert(aBigInteger, Apint.class, Apint::new);
+        bApint = BenchmarkUtils.convert(bBigInteger, Apint.class, Apint::new);
+    }
+
+    @Benchmark
+    public MPZ[][] matrixMultiplicationMPZ() {
+        return matrixMultiplicationMPZ(aMPZ, bMPZ);
+    }
+
+    @Benchmark
+    public MPZ[][] matrixMultiplicationMPZBlocked() {
+        return matrixMultiplicationMPZBlocked(aMPZ, bMPZ);
+    }
+
+    @Benchmark
+    public MPZ[][] matrixMultiplicationMPZParallel() {
+        return matrixMultiplicationMPZParallel(aMPZ, bMPZ);
+    }
+
+    @Benchmark
+    public MPZ[][] matrixMultiplicationMPZPacked() {
+        return matrixMultiplicationMPZPacked(aMPZ, bMPZ);
+    }
+
+    @Benchmark
+    public HybridInteger[][] matrixMultiplicationMPZHybrid() {
+        return matrixMultiplicationMPZHybrid(aHybrid, bHybrid);
+    }
+
+    @Benchmark
+    public MPZ[][] matrixMultiplicationMPZImmutable() {
+        return matrixMultiplicationMPZImmutable(aMPZ, bMPZ);
+    }
+
+    @Benchmark
+    public MPZ[][] matrixMultiplicationMPZImmutableBlocked() {
+        return matrixMultiplicationMPZImmutableBlocked(aMPZ, bMPZ);
+    }
+
+    @Benchmark
+    public MPZ[][] matrixMultiplicationMPZImmutableParallel() {
+        return matrixMultiplicationMPZImmutableParallel(aMPZ, bMPZ);
+    }
+
+    @Benchmark
+    public BigInteger[][] matrixMultiplicationBigInteger() {
+        return matrixMultiplicationBigInteger(aBigInteger, bBigInteger);
+    }
+
+    @Benchmark
+    public BigInteger[][] matrixMultiplicationBigIntegerBlocked() {
+        return matrixMultiplicationBigIntegerBlocked(aBigInteger, bBigInteger);
+    }
+
+    @Benchmark
+    public BigInteger[][] matrixMultiplicationBigIntegerParallel() {
+        return matrixMultiplicationBigIntegerParallel(aBigInteger, bBigInteger);
+    }
+
+    @Benchmark
+    public LargeInteger[][] matrixMultiplicationLargeInteger() {
+        return matrixMultiplicationLargeInteger(aLargeInteger, bLargeInteger);
+    }
+
+    @Benchmark
+    public LargeInteger[][] matrixMultiplicationLargeIntegerBlocked() {
+        return matrixMultiplicationLargeIntegerBlocked(aLargeInteger, bLargeInteger);
+    }
+
+    @Benchmark
+    public LargeInteger[][] matrixMultiplicationLargeIntegerParallel() {
+        return matrixMultiplicationLargeIntegerParallel(aLargeInteger, bLargeInteger);
+    }
+
+    @Benchmark
+    public Apint[][] matrixMultiplicationApint() {
+        return matrixMultiplicationApint(aApint, bApint);
+    }
+
+    @Benchmark
+    public Apint[][] matrixMultiplicationApintBlocked() {
+        return matrixMultiplicationApintBlocked(aApint, bApint);
+    }
+
+    @Benchmark
+    public Apint[][] matrixMultiplicationApintParallel() {
+        return matrixMultiplicationApintParallel(aApint, bApint);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Launcher.run(MatrixMultiplicationBenchmark.class, args);
+    }
+
+    public static void preflight(Preflight p) {
+        p.size("size");
+        long[][] a = { { 1, 2, 3 }, { 4, 5, 6 } };
+        long[][] b = { { 7, 8 }, { 9, 10 }, { 11, 12 } };
+        BigInteger[][] res = convert(new long[][] { { 58, 64 }, { 139, 154 } });
+        BigInteger[][] aBigInteger = convert(a);
+        BigInteger[][] bBigInteger = convert(b);
+        LargeInteger[][] aLargeInteger = BenchmarkUtils.convert(aBigInteger, LargeInteger.class, LargeInteger::valueOf);
+        LargeInteger[][] bLargeInteger = BenchmarkUtils.convert(bBigInteger, LargeInteger.class, LargeInteger::valueOf);
+        LargeInteger[][] resLargeInteger = BenchmarkUtils.convert(res, LargeInteger.class, LargeInteger::valueOf);
+        Apint[][] aApint = BenchmarkUtils.convert(aBigInteger, Apint.class, Apint::new);
+        Apint[][] bApint = BenchmarkUtils.convert(bBigInteger, Apint.class, Apint::new);
+        Apint[][] resApint = BenchmarkUtils.convert(res, Apint.class, Apint::new);
+
+        if (p.require("matrixMultiplicationMPZ.*", NativeLibrary.JGMP)) {
+            MPZ[][] aMPZ = BenchmarkUtils.toMPZ(aBigInteger);
+            MPZ[][] bMPZ = BenchmarkUtils.toMPZ(bBigInteger);
+            MPZ[][] resMPZ = BenchmarkUtils.toMPZ(res);
+            p.check("matrixMultiplicationMPZ", () -> Arrays.deepEquals(matrixMultiplicationMPZ(aMPZ, bMPZ), resMPZ));
+            p.check("matrixMultiplicationMPZBlocked",
+                    () -> Arrays.deepEquals(matrixMultiplicationMPZBlocked(aMPZ, bMPZ), resMPZ));
+            p.check("matrixMultiplicationMPZParallel",
+                    () -> Arrays.deepEquals(matrixMultiplicationMPZParallel(aMPZ, bMPZ), resMPZ));
+            p.check("matrixMultiplicationMPZPacked",
+                    () -> Arrays.deepEquals(matrixMultiplicationMPZPacked(aMPZ, bMPZ), resMPZ));
+            HybridInteger[][] aHybrid = BenchmarkUtils.convert(aBigInteger, HybridInteger.class,
+                    x -> new HybridInteger(BenchmarkUtils.toMPZ(x)));
+            HybridInteger[][] bHybrid = BenchmarkUtils.convert(bBigInteger, HybridInteger.class,
+                    x -> new HybridInteger(BenchmarkUtils.toMPZ(x)));
+            HybridInteger[][] resHybrid = BenchmarkUtils.convert(res, HybridInteger.class,
+                    x -> new HybridInteger(BenchmarkUtils.toMPZ(x)));
+            BigInteger[][] big = BenchmarkUtils.randomMatrix(3, 3, 100, new Random(0));
+            HybridInteger[][] bigHybrid = BenchmarkUtils.convert(big, HybridInteger.class,
+                    x -> new HybridInteger(BenchmarkUtils.toMPZ(x)));
+            MPZ[][] bigMPZ = BenchmarkUtils.toMPZ(big);
+            long[][] min = { { Long.MIN_VALUE, Long.MIN_VALUE }, { 1, Long.MIN_VALUE } };
+            HybridInteger[][] minHybrid = new HybridInteger[2][2];
+            MPZ[][] minMPZ = new MPZ[2][2];
+            for (int i = 0; i < 2; i++)
+                for (int j = 0; j < 2; j++) {
+                    minHybrid[i][j] = new HybridInteger(min[i][j]);
+                    minMPZ[i][j] = new MPZ(min[i][j]);
+                }
+            p.check("matrixMultiplicationMPZHybrid", () -> Arrays
+                    .deepEquals(matrixMultiplicationMPZHybrid(aHybrid, bHybrid), resHybrid)
+                    && Arrays.deepEquals(convert(matrixMultiplicationMPZHybrid(bigHybrid, bigHybrid)),
+                            matrixMultiplicationMPZ(bigMPZ, bigMPZ))
+                    && Arrays.deepEquals(convert(matrixMultiplicationMPZHybrid(minHybrid, minHybrid)),
+                            matrixMultiplicationMPZ(minMPZ, minMPZ)));
+            p.check("matrixMultiplicationMPZImmutable",
+                    () -> Arrays.deepEquals(matrixMultiplicationMPZImmutable(aMPZ, bMPZ), resMPZ));
+            p.check("matrixMultiplicationMPZImmutableBlocked",
+                    () -> Arrays.deepEquals(matrixMultiplicationMPZImmutableBlocked(aMPZ, bMPZ), resMPZ));
+            p.check("matrixMultiplicationMPZImmutableParallel",
+                    () -> Arrays.deepEquals(matrixMultiplicationMPZImmutableParallel(aMPZ, bMPZ), resMPZ));
+        }
+        p.check("matrixMultiplicationBigInteger",
+                () -> Arrays.deepEquals(matrixMultiplicationBigInteger(aBigInteger, bBigInteger), res));
+        p.check("matrixMultiplicationBigIntegerBlocked",
+                () -> Arrays.deepEquals(matrixMultiplicationBigIntegerBlocked(aBigInteger, bBigInteger), res));
+        p.check("matrixMultiplicationBigIntegerParallel",
+                () -> Arrays.deepEquals(matrixMultiplicationBigIntegerParallel(aBigInteger, bBigInteger), res));
+        p.check("matrixMultiplicationLargeInteger", () -> Arrays
+                .deepEquals(matrixMultiplicationLargeInteger(aLargeInteger, bLargeInteger), resLargeInteger));
+        p.check("matrixMultiplicationLargeIntegerBlocked", () -> Arrays
+                .deepEquals(matrixMultiplicationLargeIntegerBlocked(aLargeInteger, bLargeInteger), resLargeInteger));
+        p.check("matrixMultiplicationLargeIntegerParallel", () -> Arrays
+                .deepEquals(matrixMultiplicationLargeIntegerParallel(aLargeInteger, bLargeInteger), resLargeInteger));
+        p.check("matrixMultiplicationApint", () -> Arrays.deepEquals(matrixMultiplicationApint(aApint, bApint), resApint));
+        p.check("matrixMultiplicationApintBlocked",
+                () -> Arrays.deepEquals(matrixMultiplicationApintBlocked(aApint, bApint), resApint));
+        p.check("matrixMultiplicationApintParallel",
+                () -> Arrays.deepEquals(matrixMultiplicationApintParallel(aApint, bApint), resApint));
+    }
+
+    /* Utility methods */
+
+    /**
+     * Converts a matrix of longs into a matrix of BigIntegers.
+     */
+    static BigInteger[][] convert(long[][] a) {
+        BigInteger[][] result = new BigInteger[a.length][];
+        for (int i = 0; i < a.length; i++) {
+            result[i] = new BigInteger[a[i].length];
+            for (int j = 0; j < a[i].length; j++)
+                result[i][j] = BigInteger.valueOf(a[i][j]);
+        }
+        return result;
+    }
+
+    /**
+     * Converts a matrix of HybridIntegers into a matrix of MPZs.
+     */
+    static MPZ[][] convert(HybridInteger[][] a) {
+        MPZ[][] result = new MPZ[a.length][];
+        for (int i = 0; i < a.length; i++) {
+            result[i] = new MPZ[a[i].length];
+            for (int j = 0; j < a[i].length; j++)
+                result[i][j] = a[i][j].getMPZ();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the transpose of the matrix a. Only references are copied.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T[][] transpose(T[][] a) {
+        int n = a.length;
+        int m = a[0].length;
+        T[][] result = (T[][]) Array.newInstance(a.getClass().getComponentType().getComponentType(), m, n);
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < m; j++)
+                result[j][i] = a[i][j];
+        return result;
+    }
+
+    /**
+     * Checks that a and b may be multiplied.
+     */
+    static void checkDimensions(Object[][] a, Object[][] b) {
+        if (a.length == 0 || b.length == 0 || a[0].length != b.length)
+            throw new IllegalArgumentException("Incompatible matrix dimensions");
+    }
+
+    /**
+     * Applies the kernel to every row in the range [0, n) using the common
+     * fork/join pool.
+     */
+    static void forEachRow(int n, IntConsumer kernel) {
+        BenchmarkUtils.forEachRow(ForkJoinPool.commonPool(), 0, n, kernel);
+    }
+
+    /* JGMP */
+    public static MPZ[][] matrixMultiplicationMPZ(MPZ[][] a, MPZ[][] b) {
+        checkDimensions(a, b);
+        int n = a.length;
+        int m = b.length;
+        int p = b[0].length;
+        MPZ[][] c = new MPZ[n][p];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < p; j++) {
+                MPZ sum = new MPZ(0);
+                for (int k = 0; k < m; k++)
+                    sum.addmulAssign(a[i][k], b[k][j]);
+                c[i][j] = sum;
+            }
+        }
+        return c;
+    }
+
+    /* JGMP */
+    public static MPZ[][] matrixMultiplicationMPZBlocked(MPZ[][] a, MPZ[][] b) {
+        checkDimensions(a, b);
+        MPZ[][] bt = transpose(b);
+        int n = a.length;
+        int m = b.length;
+        int p = bt.length;
+        MPZ[][] c = new MPZ[n][p];
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < p; j++)
+                c[i][j] = new MPZ(0);
+        for (int ii = 0; ii < n; ii += BLOCK)
+            for (int jj = 0; jj < p; jj += BLOCK)
+                for (int kk = 0; kk < m; kk += BLOCK)
+                    for (int i = ii; i < Math.min(ii + BLOCK, n); i++)
+                        for (int j = jj; j < Math.min(jj + BLOCK, p); j++) {
+                            MPZ sum = c[i][j];
+                            MPZ[] ai = a[i];
+                            MPZ[] btj = bt[j];
+                            for (int k = kk; k < Math.min(kk + BLOCK, m); k++)
+                                sum.addmulAssign(ai[k], btj[k]);
+                        }
+        return c;
+    }
+
+    /* JGMP */
+    public static MPZ[][] matrixMultiplicationMPZParallel(MPZ[][] a, MPZ[][] b) {
+        checkDimensions(a, b);
+        MPZ[][] bt = transpose(b);
+        int m = b.length;
+        int p = bt.length;
+        MPZ[][] c = new MPZ[a.length][p];
+        forEachRow(a.length, i -> {
+            MPZ[] ai = a[i];
+            for (int j = 0; j < p; j++) {
+                MPZ[] btj = bt[j];
+                MPZ sum = new MPZ(0);
+                for (int k = 0; k < m; k++)
+                    sum.addmulAssign(ai[k], btj[k]);
+                c[i][j] = sum;
+            }
+        });
+        return c;
+    }
+
+    /* JGMP */
+    public static MPZ[][] matrixMultiplicationMPZPacked(MPZ[][] a, MPZ[][] b) {
+        checkDimensions(a, b);
+        MPZ[][] bt = transpose(b);
+        int n = a.length;
+        int m = b.length;
+        int p = bt.length;
+        long bitsA = 0, bitsB = 0;
+        for (MPZ[] ai : a)
+            bitsA = Math.max(bitsA, PackedMPZVector.bits(ai));
+        for (MPZ[] btj : bt)
+            bitsB = Math.max(bitsB, PackedMPZVector.bits(btj));
+        long slot = PackedMPZVector.slot(bitsA + bitsB, m);
+        PackedMPZVector[] rows = new PackedMPZVector[n];
+        for (int i = 0; i < n; i++)
+            rows[i] = new PackedMPZVector(m, slot).pack(a[i]);
+        PackedMPZVector[] columns = new PackedMPZVector[p];
+        for (int j = 0; j < p; j++)
+            columns[j] = new PackedMPZVector(m, slot).packReversed(bt[j]);
+        MPZ[][] c = new MPZ[n][p];
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < p; j++)
+                c[i][j] = rows[i].dot(columns[j], new MPZ());
+        return c;
+    }
+
+    /* JGMP */
+    public static HybridInteger[][] matrixMultiplicationMPZHybrid(HybridInteger[][] a, HybridInteger[][] b) {
+        checkDimensions(a, b);
+        int n = a.length;
+        int m = b.length;
+        int p = b[0].length;
+        HybridInteger[][] c = new HybridInteger[n][p];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < p; j++) {
+                HybridInteger sum = new HybridInteger(0);
+                for (int k = 0; k < m; k++)
+                    sum.addmulAssign(a[i][k], b[k][j]);
+                c[i][j] = sum;
+            }
+        }
+        return c;
+    }
+
+    /* JGMP */
+    public static MPZ[][] matrixMultiplicationMPZImmutable(MPZ[][] a, MPZ[][] b) {
+        checkDimensions(a, b);
+        int n = a.length;
+        int m = b.length;
+        int p = b[0].length;
+        MPZ[][] c = new MPZ[n][p];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < p; j++) {
+                MPZ sum = new MPZ(0);
+                for (int k = 0; k < m; k++)
+                    sum = sum.add(a[i][k].mul(b[k][j]));
+                c[i][j] = sum;
+            }
+        }
+        return c;
+    }
+
+    /* JGMP */
+    public static MPZ[][] matrixMultiplicationMPZImmutableBlocked(MPZ[][] a, MPZ[][] b) {
+        checkDimensions(a, b);
+        MPZ[][] bt = transpose(b);
+        int n = a.length;
+        int m = b.length;
+        int p = bt.length;
+        MPZ[][] c = new MPZ[n][p];
+        MPZ zero = new MPZ(0);
+        for (int i = 0; i < n; i++)
+            Arrays.fill(c[i], zero);
+        for (int ii = 0; ii < n; ii += BLOCK)
+            for (int jj = 0; jj < p; jj += BLOCK)
+                for (int kk = 0; kk < m; kk += BLOCK)
+                    for (int i = ii; i < Math.min(ii + BLOCK, n); i++)
+                        for (int j = jj; j < Math.min(jj + BLOCK, p); j++) {
+                            MPZ sum = c[i][j];
+                            MPZ[] ai = a[i];
+                            MPZ[] btj = bt[j];
+                            for (int k = kk; k < Math.min(kk + BLOCK, m); k++)
+                                sum = sum.add(ai[k].mul(btj[k]));
+                            c[i][j] = sum;
+                        }
+        return c;
+    }
+
+    /* JGMP */
+    public static MPZ[][] matrixMultiplicationMPZImmutableParallel(MPZ[][] a, MPZ[][] b) {
+        checkDimensions(a, b);
+        MPZ[][] bt = transpose(b);
+        int m = b.length;
+        int p = bt.length;
+        MPZ[][] c = new MPZ[a.length][p];
+        forEachRow(a.length, i -> {
+            MPZ[] ai = a[i];
+            for (int j = 0; j < p; j++) {
+                MPZ[] btj = bt[j];
+                MPZ sum = new MPZ(0);
+                for (int k = 0; k < m; k++)
+                    sum = sum.add(ai[k].mul(btj[k]));
+                c[i][j] = sum;
+            }
+        });
+        return c;
+    }
+
+    /* BigInteger */
+    public static BigInteger[][] matrixMultiplicationBigInteger(BigInteger[][] a, BigInteger[][] b) {
+        checkDimensions(a, b);
+        int n = a.length;
+        int m = b.length;
+        int p = b[0].length;
+        BigInteger[][] c = new BigInteger[n][p];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < p; j++) {
+                BigInteger sum = BigInteger.ZERO;
+                for (int k = 0; k < m; k++)
+                    sum = sum.add(a[i][k].multiply(b[k][j]));
+                c[i][j] = sum;
+            }
+        }
+        return c;
+    }
+
+    /* BigInteger */
+    public static BigInteger[][] matrixMultiplicationBigIntegerBlocked(BigInteger[][] a, BigInteger[][] b) {
+        checkDimensions(a, b);
+        BigInteger[][] bt = transpose(b);
+        int n = a.length;
+        int m = b.length;
+        int p = bt.length;
+        BigInteger[][] c = new BigInteger[n][p];
+        for (int i = 0; i < n; i++)
+            Arrays.fill(c[i], BigInteger.ZERO);
+        for (int ii = 0; ii < n; ii += BLOCK)
+            for (int jj = 0; jj < p; jj += BLOCK)
+                for (int kk = 0; kk < m; kk += BLOCK)
+                    for (int i = ii; i < Math.min(ii + BLOCK, n); i++)
+                        for (int j = jj; j < Math.min(jj + BLOCK, p); j++) {
+                            BigInteger sum = c[i][j];
+                            BigInteger[] ai = a[i];
+                            BigInteger[] btj = bt[j];
+                            for (int k = kk; k < Math.min(kk + BLOCK, m); k++)
+                                sum = sum.add(ai[k].multiply(btj[k]));
+                            c[i][j] = sum;
+                        }
+        return c;
+    }
+
+    /* BigInteger */
+    public static BigInteger[][] matrixMultiplicationBigIntegerParallel(BigInteger[][] a, BigInteger[][] b) {
+        checkDimensions(a, b);
+        BigInteger[][] bt = transpose(b);
+        int m = b.length;
+        int p = bt.length;
+        BigInteger[][] c = new BigInteger[a.length][p];
+        forEachRow(a.length, i -> {
+            BigInteger[] ai = a[i];
+            for (int j = 0; j < p; j++) {
+                BigInteger[] btj = bt[j];
+                BigInteger sum = BigInteger.ZERO;
+                for (int k = 0; k < m; k++)
+                    sum = sum.add(ai[k].multiply(btj[k]));
+                c[i][j] = sum;
+            }
+        });
+        return c;
+    }
+
+    /* JScience */
+    public static LargeInteger[][] matrixMultiplicationLargeInteger(LargeInteger[][] a, LargeInteger[][] b) {
+        checkDimensions(a, b);
+        int n = a.length;
+        int m = b.length;
+        int p = b[0].length;
+        LargeInteger[][] c = new LargeInteger[n][p];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < p; j++) {
+                LargeInteger sum = LargeInteger.ZERO;
+                for (int k = 0; k < m; k++)
+                    sum = sum.plus(a[i][k].times(b[k][j]));
+                c[i][j] = sum;
+            }
+        }
+        return c;
+    }
+
+    /* JScience */
+    public static LargeInteger[][] matrixMultiplicationLargeIntegerBlocked(LargeInteger[][] a, LargeInteger[][] b) {
+        checkDimensions(a, b);
+        LargeInteger[][] bt = transpose(b);
+        int n = a.length;
+        int m = b.length;
+        int p = bt.length;
+        LargeInteger[][] c = new LargeInteger[n][p];
+        for (int i = 0; i < n; i++)
+            Arrays.fill(c[i], LargeInteger.ZERO);
+        for (int ii = 0; ii < n; ii += BLOCK)
+            for (int jj = 0; jj < p; jj += BLOCK)
+                for (int kk = 0; kk < m; kk += BLOCK)
+                    for (int i = ii; i < Math.min(ii + BLOCK, n); i++)
+                        for (int j = jj; j < Math.min(jj + BLOCK, p); j++) {
+                            LargeInteger sum = c[i][j];
+                            LargeInteger[] ai = a[i];
+                            LargeInteger[] btj = bt[j];
+                            for (int k = kk; k < Math.min(kk + BLOCK, m); k++)
+                                sum = sum.plus(ai[k].times(btj[k]));
+                            c[i][j] = sum;
+                        }
+        return c;
+    }
+
+    /* JScience */
+    public static LargeInteger[][] matrixMultiplicationLargeIntegerParallel(LargeInteger[][] a, LargeInteger[][] b) {
+        checkDimensions(a, b);
+        LargeInteger[][] bt = transpose(b);
+        int m = b.length;
+        int p = bt.length;
+        LargeInteger[][] c = new LargeInteger[a.length][p];
+        forEachRow(a.length, i -> {
+            LargeInteger[] ai = a[i];
+            for (int j = 0; j < p; j++) {
+                LargeInteger[] btj = bt[j];
+                LargeInteger sum = LargeInteger.ZERO;
+                for (int k = 0; k < m; k++)
+                    sum = sum.plus(ai[k].times(btj[k]));
+                c[i][j] = sum;
+            }
+        });
+        return c;
+    }
+
+    /* Apfloat */
+    public static Apint[][] matrixMultiplicationApint(Apint[][] a, Apint[][] b) {
+        checkDimensions(a, b);
+        int n = a.length;
+        int m = b.length;
+        int p = b[0].length;
+        Apint[][] c = new Apint[n][p];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < p; j++) {
+                Apint sum = Apint.ZERO;
+                for (int k = 0; k < m; k++)
+                    sum = sum.add(a[i][k].multiply(b[k][j]));
+                c[i][j] = sum;
+            }
+        }
+        return c;
+    }
+
+    /* Apfloat */
+    public static Apint[][] matrixMultiplicationApintBlocked(Apint[][] a, Apint[][] b) {
+        checkDimensions(a, b);
+        Apint[][] bt = transpose(b);
+        int n = a.length;
+        int m = b.length;
+        int p = bt.length;
+        Apint[][] c = new Apint[n][p];
+        for (int i = 0; i < n; i++)
+            Arrays.fill(c[i], Apint.ZERO);
+        for (int ii = 0; ii < n; ii += BLOCK)
+            for (int jj = 0; jj < p; jj += BLOCK)
+                for (int kk = 0; kk < m; kk += BLOCK)
+                    for (int i = ii; i < Math.min(ii + BLOCK, n); i++)
+                        for (int j = jj; j < Math.min(jj + BLOCK, p); j++) {
+                            Apint sum = c[i][j];
+                            Apint[] ai = a[i];
+                            Apint[] btj = bt[j];
+                            for (int k = kk; k < Math.min(kk + BLOCK, m); k++)
+                                sum = sum.add(ai[k].multiply(btj[k]));
+                            c[i][j] = sum;
+                        }
+        return c;
+    }
+
+    /* Apfloat */
+    public static Apint[][] matrixMultiplicationApintParallel(Apint[][] a, Apint[][] b) {
+        checkDimensions(a, b);
+        Apint[][] bt = transpose(b);
+        int m = b.length;
+        int p = bt.length;
+        Apint[][] c = new Apint[a.length][p];
+        forEachRow(a.length, i -> {
+            Apint[] ai = a[i];
+            for (int j = 0; j < p; j++) {
+                Apint[] btj = bt[j];
+                Apint sum = Apint.ZERO;
+                for (int k = 0; k < m; k++)
+                    sum = sum.add(ai[k].multiply(btj[k]));
+                c[i][j] = sum;
+            }
+        });
+        return c;
+    }
+
+}
@@ -0,0 +1,297 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.benchmarks;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.RunnerException;
+
+import it.unich.jgmp.MPZ;
+import it.unich.jgmpbenchmarks.launcher.Launcher;
+import it.unich.jgmpbenchmarks.launcher.NativeLibrary;
+import it.unich.jgmpbenchmarks.launcher.Preflight;
+
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(value = 3, jvmArgs = { "-Xms2G", "-Xmx2G" })
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+
+/**
+ * Benchmarks for JGMP: modular exponentiation x^d mod n with an RSA-like
+ * modulus n = p q and a full-size exponent d, as in signatures and private
+ * key operations.
+ *
+ * The single-shot and CRT kernels are sampled, so that JMH reports the
+ * percentiles of their latency. The CRT kernels compute x^(d mod (p-1)) mod p
+ * and x^(d mod (q-1)) mod q and recombine them with Garner's formula. The batch
+ * kernels exponentiate {@code BATCH} bases and report the throughput in
+ * exponentiations per second: the mutable MPZ kernel reuses the same result
+ * registers at each invocation. Each thread has its own state, and the scaling
+ * with the number of threads is measured by {@link ScalingBenchmark}.
+ */
+public class ModularExponentiationBenchmark {
+
+    /**
+     * Number of bases exponentiated by the batch kernels.
+     */
+    final static int BATCH = 64;
+
+    @Param({ "1024", "2048", "4096", "8192" })
+    public int bits;
+
+    BigInteger xBigInteger, dBigInteger, nBigInteger, pBigInteger, qBigInteger, dpBigInteger, dqBigInteger,
+            qinvBigInteger;
+    BigInteger[] basesBigInteger;
+    MPZ xMPZ, dMPZ, nMPZ, pMPZ, qMPZ, dpMPZ, dqMPZ, qinvMPZ, resultMPZ, scratchMPZ;
+    MPZ[] basesMPZ, resultsMPZ;
+    us.altio.gmp4j.BigInteger xGMP4J, dGMP4J, nGMP4J, pGMP4J, qGMP4J, dpGMP4J, dqGMP4J, qinvGMP4J;
+    us.altio.gmp4j.BigInteger[] basesGMP4J;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(bits);
+        pBigInteger = BigInteger.probablePrime(bits / 2, random);
+        qBigInteger = BigInteger.probablePrime(bits - bits / 2, random);
+        nBigInteger = pBigInteger.multiply(qBigInteger);
+        dBigInteger = new BigInteger(bits, random).mod(nBigInteger);
+        dpBigInteger = dBigInteger.mod(pBigInteger.subtract(BigInteger.ONE));
+        dqBigInteger = dBigInteger.mod(qBigInteger.subtract(BigInteger.ONE));
+        qinvBigInteger = qBigInteger.modInverse(pBigInteger);
+        xBigInteger = new BigInteger(bits, random).mod(nBigInteger);
+        basesBigInteger = new BigInteger[BATCH];
+        for (int i = 0; i < BATCH; i++)
+            basesBigInteger[i] = new BigInteger(bits, random).mod(nBigInteger);
+        if (NativeLibrary.JGMP.isAvailable()) {
+            xMPZ = new MPZ(xBigInteger.toString());
+            dMPZ = new MPZ(dBigInteger.toString());
+            nMPZ = new MPZ(nBigInteger.toString());
+            pMPZ = new MPZ(pBigInteger.toString());
+            qMPZ = new MPZ(qBigInteger.toString());
+            dpMPZ = new MPZ(dpBigInteger.toString());
+            dqMPZ = new MPZ(dqBigInteger.toString());
+            qinvMPZ = new MPZ(qinvBigInteger.toString());
+            resultMPZ = new MPZ();
+            scratchMPZ = new MPZ();
+            basesMPZ = BenchmarkUtils.toMPZ(basesBigInteger);
+            resultsMPZ = new MPZ[BATCH];
+            for (int i = 0; i < BATCH; i++)
+                resultsMPZ[i] = new MPZ();
+        }
+        if (NativeLibrary.GMP4J.isAvailable()) {
+            xGMP4J = new us.altio.gmp4j.BigInteger(xBigInteger);
+            dGMP4J = new us.altio.gmp4j.BigInteger(dBigInteger);
+            nGMP4J = new us.altio.gmp4j.BigInteger(nBigInteger);
+            pGMP4J = new us.altio.gmp4j.BigInteger(pBigInteger);
+            qGMP4J = new us.altio.gmp4j.BigInteger(qBigInteger);
+            dpGMP4J = new us.altio.gmp4j.BigInteger(dpBigInteger);
+            dqGMP4J = new us.altio.gmp4j.BigInteger(dqBigInteger);
+            qinvGMP4J = new us.altio.gmp4j.BigInteger(qinvBigInteger);
+            basesGMP4J = BenchmarkUtils.convert(basesBigInteger, us.altio.gmp4j.BigInteger.class,
+                    us.altio.gmp4j.BigInteger::new);
+        }
+    }
+
+    @Benchmark
+    public MPZ powmMPZ() {
+        return powmMPZ(xMPZ, dMPZ, nMPZ, resultMPZ);
+    }
+
+    @Benchmark
+    public MPZ powmMPZImmutable() {
+        return powmMPZImmutable(xMPZ, dMPZ, nMPZ);
+    }
+
+    @Benchmark
+    public BigInteger powmBigInteger() {
+        return powmBigInteger(xBigInteger, dBigInteger, nBigInteger);
+    }
+
+    @Benchmark
+    public us.altio.gmp4j.BigInteger powmGMP4J() {
+        return powmGMP4J(xGMP4J, dGMP4J, nGMP4J);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BATCH)
+    public MPZ[] powmBatchMPZ() {
+        return powmBatchMPZ(basesMPZ, dMPZ, nMPZ, resultsMPZ);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BATCH)
+    public MPZ[] powmBatchMPZImmutable() {
+        return powmBatchMPZImmutable(basesMPZ, dMPZ, nMPZ);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BATCH)
+    public BigInteger[] powmBatchBigInteger() {
+        return powmBatchBigInteger(basesBigInteger, dBigInteger, nBigInteger);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BATCH)
+    public us.altio.gmp4j.BigInteger[] powmBatchGMP4J() {
+        return powmBatchGMP4J(basesGMP4J, dGMP4J, nGMP4J);
+    }
+
+    @Benchmark
+    public MPZ powmCrtMPZ() {
+        return powmCrtMPZ(xMPZ, pMPZ, qMPZ, dpMPZ, dqMPZ, qinvMPZ, resultMPZ, scratchMPZ);
+    }
+
+    @Benchmark
+    public BigInteger powmCrtBigInteger() {
+        return powmCrtBigInteger(xBigInteger, pBigInteger, qBigInteger, dpBigInteger, dqBigInteger,
+                qinvBigInteger);
+    }
+
+    @Benchmark
+    public us.altio.gmp4j.BigInteger powmCrtGMP4J() {
+        return powmCrtGMP4J(xGMP4J, pGMP4J, qGMP4J, dpGMP4J, dqGMP4J, qinvGMP4J);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Launcher.run(ModularExponentiationBenchmark.class, args);
+    }
+
+    public static void preflight(Preflight p) {
+        p.size("bits");
+        ModularExponentiationBenchmark b = new ModularExponentiationBenchmark();
+        b.bits = 256;
+        b.setup();
+        BigInteger res = b.xBigInteger.modPow(b.dBigInteger, b.nBigInteger);
+        BigInteger[] resBatch = Arrays.stream(b.basesBigInteger).map(x -> x.modPow(b.dBigInteger, b.nBigInteger))
+                .toArray(BigInteger[]::new);
+        p.check("powmBigInteger|powmBatchBigInteger",
+                () -> res.equals(b.powmBigInteger()) && Arrays.equals(resBatch, b.powmBatchBigInteger()));
+        p.check("powmCrtBigInteger", () -> res.equals(b.powmCrtBigInteger()));
+        p.check(".*GMP4J", () -> {
+            us.altio.gmp4j.BigInteger resGMP4J = new us.altio.gmp4j.BigInteger(res);
+            us.altio.gmp4j.BigInteger[] resBatchGMP4J = BenchmarkUtils.convert(resBatch,
+                    us.altio.gmp4j.BigInteger.class, us.altio.gmp4j.BigInteger::new);
+            return resGMP4J.equals(b.powmGMP4J()) && Arrays.equals(resBatchGMP4J, b.powmBatchGMP4J())
+                    && resGMP4J.equals(b.powmCrtGMP4J());
+        }, NativeLibrary.GMP4J);
+        if (p.require(".*MPZ.*", NativeLibrary.JGMP)) {
+            MPZ resMPZ = new MPZ(res.toString());
+            MPZ[] resBatchMPZ = BenchmarkUtils.toMPZ(resBatch);
+            p.check("powmMPZ", () -> resMPZ.equals(b.powmMPZ()));
+            p.check("powmMPZImmutable", () -> resMPZ.equals(b.powmMPZImmutable()));
+            p.check("powmBatchMPZ", () -> Arrays.equals(resBatchMPZ, b.powmBatchMPZ()));
+            p.check("powmBatchMPZImmutable", () -> Arrays.equals(resBatchMPZ, b.powmBatchMPZImmutable()));
+            p.check("powmCrtMPZ", () -> resMPZ.equals(b.powmCrtMPZ()));
+        }
+    }
+
+    /* JGMP */
+    public static MPZ powmMPZ(MPZ x, MPZ d, MPZ n, MPZ result) {
+        return result.powmAssign(x, d, n);
+    }
+
+    /* JGMP */
+    public static MPZ powmMPZImmutable(MPZ x, MPZ d, MPZ n) {
+        return x.powm(d, n);
+    }
+
+    /* BigInteger */
+    public static BigInteger powmBigInteger(BigInteger x, BigInteger d, BigInteger n) {
+        return x.modPow(d, n);
+    }
+
+    /* GMP4J */
+    public static us.altio.gmp4j.BigInteger powmGMP4J(us.altio.gmp4j.BigInteger x, us.altio.gmp4j.BigInteger d,
+            us.altio.gmp4j.BigInteger n) {
+        return x.modPow(d, n);
+    }
+
+    /* JGMP */
+    public static MPZ[] powmBatchMPZ(MPZ[] x, MPZ d, MPZ n, MPZ[] results) {
+        for (int i = 0; i < x.length; i++)
+            results[i].powmAssign(x[i], d, n);
+        return results;
+    }
+
+    /* JGMP */
+    public static MPZ[] powmBatchMPZImmutable(MPZ[] x, MPZ d, MPZ n) {
+        MPZ[] results = new MPZ[x.length];
+        for (int i = 0; i < x.length; i++)
+            results[i] = x[i].powm(d, n);
+        return results;
+    }
+
+    /* BigInteger */
+    public static BigInteger[] powmBatchBigInteger(BigInteger[] x, BigInteger d, BigInteger n) {
+        BigInteger[] results = new BigInteger[x.length];
+        for (int i = 0; i < x.length; i++)
+            results[i] = x[i].modPow(d, n);
+        return results;
+    }
+
+    /* GMP4J */
+    public static us.altio.gmp4j.BigInteger[] powmBatchGMP4J(us.altio.gmp4j.BigInteger[] x,
+            us.altio.gmp4j.BigInteger d, us.altio.gmp4j.BigInteger n) {
+        us.altio.gmp4j.BigInteger[] results = new us.altio.gmp4j.BigInteger[x.length];
+        for (int i = 0; i < x.length; i++)
+            results[i] = x[i].modPow(d, n);
+        return results;
+    }
+
+    /* JGMP: Garner's formula m2 + q ((m1 - m2) qinv mod p) */
+    public static MPZ powmCrtMPZ(MPZ x, MPZ p, MPZ q, MPZ dp, MPZ dq, MPZ qinv, MPZ result, MPZ scratch) {
+        scratch.powmAssign(x, dq, q);
+        result.powmAssign(x, dp, p);
+        result.subAssign(result, scratch);
+        result.mulAssign(result, qinv);
+        result.modAssign(result, p);
+        result.mulAssign(result, q);
+        return result.addAssign(result, scratch);
+    }
+
+    /* BigInteger */
+    public static BigInteger powmCrtBigInteger(BigInteger x, BigInteger p, BigInteger q, BigInteger dp,
+            BigInteger dq, BigInteger qinv) {
+        BigInteger m1 = x.modPow(dp, p);
+        BigInteger m2 = x.modPow(dq, q);
+        return m1.subtract(m2).multiply(qinv).mod(p).multiply(q).add(m2);
+    }
+
+    /* GMP4J */
+    public static us.altio.gmp4j.BigInteger powmCrtGMP4J(us.altio.gmp4j.BigInteger x, us.altio.gmp4j.BigInteger p,
+            us.altio.gmp4j.BigInteger q, us.altio.gmp4j.BigInteger dp, us.altio.gmp4j.BigInteger dq,
+            us.altio.gmp4j.BigInteger qinv) {
+        us.altio.gmp4j.BigInteger m1 = x.modPow(dp, p);
+        us.altio.gmp4j.BigInteger m2 = x.modPow(dq, q);
+        return m1.subtract(m2).multiply(qinv).mod(p).multiply(q).add(m2);
+    }
+
+}
@@ -0,0 +1,497 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.benchmarks;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apfloat.Apfloat;
+import org.apfloat.ApfloatMath;
+import org.apfloat.Apint;
+import org.kframework.mpfr.BigFloat;
+import org.kframework.mpfr.BinaryMathContext;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.RunnerException;
+
+import it.unich.jgmp.MPF;
+import it.unich.jgmp.MPZ;
+import it.unich.jgmpbenchmarks.launcher.Launcher;
+import it.unich.jgmpbenchmarks.launcher.NativeLibrary;
+import it.unich.jgmpbenchmarks.launcher.Preflight;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 3, jvmArgs = { "-Xms2G", "-Xmx2G" })
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+
+/**
+ * Benchmarks for JGMP: computing reciprocals, square roots and n-th roots of
+ * a number in [1, 2) with the Newton iteration, compared with the built-in
+ * functions of the libraries.
+ *
+ * All the operations are computed from the inverse root x^(-1/n), with the
+ * division-free iteration r = r + r (1 - x r^n) / n, starting from a double
+ * approximation. The {@code Newton} kernels perform all the iterations at the
+ * target precision, while the {@code NewtonDoubling} kernels double the
+ * working precision at each iteration, which is how fast libraries implement
+ * these functions. MPF changes the precision of its operands in place with
+ * {@code setPrec}, Apfloat and MPFR round to the working precision, while
+ * BigDecimal multiplies by the full input before rounding. GMP has no n-th
+ * root for floats and BigDecimal has no n-th root at all, hence there are no
+ * built-in root kernels for them.
+ */
+public class NewtonIterationBenchmark {
+
+    /**
+     * Degree of the root computed by the root kernels.
+     */
+    final static int ROOT = 5;
+
+    /**
+     * Extra bits of the working precision of the Newton iterations.
+     */
+    final static int GUARD = 64;
+
+    /**
+     * Number of correct bits of the initial approximation.
+     */
+    final static int INITIAL_BITS = 48;
+
+    @Param({ "1000", "10000", "100000", "1000000" })
+    public int prec;
+
+    PrecisionContext context;
+    int[] full, doubling;
+    MPF xMPF;
+    BigDecimal xBigDecimal;
+    Apfloat xApfloat;
+    BigFloat xBigFloat;
+
+    @Setup
+    public void setup() {
+        context = new PrecisionContext(prec);
+        full = precisions(prec, false);
+        doubling = precisions(prec, true);
+        String x = input(context, new Random(prec));
+        xBigDecimal = new BigDecimal(x);
+        xApfloat = new Apfloat(x, context.digits);
+        if (NativeLibrary.JGMP.isAvailable())
+            xMPF = toMPF(x, context);
+        if (NativeLibrary.MPFR.isAvailable())
+            xBigFloat = new BigFloat(x, context.binaryMathContext);
+    }
+
+    @Benchmark
+    public MPF reciprocalMPF() {
+        return reciprocalMPF(xMPF, context);
+    }
+
+    @Benchmark
+    public MPF reciprocalMPFNewton() {
+        return inverseRootMPF(xMPF, 1, full);
+    }
+
+    @Benchmark
+    public MPF reciprocalMPFNewtonDoubling() {
+        return inverseRootMPF(xMPF, 1, doubling);
+    }
+
+    @Benchmark
+    public MPF sqrtMPF() {
+        return sqrtMPF(xMPF, context);
+    }
+
+    @Benchmark
+    public MPF sqrtMPFNewton() {
+        return rootMPF(xMPF, 2, full);
+    }
+
+    @Benchmark
+    public MPF sqrtMPFNewtonDoubling() {
+        return rootMPF(xMPF, 2, doubling);
+    }
+
+    @Benchmark
+    public MPF rootMPFNewton() {
+        return rootMPF(xMPF, ROOT, full);
+    }
+
+    @Benchmark
+    public MPF rootMPFNewtonDoubling() {
+        return rootMPF(xMPF, ROOT, doubling);
+    }
+
+    @Benchmark
+    public BigDecimal reciprocalBigDecimal() {
+        return BigDecimal.ONE.divide(xBigDecimal, context.mathContext);
+    }
+
+    @Benchmark
+    public BigDecimal reciprocalBigDecimalNewton() {
+        return inverseRootBigDecimal(xBigDecimal, 1, full);
+    }
+
+    @Benchmark
+    public BigDecimal reciprocalBigDecimalNewtonDoubling() {
+        return inverseRootBigDecimal(xBigDecimal, 1, doubling);
+    }
+
+    @Benchmark
+    public BigDecimal sqrtBigDecimal() {
+        return xBigDecimal.sqrt(context.mathContext);
+    }
+
+    @Benchmark
+    public BigDecimal sqrtBigDecimalNewton() {
+        return rootBigDecimal(xBigDecimal, 2, full);
+    }
+
+    @Benchmark
+    public BigDecimal sqrtBigDecimalNewtonDoubling() {
+        return rootBigDecimal(xBigDecimal, 2, doubling);
+    }
+
+    @Benchmark
+    public BigDecimal rootBigDecimalNewton() {
+        return rootBigDecimal(xBigDecimal, ROOT, full);
+    }
+
+    @Benchmark
+    public BigDecimal rootBigDecimalNewtonDoubling() {
+        return rootBigDecimal(xBigDecimal, ROOT, doubling);
+    }
+
+    @Benchmark
+    public Apfloat reciprocalApfloat() {
+        return ApfloatMath.inverseRoot(xApfloat, 1);
+    }
+
+    @Benchmark
+    public Apfloat reciprocalApfloatNewton() {
+        return inverseRootApfloat(xApfloat, 1, full);
+    }
+
+    @Benchmark
+    public Apfloat reciprocalApfloatNewtonDoubling() {
+        return inverseRootApfloat(xApfloat, 1, doubling);
+    }
+
+    @Benchmark
+    public Apfloat sqrtApfloat() {
+        return ApfloatMath.sqrt(xApfloat);
+    }
+
+    @Benchmark
+    public Apfloat sqrtApfloatNewton() {
+        return rootApfloat(xApfloat, 2, full);
+    }
+
+    @Benchmark
+    public Apfloat sqrtApfloatNewtonDoubling() {
+        return rootApfloat(xApfloat, 2, doubling);
+    }
+
+    @Benchmark
+    public Apfloat rootApfloat() {
+        return ApfloatMath.root(xApfloat, ROOT);
+    }
+
+    @Benchmark
+    public Apfloat rootApfloatNewton() {
+        return rootApfloat(xApfloat, ROOT, full);
+    }
+
+    @Benchmark
+    public Apfloat rootApfloatNewtonDoubling() {
+        return rootApfloat(xApfloat, ROOT, doubling);
+    }
+
+    @Benchmark
+    public BigFloat reciprocalBigFloat() {
+        BinaryMathContext c = context.binaryMathContext;
+        return new BigFloat(1, c).divide(xBigFloat, c);
+    }
+
+    @Benchmark
+    public BigFloat reciprocalBigFloatNewton() {
+        return inverseRootBigFloat(xBigFloat, 1, full);
+    }
+
+    @Benchmark
+    public BigFloat reciprocalBigFloatNewtonDoubling() {
+        return inverseRootBigFloat(xBigFloat, 1, doubling);
+    }
+
+    @Benchmark
+    public BigFloat sqrtBigFloat() {
+        return xBigFloat.sqrt(context.binaryMathContext);
+    }
+
+    @Benchmark
+    public BigFloat sqrtBigFloatNewton() {
+        return rootBigFloat(xBigFloat, 2, full);
+    }
+
+    @Benchmark
+    public BigFloat sqrtBigFloatNewtonDoubling() {
+        return rootBigFloat(xBigFloat, 2, doubling);
+    }
+
+    @Benchmark
+    public BigFloat rootBigFloat() {
+        return xBigFloat.root(ROOT, context.binaryMathContext);
+    }
+
+    @Benchmark
+    public BigFloat rootBigFloatNewton() {
+        return rootBigFloat(xBigFloat, ROOT, full);
+    }
+
+    @Benchmark
+    public BigFloat rootBigFloatNewtonDoubling() {
+        return rootBigFloat(xBigFloat, ROOT, doubling);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Launcher.run(NewtonIterationBenchmark.class, args);
+    }
+
+    public static void preflight(Preflight p) {
+        p.size("prec");
+        PrecisionContext context = new PrecisionContext(3000);
+        int[] full = precisions(context.prec, false);
+        int[] doubling = precisions(context.prec, true);
+        String x = input(context, new Random(0));
+        MathContext mc = new MathContext(context.digits + 20);
+        BigDecimal reciprocal = BigDecimal.ONE.divide(new BigDecimal(x), mc);
+        BigDecimal sqrt = new BigDecimal(x).sqrt(mc);
+        BigDecimal root = new BigDecimal(ApfloatMath.root(new Apfloat(x, mc.getPrecision()), ROOT).toString(true));
+        p.check("(reciprocal|sqrt|root)MPF.*", () -> {
+            MPF xMPF = toMPF(x, context);
+            return matches(reciprocalMPF(xMPF, context), reciprocal, context)
+                    && matches(inverseRootMPF(xMPF, 1, full), reciprocal, context)
+                    && matches(inverseRootMPF(xMPF, 1, doubling), reciprocal, context)
+                    && matches(sqrtMPF(xMPF, context), sqrt, context)
+                    && matches(rootMPF(xMPF, 2, full), sqrt, context)
+                    && matches(rootMPF(xMPF, 2, doubling), sqrt, context)
+                    && matches(rootMPF(xMPF, ROOT, full), root, context)
+                    && matches(rootMPF(xMPF, ROOT, doubling), root, context);
+        }, NativeLibrary.JGMP);
+        p.check("(reciprocal|sqrt|root)BigDecimal.*", () -> {
+            BigDecimal xBigDecimal = new BigDecimal(x);
+            return matches(BigDecimal.ONE.divide(xBigDecimal, context.mathContext), reciprocal, context)
+                    && matches(inverseRootBigDecimal(xBigDecimal, 1, full), reciprocal, context)
+                    && matches(inverseRootBigDecimal(xBigDecimal, 1, doubling), reciprocal, context)
+                    && matches(xBigDecimal.sqrt(context.mathContext), sqrt, context)
+                    && matches(rootBigDecimal(xBigDecimal, 2, full), sqrt, context)
+                    && matches(rootBigDecimal(xBigDecimal, 2, doubling), sqrt, context)
+                    && matches(rootBigDecimal(xBigDecimal, ROOT, full), root, context)
+                    && matches(rootBigDecimal(xBigDecimal, ROOT, doubling), root, context);
+        });
+        p.check("(reciprocal|sqrt|root)Apfloat.*", () -> {
+            Apfloat xApfloat = new Apfloat(x, context.digits);
+            return matches(ApfloatMath.inverseRoot(xApfloat, 1), reciprocal, context)
+                    && matches(inverseRootApfloat(xApfloat, 1, full), reciprocal, context)
+                    && matches(inverseRootApfloat(xApfloat, 1, doubling), reciprocal, context)
+                    && matches(ApfloatMath.sqrt(xApfloat), sqrt, context)
+                    && matches(rootApfloat(xApfloat, 2, full), sqrt, context)
+                    && matches(rootApfloat(xApfloat, 2, doubling), sqrt, context)
+                    && matches(ApfloatMath.root(xApfloat, ROOT), root, context)
+                    && matches(rootApfloat(xApfloat, ROOT, full), root, context)
+                    && matches(rootApfloat(xApfloat, ROOT, doubling), root, context);
+        });
+        p.check("(reciprocal|sqrt|root)BigFloat.*", () -> {
+            BinaryMathContext c = context.binaryMathContext;
+            BigFloat xBigFloat = new BigFloat(x, c);
+            return matches(new BigFloat(1, c).divide(xBigFloat, c), reciprocal, context)
+                    && matches(inverseRootBigFloat(xBigFloat, 1, full), reciprocal, context)
+                    && matches(inverseRootBigFloat(xBigFloat, 1, doubling), reciprocal, context)
+                    && matches(xBigFloat.sqrt(c), sqrt, context)
+                    && matches(rootBigFloat(xBigFloat, 2, full), sqrt, context)
+                    && matches(rootBigFloat(xBigFloat, 2, doubling), sqrt, context)
+                    && matches(xBigFloat.root(ROOT, c), root, context)
+                    && matches(rootBigFloat(xBigFloat, ROOT, full), root, context)
+                    && matches(rootBigFloat(xBigFloat, ROOT, doubling), root, context);
+        }, NativeLibrary.MPFR);
+    }
+
+    /**
+     * Returns whether the decimal representation of result differs from the
+     * expected value by less than a few units in the last digit of the
+     * precision context.
+     */
+    static boolean matches(Object result, BigDecimal expected, PrecisionContext context) {
+        String s = result instanceof Apfloat ? ((Apfloat) result).toString(true) : result.toString();
+        BigDecimal error = new BigDecimal(s.replaceAll(",", ".")).subtract(expected).abs();
+        return error.compareTo(BigDecimal.ONE.movePointLeft(context.digits - 2)) < 0;
+    }
+
+    /**
+     * Returns the decimal representation of a random number in [1, 2) with the
+     * number of digits of the precision context.
+     */
+    static String input(PrecisionContext context, Random random) {
+        StringBuilder s = new StringBuilder("1.");
+        for (int i = 1; i < context.digits; i++)
+            s.append((char) ('0' + random.nextInt(10)));
+        return s.toString();
+    }
+
+    /**
+     * Returns the working precisions, in bits, of the Newton iterations needed
+     * to compute a result with the specified precision, starting from an
+     * approximation with {@code INITIAL_BITS} correct bits. Without doubling, all
+     * the iterations are performed at the target precision. With doubling, the
+     * precision of each iteration is about twice the precision of the previous
+     * one, plus some guard bits.
+     */
+    static int[] precisions(int prec, boolean doubling) {
+        int target = prec + GUARD;
+        int k = 1;
+        while ((long) INITIAL_BITS << k < target)
+            k++;
+        int[] precisions = new int[k];
+        for (int i = 0; i < k; i++)
+            precisions[i] = doubling ? Math.min(target, (target >> (k - 1 - i)) + GUARD) : target;
+        return precisions;
+    }
+
+    /**
+     * Returns the number of decimal digits corresponding to the specified number
+     * of bits.
+     */
+    static int digits(int bits) {
+        return (int) (bits / PrecisionContext.PRECISION_CONVERSION) + 1;
+    }
+
+    /* JGMP */
+    static MPF toMPF(String decimal, PrecisionContext context) {
+        int scale = decimal.length() - decimal.indexOf('.') - 1;
+        MPF x = MPF.init2(context.prec);
+        MPF den = MPF.init2(context.prec);
+        MPZ power = new MPZ();
+        power.powUiAssign(new MPZ(10), scale);
+        x.set(new MPZ(decimal.replace(".", "")));
+        den.set(power);
+        return x.divAssign(x, den);
+    }
+
+    /* JGMP */
+    public static MPF reciprocalMPF(MPF x, PrecisionContext context) {
+        MPF r = MPF.init2(context.prec);
+        return r.uiDivAssign(1, x);
+    }
+
+    /* JGMP */
+    public static MPF sqrtMPF(MPF x, PrecisionContext context) {
+        MPF r = MPF.init2(context.prec);
+        return r.sqrtAssign(x);
+    }
+
+    /* JGMP */
+    public static MPF inverseRootMPF(MPF x, int n, int[] precisions) {
+        MPF r = MPF.init2(precisions[0]);
+        MPF t = MPF.init2(precisions[0]);
+        r.set(Math.pow(x.getD(), -1.0 / n));
+        for (int prec : precisions) {
+            r.setPrec(prec);
+            t.setPrec(prec);
+            t.powUiAssign(r, n);
+            t.mulAssign(t, x);
+            t.uiSubAssign(1, t);
+            t.mulAssign(t, r);
+            t.divUiAssign(t, n);
+            r.addAssign(r, t);
+        }
+        return r;
+    }
+
+    /* JGMP */
+    public static MPF rootMPF(MPF x, int n, int[] precisions) {
+        MPF r = inverseRootMPF(x, n, precisions);
+        MPF t = MPF.init2(precisions[precisions.length - 1]);
+        t.powUiAssign(r, n - 1);
+        return r.mulAssign(t, x);
+    }
+
+    /* BigDecimal */
+    public static BigDecimal inverseRootBigDecimal(BigDecimal x, int n, int[] precisions) {
+        BigDecimal r = new BigDecimal(Math.pow(x.doubleValue(), -1.0 / n));
+        BigDecimal degree = BigDecimal.valueOf(n);
+        for (int prec : precisions) {
+            MathContext mc = new MathContext(digits(prec), RoundingMode.HALF_EVEN);
+            BigDecimal t = r.pow(n, mc).multiply(x, mc);
+            t = BigDecimal.ONE.subtract(t).multiply(r, mc).divide(degree, mc);
+            r = r.add(t, mc);
+        }
+        return r;
+    }
+
+    /* BigDecimal */
+    public static BigDecimal rootBigDecimal(BigDecimal x, int n, int[] precisions) {
+        MathContext mc = new MathContext(digits(precisions[precisions.length - 1]), RoundingMode.HALF_EVEN);
+        BigDecimal r = inverseRootBigDecimal(x, n, precisions);
+        return r.pow(n - 1, mc).multiply(x, mc);
+    }
+
+    /* Apfloat */
+    public static Apfloat inverseRootApfloat(Apfloat x, int n, int[] precisions) {
+        Apfloat r = new Apfloat(Math.pow(x.doubleValue(), -1.0 / n));
+        Apint degree = new Apint(n);
+        for (int prec : precisions) {
+            long digits = digits(prec);
+            r = r.precision(digits);
+            Apfloat t = ApfloatMath.pow(r, n).multiply(x.precision(digits));
+            t = Apint.ONE.subtract(t).multiply(r).divide(degree);
+            r = r.add(t);
+        }
+        return r;
+    }
+
+    /* Apfloat */
+    public static Apfloat rootApfloat(Apfloat x, int n, int[] precisions) {
+        Apfloat r = inverseRootApfloat(x, n, precisions);
+        return ApfloatMath.pow(r, n - 1).multiply(x.precision(r.precision()));
+    }
+
+    /* MPFR */
+    public static BigFloat inverseRootBigFloat(BigFloat x, int n, int[] precisions) {
+        BigFloat r = new BigFloat(Math.pow(x.doubleValue(), -1.0 / n), new BinaryMathContext(53, RoundingMode.HALF_EVEN));
+        for (int prec : precisions) {
+            BinaryMathContext c = new BinaryMathContext(prec, RoundingMode.HALF_EVEN);
+            r = r.round(c);
+            BigFloat t = r.pow(new BigFloat(n, c), c).multiply(x, c);
+            t = new BigFloat(1, c).subtract(t, c).multiply(r, c).divide(new BigFloat(n, c), c);
+            r = r.add(t, c);
+        }
+        return r;
+    }
+
+    /* MPFR */
+    public static BigFloat rootBigFloat(BigFloat x, int n, int[] precisions) {
+        BinaryMathContext c = new BinaryMathContext(precisions[precisions.length - 1], RoundingMode.HALF_EVEN);
+        BigFloat r = inverseRootBigFloat(x, n, precisions);
+        return r.pow(new BigFloat(n - 1, c), c).multiply(x, c);
+    }
+
+}
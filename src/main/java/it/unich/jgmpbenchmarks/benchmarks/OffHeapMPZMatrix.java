@@ -0,0 +1,284 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.benchmarks;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import it.unich.jgmp.MPZ;
+
+/**
+ * A dense matrix of big integers stored in a single direct buffer, instead of
+ * one Java object and one native allocation for each cell. Cells are stored in
+ * row-major order, each in a slot of fixed size made of a header with the
+ * signed number of bytes of the value, followed by the bytes of the absolute
+ * value, least significant first.
+ *
+ * Cells are converted to MPZ only when needed, with the {@code mpz_import} and
+ * {@code mpz_export} functions of GMP, while BigIntegers are converted in Java.
+ * The multiplication works on square tiles, so that only three tiles of MPZs
+ * are alive at any time. Instances are not thread safe.
+ */
+public class OffHeapMPZMatrix {
+
+    /**
+     * Parameters of {@code mpz_import} and {@code mpz_export}: single bytes,
+     * least significant first, no nails.
+     */
+    final static int ORDER = -1, SIZE = 1, ENDIAN = 0;
+
+    /**
+     * Size of the header of each cell.
+     */
+    final static int HEADER = Integer.BYTES;
+
+    /**
+     * Side of the square tiles used by the multiplication.
+     */
+    final static int TILE = 32;
+
+    public final int rows, columns;
+
+    /**
+     * Maximum number of bytes of the absolute value of a cell.
+     */
+    public final int cellBytes;
+
+    final int stride;
+
+    final ByteBuffer data;
+
+    /**
+     * Builds a zero matrix whose cells may hold values of at most the specified
+     * number of bits.
+     */
+    public OffHeapMPZMatrix(int rows, int columns, long bits) {
+        if (rows <= 0 || columns <= 0 || bits <= 0)
+            throw new IllegalArgumentException("Invalid matrix shape");
+        long cellBytes = (bits + 7) / 8;
+        long stride = (HEADER + cellBytes + 7) & ~7L;
+        if (stride * rows * columns > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Matrix too large for a direct buffer");
+        this.rows = rows;
+        this.columns = columns;
+        this.cellBytes = (int) cellBytes;
+        this.stride = (int) stride;
+        this.data = ByteBuffer.allocateDirect((int) (stride * rows * columns)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns a matrix with the same values of a, whose rows must all have the
+     * same length.
+     */
+    public static OffHeapMPZMatrix of(MPZ[][] a) {
+        long bits = 1;
+        for (MPZ[] row : a)
+            bits = Math.max(bits, PackedMPZVector.bits(row));
+        OffHeapMPZMatrix m = new OffHeapMPZMatrix(a.length, a[0].length, bits);
+        for (int i = 0; i < m.rows; i++)
+            for (int j = 0; j < m.columns; j++)
+                m.set(i, j, a[i][j]);
+        return m;
+    }
+
+    /**
+     * Returns a matrix with the same values of a, whose rows must all have the
+     * same length.
+     */
+    public static OffHeapMPZMatrix of(BigInteger[][] a) {
+        long bits = 1;
+        for (BigInteger[] row : a)
+            for (BigInteger x : row)
+                bits = Math.max(bits, x.bitLength());
+        OffHeapMPZMatrix m = new OffHeapMPZMatrix(a.length, a[0].length, bits);
+        for (int i = 0; i < m.rows; i++)
+            for (int j = 0; j < m.columns; j++)
+                m.set(i, j, a[i][j]);
+        return m;
+    }
+
+    /**
+     * Returns the size in bytes of the buffer.
+     */
+    public long byteSize() {
+        return data.capacity();
+    }
+
+    int offset(int i, int j) {
+        if (i < 0 || i >= rows || j < 0 || j >= columns)
+            throw new IndexOutOfBoundsException("Cell (" + i + ", " + j + ") out of bounds");
+        return (i * columns + j) * stride;
+    }
+
+    /**
+     * Returns a buffer on the bytes of the value of a cell.
+     */
+    ByteBuffer bytes(int offset, int length) {
+        ByteBuffer b = data.duplicate();
+        b.position(offset + HEADER);
+        b.limit(offset + HEADER + length);
+        return b.slice();
+    }
+
+    /**
+     * Sets the result to the value of a cell.
+     */
+    public MPZ get(int i, int j, MPZ result) {
+        int offset = offset(i, j);
+        int header = data.getInt(offset);
+        if (header == 0)
+            return result.set(0);
+        result.bufferImportAssign(ORDER, SIZE, ENDIAN, 0, bytes(offset, Math.abs(header)));
+        if (header < 0)
+            result.negAssign(result);
+        return result;
+    }
+
+    public void set(int i, int j, MPZ x) {
+        int offset = offset(i, j);
+        int sign = x.sgn();
+        if (sign == 0) {
+            data.putInt(offset, 0);
+            return;
+        }
+        ByteBuffer b = x.bufferExport(ORDER, SIZE, ENDIAN, 0);
+        int length = b.remaining();
+        if (length > cellBytes)
+            throw new IllegalArgumentException("Value does not fit in a cell");
+        data.putInt(offset, sign < 0 ? -length : length);
+        ByteBuffer cell = data.duplicate();
+        cell.position(offset + HEADER);
+        cell.put(b);
+    }
+
+    public BigInteger getBigInteger(int i, int j) {
+        int offset = offset(i, j);
+        int header = data.getInt(offset);
+        int length = Math.abs(header);
+        byte[] magnitude = new byte[length];
+        for (int k = 0; k < length; k++)
+            magnitude[length - 1 - k] = data.get(offset + HEADER + k);
+        return new BigInteger(Integer.signum(header), magnitude);
+    }
+
+    public void set(int i, int j, BigInteger x) {
+        int offset = offset(i, j);
+        byte[] bytes = x.abs().toByteArray();
+        int skip = bytes[0] == 0 ? 1 : 0;
+        int length = bytes.length - skip;
+        if (length > cellBytes)
+            throw new IllegalArgumentException("Value does not fit in a cell");
+        data.putInt(offset, x.signum() < 0 ? -length : length);
+        for (int k = 0; k < length; k++)
+            data.put(offset + HEADER + k, bytes[bytes.length - 1 - k]);
+    }
+
+    /**
+     * Stores the i-th row in the result, which must contain non-null MPZs.
+     */
+    public MPZ[] row(int i, MPZ[] result) {
+        for (int j = 0; j < columns; j++)
+            get(i, j, result[j]);
+        return result;
+    }
+
+    /**
+     * Stores the j-th column in the result, which must contain non-null MPZs.
+     */
+    public MPZ[] column(int j, MPZ[] result) {
+        for (int i = 0; i < rows; i++)
+            get(i, j, result[i]);
+        return result;
+    }
+
+    /**
+     * Returns the matrix as an array of MPZs.
+     */
+    public MPZ[][] toMPZ() {
+        MPZ[][] result = new MPZ[rows][columns];
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < columns; j++)
+                result[i][j] = get(i, j, new MPZ());
+        return result;
+    }
+
+    /**
+     * Returns the matrix as an array of BigIntegers.
+     */
+    public BigInteger[][] toBigInteger() {
+        BigInteger[][] result = new BigInteger[rows][columns];
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < columns; j++)
+                result[i][j] = getBigInteger(i, j);
+        return result;
+    }
+
+    static MPZ[][] tile() {
+        MPZ[][] t = new MPZ[TILE][TILE];
+        for (MPZ[] row : t)
+            for (int j = 0; j < TILE; j++)
+                row[j] = new MPZ();
+        return t;
+    }
+
+    /**
+     * Returns the product of this matrix and b. Each tile of the operands is
+     * converted to MPZ once for each tile of the result which needs it.
+     */
+    public OffHeapMPZMatrix multiply(OffHeapMPZMatrix b) {
+        if (columns != b.rows)
+            throw new IllegalArgumentException("Incompatible matrix dimensions");
+        long bits = 8L * (cellBytes + b.cellBytes) + 32 - Integer.numberOfLeadingZeros(columns);
+        OffHeapMPZMatrix c = new OffHeapMPZMatrix(rows, b.columns, bits);
+        MPZ[][] at = tile(), bt = tile(), ct = tile();
+        for (int ii = 0; ii < rows; ii += TILE) {
+            int ni = Math.min(TILE, rows - ii);
+            for (int jj = 0; jj < b.columns; jj += TILE) {
+                int nj = Math.min(TILE, b.columns - jj);
+                for (int i = 0; i < ni; i++)
+                    for (int j = 0; j < nj; j++)
+                        ct[i][j].set(0);
+                for (int kk = 0; kk < columns; kk += TILE) {
+                    int nk = Math.min(TILE, columns - kk);
+                    for (int i = 0; i < ni; i++)
+                        for (int k = 0; k < nk; k++)
+                            get(ii + i, kk + k, at[i][k]);
+                    // the tile of b is stored transposed
+                    for (int k = 0; k < nk; k++)
+                        for (int j = 0; j < nj; j++)
+                            b.get(kk + k, jj + j, bt[j][k]);
+                    for (int i = 0; i < ni; i++) {
+                        MPZ[] ai = at[i];
+                        for (int j = 0; j < nj; j++) {
+                            MPZ sum = ct[i][j];
+                            MPZ[] btj = bt[j];
+                            for (int k = 0; k < nk; k++)
+                                sum.addmulAssign(ai[k], btj[k]);
+                        }
+                    }
+                }
+                for (int i = 0; i < ni; i++)
+                    for (int j = 0; j < nj; j++)
+                        c.set(ii + i, jj + j, ct[i][j]);
+            }
+        }
+        return c;
+    }
+
+}
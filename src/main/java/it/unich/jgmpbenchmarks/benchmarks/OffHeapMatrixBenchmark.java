@@ -0,0 +1,252 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.benchmarks;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.RunnerException;
+
+import it.unich.jgmp.MPZ;
+import it.unich.jgmp.RandState;
+import it.unich.jgmpbenchmarks.launcher.Launcher;
+import it.unich.jgmpbenchmarks.launcher.NativeLibrary;
+import it.unich.jgmpbenchmarks.launcher.Preflight;
+import it.unich.jgmpbenchmarks.profilers.NativeMemoryProfiler;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 5, jvmArgs = { "-Xms4G", "-Xmx4G" })
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+
+/**
+ * Benchmarks for JGMP: storage of big integer matrices as MPZ[][], as
+ * BigInteger[][] and as a contiguous {@link OffHeapMPZMatrix}.
+ *
+ * The generate kernels fill a large matrix with random numbers, and are meant
+ * to be run with the GC and native memory profilers, which report the heap and
+ * native footprint of each representation. Direct buffers are not allocated by
+ * GMP, hence the off-heap kernels record the {@link OffHeapMPZMatrix#byteSize}
+ * of their results, which the native profiler reports as
+ * {@code native.direct.norm}. The sum kernels traverse a large
+ * matrix row by row, and the multiply kernels compare the cache-blocked
+ * multiplication of arrays with the tiled multiplication of off-heap matrices.
+ */
+public class OffHeapMatrixBenchmark {
+
+    /**
+     * The shape of the generated matrices. It holds no matrices, which would
+     * otherwise be live while the generate kernels are measured.
+     */
+    @State(Scope.Benchmark)
+    public static class GenerateState {
+        @Param({ "100", "1000" })
+        public int side;
+
+        @Param({ "64", "1024" })
+        public int bits;
+    }
+
+    @State(Scope.Benchmark)
+    public static class StorageState {
+        @Param({ "100", "1000" })
+        public int side;
+
+        @Param({ "64", "1024" })
+        public int bits;
+
+        BigInteger[][] aBigInteger;
+        MPZ[][] aMPZ;
+        OffHeapMPZMatrix aOffHeap;
+
+        @Setup
+        public void setup() {
+            aBigInteger = BenchmarkUtils.randomMatrix(side, side, bits, new Random(side * 31 + bits));
+            aMPZ = BenchmarkUtils.toMPZ(aBigInteger);
+            aOffHeap = OffHeapMPZMatrix.of(aBigInteger);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class MultiplyState {
+        @Param({ "10", "50", "100" })
+        public int size;
+
+        @Param({ "64", "1024" })
+        public int bits;
+
+        BigInteger[][] aBigInteger, bBigInteger;
+        MPZ[][] aMPZ, bMPZ;
+        OffHeapMPZMatrix aOffHeap, bOffHeap;
+
+        @Setup
+        public void setup() {
+            Random random = new Random(size * 31 + bits);
+            aBigInteger = BenchmarkUtils.randomMatrix(size, size, bits, random);
+            bBigInteger = BenchmarkUtils.randomMatrix(size, size, bits, random);
+            aMPZ = BenchmarkUtils.toMPZ(aBigInteger);
+            bMPZ = BenchmarkUtils.toMPZ(bBigInteger);
+            aOffHeap = OffHeapMPZMatrix.of(aBigInteger);
+            bOffHeap = OffHeapMPZMatrix.of(bBigInteger);
+        }
+    }
+
+    @Benchmark
+    public MPZ[][] generateMPZ(GenerateState s) {
+        return generateMPZ(s.side, s.bits);
+    }
+
+    @Benchmark
+    public BigInteger[][] generateBigInteger(GenerateState s) {
+        return generateBigInteger(s.side, s.bits);
+    }
+
+    @Benchmark
+    public OffHeapMPZMatrix generateOffHeap(GenerateState s) {
+        OffHeapMPZMatrix a = generateOffHeap(s.side, s.bits);
+        NativeMemoryProfiler.recordDirect(a.byteSize());
+        return a;
+    }
+
+    @Benchmark
+    public MPZ sumMPZ(StorageState s) {
+        return sumMPZ(s.aMPZ);
+    }
+
+    @Benchmark
+    public BigInteger sumBigInteger(StorageState s) {
+        return sumBigInteger(s.aBigInteger);
+    }
+
+    @Benchmark
+    public MPZ sumOffHeap(StorageState s) {
+        return sumOffHeap(s.aOffHeap);
+    }
+
+    @Benchmark
+    public MPZ[][] multiplyMPZ(MultiplyState s) {
+        return MatrixMultiplicationBenchmark.matrixMultiplicationMPZBlocked(s.aMPZ, s.bMPZ);
+    }
+
+    @Benchmark
+    public BigInteger[][] multiplyBigInteger(MultiplyState s) {
+        return MatrixMultiplicationBenchmark.matrixMultiplicationBigIntegerBlocked(s.aBigInteger, s.bBigInteger);
+    }
+
+    @Benchmark
+    public OffHeapMPZMatrix multiplyOffHeap(MultiplyState s) {
+        OffHeapMPZMatrix c = s.aOffHeap.multiply(s.bOffHeap);
+        NativeMemoryProfiler.recordDirect(c.byteSize());
+        return c;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Launcher.run(OffHeapMatrixBenchmark.class, args);
+    }
+
+    public static void preflight(Preflight p) {
+        p.size("side", "size");
+        Random random = new Random(0);
+        BigInteger[][] a = BenchmarkUtils.randomMatrix(40, 70, 100, random);
+        BigInteger[][] b = BenchmarkUtils.randomMatrix(70, 35, 100, random);
+        a[0][0] = BigInteger.ZERO;
+        a[1][1] = a[1][1].negate();
+        BigInteger[][] res = MatrixMultiplicationBenchmark.matrixMultiplicationBigInteger(a, b);
+        p.check("generateBigInteger|sumBigInteger|multiplyBigInteger",
+                () -> Arrays.deepEquals(OffHeapMPZMatrix.of(a).toBigInteger(), a)
+                        && sumBigInteger(a).equals(sumBigInteger(OffHeapMPZMatrix.of(a).toBigInteger())));
+        if (p.require(".*MPZ|.*OffHeap", NativeLibrary.JGMP)) {
+            MPZ[][] aMPZ = BenchmarkUtils.toMPZ(a);
+            MPZ[][] resMPZ = BenchmarkUtils.toMPZ(res);
+            p.check("generateMPZ|sumMPZ|multiplyMPZ", () -> sumMPZ(aMPZ).equals(new MPZ(sumBigInteger(a).toString())));
+            p.check("generateOffHeap|sumOffHeap",
+                    () -> Arrays.deepEquals(OffHeapMPZMatrix.of(aMPZ).toMPZ(), aMPZ)
+                            && Arrays.deepEquals(OffHeapMPZMatrix.of(aMPZ).toBigInteger(), a)
+                            && sumOffHeap(OffHeapMPZMatrix.of(a)).equals(sumMPZ(aMPZ))
+                            && generateOffHeap(10, 100).toBigInteger()[9][9].bitLength() <= 100);
+            p.check("multiplyOffHeap", () -> Arrays
+                    .deepEquals(OffHeapMPZMatrix.of(a).multiply(OffHeapMPZMatrix.of(b)).toMPZ(), resMPZ));
+        }
+        p.profiler(GCProfiler.class);
+        p.profiler(NativeMemoryProfiler.class);
+    }
+
+    /* JGMP */
+    public static MPZ[][] generateMPZ(int side, int bits) {
+        RandState state = new RandState();
+        state.seedUi(side);
+        MPZ[][] a = new MPZ[side][side];
+        for (int i = 0; i < side; i++)
+            for (int j = 0; j < side; j++)
+                a[i][j] = MPZ.urandomb(state, bits);
+        return a;
+    }
+
+    /* BigInteger */
+    public static BigInteger[][] generateBigInteger(int side, int bits) {
+        return BenchmarkUtils.randomMatrix(side, side, bits, new Random(side));
+    }
+
+    /* JGMP */
+    public static OffHeapMPZMatrix generateOffHeap(int side, int bits) {
+        RandState state = new RandState();
+        state.seedUi(side);
+        OffHeapMPZMatrix a = new OffHeapMPZMatrix(side, side, bits);
+        MPZ x = new MPZ();
+        for (int i = 0; i < side; i++)
+            for (int j = 0; j < side; j++)
+                a.set(i, j, x.urandombAssign(state, bits));
+        return a;
+    }
+
+    /* JGMP */
+    public static MPZ sumMPZ(MPZ[][] a) {
+        MPZ sum = new MPZ();
+        for (MPZ[] row : a)
+            for (MPZ x : row)
+                sum.addAssign(sum, x);
+        return sum;
+    }
+
+    /* BigInteger */
+    public static BigInteger sumBigInteger(BigInteger[][] a) {
+        BigInteger sum = BigInteger.ZERO;
+        for (BigInteger[] row : a)
+            for (BigInteger x : row)
+                sum = sum.add(x);
+        return sum;
+    }
+
+    /* JGMP */
+    public static MPZ sumOffHeap(OffHeapMPZMatrix a) {
+        MPZ sum = new MPZ();
+        MPZ[] row = new MPZ[a.columns];
+        for (int j = 0; j < a.columns; j++)
+            row[j] = new MPZ();
+        for (int i = 0; i < a.rows; i++)
+            for (MPZ x : a.row(i, row))
+                sum.addAssign(sum, x);
+        return sum;
+    }
+
+}
@@ -0,0 +1,229 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.benchmarks;
+
+import it.unich.jgmp.MPZ;
+
+/**
+ * A vector of non-negative integers packed in a single MPZ, where the i-th
+ * element occupies the bits from i * slot to (i + 1) * slot. An operation on
+ * the whole vector is then a constant or logarithmic number of calls to GMP,
+ * instead of one call per element:
+ *
+ * <ul>
+ * <li>elementwise addition and axpy are a single addition or multiply-add;</li>
+ * <li>the dot product of a vector with a reversed vector is the middle slot of
+ * their product (Kronecker substitution);</li>
+ * <li>the sum of the elements folds the upper half of the slots on the lower
+ * half.</li>
+ * </ul>
+ *
+ * The slots must be wide enough for the results, otherwise carries spill into
+ * the next slot: see {@link #slot}. Packing and unpacking still take a call per
+ * element, so packed vectors pay off when they are reused. The elementwise
+ * product has no packed form. Instances are not thread safe.
+ */
+public class PackedMPZVector {
+
+    public final int length;
+
+    public final long slot;
+
+    public final MPZ value = new MPZ();
+
+    /**
+     * Scratch MPZs for packing, unpacking and products, one for each level of
+     * recursion.
+     */
+    private MPZ[] scratch = new MPZ[0];
+
+    /**
+     * Builds a zero vector.
+     */
+    public PackedMPZVector(int length, long slot) {
+        if (length <= 0 || slot <= 0)
+            throw new IllegalArgumentException("Invalid vector shape");
+        this.length = length;
+        this.slot = slot;
+    }
+
+    /**
+     * Returns the number of bits of a slot which holds sums of the specified
+     * number of terms, each of the specified number of bits.
+     */
+    public static long slot(long bits, int terms) {
+        return bits + 32 - Integer.numberOfLeadingZeros(Math.max(terms - 1, 0));
+    }
+
+    /**
+     * Returns the maximum number of bits of the elements of a.
+     */
+    public static long bits(MPZ[] a) {
+        long bits = 0;
+        for (MPZ x : a)
+            bits = Math.max(bits, x.sizeinbase(2));
+        return bits;
+    }
+
+    MPZ scratch(int depth) {
+        if (depth >= scratch.length) {
+            MPZ[] s = new MPZ[depth + 1];
+            System.arraycopy(scratch, 0, s, 0, scratch.length);
+            for (int i = scratch.length; i <= depth; i++)
+                s[i] = new MPZ();
+            scratch = s;
+        }
+        return scratch[depth];
+    }
+
+    /**
+     * Packs the elements of a, which must be non-negative and fit in a slot.
+     */
+    public PackedMPZVector pack(MPZ[] a) {
+        return pack(a, false);
+    }
+
+    /**
+     * Packs the elements of a in reverse order, so that a[0] is in the last slot.
+     */
+    public PackedMPZVector packReversed(MPZ[] a) {
+        return pack(a, true);
+    }
+
+    PackedMPZVector pack(MPZ[] a, boolean reversed) {
+        if (a.length != length)
+            throw new IllegalArgumentException("Incompatible vector length");
+        pack(a, reversed, 0, length, value, 0);
+        return this;
+    }
+
+    /**
+     * Sets r to the packing of the slots in [from, to), merging halves so that
+     * the cost is O(n log n) instead of the O(n^2) of Horner's rule.
+     */
+    void pack(MPZ[] a, boolean reversed, int from, int to, MPZ r, int depth) {
+        if (to - from == 1) {
+            MPZ x = a[reversed ? length - 1 - from : from];
+            if (x.sgn() < 0 || x.sizeinbase(2) > slot)
+                throw new IllegalArgumentException("Element does not fit in a slot");
+            r.set(x);
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        MPZ high = scratch(depth);
+        pack(a, reversed, mid, to, high, depth + 1);
+        pack(a, reversed, from, mid, r, depth + 1);
+        high.mul2ExpAssign(high, (mid - from) * slot);
+        r.addAssign(r, high);
+    }
+
+    /**
+     * Stores the elements in the result, which must contain non-null MPZs.
+     */
+    public void unpack(MPZ[] result) {
+        if (result.length != length)
+            throw new IllegalArgumentException("Incompatible vector length");
+        unpack(value, 0, length, result, 0);
+    }
+
+    void unpack(MPZ v, int from, int to, MPZ[] result, int depth) {
+        if (to - from == 1) {
+            result[from].fdivr2ExpAssign(v, slot);
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        MPZ part = scratch(depth);
+        part.fdivq2ExpAssign(v, (mid - from) * slot);
+        unpack(part, mid, to, result, depth + 1);
+        part.fdivr2ExpAssign(v, (mid - from) * slot);
+        unpack(part, from, mid, result, depth + 1);
+    }
+
+    /**
+     * Sets the result to the i-th element.
+     */
+    public MPZ get(int i, MPZ result) {
+        result.fdivq2ExpAssign(value, i * slot);
+        return result.fdivr2ExpAssign(result, slot);
+    }
+
+    void checkShape(PackedMPZVector x) {
+        if (x.length != length || x.slot != slot)
+            throw new IllegalArgumentException("Incompatible packed vectors");
+    }
+
+    /**
+     * Sets this to the elementwise sum of a and b. Slots need one more bit than
+     * the elements.
+     */
+    public PackedMPZVector addAssign(PackedMPZVector a, PackedMPZVector b) {
+        checkShape(a);
+        checkShape(b);
+        value.addAssign(a.value, b.value);
+        return this;
+    }
+
+    /**
+     * Sets this to alpha * x + y, where alpha is non-negative. Slots need the
+     * bits of alpha plus one more bit than the elements.
+     */
+    public PackedMPZVector axpyAssign(MPZ alpha, PackedMPZVector x, PackedMPZVector y) {
+        checkShape(x);
+        checkShape(y);
+        if (alpha.sgn() < 0)
+            throw new IllegalArgumentException("Negative scale factor");
+        if (y == this) {
+            value.addmulAssign(x.value, alpha);
+        } else {
+            MPZ t = scratch(0);
+            t.mulAssign(x.value, alpha);
+            value.addAssign(t, y.value);
+        }
+        return this;
+    }
+
+    /**
+     * Sets the result to the dot product of this vector with a vector packed by
+     * {@link #packReversed}. Slots need the bits of the two elements plus log2 of
+     * the length.
+     */
+    public MPZ dot(PackedMPZVector reversed, MPZ result) {
+        checkShape(reversed);
+        MPZ t = scratch(0);
+        t.mulAssign(value, reversed.value);
+        result.fdivq2ExpAssign(t, (length - 1) * slot);
+        return result.fdivr2ExpAssign(result, slot);
+    }
+
+    /**
+     * Sets the result to the sum of the elements. Slots need log2 of the length
+     * more bits than the elements.
+     */
+    public MPZ sum(MPZ result) {
+        MPZ high = scratch(0);
+        result.set(value);
+        for (int n = length; n > 1; n = (n + 1) / 2) {
+            long shift = ((n + 1) / 2) * slot;
+            high.fdivq2ExpAssign(result, shift);
+            result.fdivr2ExpAssign(result, shift);
+            result.addAssign(result, high);
+        }
+        return result;
+    }
+
+}
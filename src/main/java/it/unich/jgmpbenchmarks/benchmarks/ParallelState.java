@@ -0,0 +1,46 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.benchmarks;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * State for the parallel benchmarks, holding a fork/join pool with the
+ * requested parallelism level. Since the parameter belongs to this state, it
+ * only multiplies the runs of the benchmarks which actually use the pool.
+ */
+@State(Scope.Benchmark)
+public class ParallelState {
+
+    @Param({ "1", "2", "4", "8" })
+    public int parallelism;
+
+    public ForkJoinPool pool;
+
+    @Setup
+    public void setup() {
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,500 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.benchmarks;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BinaryOperator;
+
+import org.apfloat.Apfloat;
+import org.apfloat.ApfloatMath;
+import org.apfloat.Apint;
+import org.javatuples.Triplet;
+import org.kframework.mpfr.BigFloat;
+import org.kframework.mpfr.BinaryMathContext;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.RunnerException;
+
+import it.unich.jgmp.MPF;
+import it.unich.jgmp.MPZ;
+import it.unich.jgmpbenchmarks.launcher.Launcher;
+import it.unich.jgmpbenchmarks.launcher.NativeLibrary;
+import it.unich.jgmpbenchmarks.launcher.Preflight;
+
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 3, jvmArgs = { "-Xms4G", "-Xmx4G" })
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+
+/**
+ * Benchmarks for JGMP: computing the digits of pi with the Chudnovsky series
+ * and the binary splitting algorithm.
+ *
+ * The terms in the range [a, b) are summed exactly as a triple (P, Q, T) of
+ * integers, and pi = 426880 sqrt(10005) Q / T, where the square root and the
+ * division are the only operations performed with floats. The incremental
+ * kernels produce approximations with digits / 2^k digits, for decreasing k,
+ * extending the triple of the previous approximation with the new terms
+ * instead of starting over. Each operation is slow enough to be timed alone.
+ */
+public class PiDigitsBenchmark {
+
+    /**
+     * Number of decimal digits contributed by each term of the series, i.e.,
+     * log10(640320^3 / 1728).
+     */
+    final static double DIGITS_PER_TERM = 14.181647462725477;
+
+    /**
+     * The constant 640320^3 / 24, which appears in the denominators of the
+     * terms.
+     */
+    final static long C3_OVER_24 = 10939058860032000L;
+
+    /**
+     * Number of digits of the first approximation of the incremental kernels.
+     */
+    final static int INCREMENTAL_FIRST = 1000;
+
+    @Param({ "1000", "10000", "100000", "1000000", "10000000" })
+    public int digits;
+
+    @Benchmark
+    public MPF piMPF() {
+        return piMPF(digits);
+    }
+
+    @Benchmark
+    public MPF piMPFParallel(ParallelState state) {
+        return piMPFParallel(digits, state.pool);
+    }
+
+    @Benchmark
+    public MPF piMPFIncremental() {
+        return piMPFIncremental(digits);
+    }
+
+    @Benchmark
+    public MPZ piMPZ() {
+        return piMPZ(digits);
+    }
+
+    @Benchmark
+    public BigDecimal piBigDecimal() {
+        return piBigDecimal(digits);
+    }
+
+    @Benchmark
+    public BigDecimal piBigDecimalParallel(ParallelState state) {
+        return piBigDecimalParallel(digits, state.pool);
+    }
+
+    @Benchmark
+    public BigDecimal piBigDecimalIncremental() {
+        return piBigDecimalIncremental(digits);
+    }
+
+    @Benchmark
+    public Apfloat piApfloat() {
+        return piApfloat(digits);
+    }
+
+    @Benchmark
+    public Apfloat piApfloatParallel(ParallelState state) {
+        return piApfloatParallel(digits, state.pool);
+    }
+
+    @Benchmark
+    public Apfloat piApfloatIncremental() {
+        return piApfloatIncremental(digits);
+    }
+
+    @Benchmark
+    public BigFloat piBigFloat() {
+        return piBigFloat(digits);
+    }
+
+    @Benchmark
+    public BigFloat piBigFloatParallel(ParallelState state) {
+        return piBigFloatParallel(digits, state.pool);
+    }
+
+    @Benchmark
+    public BigFloat piBigFloatIncremental() {
+        return piBigFloatIncremental(digits);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Launcher.run(PiDigitsBenchmark.class, args);
+    }
+
+    public static void preflight(Preflight p) {
+        p.size("digits");
+        String res = "3.14159265358979323846264338327950288419";
+        p.check("piMPF", () -> piMPF(100).toString().startsWith(res), NativeLibrary.JGMP);
+        p.check("piMPFParallel", () -> piMPFParallel(5000, p.pool()).toString().startsWith(res), NativeLibrary.JGMP);
+        p.check("piMPFIncremental", () -> piMPFIncremental(5000).toString().equals(piMPF(5000).toString()),
+                NativeLibrary.JGMP);
+        p.check("piMPZ", () -> piMPZ(39).toString().equals(res.replace(".", ""))
+                && piMPZ(5000).toString().equals(piBigDecimal(5000).toString().replace(".", "").substring(0, 5000)),
+                NativeLibrary.JGMP);
+        p.check("piBigDecimal", () -> piBigDecimal(100).toString().startsWith(res));
+        p.check("piBigDecimalParallel", () -> piBigDecimalParallel(5000, p.pool()).toString().startsWith(res));
+        p.check("piBigDecimalIncremental", () -> piBigDecimalIncremental(5000).equals(piBigDecimal(5000)));
+        p.check("piApfloat", () -> piApfloat(100).toString().startsWith(res));
+        p.check("piApfloatParallel", () -> piApfloatParallel(5000, p.pool()).toString().startsWith(res));
+        p.check("piApfloatIncremental", () -> piApfloatIncremental(5000).equals(piApfloat(5000)));
+        p.check("piBigFloat", () -> piBigFloat(100).toString().replaceAll(",", ".").startsWith(res),
+                NativeLibrary.MPFR);
+        p.check("piBigFloatParallel",
+                () -> piBigFloatParallel(5000, p.pool()).toString().replaceAll(",", ".").startsWith(res),
+                NativeLibrary.MPFR);
+        p.check("piBigFloatIncremental", () -> piBigFloatIncremental(5000).equals(piBigFloat(5000)),
+                NativeLibrary.MPFR);
+    }
+
+    /**
+     * Returns the number of terms of the series needed to get the specified
+     * number of decimal digits.
+     */
+    public static int terms(int digits) {
+        return (int) (digits / DIGITS_PER_TERM) + 2;
+    }
+
+    /**
+     * Returns the number of digits of the approximations computed by the
+     * incremental kernels, in increasing order: digits / 2^k for the k's such
+     * that the result is at least {@code INCREMENTAL_FIRST}, or digits alone
+     * if it is smaller.
+     */
+    static int[] stages(int digits) {
+        int k = 0;
+        while (k < 30 && digits >> (k + 1) >= INCREMENTAL_FIRST)
+            k++;
+        int[] stages = new int[k + 1];
+        for (int i = 0; i <= k; i++)
+            stages[i] = digits >> (k - i);
+        return stages;
+    }
+
+    /**
+     * A sequential binary splitting algorithm, computing the triple (P, Q, T)
+     * for the terms in the range [a, b).
+     */
+    @FunctionalInterface
+    interface BinarySplitting<T> {
+        Triplet<T, T, T> split(int a, int b);
+    }
+
+    /**
+     * Fork/join task for the binary splitting algorithm. Ranges shorter than
+     * {@code EulerNumberDigitsBenchmark.PARALLEL_THRESHOLD} are delegated to the
+     * sequential algorithm.
+     */
+    static class SplitTask<T> extends RecursiveTask<Triplet<T, T, T>> {
+        private static final long serialVersionUID = 1L;
+
+        final int a, b;
+        final BinarySplitting<T> sequential;
+        final BinaryOperator<Triplet<T, T, T>> combine;
+
+        SplitTask(int a, int b, BinarySplitting<T> sequential, BinaryOperator<Triplet<T, T, T>> combine) {
+            this.a = a;
+            this.b = b;
+            this.sequential = sequential;
+            this.combine = combine;
+        }
+
+        @Override
+        protected Triplet<T, T, T> compute() {
+            if (b - a < EulerNumberDigitsBenchmark.PARALLEL_THRESHOLD)
+                return sequential.split(a, b);
+            int m = (a + b) >>> 1;
+            SplitTask<T> left = new SplitTask<>(a, m, sequential, combine);
+            SplitTask<T> right = new SplitTask<>(m, b, sequential, combine);
+            left.fork();
+            Triplet<T, T, T> r = right.compute();
+            return combine.apply(left.join(), r);
+        }
+    }
+
+    /**
+     * Extends the triple pqt for the terms in [0, from) to the terms in [0, to).
+     * The triple is null when from is 0. The old triple may be destroyed.
+     */
+    static <T> Triplet<T, T, T> extend(Triplet<T, T, T> pqt, int from, int to, BinarySplitting<T> split,
+            BinaryOperator<Triplet<T, T, T>> combine) {
+        if (pqt == null)
+            return split.split(0, to);
+        if (from == to)
+            return pqt;
+        return combine.apply(pqt, split.split(from, to));
+    }
+
+    /* JGMP */
+    public static Triplet<MPZ, MPZ, MPZ> combineMPZ(Triplet<MPZ, MPZ, MPZ> left, Triplet<MPZ, MPZ, MPZ> right) {
+        MPZ p = left.getValue0();
+        MPZ q = left.getValue1();
+        MPZ t = left.getValue2();
+        t.mulAssign(t, right.getValue1());
+        t.addmulAssign(p, right.getValue2());
+        p.mulAssign(p, right.getValue0());
+        q.mulAssign(q, right.getValue1());
+        return left;
+    }
+
+    /* JGMP */
+    public static Triplet<MPZ, MPZ, MPZ> splitMPZ(int a, int b) {
+        if (b - a == 1) {
+            if (a == 0)
+                return Triplet.with(new MPZ(1), new MPZ(1), new MPZ(13591409));
+            MPZ p = new MPZ((6L * a - 5) * (2L * a - 1));
+            p.mulAssign(p, 6L * a - 1);
+            MPZ q = new MPZ((long) a * a * a);
+            q.mulAssign(q, C3_OVER_24);
+            MPZ t = new MPZ();
+            t.mulAssign(p, 13591409 + 545140134L * a);
+            if ((a & 1) == 1)
+                t.negAssign(t);
+            return Triplet.with(p, q, t);
+        }
+        int m = (a + b) >>> 1;
+        return combineMPZ(splitMPZ(a, m), splitMPZ(m, b));
+    }
+
+    /* JGMP */
+    public static Triplet<MPZ, MPZ, MPZ> splitMPZParallel(int digits, ForkJoinPool pool) {
+        return pool.invoke(new SplitTask<>(0, terms(digits), PiDigitsBenchmark::splitMPZ, PiDigitsBenchmark::combineMPZ));
+    }
+
+    /* JGMP */
+    public static MPF finalizeMPF(Triplet<MPZ, MPZ, MPZ> pqt, int digits) {
+        long prec = (long) (digits * EulerNumberDigitsBenchmark.PRECISION_CONVERSION) + 64;
+        MPF pi = MPF.init2(prec);
+        MPF x = MPF.init2(prec);
+        pi.sqrtUiAssign(10005);
+        pi.mulUiAssign(pi, 426880);
+        x.set(pqt.getValue1());
+        pi.mulAssign(pi, x);
+        x.set(pqt.getValue2());
+        pi.divAssign(pi, x);
+        return pi;
+    }
+
+    /* JGMP */
+    public static MPF piMPF(int digits) {
+        return finalizeMPF(splitMPZ(0, terms(digits)), digits);
+    }
+
+    /* JGMP */
+    public static MPF piMPFParallel(int digits, ForkJoinPool pool) {
+        return finalizeMPF(splitMPZParallel(digits, pool), digits);
+    }
+
+    /* JGMP */
+    public static MPF piMPFIncremental(int digits) {
+        Triplet<MPZ, MPZ, MPZ> pqt = null;
+        MPF pi = null;
+        int n = 0;
+        for (int d : stages(digits)) {
+            pqt = extend(pqt, n, terms(d), PiDigitsBenchmark::splitMPZ, PiDigitsBenchmark::combineMPZ);
+            n = terms(d);
+            pi = finalizeMPF(pqt, d);
+        }
+        return pi;
+    }
+
+    /**
+     * Returns the integer part of pi 10^(digits - 1), computed only with integer
+     * operations. A few guard digits are used, hence the last digit may be wrong
+     * when followed by a long sequence of nines.
+     */
+    /* JGMP */
+    public static MPZ piMPZ(int digits) {
+        final int guard = 16;
+        Triplet<MPZ, MPZ, MPZ> pqt = splitMPZ(0, terms(digits + guard));
+        MPZ scale = new MPZ();
+        scale.powUiAssign(new MPZ(10), digits - 1 + guard);
+        MPZ pi = new MPZ();
+        pi.mulAssign(scale, scale);
+        pi.mulAssign(pi, 10005);
+        pi.sqrtAssign(pi);
+        pi.mulAssign(pi, 426880);
+        pi.mulAssign(pi, pqt.getValue1());
+        pi.tdivqAssign(pi, pqt.getValue2());
+        scale.powUiAssign(new MPZ(10), guard);
+        return pi.tdivqAssign(pi, scale);
+    }
+
+    /* BigInteger */
+    public static Triplet<BigInteger, BigInteger, BigInteger> combineBigInteger(
+            Triplet<BigInteger, BigInteger, BigInteger> left, Triplet<BigInteger, BigInteger, BigInteger> right) {
+        BigInteger p = left.getValue0().multiply(right.getValue0());
+        BigInteger q = left.getValue1().multiply(right.getValue1());
+        BigInteger t = left.getValue2().multiply(right.getValue1())
+                .add(left.getValue0().multiply(right.getValue2()));
+        return Triplet.with(p, q, t);
+    }
+
+    /* BigInteger */
+    public static Triplet<BigInteger, BigInteger, BigInteger> splitBigInteger(int a, int b) {
+        if (b - a == 1) {
+            if (a == 0)
+                return Triplet.with(BigInteger.ONE, BigInteger.ONE, BigInteger.valueOf(13591409));
+            BigInteger p = BigInteger.valueOf((6L * a - 5) * (2L * a - 1)).multiply(BigInteger.valueOf(6L * a - 1));
+            BigInteger q = BigInteger.valueOf((long) a * a * a).multiply(BigInteger.valueOf(C3_OVER_24));
+            BigInteger t = p.multiply(BigInteger.valueOf(13591409 + 545140134L * a));
+            return Triplet.with(p, q, (a & 1) == 1 ? t.negate() : t);
+        }
+        int m = (a + b) >>> 1;
+        return combineBigInteger(splitBigInteger(a, m), splitBigInteger(m, b));
+    }
+
+    /* BigInteger */
+    public static Triplet<BigInteger, BigInteger, BigInteger> splitBigIntegerParallel(int digits,
+            ForkJoinPool pool) {
+        return pool.invoke(new SplitTask<>(0, terms(digits), PiDigitsBenchmark::splitBigInteger,
+                PiDigitsBenchmark::combineBigInteger));
+    }
+
+    /* BigDecimal */
+    public static BigDecimal finalizeBigDecimal(Triplet<BigInteger, BigInteger, BigInteger> pqt, int digits) {
+        MathContext mc = new MathContext(digits + 1, RoundingMode.FLOOR);
+        BigDecimal pi = BigDecimal.valueOf(10005).sqrt(mc).multiply(BigDecimal.valueOf(426880));
+        pi = pi.multiply(new BigDecimal(pqt.getValue1()), mc);
+        return pi.divide(new BigDecimal(pqt.getValue2()), mc);
+    }
+
+    /* BigDecimal */
+    public static BigDecimal piBigDecimal(int digits) {
+        return finalizeBigDecimal(splitBigInteger(0, terms(digits)), digits);
+    }
+
+    /* BigDecimal */
+    public static BigDecimal piBigDecimalParallel(int digits, ForkJoinPool pool) {
+        return finalizeBigDecimal(splitBigIntegerParallel(digits, pool), digits);
+    }
+
+    /* BigDecimal */
+    public static BigDecimal piBigDecimalIncremental(int digits) {
+        Triplet<BigInteger, BigInteger, BigInteger> pqt = null;
+        BigDecimal pi = null;
+        int n = 0;
+        for (int d : stages(digits)) {
+            pqt = extend(pqt, n, terms(d), PiDigitsBenchmark::splitBigInteger, PiDigitsBenchmark::combineBigInteger);
+            n = terms(d);
+            pi = finalizeBigDecimal(pqt, d);
+        }
+        return pi;
+    }
+
+    /* Apfloat */
+    public static Triplet<Apint, Apint, Apint> combineApint(Triplet<Apint, Apint, Apint> left,
+            Triplet<Apint, Apint, Apint> right) {
+        Apint p = left.getValue0().multiply(right.getValue0());
+        Apint q = left.getValue1().multiply(right.getValue1());
+        Apint t = left.getValue2().multiply(right.getValue1()).add(left.getValue0().multiply(right.getValue2()));
+        return Triplet.with(p, q, t);
+    }
+
+    /* Apfloat */
+    public static Triplet<Apint, Apint, Apint> splitApint(int a, int b) {
+        if (b - a == 1) {
+            if (a == 0)
+                return Triplet.with(Apint.ONE, Apint.ONE, new Apint(13591409));
+            Apint p = new Apint((6L * a - 5) * (2L * a - 1)).multiply(new Apint(6L * a - 1));
+            Apint q = new Apint((long) a * a * a).multiply(new Apint(C3_OVER_24));
+            Apint t = p.multiply(new Apint(13591409 + 545140134L * a));
+            return Triplet.with(p, q, (a & 1) == 1 ? t.negate() : t);
+        }
+        int m = (a + b) >>> 1;
+        return combineApint(splitApint(a, m), splitApint(m, b));
+    }
+
+    /* Apfloat */
+    public static Apfloat finalizeApfloat(Triplet<Apint, Apint, Apint> pqt, int digits) {
+        Apfloat pi = ApfloatMath.sqrt(new Apfloat(10005, digits + 1)).multiply(new Apint(426880));
+        pi = pi.multiply(pqt.getValue1().precision(digits + 1));
+        return pi.divide(pqt.getValue2().precision(digits + 1));
+    }
+
+    /* Apfloat */
+    public static Apfloat piApfloat(int digits) {
+        return finalizeApfloat(splitApint(0, terms(digits)), digits);
+    }
+
+    /* Apfloat */
+    public static Apfloat piApfloatParallel(int digits, ForkJoinPool pool) {
+        SplitTask<Apint> task = new SplitTask<>(0, terms(digits), PiDigitsBenchmark::splitApint,
+                PiDigitsBenchmark::combineApint);
+        return finalizeApfloat(pool.invoke(task), digits);
+    }
+
+    /* Apfloat */
+    public static Apfloat piApfloatIncremental(int digits) {
+        Triplet<Apint, Apint, Apint> pqt = null;
+        Apfloat pi = null;
+        int n = 0;
+        for (int d : stages(digits)) {
+            pqt = extend(pqt, n, terms(d), PiDigitsBenchmark::splitApint, PiDigitsBenchmark::combineApint);
+            n = terms(d);
+            pi = finalizeApfloat(pqt, d);
+        }
+        return pi;
+    }
+
+    /* MPFR */
+    public static BigFloat finalizeBigFloat(Triplet<BigInteger, BigInteger, BigInteger> pqt, int digits) {
+        int prec = (int) (digits * EulerNumberDigitsBenchmark.PRECISION_CONVERSION) + 64;
+        BinaryMathContext c = new BinaryMathContext(prec, RoundingMode.HALF_EVEN);
+        BigFloat pi = new BigFloat(10005, c).sqrt(c).multiply(new BigFloat(426880, c), c);
+        pi = pi.multiply(new BigFloat(pqt.getValue1(), c), c);
+        return pi.divide(new BigFloat(pqt.getValue2(), c), c);
+    }
+
+    /* MPFR */
+    public static BigFloat piBigFloat(int digits) {
+        return finalizeBigFloat(splitBigInteger(0, terms(digits)), digits);
+    }
+
+    /* MPFR */
+    public static BigFloat piBigFloatParallel(int digits, ForkJoinPool pool) {
+        return finalizeBigFloat(splitBigIntegerParallel(digits, pool), digits);
+    }
+
+    /* MPFR */
+    public static BigFloat piBigFloatIncremental(int digits) {
+        Triplet<BigInteger, BigInteger, BigInteger> pqt = null;
+        BigFloat pi = null;
+        int n = 0;
+        for (int d : stages(digits)) {
+            pqt = extend(pqt, n, terms(d), PiDigitsBenchmark::splitBigInteger, PiDigitsBenchmark::combineBigInteger);
+            n = terms(d);
+            pi = finalizeBigFloat(pqt, d);
+        }
+        return pi;
+    }
+
+}
@@ -0,0 +1,439 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.benchmarks;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apfloat.Apint;
+import org.apfloat.ApintMath;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.RunnerException;
+
+import it.unich.jgmp.MPZ;
+import it.unich.jgmpbenchmarks.launcher.Launcher;
+import it.unich.jgmpbenchmarks.launcher.NativeLibrary;
+import it.unich.jgmpbenchmarks.launcher.Preflight;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 5, jvmArgs = { "-Xms2G", "-Xmx2G" })
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+
+/**
+ * Benchmarks for JGMP: multiplication of polynomials with big integer
+ * coefficients, given as arrays of coefficients from the lowest degree.
+ *
+ * Each library is tested with the schoolbook algorithm, with Karatsuba and with
+ * Kronecker substitution. The latter packs the coefficients into a single big
+ * integer, performs one multiplication and unpacks the coefficients of the
+ * result, so that the work is done by the multiplication algorithms of the
+ * library (FFT in the case of GMP). Kronecker substitution requires
+ * non-negative coefficients. Apint works in radix 10, hence its slots are
+ * powers of 10.
+ */
+public class PolynomialMultiplicationBenchmark {
+
+    /**
+     * Number of coefficients below which Karatsuba falls back to the schoolbook
+     * algorithm.
+     */
+    final static int KARATSUBA_THRESHOLD = 16;
+
+    @Param({ "10", "100", "1000" })
+    public int degree;
+
+    @Param({ "64", "1024" })
+    public int bits;
+
+    BigInteger[] aBigInteger, bBigInteger;
+    MPZ[] aMPZ, bMPZ;
+    Apint[] aApint, bApint;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(degree * 31 + bits);
+        aBigInteger = BenchmarkUtils.randomVector(degree + 1, bits, random);
+        bBigInteger = BenchmarkUtils.randomVector(degree + 1, bits, random);
+        aMPZ = BenchmarkUtils.toMPZ(aBigInteger);
+        bMPZ = BenchmarkUtils.toMPZ(bBigInteger);
+        aApint = BenchmarkUtils.convert(aBigInteger, Apint.class, Apint::new);
+        bApint = BenchmarkUtils.convert(bBigInteger, Apint.class, Apint::new);
+    }
+
+    @Benchmark
+    public MPZ[] schoolbookMPZ() {
+        return schoolbookMPZ(aMPZ, bMPZ);
+    }
+
+    @Benchmark
+    public MPZ[] karatsubaMPZ() {
+        return karatsubaMPZ(aMPZ, bMPZ);
+    }
+
+    @Benchmark
+    public MPZ[] kroneckerMPZ() {
+        return kroneckerMPZ(aMPZ, bMPZ);
+    }
+
+    @Benchmark
+    public BigInteger[] schoolbookBigInteger() {
+        return schoolbookBigInteger(aBigInteger, bBigInteger);
+    }
+
+    @Benchmark
+    public BigInteger[] karatsubaBigInteger() {
+        return karatsubaBigInteger(aBigInteger, bBigInteger);
+    }
+
+    @Benchmark
+    public BigInteger[] kroneckerBigInteger() {
+        return kroneckerBigInteger(aBigInteger, bBigInteger);
+    }
+
+    @Benchmark
+    public Apint[] schoolbookApint() {
+        return schoolbookApint(aApint, bApint);
+    }
+
+    @Benchmark
+    public Apint[] karatsubaApint() {
+        return karatsubaApint(aApint, bApint);
+    }
+
+    @Benchmark
+    public Apint[] kroneckerApint() {
+        return kroneckerApint(aApint, bApint);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Launcher.run(PolynomialMultiplicationBenchmark.class, args);
+    }
+
+    public static void preflight(Preflight p) {
+        p.size("degree");
+        Random random = new Random(0);
+        BigInteger[] a = BenchmarkUtils.randomVector(70, 100, random);
+        BigInteger[] b = BenchmarkUtils.randomVector(45, 300, random);
+        a[0] = BigInteger.ZERO;
+        b[44] = BigInteger.ONE;
+        BigInteger[] res = schoolbookBigInteger(a, b);
+        BigInteger[] neg = Arrays.stream(a).map(BigInteger::negate).toArray(BigInteger[]::new);
+        BigInteger[] resNeg = Arrays.stream(res).map(BigInteger::negate).toArray(BigInteger[]::new);
+        p.check("schoolbookBigInteger", () -> res.length == 114
+                && res[113].equals(a[69]) && res[0].signum() == 0 && res[1].equals(a[1].multiply(b[0])));
+        p.check("karatsubaBigInteger", () -> Arrays.equals(res, karatsubaBigInteger(a, b))
+                && Arrays.equals(resNeg, karatsubaBigInteger(neg, b)));
+        p.check("kroneckerBigInteger", () -> Arrays.equals(res, kroneckerBigInteger(a, b)));
+        Apint[] aApint = BenchmarkUtils.convert(a, Apint.class, Apint::new);
+        Apint[] bApint = BenchmarkUtils.convert(b, Apint.class, Apint::new);
+        Apint[] negApint = BenchmarkUtils.convert(neg, Apint.class, Apint::new);
+        Apint[] resApint = BenchmarkUtils.convert(res, Apint.class, Apint::new);
+        Apint[] resNegApint = BenchmarkUtils.convert(resNeg, Apint.class, Apint::new);
+        p.check("schoolbookApint", () -> Arrays.equals(resApint, schoolbookApint(aApint, bApint)));
+        p.check("karatsubaApint", () -> Arrays.equals(resApint, karatsubaApint(aApint, bApint))
+                && Arrays.equals(resNegApint, karatsubaApint(negApint, bApint)));
+        Apint[] tens = { new Apint(50), new Apint(1050), new Apint(1000) };
+        p.check("kroneckerApint", () -> Arrays.equals(resApint, kroneckerApint(aApint, bApint))
+                && Arrays.equals(tens, kroneckerApint(new Apint[] { new Apint(5), new Apint(100) },
+                        new Apint[] { new Apint(10), new Apint(10) })));
+        if (p.require(".*MPZ", NativeLibrary.JGMP)) {
+            MPZ[] aMPZ = BenchmarkUtils.toMPZ(a);
+            MPZ[] bMPZ = BenchmarkUtils.toMPZ(b);
+            MPZ[] negMPZ = BenchmarkUtils.toMPZ(neg);
+            MPZ[] resMPZ = BenchmarkUtils.toMPZ(res);
+            MPZ[] resNegMPZ = BenchmarkUtils.toMPZ(resNeg);
+            p.check("schoolbookMPZ", () -> Arrays.equals(resMPZ, schoolbookMPZ(aMPZ, bMPZ)));
+            p.check("karatsubaMPZ", () -> Arrays.equals(resMPZ, karatsubaMPZ(aMPZ, bMPZ))
+                    && Arrays.equals(resNegMPZ, karatsubaMPZ(negMPZ, bMPZ)));
+            p.check("kroneckerMPZ", () -> Arrays.equals(resMPZ, kroneckerMPZ(aMPZ, bMPZ)));
+        }
+    }
+
+    /* Utility methods */
+
+    /**
+     * Returns the number of bits of a slot which holds the coefficients of the
+     * product of two polynomials, each of the specified number of bits.
+     */
+    static long slot(long bitsA, long bitsB, int lengthA, int lengthB) {
+        return PackedMPZVector.slot(bitsA + bitsB, Math.min(lengthA, lengthB));
+    }
+
+    static long bits(BigInteger[] a) {
+        long bits = 0;
+        for (BigInteger x : a) {
+            if (x.signum() < 0)
+                throw new IllegalArgumentException("Negative coefficient");
+            bits = Math.max(bits, x.bitLength());
+        }
+        return bits;
+    }
+
+    /* JGMP */
+    public static MPZ[] schoolbookMPZ(MPZ[] a, MPZ[] b) {
+        MPZ[] c = new MPZ[a.length + b.length - 1];
+        for (int k = 0; k < c.length; k++)
+            c[k] = new MPZ();
+        for (int i = 0; i < a.length; i++)
+            for (int j = 0; j < b.length; j++)
+                c[i + j].addmulAssign(a[i], b[j]);
+        return c;
+    }
+
+    /* JGMP */
+    public static MPZ[] karatsubaMPZ(MPZ[] a, MPZ[] b) {
+        int n = Math.max(a.length, b.length);
+        MPZ zero = new MPZ();
+        MPZ[] ap = Arrays.copyOf(a, n), bp = Arrays.copyOf(b, n);
+        Arrays.fill(ap, a.length, n, zero);
+        Arrays.fill(bp, b.length, n, zero);
+        return Arrays.copyOf(karatsubaMPZ(ap, 0, bp, 0, n), a.length + b.length - 1);
+    }
+
+    /**
+     * Returns the 2n-1 coefficients of the product of a[ao, ao + n) and b[bo, bo
+     * + n).
+     */
+    static MPZ[] karatsubaMPZ(MPZ[] a, int ao, MPZ[] b, int bo, int n) {
+        MPZ[] c = new MPZ[2 * n - 1];
+        for (int k = 0; k < c.length; k++)
+            c[k] = new MPZ();
+        if (n < KARATSUBA_THRESHOLD) {
+            for (int i = 0; i < n; i++)
+                for (int j = 0; j < n; j++)
+                    c[i + j].addmulAssign(a[ao + i], b[bo + j]);
+            return c;
+        }
+        int m = n / 2, h = n - m;
+        MPZ[] low = karatsubaMPZ(a, ao, b, bo, m);
+        MPZ[] high = karatsubaMPZ(a, ao + m, b, bo + m, h);
+        MPZ[] sa = new MPZ[h], sb = new MPZ[h];
+        for (int i = 0; i < h; i++) {
+            sa[i] = new MPZ(a[ao + m + i]);
+            sb[i] = new MPZ(b[bo + m + i]);
+            if (i < m) {
+                sa[i].addAssign(sa[i], a[ao + i]);
+                sb[i].addAssign(sb[i], b[bo + i]);
+            }
+        }
+        MPZ[] mid = karatsubaMPZ(sa, 0, sb, 0, h);
+        for (int i = 0; i < low.length; i++) {
+            c[i].addAssign(c[i], low[i]);
+            mid[i].subAssign(mid[i], low[i]);
+        }
+        for (int i = 0; i < high.length; i++) {
+            c[i + 2 * m].addAssign(c[i + 2 * m], high[i]);
+            mid[i].subAssign(mid[i], high[i]);
+        }
+        for (int i = 0; i < mid.length; i++)
+            c[i + m].addAssign(c[i + m], mid[i]);
+        return c;
+    }
+
+    /* JGMP */
+    public static MPZ[] kroneckerMPZ(MPZ[] a, MPZ[] b) {
+        long slot = slot(PackedMPZVector.bits(a), PackedMPZVector.bits(b), a.length, b.length);
+        PackedMPZVector pa = new PackedMPZVector(a.length, slot).pack(a);
+        PackedMPZVector pb = new PackedMPZVector(b.length, slot).pack(b);
+        PackedMPZVector pc = new PackedMPZVector(a.length + b.length - 1, slot);
+        pc.value.mulAssign(pa.value, pb.value);
+        MPZ[] c = new MPZ[pc.length];
+        for (int k = 0; k < c.length; k++)
+            c[k] = new MPZ();
+        pc.unpack(c);
+        return c;
+    }
+
+    /* BigInteger */
+    public static BigInteger[] schoolbookBigInteger(BigInteger[] a, BigInteger[] b) {
+        BigInteger[] c = new BigInteger[a.length + b.length - 1];
+        Arrays.fill(c, BigInteger.ZERO);
+        for (int i = 0; i < a.length; i++)
+            for (int j = 0; j < b.length; j++)
+                c[i + j] = c[i + j].add(a[i].multiply(b[j]));
+        return c;
+    }
+
+    /* BigInteger */
+    public static BigInteger[] karatsubaBigInteger(BigInteger[] a, BigInteger[] b) {
+        int n = Math.max(a.length, b.length);
+        BigInteger[] ap = Arrays.copyOf(a, n), bp = Arrays.copyOf(b, n);
+        Arrays.fill(ap, a.length, n, BigInteger.ZERO);
+        Arrays.fill(bp, b.length, n, BigInteger.ZERO);
+        return Arrays.copyOf(karatsubaBigInteger(ap, 0, bp, 0, n), a.length + b.length - 1);
+    }
+
+    static BigInteger[] karatsubaBigInteger(BigInteger[] a, int ao, BigInteger[] b, int bo, int n) {
+        BigInteger[] c = new BigInteger[2 * n - 1];
+        Arrays.fill(c, BigInteger.ZERO);
+        if (n < KARATSUBA_THRESHOLD) {
+            for (int i = 0; i < n; i++)
+                for (int j = 0; j < n; j++)
+                    c[i + j] = c[i + j].add(a[ao + i].multiply(b[bo + j]));
+            return c;
+        }
+        int m = n / 2, h = n - m;
+        BigInteger[] low = karatsubaBigInteger(a, ao, b, bo, m);
+        BigInteger[] high = karatsubaBigInteger(a, ao + m, b, bo + m, h);
+        BigInteger[] sa = new BigInteger[h], sb = new BigInteger[h];
+        for (int i = 0; i < h; i++) {
+            sa[i] = i < m ? a[ao + m + i].add(a[ao + i]) : a[ao + m + i];
+            sb[i] = i < m ? b[bo + m + i].add(b[bo + i]) : b[bo + m + i];
+        }
+        BigInteger[] mid = karatsubaBigInteger(sa, 0, sb, 0, h);
+        for (int i = 0; i < low.length; i++) {
+            c[i] = c[i].add(low[i]);
+            mid[i] = mid[i].subtract(low[i]);
+        }
+        for (int i = 0; i < high.length; i++) {
+            c[i + 2 * m] = c[i + 2 * m].add(high[i]);
+            mid[i] = mid[i].subtract(high[i]);
+        }
+        for (int i = 0; i < mid.length; i++)
+            c[i + m] = c[i + m].add(mid[i]);
+        return c;
+    }
+
+    /* BigInteger */
+    public static BigInteger[] kroneckerBigInteger(BigInteger[] a, BigInteger[] b) {
+        int slot = Math.toIntExact(slot(bits(a), bits(b), a.length, b.length));
+        BigInteger v = packBigInteger(a, 0, a.length, slot).multiply(packBigInteger(b, 0, b.length, slot));
+        BigInteger[] c = new BigInteger[a.length + b.length - 1];
+        unpackBigInteger(v, 0, c.length, slot, c);
+        return c;
+    }
+
+    /**
+     * Returns the packing of the slots in [from, to), merging halves so that the
+     * cost is O(n log n) instead of the O(n^2) of Horner's rule.
+     */
+    static BigInteger packBigInteger(BigInteger[] a, int from, int to, int slot) {
+        if (to - from == 1)
+            return a[from];
+        int mid = (from + to) >>> 1;
+        return packBigInteger(a, mid, to, slot).shiftLeft((mid - from) * slot)
+                .add(packBigInteger(a, from, mid, slot));
+    }
+
+    static void unpackBigInteger(BigInteger v, int from, int to, int slot, BigInteger[] result) {
+        if (to - from == 1) {
+            result[from] = v;
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        int shift = (mid - from) * slot;
+        BigInteger high = v.shiftRight(shift);
+        unpackBigInteger(high, mid, to, slot, result);
+        unpackBigInteger(v.subtract(high.shiftLeft(shift)), from, mid, slot, result);
+    }
+
+    /* Apfloat */
+    public static Apint[] schoolbookApint(Apint[] a, Apint[] b) {
+        Apint[] c = new Apint[a.length + b.length - 1];
+        Arrays.fill(c, Apint.ZERO);
+        for (int i = 0; i < a.length; i++)
+            for (int j = 0; j < b.length; j++)
+                c[i + j] = c[i + j].add(a[i].multiply(b[j]));
+        return c;
+    }
+
+    /* Apfloat */
+    public static Apint[] karatsubaApint(Apint[] a, Apint[] b) {
+        int n = Math.max(a.length, b.length);
+        Apint[] ap = Arrays.copyOf(a, n), bp = Arrays.copyOf(b, n);
+        Arrays.fill(ap, a.length, n, Apint.ZERO);
+        Arrays.fill(bp, b.length, n, Apint.ZERO);
+        return Arrays.copyOf(karatsubaApint(ap, 0, bp, 0, n), a.length + b.length - 1);
+    }
+
+    static Apint[] karatsubaApint(Apint[] a, int ao, Apint[] b, int bo, int n) {
+        Apint[] c = new Apint[2 * n - 1];
+        Arrays.fill(c, Apint.ZERO);
+        if (n < KARATSUBA_THRESHOLD) {
+            for (int i = 0; i < n; i++)
+                for (int j = 0; j < n; j++)
+                    c[i + j] = c[i + j].add(a[ao + i].multiply(b[bo + j]));
+            return c;
+        }
+        int m = n / 2, h = n - m;
+        Apint[] low = karatsubaApint(a, ao, b, bo, m);
+        Apint[] high = karatsubaApint(a, ao + m, b, bo + m, h);
+        Apint[] sa = new Apint[h], sb = new Apint[h];
+        for (int i = 0; i < h; i++) {
+            sa[i] = i < m ? a[ao + m + i].add(a[ao + i]) : a[ao + m + i];
+            sb[i] = i < m ? b[bo + m + i].add(b[bo + i]) : b[bo + m + i];
+        }
+        Apint[] mid = karatsubaApint(sa, 0, sb, 0, h);
+        for (int i = 0; i < low.length; i++) {
+            c[i] = c[i].add(low[i]);
+            mid[i] = mid[i].subtract(low[i]);
+        }
+        for (int i = 0; i < high.length; i++) {
+            c[i + 2 * m] = c[i + 2 * m].add(high[i]);
+            mid[i] = mid[i].subtract(high[i]);
+        }
+        for (int i = 0; i < mid.length; i++)
+            c[i + m] = c[i + m].add(mid[i]);
+        return c;
+    }
+
+    /* Apfloat */
+    public static Apint[] kroneckerApint(Apint[] a, Apint[] b) {
+        long digitsA = 0, digitsB = 0;
+        for (Apint x : a) {
+            if (x.signum() < 0)
+                throw new IllegalArgumentException("Negative coefficient");
+            digitsA = Math.max(digitsA, x.scale());
+        }
+        for (Apint x : b) {
+            if (x.signum() < 0)
+                throw new IllegalArgumentException("Negative coefficient");
+            digitsB = Math.max(digitsB, x.scale());
+        }
+        long slot = digitsA + digitsB + Integer.toString(Math.min(a.length, b.length)).length();
+        Apint v = packApint(a, 0, a.length, slot).multiply(packApint(b, 0, b.length, slot));
+        Apint[] c = new Apint[a.length + b.length - 1];
+        unpackApint(v, 0, c.length, slot, c);
+        return c;
+    }
+
+    static Apint packApint(Apint[] a, int from, int to, long slot) {
+        if (to - from == 1)
+            return a[from];
+        int mid = (from + to) >>> 1;
+        return ApintMath.scale(packApint(a, mid, to, slot), (mid - from) * slot).add(packApint(a, from, mid, slot));
+    }
+
+    static void unpackApint(Apint v, int from, int to, long slot, Apint[] result) {
+        if (to - from == 1) {
+            result[from] = v;
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        long shift = (mid - from) * slot;
+        Apint high = ApintMath.scale(v, -shift);
+        unpackApint(high, mid, to, slot, result);
+        unpackApint(v.subtract(ApintMath.scale(high, shift)), from, mid, slot, result);
+    }
+
+}
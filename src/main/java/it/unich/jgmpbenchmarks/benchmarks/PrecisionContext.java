@@ -0,0 +1,74 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.benchmarks;
+
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+import org.kframework.mpfr.BinaryMathContext;
+
+/**
+ * The precision used by the floating point kernels, converted once for all the
+ * libraries. Kernels receive an instance of this class instead of reading or
+ * changing process-wide defaults, so that threads may use different precisions
+ * at the same time.
+ */
+public class PrecisionContext {
+
+    final static double PRECISION_CONVERSION = 1 / Math.log10(2);
+
+    /**
+     * Precision in bits.
+     */
+    public final int prec;
+
+    /**
+     * Precision in decimal digits.
+     */
+    public final int digits;
+
+    /**
+     * Math context for BigDecimal.
+     */
+    public final MathContext mathContext;
+
+    /**
+     * Math context for MPFR.
+     */
+    public final BinaryMathContext binaryMathContext;
+
+    public PrecisionContext(int prec) {
+        this.prec = prec;
+        this.digits = (int) (prec / PRECISION_CONVERSION);
+        this.mathContext = new MathContext(digits);
+        this.binaryMathContext = new BinaryMathContext(prec, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Returns the precision to be used for Apfloat numbers in the given radix,
+     * which is either 2 or 10.
+     */
+    public long apfloatPrecision(int radix) {
+        return radix == 10 ? digits : prec;
+    }
+
+    @Override
+    public String toString() {
+        return prec + " bits";
+    }
+}
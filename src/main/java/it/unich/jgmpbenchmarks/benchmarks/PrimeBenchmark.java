@@ -18,14 +18,23 @@
 package it.unich.jgmpbenchmarks.benchmarks;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongPredicate;
+import java.util.function.Supplier;
 
 import org.openjdk.jmh.annotations.*;
-import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
-import org.openjdk.jmh.runner.options.OptionsBuilder;
 
 import it.unich.jgmp.MPZ;
+import it.unich.jgmpbenchmarks.launcher.Launcher;
+import it.unich.jgmpbenchmarks.launcher.NativeLibrary;
+import it.unich.jgmpbenchmarks.launcher.Preflight;
 
 @BenchmarkMode(Mode.AverageTime)
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
@@ -36,10 +45,41 @@ import it.unich.jgmp.MPZ;
 
 /**
  * Benchmarks for JGMP: pseudo-prime number generation.
+ *
+ * Each benchmark computes the first {@code PRIMES} probable primes above
+ * 2^prime. Beside the repeated calls to the next prime methods of each library,
+ * there are kernels which first sieve a window of odd candidates above 2^prime
+ * with the small primes, and only submit the survivors to the probable prime
+ * tests of the libraries. The parallel kernels sieve and test several windows
+ * concurrently.
  */
 public class PrimeBenchmark {
 
-    @Param({ "10", "100", "1000" })
+    /**
+     * Number of primes to generate.
+     */
+    final static int PRIMES = 100;
+
+    /**
+     * Number of Miller-Rabin rounds used by the JGMP sieve kernels.
+     */
+    final static int REPS = 25;
+
+    /**
+     * Certainty used by the BigInteger sieve kernels. This is the same certainty
+     * used by {@code BigInteger.nextProbablePrime}.
+     */
+    final static int CERTAINTY = 100;
+
+    /**
+     * The compiled kernel: m = 2^prime, followed by m = nextprime(m).
+     */
+    final static Program<MPZ> PRIME_START = Expression.constant(1).mul2Exp(Expression.parameter(0))
+            .compile(Arithmetic.mpz());
+
+    final static Program<MPZ> PRIME_STEP = Expression.variable(0).nextprime().compile(Arithmetic.mpz());
+
+    @Param({ "10", "100", "1000", "2048", "4096" })
     public int prime;
 
     @Benchmark
@@ -52,42 +92,90 @@ public class PrimeBenchmark {
         return nextProbablePrimeMPZImmutable(prime);
     }
 
+    @Benchmark
+    public MPZ nextProbablePrimeMPZCompiled() {
+        return nextProbablePrimeMPZCompiled(prime);
+    }
+
+    @Benchmark
+    public HybridInteger nextProbablePrimeMPZHybrid() {
+        return nextProbablePrimeMPZHybrid(prime);
+    }
+
+    @Benchmark
+    public MPZ nextProbablePrimeMPZSieve() {
+        return nextProbablePrimeMPZSieve(prime);
+    }
+
+    @Benchmark
+    public MPZ nextProbablePrimeMPZSieveParallel(ParallelState state) {
+        return nextProbablePrimeMPZSieveParallel(prime, state.pool);
+    }
+
     @Benchmark
     public BigInteger nextProbablePrimeBigInteger() {
         return nextProbablePrimeBigInteger(prime);
     }
 
+    @Benchmark
+    public BigInteger nextProbablePrimeBigIntegerSieve() {
+        return nextProbablePrimeBigIntegerSieve(prime);
+    }
+
+    @Benchmark
+    public BigInteger nextProbablePrimeBigIntegerSieveParallel(ParallelState state) {
+        return nextProbablePrimeBigIntegerSieveParallel(prime, state.pool);
+    }
+
     @Benchmark
     public us.altio.gmp4j.BigInteger nextProbablePrimeGMP4J() {
         return nextProbablePrimeGMP4J(prime);
     }
 
     public static void main(String[] args) throws RunnerException {
+        Launcher.run(PrimeBenchmark.class, args);
+    }
+
+    public static void preflight(Preflight p) {
+        p.size("prime");
         String res = "1267650600228229401496703213077";
-        if (!nextProbablePrimeBigInteger(100).equals(new BigInteger(res)))
-            throw new Error("Invalid BigInteger result");
-        if (!nextProbablePrimeMPZ(100).equals(new MPZ(res)))
-            throw new Error("Invalid MPZ result");
-        if (!nextProbablePrimeMPZImmutable(100).equals(new MPZ(res)))
-            throw new Error("Invalid MPZ Immutable result");
-
-        OptionsBuilder ob = new OptionsBuilder();
-        ob.include("PrimeBenchmark");
-        try {
-            if (!nextProbablePrimeGMP4J(100).equals(new us.altio.gmp4j.BigInteger(res)))
-                throw new Error("Invalid GMP4J result");
-        } catch (LinkageError e) {
-            System.err.println("Cannot launch GMP4J benchmarks: " + e);
-            ob.exclude("FactorialBenchmark\\.nextProbablePrimeGMP4J");
-        }
-        new Runner(ob.build()).run();
+        p.check("nextProbablePrimeBigInteger", () -> nextProbablePrimeBigInteger(100).equals(new BigInteger(res)));
+        p.check("nextProbablePrimeMPZ", () -> nextProbablePrimeMPZ(100).equals(new MPZ(res)), NativeLibrary.JGMP);
+        p.check("nextProbablePrimeMPZImmutable", () -> nextProbablePrimeMPZImmutable(100).equals(new MPZ(res)),
+                NativeLibrary.JGMP);
+        p.check("nextProbablePrimeMPZCompiled", () -> nextProbablePrimeMPZCompiled(100).equals(new MPZ(res)),
+                NativeLibrary.JGMP);
+        p.check("nextProbablePrimeMPZHybrid", () -> nextProbablePrimeMPZHybrid(10).isSmall()
+                && nextProbablePrimeMPZHybrid(10).getMPZ().equals(nextProbablePrimeMPZ(10))
+                && nextProbablePrimeMPZHybrid(40).isSmall()
+                && nextProbablePrimeMPZHybrid(40).getMPZ().equals(nextProbablePrimeMPZ(40))
+                && nextProbablePrimeMPZHybrid(100).getMPZ().equals(new MPZ(res)), NativeLibrary.JGMP);
+        p.check("nextProbablePrimeGMP4J",
+                () -> nextProbablePrimeGMP4J(100).equals(new us.altio.gmp4j.BigInteger(res)), NativeLibrary.GMP4J);
+        p.check("nextProbablePrimeMPZSieve", () -> nextProbablePrimeMPZSieve(100).equals(new MPZ(res)),
+                NativeLibrary.JGMP);
+        p.check("nextProbablePrimeBigIntegerSieve",
+                () -> nextProbablePrimeBigIntegerSieve(100).equals(new BigInteger(res)));
+        int[] xs = { 10, 100, 500 };
+        p.check("nextProbablePrimeMPZSieveParallel", () -> {
+            for (int x : xs)
+                if (!nextProbablePrimeMPZSieveParallel(x, p.pool()).equals(nextProbablePrimeMPZ(x)))
+                    return false;
+            return true;
+        }, NativeLibrary.JGMP);
+        p.check("nextProbablePrimeBigIntegerSieveParallel", () -> {
+            for (int x : xs)
+                if (!nextProbablePrimeBigIntegerSieveParallel(x, p.pool()).equals(nextProbablePrimeBigInteger(x)))
+                    return false;
+            return true;
+        });
     }
 
     /* BigInteger */
     public static BigInteger nextProbablePrimeBigInteger(int x) {
         BigInteger b = BigInteger.valueOf(2);
         b = b.pow(x);
-        for (int i = 1; i <= 100; i++) {
+        for (int i = 1; i <= PRIMES; i++) {
             b = b.nextProbablePrime();
         }
         return b;
@@ -97,7 +185,7 @@ public class PrimeBenchmark {
     public static us.altio.gmp4j.BigInteger nextProbablePrimeGMP4J(int x) {
         us.altio.gmp4j.BigInteger b = us.altio.gmp4j.BigInteger.valueOf(2);
         b = b.pow(x);
-        for (int i = 1; i <= 100; i++) {
+        for (int i = 1; i <= PRIMES; i++) {
             b = b.nextProbablePrime();
         }
         return b;
@@ -107,7 +195,7 @@ public class PrimeBenchmark {
     public static MPZ nextProbablePrimeMPZ(int x) {
         MPZ m = new MPZ(1);
         m.mul2ExpAssign(m, x);
-        for (int i = 1; i <= 100; i++) {
+        for (int i = 1; i <= PRIMES; i++) {
             m.nextprimeAssign(m);
         }
         return m;
@@ -117,10 +205,260 @@ public class PrimeBenchmark {
     public static MPZ nextProbablePrimeMPZImmutable(int x) {
         MPZ m = new MPZ(1);
         m = m.mul2Exp(x);
-        for (int i = 1; i <= 100; i++) {
+        for (int i = 1; i <= PRIMES; i++) {
             m = m.nextprime();
         }
         return m;
     }
 
+    /* JGMP */
+    public static MPZ nextProbablePrimeMPZCompiled(int x) {
+        Program.Evaluator<MPZ> step = PRIME_STEP.evaluator();
+        MPZ m = PRIME_START.evaluator().evaluate(new MPZ(), x);
+        for (int i = 1; i <= PRIMES; i++) {
+            step.evaluate(m, m);
+        }
+        return m;
+    }
+
+    /* JGMP */
+    public static HybridInteger nextProbablePrimeMPZHybrid(int x) {
+        HybridInteger m = new HybridInteger(1);
+        m.mul2ExpAssign(m, x);
+        for (int i = 1; i <= PRIMES; i++) {
+            m.nextprimeAssign(m);
+        }
+        return m;
+    }
+
+    /**
+     * Sieve of the odd candidates 2^x + 1, 2^x + 3, 2^x + 5, ... with the odd
+     * primes smaller than {@code LIMIT}. The candidates in a range of indices are
+     * represented by a bitset, stored in an array of longs. Only works for x >= 2.
+     */
+    public static class PrimeSieve {
+
+        /**
+         * Bound for the sieving primes.
+         */
+        final static int LIMIT = 1 << 16;
+
+        /**
+         * Number of candidates sieved at once by the sequential search.
+         */
+        final static int SEGMENT_SIZE = 1 << 15;
+
+        final static int[] SMALL_PRIMES = smallPrimes(LIMIT);
+
+        final int x;
+
+        /**
+         * For each sieving prime p, the index of the first candidate which is a
+         * multiple of p.
+         */
+        final int[] firstMultiple;
+
+        /**
+         * The value of 2^x if it is smaller than {@code LIMIT}, -1 otherwise. Used
+         * to avoid sieving out the small primes themselves.
+         */
+        final long small;
+
+        public PrimeSieve(int x) {
+            this.x = x;
+            firstMultiple = new int[SMALL_PRIMES.length];
+            for (int j = 0; j < SMALL_PRIMES.length; j++) {
+                long p = SMALL_PRIMES[j];
+                // solve 2^x + 1 + 2i = 0 (mod p)
+                long r = (powerOfTwo(x, p) + 1) % p;
+                firstMultiple[j] = (int) ((p - r) % p * ((p + 1) / 2) % p);
+            }
+            small = x < 31 ? 1L << x : -1;
+        }
+
+        /**
+         * Returns the odd primes smaller than n, computed with the sieve of
+         * Eratosthenes.
+         */
+        static int[] smallPrimes(int n) {
+            boolean[] composite = new boolean[n];
+            int[] primes = new int[n];
+            int count = 0;
+            for (int i = 3; i < n; i += 2) {
+                if (composite[i])
+                    continue;
+                primes[count++] = i;
+                for (long j = (long) i * i; j < n; j += 2 * i)
+                    composite[(int) j] = true;
+            }
+            return Arrays.copyOf(primes, count);
+        }
+
+        /**
+         * Returns 2^x mod p.
+         */
+        static long powerOfTwo(int x, long p) {
+            long result = 1 % p;
+            long base = 2 % p;
+            for (int e = x; e > 0; e >>= 1) {
+                if ((e & 1) != 0)
+                    result = result * base % p;
+                base = base * base % p;
+            }
+            return result;
+        }
+
+        /**
+         * Returns the difference between the candidate of index i and 2^x.
+         */
+        public static long offset(long i) {
+            return 2 * i + 1;
+        }
+
+        /**
+         * Returns the bitset of the candidates with indices in [from, from +
+         * length) which are divisible by some sieving prime.
+         */
+        public long[] sieve(long from, int length) {
+            long[] composite = new long[(length + 63) >>> 6];
+            for (int j = 0; j < SMALL_PRIMES.length; j++) {
+                int p = SMALL_PRIMES[j];
+                int i = (int) Math.floorMod(firstMultiple[j] - from, (long) p);
+                if (small >= 0 && small + 1 + 2 * (from + i) == p)
+                    i += p;
+                for (; i < length; i += p)
+                    composite[i >>> 6] |= 1L << i;
+            }
+            return composite;
+        }
+
+        /**
+         * Returns the offsets of the first {@code limit} candidates with indices
+         * in [from, from + length) which survive the sieve and pass the test.
+         */
+        public long[] probablePrimes(long from, int length, int limit, LongPredicate test) {
+            long[] composite = sieve(from, length);
+            long[] offsets = new long[limit];
+            int count = 0;
+            for (int w = 0; w < composite.length && count < limit; w++) {
+                long survivors = ~composite[w];
+                while (survivors != 0 && count < limit) {
+                    int i = (w << 6) + Long.numberOfTrailingZeros(survivors);
+                    survivors &= survivors - 1;
+                    if (i >= length)
+                        break;
+                    long offset = offset(from + i);
+                    if (test.test(offset))
+                        offsets[count++] = offset;
+                }
+            }
+            return Arrays.copyOf(offsets, count);
+        }
+
+        /**
+         * Returns the offset of the n-th candidate which survives the sieve and
+         * passes the test.
+         */
+        public long search(int n, LongPredicate test) {
+            int found = 0;
+            for (long from = 0;; from += SEGMENT_SIZE) {
+                long[] offsets = probablePrimes(from, SEGMENT_SIZE, n - found, test);
+                found += offsets.length;
+                if (found == n)
+                    return offsets[offsets.length - 1];
+            }
+        }
+
+        /**
+         * Parallel version of {@link #search}. At each round, the number of
+         * candidates needed for the missing primes is estimated with the prime
+         * number theorem, and split in one chunk for each worker of the pool.
+         * Since tests are run concurrently, each chunk gets its own test from the
+         * supplier. When the n-th candidate is found, the other chunks of the
+         * round stop testing, and the method returns only after all of them have
+         * terminated, so that no test is still running on the objects used by
+         * the caller.
+         */
+        public long searchParallel(int n, Supplier<LongPredicate> tests, ForkJoinPool pool) {
+            int workers = pool.getParallelism();
+            AtomicBoolean stop = new AtomicBoolean();
+            int found = 0;
+            long next = 0;
+            while (true) {
+                int limit = n - found;
+                // about one odd number in x ln(2) / 2 is prime
+                long window = (long) Math.ceil(limit * x * Math.log(2) / 2);
+                int chunk = (int) Math.min(SEGMENT_SIZE, Math.max(64, (window + workers - 1) / workers));
+                List<ForkJoinTask<long[]>> round = new ArrayList<>();
+                for (int t = 0; t < workers; t++) {
+                    long from = next;
+                    round.add(pool.submit(() -> {
+                        if (stop.get())
+                            return new long[0];
+                        LongPredicate test = tests.get();
+                        return probablePrimes(from, chunk, limit, offset -> !stop.get() && test.test(offset));
+                    }));
+                    next += chunk;
+                }
+                for (int t = 0; t < round.size(); t++) {
+                    long[] offsets = round.get(t).join();
+                    if (found + offsets.length >= n) {
+                        stop.set(true);
+                        for (int u = t + 1; u < round.size(); u++)
+                            round.get(u).quietlyJoin();
+                        return offsets[n - found - 1];
+                    }
+                    found += offsets.length;
+                }
+            }
+        }
+    }
+
+    /* JGMP */
+    static LongPredicate testMPZ(MPZ base) {
+        MPZ m = new MPZ();
+        return offset -> {
+            m.addUiAssign(base, offset);
+            return m.isProbabPrime(REPS) != MPZ.PrimalityStatus.NON_PRIME;
+        };
+    }
+
+    /* JGMP */
+    public static MPZ nextProbablePrimeMPZSieve(int x) {
+        MPZ base = new MPZ(1);
+        base.mul2ExpAssign(base, x);
+        long offset = new PrimeSieve(x).search(PRIMES, testMPZ(base));
+        base.addUiAssign(base, offset);
+        return base;
+    }
+
+    /* JGMP */
+    public static MPZ nextProbablePrimeMPZSieveParallel(int x, ForkJoinPool pool) {
+        MPZ base = new MPZ(1);
+        base.mul2ExpAssign(base, x);
+        long offset = new PrimeSieve(x).searchParallel(PRIMES, () -> testMPZ(base), pool);
+        MPZ result = new MPZ();
+        result.addUiAssign(base, offset);
+        return result;
+    }
+
+    /* BigInteger */
+    static LongPredicate testBigInteger(BigInteger base) {
+        return offset -> base.add(BigInteger.valueOf(offset)).isProbablePrime(CERTAINTY);
+    }
+
+    /* BigInteger */
+    public static BigInteger nextProbablePrimeBigIntegerSieve(int x) {
+        BigInteger base = BigInteger.ONE.shiftLeft(x);
+        long offset = new PrimeSieve(x).search(PRIMES, testBigInteger(base));
+        return base.add(BigInteger.valueOf(offset));
+    }
+
+    /* BigInteger */
+    public static BigInteger nextProbablePrimeBigIntegerSieveParallel(int x, ForkJoinPool pool) {
+        BigInteger base = BigInteger.ONE.shiftLeft(x);
+        long offset = new PrimeSieve(x).searchParallel(PRIMES, () -> testBigInteger(base), pool);
+        return base.add(BigInteger.valueOf(offset));
+    }
+
 }
@@ -0,0 +1,466 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.benchmarks;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+import it.unich.jgmpbenchmarks.benchmarks.Arithmetic.LongDivisor;
+import it.unich.jgmpbenchmarks.benchmarks.Arithmetic.LongOperands;
+import it.unich.jgmpbenchmarks.benchmarks.Arithmetic.Operation;
+import it.unich.jgmpbenchmarks.benchmarks.Arithmetic.PowersOfTwo;
+import it.unich.jgmpbenchmarks.benchmarks.Arithmetic.Primes;
+import it.unich.jgmpbenchmarks.benchmarks.Expression.Kind;
+
+/**
+ * An {@link Expression} compiled into a fixed sequence of assignment
+ * operations over registers.
+ *
+ * Register 0 is the destination and registers 1 to n are the variables, which
+ * are given at each evaluation. The other registers are constants, which are
+ * set once, and temporaries. The operands with the largest need of registers
+ * are computed first, and the register of a temporary is reused as soon as its
+ * last use has been compiled, possibly as the target of the same operation.
+ * Only the last operation writes the destination, hence the destination may
+ * also be one of the variables. Longs are passed directly to the operations
+ * which accept them, and are loaded into registers otherwise.
+ *
+ * Programs are immutable. The registers are allocated by an {@link Evaluator},
+ * once for all the evaluations.
+ */
+public final class Program<T> {
+
+    /**
+     * An operation target = left op right. The right operand is either a
+     * register or, when right is negative, a long, which is either a parameter
+     * or a constant.
+     */
+    static final class Instruction {
+        final Operation operation;
+        final int target, left, right;
+        final int parameter;
+        final long value;
+
+        Instruction(Operation operation, int target, int left, int right, int parameter, long value) {
+            this.operation = operation;
+            this.target = target;
+            this.left = left;
+            this.right = right;
+            this.parameter = parameter;
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            String r = right >= 0 ? "r" + right : parameter >= 0 ? "p" + parameter : Long.toString(value);
+            switch (operation) {
+                case COPY:
+                    return "r" + target + " = r" + left;
+                case LOAD:
+                    return "r" + target + " = " + r;
+                case NEG:
+                case NEXTPRIME:
+                    return "r" + target + " = " + operation.toString().toLowerCase() + " r" + left;
+                default:
+                    return "r" + target + " = " + operation.toString().toLowerCase() + " r" + left + ", " + r;
+            }
+        }
+    }
+
+    final Arithmetic<T> arithmetic;
+
+    final Instruction[] code;
+
+    final int variables, parameters, registers;
+
+    /**
+     * The registers of the constants and their values.
+     */
+    final int[] constantRegisters;
+
+    final long[] constantValues;
+
+    /**
+     * The parameters used as exponents of {@code MUL_2EXP}, which are checked
+     * to be non-negative at each evaluation.
+     */
+    final int[] exponents;
+
+    Program(Arithmetic<T> arithmetic, Expression expression) {
+        this.arithmetic = arithmetic;
+        Compiler compiler = new Compiler(expression);
+        code = compiler.code.toArray(new Instruction[0]);
+        variables = compiler.variables;
+        parameters = compiler.parameters;
+        registers = compiler.registers;
+        constantRegisters = compiler.constants.values().stream().mapToInt(Integer::intValue).toArray();
+        constantValues = compiler.constants.keySet().stream().mapToLong(Long::longValue).toArray();
+        exponents = compiler.exponents.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Returns the number of registers, including the destination and the
+     * variables.
+     */
+    public int registers() {
+        return registers;
+    }
+
+    /**
+     * Returns the number of operations.
+     */
+    public int length() {
+        return code.length;
+    }
+
+    /**
+     * Returns a new evaluator for this program.
+     */
+    public Evaluator<T> evaluator() {
+        return new Evaluator<>(this);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < constantRegisters.length; i++)
+            s.append("r").append(constantRegisters[i]).append(" := ").append(constantValues[i]).append('\n');
+        for (Instruction i : code)
+            s.append(i).append('\n');
+        return s.toString();
+    }
+
+    /**
+     * The compiler of a single expression.
+     */
+    private class Compiler {
+        final List<Instruction> code = new ArrayList<>();
+
+        /**
+         * Number of uses of each subexpression which have not been compiled yet.
+         */
+        final Map<Expression, Integer> uses = new IdentityHashMap<>();
+
+        /**
+         * Number of temporaries needed by each subexpression.
+         */
+        final Map<Expression, Integer> needs = new IdentityHashMap<>();
+
+        /**
+         * Registers of the computed subexpressions which are still live.
+         */
+        final Map<Expression, Integer> location = new IdentityHashMap<>();
+
+        final Map<Long, Integer> constants = new LinkedHashMap<>();
+
+        final PriorityQueue<Integer> free = new PriorityQueue<>();
+
+        final TreeSet<Integer> exponents = new TreeSet<>();
+
+        int variables, parameters, registers;
+
+        Compiler(Expression root) {
+            count(root);
+            registers = variables + 1;
+            if (root.kind == Kind.OPERATION)
+                compile(root, 0);
+            else if (root.kind == Kind.VARIABLE)
+                code.add(new Instruction(Operation.COPY, 0, register(root), -1, -1, 0));
+            else
+                code.add(new Instruction(Operation.LOAD, 0, -1, -1, parameter(root), root.value));
+        }
+
+        /**
+         * Counts the uses of the subexpressions of e, and the number of variables
+         * and parameters.
+         */
+        void count(Expression e) {
+            if (uses.merge(e, 1, Integer::sum) > 1)
+                return;
+            if (e.kind == Kind.VARIABLE)
+                variables = Math.max(variables, (int) e.value + 1);
+            else if (e.kind == Kind.PARAMETER)
+                parameters = Math.max(parameters, (int) e.value + 1);
+            else if (e.kind == Kind.OPERATION) {
+                if (!arithmetic.supports(e.operation))
+                    throw new IllegalArgumentException("Operation " + e.operation + " is not supported");
+                if (e.operation == Operation.MUL_2EXP && e.right.kind == Kind.PARAMETER)
+                    exponents.add((int) e.right.value);
+                count(e.left);
+                if (e.right != null)
+                    count(e.right);
+            }
+        }
+
+        /**
+         * Returns the Sethi-Ullman number of e.
+         */
+        int need(Expression e) {
+            if (e.kind != Kind.OPERATION)
+                return 0;
+            Integer n = needs.get(e);
+            if (n == null) {
+                int l = need(e.left);
+                int r = e.right == null ? 0 : need(e.right);
+                n = l == r ? l + 1 : Math.max(l, r);
+                needs.put(e, n);
+            }
+            return n;
+        }
+
+        int parameter(Expression e) {
+            return e.kind == Kind.PARAMETER ? (int) e.value : -1;
+        }
+
+        int allocate() {
+            Integer r = free.poll();
+            return r != null ? r : registers++;
+        }
+
+        /**
+         * Records that one use of e has been compiled, and frees its register
+         * after the last use.
+         */
+        void release(Expression e) {
+            if (e != null && uses.merge(e, -1, Integer::sum) == 0) {
+                Integer r = location.remove(e);
+                if (r != null)
+                    free.add(r);
+            }
+        }
+
+        /**
+         * Returns a register with the value of e, emitting the operations needed
+         * to compute it.
+         */
+        int register(Expression e) {
+            Integer r = location.get(e);
+            if (r != null)
+                return r;
+            switch (e.kind) {
+                case VARIABLE:
+                    return (int) e.value + 1;
+                case CONSTANT:
+                    return constants.computeIfAbsent(e.value, v -> registers++);
+                case PARAMETER:
+                    r = allocate();
+                    code.add(new Instruction(Operation.LOAD, r, -1, -1, parameter(e), 0));
+                    location.put(e, r);
+                    return r;
+                default:
+                    return compile(e, -1);
+            }
+        }
+
+        /**
+         * Emits the operations computing e into the target register, or into a
+         * new temporary when target is negative, and returns the register.
+         */
+        int compile(Expression e, int target) {
+            Operation op = e.operation;
+            Expression a = e.left, b = e.right;
+            if (b != null && a.isLong() && !b.isLong() && op.isCommutative() && arithmetic.hasLongOperand(op)) {
+                a = e.right;
+                b = e.left;
+            }
+            int left, right = -1;
+            if (b == null) {
+                left = register(a);
+            } else if (b.isLong() && arithmetic.hasLongOperand(op)) {
+                left = register(a);
+            } else if (need(b) > need(a)) {
+                right = register(b);
+                left = register(a);
+            } else {
+                left = register(a);
+                right = register(b);
+            }
+            release(a);
+            release(b);
+            if (target < 0) {
+                target = allocate();
+                location.put(e, target);
+            }
+            if (b != null && right < 0)
+                code.add(new Instruction(op, target, left, -1, parameter(b), b.value));
+            else
+                code.add(new Instruction(op, target, left, right, -1, 0));
+            return target;
+        }
+    }
+
+    /**
+     * The registers of a program. The constants and temporaries are allocated
+     * when the evaluator is created, and reused by all the evaluations.
+     * Evaluators are not thread safe.
+     */
+    public static final class Evaluator<T> {
+        final Program<T> program;
+
+        final Arithmetic<T> arithmetic;
+
+        /**
+         * The arithmetic for the optional operations, or null when they are not
+         * supported, in which case the program does not use them.
+         */
+        final LongOperands<T> longOperands;
+
+        final LongDivisor<T> longDivisor;
+
+        final PowersOfTwo<T> powersOfTwo;
+
+        final Primes<T> primes;
+
+        final T[] registers;
+
+        final long[] parameters;
+
+        @SuppressWarnings("unchecked")
+        Evaluator(Program<T> program) {
+            this.program = program;
+            this.arithmetic = program.arithmetic;
+            longOperands = arithmetic instanceof LongOperands ? (LongOperands<T>) arithmetic : null;
+            longDivisor = arithmetic instanceof LongDivisor ? (LongDivisor<T>) arithmetic : null;
+            powersOfTwo = arithmetic instanceof PowersOfTwo ? (PowersOfTwo<T>) arithmetic : null;
+            primes = arithmetic instanceof Primes ? (Primes<T>) arithmetic : null;
+            registers = (T[]) new Object[program.registers];
+            for (int i = program.variables + 1; i < registers.length; i++)
+                registers[i] = arithmetic.create();
+            for (int i = 0; i < program.constantRegisters.length; i++)
+                arithmetic.set(registers[program.constantRegisters[i]], program.constantValues[i]);
+            parameters = new long[program.parameters];
+        }
+
+        void checkArity(int variables, int parameters) {
+            if (variables != program.variables || parameters != program.parameters)
+                throw new IllegalArgumentException("Program has " + program.variables + " variables and "
+                        + program.parameters + " parameters");
+        }
+
+        /**
+         * Evaluates the program with no variables and one parameter.
+         */
+        public T evaluate(T destination, long p) {
+            checkArity(0, 1);
+            parameters[0] = p;
+            return run(destination);
+        }
+
+        /**
+         * Evaluates the program with one variable and no parameters.
+         */
+        public T evaluate(T destination, T x) {
+            checkArity(1, 0);
+            registers[1] = x;
+            return run(destination);
+        }
+
+        /**
+         * Evaluates the program with one variable and one parameter.
+         */
+        public T evaluate(T destination, T x, long p) {
+            checkArity(1, 1);
+            registers[1] = x;
+            parameters[0] = p;
+            return run(destination);
+        }
+
+        /**
+         * Evaluates the program with two variables and no parameters.
+         */
+        public T evaluate(T destination, T x, T y) {
+            checkArity(2, 0);
+            registers[1] = x;
+            registers[2] = y;
+            return run(destination);
+        }
+
+        /**
+         * Evaluates the program with the specified variables and parameters.
+         */
+        public T evaluate(T destination, T[] variables, long[] parameters) {
+            checkArity(variables.length, parameters.length);
+            System.arraycopy(variables, 0, registers, 1, variables.length);
+            System.arraycopy(parameters, 0, this.parameters, 0, parameters.length);
+            return run(destination);
+        }
+
+        T run(T destination) {
+            for (int p : program.exponents)
+                if (parameters[p] < 0)
+                    throw new IllegalArgumentException("Exponent p" + p + " is negative");
+            T[] r = registers;
+            r[0] = destination;
+            for (Instruction i : program.code) {
+                T target = r[i.target];
+                long value = i.parameter >= 0 ? parameters[i.parameter] : i.value;
+                switch (i.operation) {
+                    case COPY:
+                        arithmetic.set(target, r[i.left]);
+                        break;
+                    case LOAD:
+                        arithmetic.set(target, value);
+                        break;
+                    case ADD:
+                        if (i.right >= 0)
+                            arithmetic.add(target, r[i.left], r[i.right]);
+                        else
+                            longOperands.add(target, r[i.left], value);
+                        break;
+                    case SUB:
+                        if (i.right >= 0)
+                            arithmetic.sub(target, r[i.left], r[i.right]);
+                        else
+                            longOperands.sub(target, r[i.left], value);
+                        break;
+                    case MUL:
+                        if (i.right >= 0)
+                            arithmetic.mul(target, r[i.left], r[i.right]);
+                        else
+                            longOperands.mul(target, r[i.left], value);
+                        break;
+                    case DIV:
+                        if (i.right >= 0)
+                            arithmetic.div(target, r[i.left], r[i.right]);
+                        else
+                            longDivisor.div(target, r[i.left], value);
+                        break;
+                    case NEG:
+                        arithmetic.neg(target, r[i.left]);
+                        break;
+                    case MUL_2EXP:
+                        powersOfTwo.mul2Exp(target, r[i.left], value);
+                        break;
+                    case NEXTPRIME:
+                        primes.nextprime(target, r[i.left]);
+                        break;
+                }
+            }
+            // do not keep the arguments alive
+            for (int i = 0; i <= program.variables; i++)
+                r[i] = null;
+            return destination;
+        }
+    }
+
+}
@@ -0,0 +1,269 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.benchmarks;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apfloat.Apint;
+import org.javatuples.Pair;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.RunnerException;
+
+import it.unich.jgmp.MPZ;
+import it.unich.jgmpbenchmarks.launcher.Launcher;
+import it.unich.jgmpbenchmarks.launcher.NativeLibrary;
+import it.unich.jgmpbenchmarks.launcher.Preflight;
+import it.unich.jgmpbenchmarks.profilers.HeapMemoryProfiler;
+
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 3, jvmArgs = { "-Xms4G", "-Xmx4G" })
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+
+/**
+ * Benchmarks for JGMP: conversion of huge integers from and to decimal
+ * strings, with up to 10^7 digits.
+ *
+ * The inputs are a factorial with the specified number of digits, computed by
+ * {@code mpz_fac_ui}, and the integer parts of e 10^(digits - 1) and pi
+ * 10^(digits - 1), computed by the binary splitting of
+ * {@link EulerNumberDigitsBenchmark} and {@link PiDigitsBenchmark}. The parse
+ * kernel of BigInteger is quadratic, and is compared with a divide-and-conquer
+ * parser.
+ * Apint works in radix 10, hence its conversions are linear. The write kernels
+ * send the digits to a file, either by building a string or by streaming them
+ * with a {@link DecimalDigitWriter}, and are meant to be compared with the heap
+ * profiler. Each operation is slow enough to be timed alone.
+ */
+public class RadixConversionBenchmark {
+
+    /**
+     * Size of the buffer of the streaming writer.
+     */
+    final static int BUFFER_SIZE = 1 << 16;
+
+    @Param({ "factorial", "euler", "pi" })
+    public String source;
+
+    @Param({ "10000", "100000", "1000000", "10000000" })
+    public int digits;
+
+    String decimal;
+    MPZ xMPZ;
+    BigInteger xBigInteger;
+    Apint xApint;
+    FileChannel channel;
+    DecimalDigitWriter writer;
+
+    @Setup
+    public void setup() throws IOException {
+        xMPZ = input(source, digits);
+        decimal = xMPZ.toString();
+        xBigInteger = BenchmarkUtils.toBigInteger(xMPZ);
+        xApint = new Apint(decimal);
+        Path file = Files.createTempFile("jgmpbenchmarks", ".txt");
+        channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+        writer = new DecimalDigitWriter(channel, BUFFER_SIZE);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        channel.close();
+    }
+
+    @Benchmark
+    public String toStringMPZ() {
+        return xMPZ.toString();
+    }
+
+    @Benchmark
+    public MPZ parseMPZ() {
+        return new MPZ(decimal);
+    }
+
+    @Benchmark
+    public String toStringBigInteger() {
+        return xBigInteger.toString();
+    }
+
+    @Benchmark
+    public BigInteger parseBigInteger() {
+        return new BigInteger(decimal);
+    }
+
+    @Benchmark
+    public BigInteger parseBigIntegerDivideAndConquer() {
+        return parseBigIntegerDivideAndConquer(decimal);
+    }
+
+    @Benchmark
+    public String toStringApint() {
+        return xApint.toString(true);
+    }
+
+    @Benchmark
+    public Apint parseApint() {
+        return new Apint(decimal);
+    }
+
+    @Benchmark
+    public long writeStringMPZ() throws IOException {
+        channel.position(0);
+        return writeString(xMPZ.toString(), channel);
+    }
+
+    @Benchmark
+    public long writeStreamMPZ() throws IOException {
+        channel.position(0);
+        return writer.write(xMPZ);
+    }
+
+    @Benchmark
+    public long writeStringBigInteger() throws IOException {
+        channel.position(0);
+        return writeString(xBigInteger.toString(), channel);
+    }
+
+    @Benchmark
+    public long writeStreamBigInteger() throws IOException {
+        channel.position(0);
+        return writer.write(xBigInteger);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Launcher.run(RadixConversionBenchmark.class, args);
+    }
+
+    public static void preflight(Preflight p) {
+        p.size("digits");
+        // the inputs are computed with JGMP
+        if (!p.require(".*", NativeLibrary.JGMP))
+            return;
+        MPZ fact = input("factorial", 3000);
+        String res = fact.toString();
+        MPZ euler = input("euler", 40);
+        MPZ pi = input("pi", 40);
+        MPZ neg = new MPZ();
+        neg.negAssign(fact);
+        p.check("toStringMPZ|parseMPZ", () -> fact.toString().length() >= 3000 && new MPZ(res).equals(fact)
+                && euler.toString().equals("2718281828459045235360287471352662497757")
+                && pi.toString().equals("3141592653589793238462643383279502884197"));
+        p.check("toStringBigInteger|parseBigInteger", () -> BenchmarkUtils.toBigInteger(fact).toString().equals(res)
+                && BenchmarkUtils.toBigInteger(neg).equals(new BigInteger(res).negate()));
+        p.check("parseBigIntegerDivideAndConquer", () -> parseBigIntegerDivideAndConquer(res).toString().equals(res)
+                && parseBigIntegerDivideAndConquer("-" + res).equals(new BigInteger("-" + res))
+                && parseBigIntegerDivideAndConquer("0").signum() == 0);
+        p.check("toStringApint|parseApint", () -> new Apint(res).toString(true).equals(res));
+        p.check("write.*", () -> {
+            Path file = Files.createTempFile("jgmpbenchmarks", ".txt");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.READ,
+                    StandardOpenOption.DELETE_ON_CLOSE)) {
+                DecimalDigitWriter writer = new DecimalDigitWriter(channel, DecimalDigitWriter.CHUNK);
+                BigInteger big = new BigInteger(res).pow(5).add(BigInteger.ONE);
+                long length = writer.write(neg) + writer.write(new MPZ(big.toString())) + writer.write(big)
+                        + writer.write(new MPZ()) + writer.write(BigInteger.TEN.pow(DecimalDigitWriter.CHUNK))
+                        + writeString(res, channel);
+                String expected = "-" + res + big + big + "0" + BigInteger.TEN.pow(DecimalDigitWriter.CHUNK) + res;
+                ByteBuffer b = ByteBuffer.allocate((int) channel.size());
+                channel.read(b, 0);
+                return length == expected.length()
+                        && new String(b.array(), StandardCharsets.US_ASCII).equals(expected);
+            }
+        });
+        p.profiler(GCProfiler.class);
+        p.profiler(HeapMemoryProfiler.class);
+    }
+
+    /* Utility methods */
+
+    /**
+     * Returns the input with the specified number of digits: either a factorial
+     * with at least that many digits, or the integer part of either e 10^(digits -
+     * 1) or pi 10^(digits - 1).
+     */
+    static MPZ input(String source, int digits) {
+        switch (source) {
+            case "factorial":
+                double log = 0;
+                int n = 1;
+                while (log < digits - 1)
+                    log += Math.log10(++n);
+                return MPZ.facUi(n);
+            case "euler":
+                Pair<MPZ, MPZ> pq = EulerNumberDigitsBenchmark.splitMPZ(0, EulerNumberDigitsBenchmark.terms(digits));
+                MPZ p = pq.getValue0();
+                MPZ q = pq.getValue1();
+                MPZ scale = new MPZ();
+                scale.powUiAssign(new MPZ(10), digits - 1);
+                p.addAssign(p, q);
+                p.mulAssign(p, scale);
+                return p.tdivqAssign(p, q);
+            case "pi":
+                return PiDigitsBenchmark.piMPZ(digits);
+            default:
+                throw new IllegalArgumentException("Unknown source " + source);
+        }
+    }
+
+    static long writeString(String s, FileChannel channel) throws IOException {
+        ByteBuffer b = ByteBuffer.wrap(s.getBytes(StandardCharsets.US_ASCII));
+        while (b.hasRemaining())
+            channel.write(b);
+        return b.capacity();
+    }
+
+    /* BigInteger */
+    public static BigInteger parseBigIntegerDivideAndConquer(String s) {
+        boolean negative = s.startsWith("-");
+        int from = negative ? 1 : 0;
+        // powers.get(k) is 10^(CHUNK 2^k)
+        List<BigInteger> powers = new ArrayList<>();
+        powers.add(BigInteger.TEN.pow(DecimalDigitWriter.CHUNK));
+        while ((long) DecimalDigitWriter.CHUNK << powers.size() < s.length() - from)
+            powers.add(powers.get(powers.size() - 1).pow(2));
+        BigInteger x = parseBigInteger(s, from, s.length(), powers);
+        return negative ? x.negate() : x;
+    }
+
+    static BigInteger parseBigInteger(String s, int from, int to, List<BigInteger> powers) {
+        if (to - from <= DecimalDigitWriter.CHUNK)
+            return new BigInteger(s.substring(from, to));
+        // the low part has CHUNK 2^k digits, with the largest k such that the
+        // high part is not empty
+        int k = 0;
+        while ((long) DecimalDigitWriter.CHUNK << (k + 1) < to - from)
+            k++;
+        int mid = to - (DecimalDigitWriter.CHUNK << k);
+        return parseBigInteger(s, from, mid, powers).multiply(powers.get(k))
+                .add(parseBigInteger(s, mid, to, powers));
+    }
+
+}
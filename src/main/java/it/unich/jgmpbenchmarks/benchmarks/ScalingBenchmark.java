@@ -0,0 +1,315 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.benchmarks;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.apache.commons.numbers.fraction.BigFraction;
+import org.apfloat.Apint;
+import org.apfloat.Aprational;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.RunnerException;
+
+import it.unich.jgmp.MPQ;
+import it.unich.jgmp.MPZ;
+import it.unich.jgmpbenchmarks.launcher.Launcher;
+import it.unich.jgmpbenchmarks.launcher.NativeLibrary;
+import it.unich.jgmpbenchmarks.launcher.Preflight;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Fork(value = 3, jvmArgs = { "-Xms2G", "-Xmx2G" })
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+
+/**
+ * Benchmarks for JGMP: throughput of the factorial, prime, continued fraction,
+ * matrix multiplication and modular exponentiation workloads when run
+ * concurrently by many threads.
+ *
+ * Each thread has its own state. The launcher runs the suite with an
+ * increasing number of threads, records the number of threads among the
+ * parameters of the results, and prints the speedup of each benchmark with
+ * respect to the single-threaded run, exposing contention in native
+ * allocation, in the cleaner thread or in the native call path.
+ */
+public class ScalingBenchmark {
+
+    /**
+     * Number of concurrent evaluations of each kernel in the checks.
+     */
+    final static int CHECK_TASKS = 4;
+
+    @Param({ "1000" })
+    public int fact;
+
+    @Param({ "100" })
+    public int prime;
+
+    @Param({ "100" })
+    public int steps;
+
+    @Param({ "20" })
+    public int size;
+
+    @Param({ "256" })
+    public int bits;
+
+    @Param({ "2048" })
+    public int modulus;
+
+    MPZ[][] aMPZ, bMPZ;
+    BigInteger[][] aBigInteger, bBigInteger;
+    Apint[][] aApint, bApint;
+    BigInteger xBigInteger, dBigInteger, nBigInteger;
+    MPZ xMPZ, dMPZ, nMPZ, resultMPZ;
+    us.altio.gmp4j.BigInteger xGMP4J, dGMP4J, nGMP4J;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(size * 31 + bits);
+        aBigInteger = BenchmarkUtils.randomMatrix(size, size, bits, random);
+        bBigInteger = BenchmarkUtils.randomMatrix(size, size, bits, random);
+        aMPZ = BenchmarkUtils.toMPZ(aBigInteger);
+        bMPZ = BenchmarkUtils.toMPZ(bBigInteger);
+        aApint = BenchmarkUtils.convert(aBigInteger, Apint.class, Apint::new);
+        bApint = BenchmarkUtils.convert(bBigInteger, Apint.class, Apint::new);
+        nBigInteger = new BigInteger(modulus, random).setBit(modulus - 1).setBit(0);
+        dBigInteger = new BigInteger(modulus, random).mod(nBigInteger);
+        xBigInteger = new BigInteger(modulus, random).mod(nBigInteger);
+        xMPZ = new MPZ(xBigInteger.toString());
+        dMPZ = new MPZ(dBigInteger.toString());
+        nMPZ = new MPZ(nBigInteger.toString());
+        resultMPZ = new MPZ();
+        if (NativeLibrary.GMP4J.isAvailable()) {
+            xGMP4J = new us.altio.gmp4j.BigInteger(xBigInteger);
+            dGMP4J = new us.altio.gmp4j.BigInteger(dBigInteger);
+            nGMP4J = new us.altio.gmp4j.BigInteger(nBigInteger);
+        }
+    }
+
+    @Benchmark
+    public MPZ factorialMPZ() {
+        return FactorialBenchmark.factorialMPZ(fact);
+    }
+
+    @Benchmark
+    public MPZ factorialMPZImmutable() {
+        return FactorialBenchmark.factorialMPZImmutable(fact);
+    }
+
+    @Benchmark
+    public BigInteger factorialBigInteger() {
+        return FactorialBenchmark.factorialBigInteger(fact);
+    }
+
+    @Benchmark
+    public Apint factorialApint() {
+        return FactorialBenchmark.factorialApint(fact);
+    }
+
+    @Benchmark
+    public us.altio.gmp4j.BigInteger factorialGMP4J() {
+        return FactorialBenchmark.factorialGMP4J(fact);
+    }
+
+    @Benchmark
+    public MPZ nextProbablePrimeMPZ() {
+        return PrimeBenchmark.nextProbablePrimeMPZ(prime);
+    }
+
+    @Benchmark
+    public MPZ nextProbablePrimeMPZImmutable() {
+        return PrimeBenchmark.nextProbablePrimeMPZImmutable(prime);
+    }
+
+    @Benchmark
+    public BigInteger nextProbablePrimeBigInteger() {
+        return PrimeBenchmark.nextProbablePrimeBigInteger(prime);
+    }
+
+    @Benchmark
+    public us.altio.gmp4j.BigInteger nextProbablePrimeGMP4J() {
+        return PrimeBenchmark.nextProbablePrimeGMP4J(prime);
+    }
+
+    @Benchmark
+    public MPQ continuedFractionMPQ() {
+        return ContinuedFractionBenchmark.continuedFractionMPQ(steps);
+    }
+
+    @Benchmark
+    public MPQ continuedFractionMPQImmutable() {
+        return ContinuedFractionBenchmark.continuedFractionMPQImmutable(steps);
+    }
+
+    @Benchmark
+    public BigFraction continuedFractionBigFraction() {
+        return ContinuedFractionBenchmark.continuedFractionBigFraction(steps);
+    }
+
+    @Benchmark
+    public Aprational continuedFractionAprational() {
+        return ContinuedFractionBenchmark.continuedFractionAprational(steps);
+    }
+
+    @Benchmark
+    public MPZ[][] matrixMultiplicationMPZ() {
+        return MatrixMultiplicationBenchmark.matrixMultiplicationMPZ(aMPZ, bMPZ);
+    }
+
+    @Benchmark
+    public MPZ[][] matrixMultiplicationMPZImmutable() {
+        return MatrixMultiplicationBenchmark.matrixMultiplicationMPZImmutable(aMPZ, bMPZ);
+    }
+
+    @Benchmark
+    public BigInteger[][] matrixMultiplicationBigInteger() {
+        return MatrixMultiplicationBenchmark.matrixMultiplicationBigInteger(aBigInteger, bBigInteger);
+    }
+
+    @Benchmark
+    public Apint[][] matrixMultiplicationApint() {
+        return MatrixMultiplicationBenchmark.matrixMultiplicationApint(aApint, bApint);
+    }
+
+    @Benchmark
+    public MPZ powmMPZ() {
+        return ModularExponentiationBenchmark.powmMPZ(xMPZ, dMPZ, nMPZ, resultMPZ);
+    }
+
+    @Benchmark
+    public MPZ powmMPZImmutable() {
+        return ModularExponentiationBenchmark.powmMPZImmutable(xMPZ, dMPZ, nMPZ);
+    }
+
+    @Benchmark
+    public BigInteger powmBigInteger() {
+        return ModularExponentiationBenchmark.powmBigInteger(xBigInteger, dBigInteger, nBigInteger);
+    }
+
+    @Benchmark
+    public us.altio.gmp4j.BigInteger powmGMP4J() {
+        return ModularExponentiationBenchmark.powmGMP4J(xGMP4J, dGMP4J, nGMP4J);
+    }
+
+    public static void preflight(Preflight p) {
+        p.threads(threadCounts());
+        // the state of all the benchmarks contains MPZ matrices
+        if (!p.require(".*", NativeLibrary.JGMP))
+            return;
+        ScalingBenchmark s = small();
+        BigInteger factorial = FactorialBenchmark.factorialBigInteger(s.fact);
+        p.check("factorialMPZ", () -> scales(p, ScalingBenchmark::factorialMPZ, factorial));
+        p.check("factorialMPZImmutable", () -> scales(p, ScalingBenchmark::factorialMPZImmutable, factorial));
+        p.check("factorialBigInteger", () -> scales(p, ScalingBenchmark::factorialBigInteger, factorial));
+        p.check("factorialApint", () -> scales(p, ScalingBenchmark::factorialApint, factorial));
+        p.check("factorialGMP4J", () -> scales(p, ScalingBenchmark::factorialGMP4J, factorial), NativeLibrary.GMP4J);
+        BigInteger prime = PrimeBenchmark.nextProbablePrimeBigInteger(s.prime);
+        p.check("nextProbablePrimeMPZ", () -> scales(p, ScalingBenchmark::nextProbablePrimeMPZ, prime));
+        p.check("nextProbablePrimeMPZImmutable",
+                () -> scales(p, ScalingBenchmark::nextProbablePrimeMPZImmutable, prime));
+        p.check("nextProbablePrimeBigInteger",
+                () -> scales(p, ScalingBenchmark::nextProbablePrimeBigInteger, prime));
+        p.check("nextProbablePrimeGMP4J", () -> scales(p, ScalingBenchmark::nextProbablePrimeGMP4J, prime),
+                NativeLibrary.GMP4J);
+        BigFraction fraction = ContinuedFractionBenchmark.continuedFractionBigFraction(s.steps);
+        p.check("continuedFractionMPQ", () -> scales(p, ScalingBenchmark::continuedFractionMPQ, fraction));
+        p.check("continuedFractionMPQImmutable",
+                () -> scales(p, ScalingBenchmark::continuedFractionMPQImmutable, fraction));
+        p.check("continuedFractionBigFraction",
+                () -> scales(p, ScalingBenchmark::continuedFractionBigFraction, fraction));
+        p.check("continuedFractionAprational",
+                () -> scales(p, ScalingBenchmark::continuedFractionAprational, fraction));
+        BigInteger[][] product = MatrixMultiplicationBenchmark.matrixMultiplicationBigInteger(s.aBigInteger,
+                s.bBigInteger);
+        p.check("matrixMultiplicationMPZ", () -> scales(p, ScalingBenchmark::matrixMultiplicationMPZ, product));
+        p.check("matrixMultiplicationMPZImmutable",
+                () -> scales(p, ScalingBenchmark::matrixMultiplicationMPZImmutable, product));
+        p.check("matrixMultiplicationBigInteger",
+                () -> scales(p, ScalingBenchmark::matrixMultiplicationBigInteger, product));
+        p.check("matrixMultiplicationApint", () -> scales(p, ScalingBenchmark::matrixMultiplicationApint, product));
+        BigInteger power = s.xBigInteger.modPow(s.dBigInteger, s.nBigInteger);
+        p.check("powmMPZ", () -> scales(p, ScalingBenchmark::powmMPZ, power));
+        p.check("powmMPZImmutable", () -> scales(p, ScalingBenchmark::powmMPZImmutable, power));
+        p.check("powmBigInteger", () -> scales(p, ScalingBenchmark::powmBigInteger, power));
+        p.check("powmGMP4J", () -> scales(p, ScalingBenchmark::powmGMP4J, power), NativeLibrary.GMP4J);
+    }
+
+    /**
+     * Returns a state with small parameters, for the checks.
+     */
+    static ScalingBenchmark small() {
+        ScalingBenchmark s = new ScalingBenchmark();
+        s.fact = 30;
+        s.prime = 10;
+        s.steps = 10;
+        s.size = 5;
+        s.bits = 64;
+        s.modulus = 128;
+        s.setup();
+        return s;
+    }
+
+    /**
+     * Returns whether the kernel gives the expected value, computed by the
+     * single-threaded reference, when it is evaluated concurrently by several
+     * threads, each one with its own state. Values of different libraries are
+     * compared through their decimal representations.
+     */
+    static boolean scales(Preflight p, Function<ScalingBenchmark, Object> kernel, Object expected) {
+        List<ForkJoinTask<Object>> tasks = new ArrayList<>();
+        for (int i = 0; i < CHECK_TASKS; i++)
+            tasks.add(p.pool().submit(() -> kernel.apply(small())));
+        for (ForkJoinTask<Object> task : tasks)
+            if (!decimal(task.join()).equals(decimal(expected)))
+                return false;
+        return true;
+    }
+
+    static String decimal(Object x) {
+        String s = x instanceof Object[] ? Arrays.deepToString((Object[]) x) : x.toString();
+        return s.replace(" ", "");
+    }
+
+    /**
+     * Returns the thread counts to use: the powers of two up to the number of
+     * available processors, and the number of available processors itself.
+     */
+    public static List<Integer> threadCounts() {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        List<Integer> counts = new ArrayList<>();
+        for (int t = 1; t < cpus; t *= 2)
+            counts.add(t);
+        counts.add(cpus);
+        return counts;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Launcher.run(ScalingBenchmark.class, args);
+    }
+
+}
@@ -0,0 +1,267 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.RunnerException;
+
+import it.unich.jgmp.MPZ;
+import it.unich.jgmpbenchmarks.launcher.Launcher;
+import it.unich.jgmpbenchmarks.launcher.NativeLibrary;
+import it.unich.jgmpbenchmarks.launcher.Preflight;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 3, jvmArgs = { "-Xms4G", "-Xmx4G" })
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+
+/**
+ * Benchmarks for JGMP: checkpointing arrays of big integers to memory and
+ * restoring them. The shape is the number of values times their number of
+ * bits, so that it covers both single huge values and millions of small
+ * values.
+ *
+ * The formats are the {@link MPZSerialization} of MPZs, in a direct buffer and
+ * in a memory-mapped file, the two's complement bytes of BigIntegers in a
+ * direct buffer, the Java serialization of BigIntegers, and the decimal strings
+ * of MPZs in a direct buffer. All buffers hold a length before each value. The
+ * score is the number of arrays written or read per second, and the suite uses
+ * the GC profiler to report the allocation of each format.
+ */
+public class SerializationBenchmark {
+
+    @Param({ "1x1000000", "1x10000000", "1000000x64", "1000000x512" })
+    public String shape;
+
+    MPZ[] aMPZ;
+    BigInteger[] aBigInteger;
+    ByteBuffer bufferMPZ, bufferBigInteger, bufferString;
+    MappedByteBuffer mappedMPZ;
+    byte[] serialized;
+    Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        String[] s = shape.split("x");
+        int count = Integer.parseInt(s[0]);
+        int bits = Integer.parseInt(s[1]);
+        aBigInteger = BenchmarkUtils.randomVector(count, bits, new Random(count * 31 + bits));
+        for (int i = 0; i < count; i += 2)
+            aBigInteger[i] = aBigInteger[i].negate();
+        aMPZ = BenchmarkUtils.convert(aBigInteger, MPZ.class, BenchmarkUtils::toMPZ);
+        long size = MPZSerialization.size(aMPZ);
+        bufferMPZ = writeMPZ(aMPZ, ByteBuffer.allocateDirect(Math.toIntExact(size)).order(ByteOrder.LITTLE_ENDIAN));
+        file = Files.createTempFile("jgmpbenchmarks", ".bin");
+        mappedMPZ = MPZSerialization.map(file, size);
+        writeMPZ(aMPZ, mappedMPZ);
+        bufferBigInteger = writeBigInteger(aBigInteger,
+                ByteBuffer.allocateDirect(Math.toIntExact(size + 4L * count + Integer.BYTES)));
+        bufferString = writeString(aMPZ, ByteBuffer.allocateDirect(Math.toIntExact(3 * size + 5L * count)));
+        serialized = writeSerializable(aBigInteger);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        mappedMPZ = null;
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public ByteBuffer writeMPZ() {
+        return writeMPZ(aMPZ, bufferMPZ);
+    }
+
+    @Benchmark
+    public MPZ[] readMPZ() {
+        return readMPZ(bufferMPZ);
+    }
+
+    @Benchmark
+    public ByteBuffer writeMPZMapped() {
+        return writeMPZ(aMPZ, mappedMPZ);
+    }
+
+    @Benchmark
+    public MPZ[] readMPZMapped() {
+        return readMPZ(mappedMPZ);
+    }
+
+    @Benchmark
+    public ByteBuffer writeBigInteger() {
+        return writeBigInteger(aBigInteger, bufferBigInteger);
+    }
+
+    @Benchmark
+    public BigInteger[] readBigInteger() {
+        return readBigInteger(bufferBigInteger);
+    }
+
+    @Benchmark
+    public byte[] writeSerializable() throws IOException {
+        return writeSerializable(aBigInteger);
+    }
+
+    @Benchmark
+    public BigInteger[] readSerializable() throws IOException, ClassNotFoundException {
+        return readSerializable(serialized);
+    }
+
+    @Benchmark
+    public ByteBuffer writeString() {
+        return writeString(aMPZ, bufferString);
+    }
+
+    @Benchmark
+    public MPZ[] readString() {
+        return readString(bufferString);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Launcher.run(SerializationBenchmark.class, args);
+    }
+
+    public static void preflight(Preflight p) {
+        // the state of all the benchmarks contains MPZ arrays
+        if (!p.require(".*", NativeLibrary.JGMP))
+            return;
+        Random random = new Random(0);
+        BigInteger[] a = BenchmarkUtils.randomVector(100, 300, random);
+        a[0] = BigInteger.ZERO;
+        a[1] = a[1].negate();
+        a[2] = BigInteger.ONE.shiftLeft(64).negate();
+        a[3] = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+        a[4] = BigInteger.ONE.shiftLeft(5000).add(BigInteger.ONE);
+        MPZ[] aMPZ = BenchmarkUtils.toMPZ(a);
+        p.check("writeMPZ|readMPZ", () -> {
+            ByteBuffer b = ByteBuffer.allocateDirect((int) MPZSerialization.size(aMPZ)).order(ByteOrder.LITTLE_ENDIAN);
+            writeMPZ(aMPZ, b);
+            return !b.hasRemaining() && Arrays.equals(aMPZ, readMPZ(b))
+                    && MPZSerialization.size(new MPZ()) == 8 && MPZSerialization.size(aMPZ[3]) == 16;
+        });
+        p.check("writeMPZMapped|readMPZMapped", () -> {
+            Path file = Files.createTempFile("jgmpbenchmarks", ".bin");
+            try {
+                writeMPZ(aMPZ, MPZSerialization.map(file, MPZSerialization.size(aMPZ)));
+                return Arrays.equals(aMPZ, readMPZ(MPZSerialization.map(file, MPZSerialization.size(aMPZ))));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        });
+        p.check("writeBigInteger|readBigInteger",
+                () -> Arrays.equals(a, readBigInteger(writeBigInteger(a, ByteBuffer.allocateDirect(100000)))));
+        p.check("writeSerializable|readSerializable", () -> Arrays.equals(a, readSerializable(writeSerializable(a))));
+        p.check("writeString|readString",
+                () -> Arrays.equals(aMPZ, readString(writeString(aMPZ, ByteBuffer.allocateDirect(100000)))));
+        p.profiler(GCProfiler.class);
+    }
+
+    /* JGMP */
+    public static ByteBuffer writeMPZ(MPZ[] a, ByteBuffer out) {
+        out.clear();
+        return MPZSerialization.write(a, out);
+    }
+
+    /* JGMP */
+    public static MPZ[] readMPZ(ByteBuffer in) {
+        return MPZSerialization.read(in.duplicate().order(ByteOrder.LITTLE_ENDIAN).rewind());
+    }
+
+    /* BigInteger */
+    public static ByteBuffer writeBigInteger(BigInteger[] a, ByteBuffer out) {
+        out.clear();
+        out.putInt(a.length);
+        for (BigInteger x : a) {
+            byte[] bytes = x.toByteArray();
+            out.putInt(bytes.length);
+            out.put(bytes);
+        }
+        return out;
+    }
+
+    /* BigInteger */
+    public static BigInteger[] readBigInteger(ByteBuffer in) {
+        ByteBuffer b = in.duplicate().rewind();
+        BigInteger[] a = new BigInteger[b.getInt()];
+        for (int i = 0; i < a.length; i++) {
+            byte[] bytes = new byte[b.getInt()];
+            b.get(bytes);
+            a[i] = new BigInteger(bytes);
+        }
+        return a;
+    }
+
+    /* BigInteger */
+    public static byte[] writeSerializable(BigInteger[] a) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(a);
+        }
+        return bytes.toByteArray();
+    }
+
+    /* BigInteger */
+    public static BigInteger[] readSerializable(byte[] serialized) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            return (BigInteger[]) in.readObject();
+        }
+    }
+
+    /* JGMP */
+    public static ByteBuffer writeString(MPZ[] a, ByteBuffer out) {
+        out.clear();
+        out.putInt(a.length);
+        for (MPZ x : a) {
+            byte[] bytes = x.toString().getBytes(StandardCharsets.US_ASCII);
+            out.putInt(bytes.length);
+            out.put(bytes);
+        }
+        return out;
+    }
+
+    /* JGMP */
+    public static MPZ[] readString(ByteBuffer in) {
+        ByteBuffer b = in.duplicate().rewind();
+        MPZ[] a = new MPZ[b.getInt()];
+        for (int i = 0; i < a.length; i++) {
+            byte[] bytes = new byte[b.getInt()];
+            b.get(bytes);
+            a[i] = new MPZ(new String(bytes, StandardCharsets.US_ASCII));
+        }
+        return a;
+    }
+
+}
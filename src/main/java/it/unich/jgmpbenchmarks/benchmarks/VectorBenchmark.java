@@ -0,0 +1,336 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.benchmarks;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.RunnerException;
+
+import it.unich.jgmp.MPZ;
+import it.unich.jgmpbenchmarks.launcher.Launcher;
+import it.unich.jgmpbenchmarks.launcher.NativeLibrary;
+import it.unich.jgmpbenchmarks.launcher.Preflight;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 5, jvmArgs = { "-Xms2G", "-Xmx2G" })
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+
+/**
+ * Benchmarks for JGMP: vector operations on big integers.
+ *
+ * The element-at-a-time kernels call GMP once or twice for each element, and
+ * write into preallocated MPZs. The packed kernels use a
+ * {@link PackedMPZVector}, which performs each operation with a few calls on a
+ * single large MPZ: the Packed kernels include packing the inputs and unpacking
+ * the results, the Prepacked kernels work on vectors packed in advance.
+ */
+public class VectorBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    public int length;
+
+    @Param({ "64", "1024" })
+    public int bits;
+
+    BigInteger[] xBigInteger, yBigInteger;
+    BigInteger alphaBigInteger;
+    MPZ[] xMPZ, yMPZ, resultMPZ;
+    MPZ alphaMPZ, scalarMPZ;
+    long slot;
+    PackedMPZVector xPacked, yPacked, yReversed, resultPacked;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(length * 31 + bits);
+        xBigInteger = BenchmarkUtils.randomVector(length, bits, random);
+        yBigInteger = BenchmarkUtils.randomVector(length, bits, random);
+        alphaBigInteger = new BigInteger(bits, random);
+        xMPZ = BenchmarkUtils.toMPZ(xBigInteger);
+        yMPZ = BenchmarkUtils.toMPZ(yBigInteger);
+        resultMPZ = zeros(length);
+        alphaMPZ = new MPZ(alphaBigInteger.toString());
+        scalarMPZ = new MPZ();
+        slot = slot(bits, length);
+        xPacked = new PackedMPZVector(length, slot).pack(xMPZ);
+        yPacked = new PackedMPZVector(length, slot).pack(yMPZ);
+        yReversed = new PackedMPZVector(length, slot).packReversed(yMPZ);
+        resultPacked = new PackedMPZVector(length, slot);
+    }
+
+    @Benchmark
+    public MPZ dotMPZ() {
+        return dotMPZ(xMPZ, yMPZ, scalarMPZ);
+    }
+
+    @Benchmark
+    public MPZ dotMPZPacked() {
+        return dotMPZPacked(xMPZ, yMPZ, scalarMPZ, slot);
+    }
+
+    @Benchmark
+    public MPZ dotMPZPrepacked() {
+        return xPacked.dot(yReversed, scalarMPZ);
+    }
+
+    @Benchmark
+    public BigInteger dotBigInteger() {
+        return dotBigInteger(xBigInteger, yBigInteger);
+    }
+
+    @Benchmark
+    public MPZ[] axpyMPZ() {
+        return axpyMPZ(alphaMPZ, xMPZ, yMPZ, resultMPZ);
+    }
+
+    @Benchmark
+    public MPZ[] axpyMPZPacked() {
+        return axpyMPZPacked(alphaMPZ, xMPZ, yMPZ, resultMPZ, slot);
+    }
+
+    @Benchmark
+    public PackedMPZVector axpyMPZPrepacked() {
+        return resultPacked.axpyAssign(alphaMPZ, xPacked, yPacked);
+    }
+
+    @Benchmark
+    public BigInteger[] axpyBigInteger() {
+        return axpyBigInteger(alphaBigInteger, xBigInteger, yBigInteger);
+    }
+
+    @Benchmark
+    public MPZ[] addMPZ() {
+        return addMPZ(xMPZ, yMPZ, resultMPZ);
+    }
+
+    @Benchmark
+    public MPZ[] addMPZPacked() {
+        return addMPZPacked(xMPZ, yMPZ, resultMPZ, slot);
+    }
+
+    @Benchmark
+    public PackedMPZVector addMPZPrepacked() {
+        return resultPacked.addAssign(xPacked, yPacked);
+    }
+
+    @Benchmark
+    public BigInteger[] addBigInteger() {
+        return addBigInteger(xBigInteger, yBigInteger);
+    }
+
+    @Benchmark
+    public MPZ[] mulMPZ() {
+        return mulMPZ(xMPZ, yMPZ, resultMPZ);
+    }
+
+    @Benchmark
+    public BigInteger[] mulBigInteger() {
+        return mulBigInteger(xBigInteger, yBigInteger);
+    }
+
+    @Benchmark
+    public MPZ sumMPZ() {
+        return sumMPZ(xMPZ, scalarMPZ);
+    }
+
+    @Benchmark
+    public MPZ sumMPZPacked() {
+        return sumMPZPacked(xMPZ, scalarMPZ, slot);
+    }
+
+    @Benchmark
+    public MPZ sumMPZPrepacked() {
+        return xPacked.sum(scalarMPZ);
+    }
+
+    @Benchmark
+    public BigInteger sumBigInteger() {
+        return sumBigInteger(xBigInteger);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Launcher.run(VectorBenchmark.class, args);
+    }
+
+    public static void preflight(Preflight p) {
+        p.size("length");
+        Random random = new Random(0);
+        int n = 37;
+        BigInteger[] x = BenchmarkUtils.randomVector(n, 100, random);
+        BigInteger[] y = BenchmarkUtils.randomVector(n, 100, random);
+        BigInteger alpha = new BigInteger(100, random);
+        x[3] = BigInteger.ZERO;
+        y[n - 1] = BigInteger.ONE.shiftLeft(100).subtract(BigInteger.ONE);
+        if (!p.require("(dot|axpy|add|mul|sum)MPZ.*", NativeLibrary.JGMP))
+            return;
+        MPZ[] xMPZ = BenchmarkUtils.toMPZ(x);
+        MPZ[] yMPZ = BenchmarkUtils.toMPZ(y);
+        MPZ alphaMPZ = new MPZ(alpha.toString());
+        long slot = slot(100, n);
+        MPZ dot = new MPZ(dotBigInteger(x, y).toString());
+        MPZ[] axpy = BenchmarkUtils.toMPZ(axpyBigInteger(alpha, x, y));
+        MPZ[] add = BenchmarkUtils.toMPZ(addBigInteger(x, y));
+        MPZ[] mul = BenchmarkUtils.toMPZ(mulBigInteger(x, y));
+        MPZ sum = new MPZ(sumBigInteger(x).toString());
+        p.check("dotMPZ", () -> dotMPZ(xMPZ, yMPZ, new MPZ()).equals(dot));
+        p.check("dotMPZPacked|dotMPZPrepacked", () -> dotMPZPacked(xMPZ, yMPZ, new MPZ(), slot).equals(dot));
+        p.check("axpyMPZ", () -> Arrays.equals(axpyMPZ(alphaMPZ, xMPZ, yMPZ, zeros(n)), axpy));
+        p.check("axpyMPZPacked|axpyMPZPrepacked",
+                () -> Arrays.equals(axpyMPZPacked(alphaMPZ, xMPZ, yMPZ, zeros(n), slot), axpy));
+        p.check("addMPZ", () -> Arrays.equals(addMPZ(xMPZ, yMPZ, zeros(n)), add));
+        p.check("addMPZPacked|addMPZPrepacked",
+                () -> Arrays.equals(addMPZPacked(xMPZ, yMPZ, zeros(n), slot), add));
+        p.check("mulMPZ", () -> Arrays.equals(mulMPZ(xMPZ, yMPZ, zeros(n)), mul));
+        p.check("sumMPZ", () -> sumMPZ(xMPZ, new MPZ()).equals(sum));
+        p.check("sumMPZPacked|sumMPZPrepacked", () -> sumMPZPacked(xMPZ, new MPZ(), slot).equals(sum));
+    }
+
+    /* Utility methods */
+
+    /**
+     * Returns a vector of n zeros.
+     */
+    static MPZ[] zeros(int n) {
+        MPZ[] result = new MPZ[n];
+        for (int i = 0; i < n; i++)
+            result[i] = new MPZ();
+        return result;
+    }
+
+    /**
+     * Returns the slot for vectors of the given length and number of bits, large
+     * enough for all the operations of the benchmarks.
+     */
+    static long slot(int bits, int length) {
+        return PackedMPZVector.slot(2 * bits + 1, length);
+    }
+
+    /* JGMP */
+    public static MPZ dotMPZ(MPZ[] x, MPZ[] y, MPZ result) {
+        result.set(0);
+        for (int i = 0; i < x.length; i++)
+            result.addmulAssign(x[i], y[i]);
+        return result;
+    }
+
+    /* JGMP */
+    public static MPZ dotMPZPacked(MPZ[] x, MPZ[] y, MPZ result, long slot) {
+        PackedMPZVector xPacked = new PackedMPZVector(x.length, slot).pack(x);
+        PackedMPZVector yReversed = new PackedMPZVector(y.length, slot).packReversed(y);
+        return xPacked.dot(yReversed, result);
+    }
+
+    /* BigInteger */
+    public static BigInteger dotBigInteger(BigInteger[] x, BigInteger[] y) {
+        BigInteger result = BigInteger.ZERO;
+        for (int i = 0; i < x.length; i++)
+            result = result.add(x[i].multiply(y[i]));
+        return result;
+    }
+
+    /* JGMP */
+    public static MPZ[] axpyMPZ(MPZ alpha, MPZ[] x, MPZ[] y, MPZ[] result) {
+        for (int i = 0; i < x.length; i++) {
+            result[i].mulAssign(x[i], alpha);
+            result[i].addAssign(result[i], y[i]);
+        }
+        return result;
+    }
+
+    /* JGMP */
+    public static MPZ[] axpyMPZPacked(MPZ alpha, MPZ[] x, MPZ[] y, MPZ[] result, long slot) {
+        PackedMPZVector xPacked = new PackedMPZVector(x.length, slot).pack(x);
+        PackedMPZVector yPacked = new PackedMPZVector(y.length, slot).pack(y);
+        yPacked.axpyAssign(alpha, xPacked, yPacked).unpack(result);
+        return result;
+    }
+
+    /* BigInteger */
+    public static BigInteger[] axpyBigInteger(BigInteger alpha, BigInteger[] x, BigInteger[] y) {
+        BigInteger[] result = new BigInteger[x.length];
+        for (int i = 0; i < x.length; i++)
+            result[i] = x[i].multiply(alpha).add(y[i]);
+        return result;
+    }
+
+    /* JGMP */
+    public static MPZ[] addMPZ(MPZ[] x, MPZ[] y, MPZ[] result) {
+        for (int i = 0; i < x.length; i++)
+            result[i].addAssign(x[i], y[i]);
+        return result;
+    }
+
+    /* JGMP */
+    public static MPZ[] addMPZPacked(MPZ[] x, MPZ[] y, MPZ[] result, long slot) {
+        PackedMPZVector xPacked = new PackedMPZVector(x.length, slot).pack(x);
+        PackedMPZVector yPacked = new PackedMPZVector(y.length, slot).pack(y);
+        yPacked.addAssign(xPacked, yPacked).unpack(result);
+        return result;
+    }
+
+    /* BigInteger */
+    public static BigInteger[] addBigInteger(BigInteger[] x, BigInteger[] y) {
+        BigInteger[] result = new BigInteger[x.length];
+        for (int i = 0; i < x.length; i++)
+            result[i] = x[i].add(y[i]);
+        return result;
+    }
+
+    /* JGMP */
+    public static MPZ[] mulMPZ(MPZ[] x, MPZ[] y, MPZ[] result) {
+        for (int i = 0; i < x.length; i++)
+            result[i].mulAssign(x[i], y[i]);
+        return result;
+    }
+
+    /* BigInteger */
+    public static BigInteger[] mulBigInteger(BigInteger[] x, BigInteger[] y) {
+        BigInteger[] result = new BigInteger[x.length];
+        for (int i = 0; i < x.length; i++)
+            result[i] = x[i].multiply(y[i]);
+        return result;
+    }
+
+    /* JGMP */
+    public static MPZ sumMPZ(MPZ[] x, MPZ result) {
+        result.set(0);
+        for (MPZ xi : x)
+            result.addAssign(result, xi);
+        return result;
+    }
+
+    /* JGMP */
+    public static MPZ sumMPZPacked(MPZ[] x, MPZ result, long slot) {
+        return new PackedMPZVector(x.length, slot).pack(x).sum(result);
+    }
+
+    /* BigInteger */
+    public static BigInteger sumBigInteger(BigInteger[] x) {
+        BigInteger result = BigInteger.ZERO;
+        for (BigInteger xi : x)
+            result = result.add(xi);
+        return result;
+    }
+
+}
@@ -32,18 +32,20 @@ public class MatrixMultiplicationExample {
         MPZ seed = new MPZ(0);
         MPZ[][] a = new MPZ[n][m];
         MPZ[][] b = new MPZ[m][p];
-        for (int i = 1; i < n; i++) {
-            for (int j = 1; j < m; j++) {
-                a[i][j] = seed;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < m; j++) {
+                a[i][j] = new MPZ(seed);
                 seed.addAssign(one);
             }
         }
-        for (int i = 1; i < m; i++) {
-            for (int j = 1; j < p; j++) {
-                b[i][j] = seed;
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < p; j++) {
+                b[i][j] = new MPZ(seed);
                 seed.addAssign(one);
             }
         }
+        MPZ[][] c = matrixMultiplication(a, b);
+        System.out.println(c[n - 1][p - 1]);
     }
 
     /**
@@ -62,10 +64,10 @@ public class MatrixMultiplicationExample {
         int p = b[0].length;
 
         MPZ[][] c = new MPZ[n][p];
-        for (int i = 1; i < n; i++) {
-            for (int j = 1; j < p; j++) {
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < p; j++) {
                 MPZ sum = new MPZ(0);
-                for (int k = 1; k < m; k++) {
+                for (int k = 0; k < m; k++) {
                     sum.addmulAssign(a[i][k], b[k][j]);
                     // equivalent to sum.addAssign(a[i][k].mul(b[k][j]));
                 }
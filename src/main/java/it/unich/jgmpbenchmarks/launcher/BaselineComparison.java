@@ -0,0 +1,89 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.launcher;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import it.unich.jgmpbenchmarks.launcher.ResultStore.Entry;
+
+/**
+ * Comparison of a run against a baseline. A change is significant when the
+ * confidence intervals at 99.9% of the two scores are disjoint, and it is a
+ * regression when it is significant, it makes the score worse and it exceeds
+ * a relative threshold.
+ */
+public class BaselineComparison {
+
+    final List<Entry> baseline;
+
+    final double threshold;
+
+    int regressions, improvements, compared;
+
+    /**
+     * Builds a comparison against the baseline, where the threshold is a
+     * fraction of the baseline score.
+     */
+    public BaselineComparison(List<Entry> baseline, double threshold) {
+        this.baseline = baseline;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Compares the entries with the baseline, prints a table of the differences
+     * and returns the number of regressions.
+     */
+    public int compare(List<Entry> current) {
+        Map<String, Entry> base = new HashMap<>();
+        for (Entry e : baseline)
+            base.put(e.key(), e);
+        if (!baseline.isEmpty()) {
+            Entry b = baseline.get(0);
+            System.out.println();
+            System.out.println("Comparison with run " + b.run + " (revision " + b.revision + ", " + b.jdk + ", JGMP "
+                    + b.jgmp + ", GMP " + b.gmp + "):");
+        }
+        for (Entry c : current) {
+            Entry b = base.get(c.key());
+            if (b == null || !b.units.equals(c.units))
+                continue;
+            compared += 1;
+            double change = (c.score - b.score) / b.score;
+            boolean significant = c.lower > b.upper || c.upper < b.lower;
+            boolean worse = c.higherIsBetter() ? change < 0 : change > 0;
+            String verdict = "";
+            if (significant && Math.abs(change) > threshold) {
+                if (worse) {
+                    verdict = "REGRESSION";
+                    regressions += 1;
+                } else {
+                    verdict = "improvement";
+                    improvements += 1;
+                }
+            }
+            System.out.println(String.format("%-70s %12.3f %12.3f %-10s %+7.1f%% %s", c.key(), b.score, c.score, c.units,
+                    100 * change, verdict));
+        }
+        System.out.println(compared + " benchmarks compared, " + regressions + " regressions, " + improvements
+                + " improvements");
+        return regressions;
+    }
+
+}
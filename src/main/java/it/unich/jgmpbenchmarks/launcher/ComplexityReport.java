@@ -0,0 +1,374 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.launcher;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import it.unich.jgmpbenchmarks.launcher.ResultStore.Entry;
+
+/**
+ * Report on the asymptotic behaviour of the benchmarks. For each benchmark and
+ * each combination of the other parameters, the time per operation is fitted
+ * against the size parameter with two models, using least squares on the
+ * relative errors:
+ *
+ * <ul>
+ * <li>power law: t(n) = c + a n^b</li>
+ * <li>n log n: t(n) = c + a n log2(n)</li>
+ * </ul>
+ *
+ * The constant c estimates the overhead of each call, such as the cost of
+ * crossing into native code. Then, for each pair made of a JGMP benchmark and
+ * a benchmark of another library in the same suite, the report lists the sizes
+ * where one overtakes the other, interpolated in log-log scale.
+ *
+ * The size parameter of a benchmark is the one specified with {@code --size},
+ * otherwise the first of the size parameters declared by its suite, otherwise
+ * the only numeric parameter with several values, excluding the number of
+ * threads. Benchmarks where several numeric parameters vary and none is
+ * declared are not fitted. The command line is
+ *
+ * <pre>
+ * ComplexityReport [--store dir] [--run id] [--size param] [suite ...]
+ * </pre>
+ *
+ * where the default run is the most recent one in the store.
+ */
+public class ComplexityReport {
+
+    /**
+     * Exponents tried when fitting the power law.
+     */
+    final static double MAX_EXPONENT = 3, EXPONENT_STEP = 0.01;
+
+    /**
+     * A fitted model t(n) = c + a f(n).
+     */
+    static class Fit {
+        double a, b, c, error;
+
+        double eval(double n, boolean nlogn) {
+            return c + a * (nlogn ? n * log2(n) : Math.pow(n, b));
+        }
+    }
+
+    /**
+     * The measures of a benchmark for a combination of the other parameters, as
+     * a map from size to seconds per operation.
+     */
+    static class Series {
+        final String benchmark, suite, others;
+        final TreeMap<Double, Double> times = new TreeMap<>();
+
+        Series(String suite, String benchmark, String others) {
+            this.suite = suite;
+            this.benchmark = benchmark;
+            this.others = others;
+        }
+
+        String name() {
+            return benchmark + (others.isEmpty() ? "" : " [" + others + "]");
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String store = "results", run = null, size = null;
+        Set<String> suites = new HashSet<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--store") && i + 1 < args.length)
+                store = args[++i];
+            else if (args[i].equals("--run") && i + 1 < args.length)
+                run = args[++i];
+            else if (args[i].equals("--size") && i + 1 < args.length)
+                size = args[++i];
+            else
+                suites.add(args[i]);
+        }
+        List<Entry> all = new ResultStore(Paths.get(store)).load();
+        if (run == null)
+            for (Entry e : all)
+                if (run == null || e.run.compareTo(run) > 0)
+                    run = e.run;
+        List<Entry> entries = new ArrayList<>();
+        for (Entry e : all)
+            if (e.run.equals(run) && (suites.isEmpty() || suites.contains(e.suite)))
+                entries.add(e);
+        if (entries.isEmpty()) {
+            System.err.println("No results in " + store);
+            System.exit(1);
+        }
+        System.out.println("Run " + run);
+        report(entries, size, Launcher.sizes());
+    }
+
+    /**
+     * Prints the report for the entries. If size is null, the size parameter is
+     * chosen separately for each benchmark, using the size parameters declared
+     * by the suites.
+     */
+    public static void report(List<Entry> entries, String size, Map<String, List<String>> sizes) {
+        List<Series> series = series(entries, size, sizes);
+        System.out.println();
+        System.out.println("Fits of the time per operation (c + a n^b and c + a n log n):");
+        System.out.println(String.format("%-72s %6s %10s %10s %8s %10s %10s %8s", "Benchmark", "b", "a", "c", "err",
+                "a nlogn", "c nlogn", "err"));
+        for (Series s : series) {
+            if (s.times.size() < 3)
+                continue;
+            Fit power = fitPowerLaw(s.times);
+            Fit nlogn = fitNLogN(s.times);
+            System.out.println(String.format("%-72s %6.2f %10.3e %10.3e %7.1f%% %10.3e %10.3e %7.1f%%", s.name(),
+                    power.b, power.a, power.c, 100 * power.error, nlogn.a, nlogn.c, 100 * nlogn.error));
+        }
+
+        System.out.println();
+        System.out.println("Crossovers between JGMP and the other libraries:");
+        for (Series x : series) {
+            if (!isJGMP(x.benchmark))
+                continue;
+            for (Series y : series) {
+                if (isJGMP(y.benchmark) || !x.suite.equals(y.suite) || !x.others.equals(y.others))
+                    continue;
+                for (double n : crossovers(x.times, y.times))
+                    System.out.println(String.format("%-48s %-48s n = %.4g (%s faster above)", x.name(), y.benchmark,
+                            Math.abs(n), n > 0 ? "JGMP" : "other"));
+            }
+        }
+    }
+
+    /**
+     * Returns whether a benchmark uses JGMP, according to its name.
+     */
+    static boolean isJGMP(String benchmark) {
+        return benchmark.contains("MPZ") || benchmark.contains("MPQ") || benchmark.contains("MPF");
+    }
+
+    /**
+     * Groups the entries in series.
+     */
+    static List<Series> series(List<Entry> entries, String size, Map<String, List<String>> sizes) {
+        Map<String, List<Entry>> byBenchmark = new LinkedHashMap<>();
+        for (Entry e : entries)
+            byBenchmark.computeIfAbsent(e.benchmark + " " + e.mode, k -> new ArrayList<>()).add(e);
+        Map<String, Series> result = new LinkedHashMap<>();
+        for (List<Entry> group : byBenchmark.values()) {
+            String param = size != null ? size
+                    : sizeParam(group, sizes.getOrDefault(group.get(0).suite, Collections.emptyList()));
+            if (param == null)
+                continue;
+            for (Entry e : group) {
+                Map<String, String> params = params(e.params);
+                Double n = parse(params.remove(param));
+                double seconds = seconds(e.score, e.units);
+                if (n == null || Double.isNaN(seconds))
+                    continue;
+                List<String> others = new ArrayList<>();
+                params.forEach((k, v) -> others.add(k + "=" + v));
+                String key = e.benchmark + " " + e.mode + " " + others;
+                result.computeIfAbsent(key, k -> new Series(e.suite, e.benchmark, String.join(",", others))).times
+                        .put(n, seconds);
+            }
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    /**
+     * Returns the size parameter of a benchmark: the first declared parameter it
+     * has, or the only numeric parameter with several values other than the
+     * number of threads. Returns null, with a warning, if there are several such
+     * parameters.
+     */
+    static String sizeParam(List<Entry> group, List<String> declared) {
+        Map<String, Set<String>> values = new TreeMap<>();
+        for (Entry e : group)
+            params(e.params).forEach((k, v) -> {
+                if (parse(v) != null)
+                    values.computeIfAbsent(k, x -> new HashSet<>()).add(v);
+            });
+        for (String param : declared)
+            if (values.containsKey(param))
+                return param;
+        List<String> candidates = new ArrayList<>();
+        for (Map.Entry<String, Set<String>> e : values.entrySet())
+            if (e.getValue().size() > 1 && !ResultStore.THREADS.equals(e.getKey() + "="))
+                candidates.add(e.getKey());
+        if (candidates.size() > 1) {
+            System.err.println("Not fitting " + group.get(0).benchmark + ": ambiguous size among " + candidates
+                    + ", use --size");
+            return null;
+        }
+        return candidates.isEmpty() ? null : candidates.get(0);
+    }
+
+    static Map<String, String> params(String params) {
+        Map<String, String> result = new TreeMap<>();
+        if (!params.isEmpty())
+            for (String p : params.split(",")) {
+                int i = p.indexOf('=');
+                result.put(p.substring(0, i), p.substring(i + 1));
+            }
+        return result;
+    }
+
+    static Double parse(String s) {
+        try {
+            return s == null ? null : Double.valueOf(s);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Converts a score to seconds per operation, or NaN if the units are unknown.
+     */
+    static double seconds(double score, String units) {
+        String[] parts = units.split("/");
+        if (parts.length != 2)
+            return Double.NaN;
+        if (parts[1].equals("op"))
+            return score * unit(parts[0]);
+        if (parts[0].equals("ops"))
+            return unit(parts[1]) / score;
+        return Double.NaN;
+    }
+
+    static double unit(String unit) {
+        switch (unit) {
+            case "s":
+                return 1;
+            case "ms":
+                return 1e-3;
+            case "us":
+                return 1e-6;
+            case "ns":
+                return 1e-9;
+            case "min":
+                return 60;
+            default:
+                return Double.NaN;
+        }
+    }
+
+    static double log2(double n) {
+        return n <= 1 ? 0 : Math.log(n) / Math.log(2);
+    }
+
+    /**
+     * Fits t = c + a f with least squares on the relative errors, where c and a
+     * are constrained to be non negative.
+     */
+    static Fit fitLinear(double[] f, double[] t) {
+        // weights 1/t^2, so that residuals are relative
+        double s11 = 0, s1f = 0, sff = 0, s1t = 0, sft = 0;
+        for (int i = 0; i < t.length; i++) {
+            double w = 1 / (t[i] * t[i]);
+            s11 += w;
+            s1f += w * f[i];
+            sff += w * f[i] * f[i];
+            s1t += w * t[i];
+            sft += w * f[i] * t[i];
+        }
+        Fit fit = new Fit();
+        double det = s11 * sff - s1f * s1f;
+        if (det != 0) {
+            fit.c = (sff * s1t - s1f * sft) / det;
+            fit.a = (s11 * sft - s1f * s1t) / det;
+        }
+        if (det == 0 || fit.c < 0 || fit.a < 0) {
+            // fall back to a single non negative term
+            double a = sff == 0 ? 0 : Math.max(0, sft / sff);
+            double c = Math.max(0, s1t / s11);
+            fit.a = a;
+            fit.c = 0;
+            if (error(f, t, 0, a) > error(f, t, c, 0)) {
+                fit.a = 0;
+                fit.c = c;
+            }
+        }
+        fit.error = error(f, t, fit.c, fit.a);
+        return fit;
+    }
+
+    /**
+     * Returns the root mean square of the relative errors of c + a f.
+     */
+    static double error(double[] f, double[] t, double c, double a) {
+        double sum = 0;
+        for (int i = 0; i < t.length; i++) {
+            double r = (c + a * f[i] - t[i]) / t[i];
+            sum += r * r;
+        }
+        return Math.sqrt(sum / t.length);
+    }
+
+    static Fit fitPowerLaw(TreeMap<Double, Double> times) {
+        double[] n = times.keySet().stream().mapToDouble(Double::doubleValue).toArray();
+        double[] t = times.values().stream().mapToDouble(Double::doubleValue).toArray();
+        double[] f = new double[n.length];
+        Fit best = null;
+        for (double b = 0; b <= MAX_EXPONENT + 1e-9; b += EXPONENT_STEP) {
+            for (int i = 0; i < n.length; i++)
+                f[i] = Math.pow(n[i], b);
+            Fit fit = fitLinear(f, t);
+            fit.b = b;
+            if (best == null || fit.error < best.error)
+                best = fit;
+        }
+        return best;
+    }
+
+    static Fit fitNLogN(TreeMap<Double, Double> times) {
+        double[] t = times.values().stream().mapToDouble(Double::doubleValue).toArray();
+        double[] f = times.keySet().stream().mapToDouble(n -> n * log2(n)).toArray();
+        return fitLinear(f, t);
+    }
+
+    /**
+     * Returns the sizes where the two series cross, interpolated in log-log
+     * scale between consecutive common sizes. A size is positive when the first
+     * series becomes faster, negative when it becomes slower.
+     */
+    static List<Double> crossovers(TreeMap<Double, Double> x, TreeMap<Double, Double> y) {
+        List<Double> result = new ArrayList<>();
+        Double prevN = null, prevD = null;
+        for (Map.Entry<Double, Double> e : x.entrySet()) {
+            Double ty = y.get(e.getKey());
+            if (ty == null)
+                continue;
+            double n = e.getKey();
+            double d = Math.log(e.getValue() / ty);
+            if (prevD != null && Math.signum(d) != Math.signum(prevD) && d != 0) {
+                double ln0 = Math.log(Math.max(prevN, 1e-300)), ln1 = Math.log(Math.max(n, 1e-300));
+                result.add(Math.signum(-d) * Math.exp(ln0 + (ln1 - ln0) * prevD / (prevD - d)));
+            }
+            prevN = n;
+            prevD = d;
+        }
+        return result;
+    }
+
+}
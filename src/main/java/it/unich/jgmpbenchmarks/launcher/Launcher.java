@@ -0,0 +1,382 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.launcher;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.profile.Profiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.NoBenchmarksException;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import it.unich.jgmpbenchmarks.benchmarks.*;
+import it.unich.jgmpbenchmarks.profilers.HeapMemoryProfiler;
+import it.unich.jgmpbenchmarks.profilers.LatencyProfiler;
+import it.unich.jgmpbenchmarks.profilers.NativeMemoryProfiler;
+import it.unich.jgmpbenchmarks.profilers.StepProfiler;
+
+/**
+ * Launcher for the benchmark suites. The command line is
+ *
+ * <pre>
+ * Launcher [--list] [--check-only] [--profile quick|full] [--store dir | --no-store]
+ *          [--baseline ref] [--threshold percent] [--report] [JMH options] [suite ...]
+ * </pre>
+ *
+ * where each suite is the simple name of a benchmark class, and all the suites
+ * are run when none is specified. Before running a suite, the native libraries
+ * are probed and the correctness checks of the suite are run: benchmarks whose
+ * libraries are not available or whose checks fail are excluded. The quick
+ * profile uses a single fork and short iterations, unless the corresponding
+ * JMH options are given. All other options, such as {@code -p} for parameters,
+ * are passed to JMH. The profilers {@code native}, {@code heap},
+ * {@code latency} and {@code steps} may be given by name to {@code -prof}.
+ * Suites may also ask for profilers in their checks. The native profiler is
+ * never added otherwise, since the allocation monitor it enables slows down
+ * JGMP. Suites may also ask
+ * to be run with several thread counts: unless {@code -t} is given, the suite
+ * is then run once for each count, the number of threads is recorded among the
+ * parameters of the results, and the speedups are printed.
+ *
+ * The results are appended to a {@link ResultStore}, by default in the
+ * {@code results} directory. When a baseline is given, either as a run
+ * identifier or as a git revision, the results are compared with those of the
+ * most recent matching run on the same CPU, and significant slowdowns larger
+ * than the threshold (5% by default) are reported as regressions. The exit
+ * status is 1 if some check failed, 2 if there are regressions and 3 if no
+ * stored run matches the baseline. With
+ * {@code --report}, the results are summarized by a {@link ComplexityReport}.
+ */
+public class Launcher {
+
+    static final Map<String, Consumer<Preflight>> SUITES = new LinkedHashMap<>();
+
+    static final Map<String, Class<? extends Profiler>> PROFILERS = Map.of("native", NativeMemoryProfiler.class,
+            "heap", HeapMemoryProfiler.class, "latency", LatencyProfiler.class, "steps", StepProfiler.class);
+
+    static {
+        SUITES.put("BatchGcdBenchmark", BatchGcdBenchmark::preflight);
+        SUITES.put("BatchPrimeBenchmark", BatchPrimeBenchmark::preflight);
+        SUITES.put("ContinuedFractionBenchmark", ContinuedFractionBenchmark::preflight);
+        SUITES.put("ContinuedFractionFloatBenchmark", ContinuedFractionFloatBenchmark::preflight);
+        SUITES.put("ContinuedFractionStreamBenchmark", ContinuedFractionStreamBenchmark::preflight);
+        SUITES.put("EulerNumberDigitsBenchmark", EulerNumberDigitsBenchmark::preflight);
+        SUITES.put("FactorialBenchmark", FactorialBenchmark::preflight);
+        SUITES.put("LinearSystemBenchmark", LinearSystemBenchmark::preflight);
+        SUITES.put("MatrixMultiplicationBenchmark", MatrixMultiplicationBenchmark::preflight);
+        SUITES.put("ModularExponentiationBenchmark", ModularExponentiationBenchmark::preflight);
+        SUITES.put("NewtonIterationBenchmark", NewtonIterationBenchmark::preflight);
+        SUITES.put("OffHeapMatrixBenchmark", OffHeapMatrixBenchmark::preflight);
+        SUITES.put("PiDigitsBenchmark", PiDigitsBenchmark::preflight);
+        SUITES.put("PolynomialMultiplicationBenchmark", PolynomialMultiplicationBenchmark::preflight);
+        SUITES.put("PrimeBenchmark", PrimeBenchmark::preflight);
+        SUITES.put("RadixConversionBenchmark", RadixConversionBenchmark::preflight);
+        SUITES.put("ScalingBenchmark", ScalingBenchmark::preflight);
+        SUITES.put("SerializationBenchmark", SerializationBenchmark::preflight);
+        SUITES.put("VectorBenchmark", VectorBenchmark::preflight);
+    }
+
+    /**
+     * The parsed command line.
+     */
+    static class Arguments {
+        final List<String> suites = new ArrayList<>();
+        boolean list;
+        boolean checkOnly;
+        boolean quick;
+        boolean report;
+        String store = "results";
+        String baseline;
+        double threshold = 0.05;
+        CommandLineOptions jmh;
+    }
+
+    /**
+     * Number of failed checks in the suites prepared so far.
+     */
+    static int failures;
+
+    public static void main(String[] args) throws RunnerException {
+        Arguments a = parse(args);
+        if (a.list) {
+            SUITES.keySet().forEach(System.out::println);
+            return;
+        }
+        List<String> suites = a.suites.isEmpty() ? new ArrayList<>(SUITES.keySet()) : a.suites;
+        ResultStore store = a.store == null ? null : new ResultStore(Paths.get(a.store));
+        RunEnvironment env = RunEnvironment.current();
+        String run = ResultStore.newRunId();
+        List<ResultStore.Entry> baseline = a.baseline == null || a.checkOnly ? null : baseline(a, env, run);
+        List<ResultStore.Entry> entries = new ArrayList<>();
+        Map<String, List<String>> sizes = new LinkedHashMap<>();
+        for (String suite : suites) {
+            Preflight p = prepare(suite, a);
+            sizes.put(suite, p.sizes);
+            if (a.checkOnly)
+                continue;
+            ChainedOptionsBuilder ob = options(p, a);
+            boolean sweep = !p.threads.isEmpty() && !a.jmh.getThreads().hasValue();
+            List<Integer> threads = sweep ? p.threads : Collections.singletonList(null);
+            Collection<RunResult> results = new ArrayList<>();
+            try {
+                for (Integer t : threads) {
+                    if (t != null)
+                        ob.threads(t);
+                    results.addAll(new Runner(ob.build()).run());
+                }
+            } catch (NoBenchmarksException e) {
+                System.err.println("No benchmarks left to run in " + suite);
+                continue;
+            }
+            List<ResultStore.Entry> suiteEntries = ResultStore.entries(run, suite, env, results, sweep);
+            entries.addAll(suiteEntries);
+            if (sweep)
+                speedups(suiteEntries);
+            if (store != null) {
+                try {
+                    store.append(run, suite, suiteEntries, results);
+                } catch (IOException e) {
+                    System.err.println("Cannot store the results of " + suite + ": " + e);
+                }
+            }
+        }
+        if (a.report && !entries.isEmpty())
+            ComplexityReport.report(entries, null, sizes);
+        if (failures > 0)
+            System.exit(1);
+        if (baseline != null && new BaselineComparison(baseline, a.threshold).compare(entries) > 0)
+            System.exit(2);
+    }
+
+    /**
+     * Returns the entries of the baseline, excluding the current run. It is
+     * loaded before running the suites, so that the results of the current run
+     * are not in the store yet. Exits with status 3 when the baseline cannot be
+     * found, since the comparison would otherwise pass silently.
+     */
+    static List<ResultStore.Entry> baseline(Arguments a, RunEnvironment env, String run) {
+        List<ResultStore.Entry> baseline;
+        try {
+            baseline = new ResultStore(Paths.get(a.store == null ? "results" : a.store)).baseline(a.baseline,
+                    env.cpu, run);
+        } catch (IOException e) {
+            System.err.println("Cannot read the baseline: " + e);
+            System.exit(3);
+            return null;
+        }
+        if (baseline.isEmpty()) {
+            System.err.println("No stored run matches the baseline " + a.baseline + " on " + env.cpu);
+            System.exit(3);
+        }
+        return baseline;
+    }
+
+    /**
+     * Runs a single suite. The arguments are the same of {@link #main}, without
+     * the names of the suites.
+     */
+    public static void run(Class<?> suite, String[] args) throws RunnerException {
+        String[] all = Arrays.copyOf(args, args.length + 1);
+        all[args.length] = suite.getSimpleName();
+        main(all);
+    }
+
+    /**
+     * Prints the speedup of each benchmark of a thread sweep with respect to its
+     * single-threaded run with the same parameters.
+     */
+    static void speedups(List<ResultStore.Entry> entries) {
+        // benchmark and other parameters -> thread count -> score
+        Map<String, Map<Integer, Double>> scores = new TreeMap<>();
+        SortedSet<Integer> counts = new TreeSet<>();
+        for (ResultStore.Entry e : entries) {
+            List<String> params = new ArrayList<>();
+            int threads = 1;
+            for (String param : e.params.split(",")) {
+                if (param.startsWith(ResultStore.THREADS))
+                    threads = Integer.parseInt(param.substring(ResultStore.THREADS.length()));
+                else if (!param.isEmpty())
+                    params.add(param);
+            }
+            String key = e.benchmark + (params.isEmpty() ? "" : " [" + String.join(",", params) + "]");
+            double score = e.higherIsBetter() ? e.score : threads / e.score;
+            scores.computeIfAbsent(key, k -> new TreeMap<>()).put(threads, score);
+            counts.add(threads);
+        }
+        int width = scores.keySet().stream().mapToInt(String::length).max().orElse(0) + 2;
+        System.out.println();
+        System.out.println("Speedup with respect to a single thread:");
+        StringBuilder header = new StringBuilder(String.format("%-" + width + "s", "Benchmark"));
+        for (int threads : counts)
+            header.append(String.format("%8d", threads));
+        System.out.println(header);
+        for (Map.Entry<String, Map<Integer, Double>> e : scores.entrySet()) {
+            StringBuilder line = new StringBuilder(String.format("%-" + width + "s", e.getKey()));
+            double base = e.getValue().getOrDefault(1, Double.NaN);
+            for (int threads : counts)
+                line.append(String.format("%8.2f", e.getValue().getOrDefault(threads, Double.NaN) / base));
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * Parses the command line, exiting on errors and on requests for help.
+     */
+    static Arguments parse(String[] args) {
+        Arguments a = new Arguments();
+        List<String> jmhArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--list"))
+                a.list = true;
+            else if (arg.equals("--check-only"))
+                a.checkOnly = true;
+            else if (arg.equals("--report"))
+                a.report = true;
+            else if (arg.equals("--no-store"))
+                a.store = null;
+            else if (arg.equals("--store") && i + 1 < args.length)
+                a.store = args[++i];
+            else if (arg.equals("--baseline") && i + 1 < args.length)
+                a.baseline = args[++i];
+            else if (arg.equals("--threshold") && i + 1 < args.length) {
+                try {
+                    a.threshold = Double.parseDouble(args[++i]) / 100;
+                } catch (NumberFormatException e) {
+                    usage("Invalid threshold " + args[i]);
+                }
+            }
+            else if (arg.equals("--profile") && i + 1 < args.length) {
+                String profile = args[++i];
+                if (!profile.equals("quick") && !profile.equals("full"))
+                    usage("Unknown profile " + profile);
+                a.quick = profile.equals("quick");
+            } else if (SUITES.containsKey(arg))
+                a.suites.add(arg);
+            else if (arg.equals("-prof") && i + 1 < args.length) {
+                String[] profiler = args[++i].split(":", 2);
+                if (PROFILERS.containsKey(profiler[0]))
+                    profiler[0] = PROFILERS.get(profiler[0]).getName();
+                jmhArgs.add(arg);
+                jmhArgs.add(String.join(":", profiler));
+            } else
+                jmhArgs.add(arg);
+        }
+        try {
+            a.jmh = new CommandLineOptions(jmhArgs.toArray(new String[0]));
+        } catch (CommandLineOptionException e) {
+            usage(e.getMessage());
+        }
+        if (!a.jmh.getIncludes().isEmpty())
+            usage("Unknown suites " + a.jmh.getIncludes());
+        if (a.jmh.shouldHelp())
+            usage(null);
+        return a;
+    }
+
+    static void usage(String error) {
+        if (error != null)
+            System.err.println(error);
+        System.err.println("Usage: Launcher [--list] [--check-only] [--profile quick|full] [--store dir | --no-store]");
+        System.err.println("                [--baseline ref] [--threshold percent] [--report] [JMH options] [suite ...]");
+        System.err.println("Suites: " + String.join(", ", SUITES.keySet()));
+        if (error == null) {
+            try {
+                new CommandLineOptions().showHelp();
+            } catch (IOException | CommandLineOptionException e) {
+                // help is not essential
+            }
+        }
+        System.exit(error == null ? 0 : 1);
+    }
+
+    /**
+     * Returns the size parameters declared by each suite, without running the
+     * checks.
+     */
+    static Map<String, List<String>> sizes() {
+        Map<String, List<String>> sizes = new LinkedHashMap<>();
+        for (Map.Entry<String, Consumer<Preflight>> e : SUITES.entrySet())
+            sizes.put(e.getKey(), Preflight.declarations(e.getKey(), e.getValue()).sizes);
+        return sizes;
+    }
+
+    /**
+     * Runs the checks of a suite.
+     */
+    static Preflight prepare(String suite, Arguments a) {
+        Preflight p = new Preflight(suite);
+        try {
+            SUITES.get(suite).accept(p);
+        } finally {
+            p.close();
+        }
+        p.report();
+        failures += p.failed.size();
+        return p;
+    }
+
+    /**
+     * Returns the options for running a suite whose checks have been run.
+     */
+    static ChainedOptionsBuilder options(Preflight p, Arguments a) {
+        ChainedOptionsBuilder ob = new OptionsBuilder().parent(a.jmh);
+        ob.include("\\." + p.suite + "\\.");
+        for (String exclude : p.excludes)
+            ob.exclude(exclude);
+        for (Map.Entry<String, String[]> e : p.params.entrySet())
+            if (!a.jmh.getParameter(e.getKey()).hasValue())
+                ob.param(e.getKey(), e.getValue());
+        for (Class<? extends Profiler> profiler : p.profilers)
+            if ((profiler != NativeMemoryProfiler.class || NativeLibrary.JGMP.isAvailable())
+                    && a.jmh.getProfilers().stream().noneMatch(c -> c.getKlass().equals(profiler.getName())))
+                ob.addProfiler(profiler);
+        if (a.quick) {
+            if (!a.jmh.getForkCount().hasValue())
+                ob.forks(1);
+            if (!a.jmh.getWarmupIterations().hasValue())
+                ob.warmupIterations(2);
+            if (!a.jmh.getWarmupTime().hasValue())
+                ob.warmupTime(TimeValue.seconds(1));
+            if (!a.jmh.getMeasurementIterations().hasValue())
+                ob.measurementIterations(3);
+            if (!a.jmh.getMeasurementTime().hasValue())
+                ob.measurementTime(TimeValue.seconds(1));
+        }
+        return ob;
+    }
+
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.launcher;
+
+import org.kframework.mpfr.BigFloat;
+import org.kframework.mpfr.BinaryMathContext;
+
+import it.unich.jgmp.MPZ;
+
+/**
+ * The native libraries used by the benchmarks. Each library is probed at most
+ * once, the first time its availability is requested.
+ */
+public enum NativeLibrary {
+    JGMP {
+        @Override
+        void probe() {
+            MPZ.facUi(5);
+        }
+    },
+    MPFR {
+        @Override
+        void probe() {
+            new BigFloat(1, BinaryMathContext.BINARY64).add(new BigFloat(1, BinaryMathContext.BINARY64),
+                    BinaryMathContext.BINARY64);
+        }
+    },
+    GMP4J {
+        @Override
+        void probe() {
+            us.altio.gmp4j.BigInteger.valueOf(2).pow(2);
+        }
+    };
+
+    private boolean probed;
+
+    private LinkageError error;
+
+    /**
+     * Performs a simple operation with the library, which throws a
+     * {@link LinkageError} if the library cannot be loaded.
+     */
+    abstract void probe();
+
+    /**
+     * Returns the error raised when probing the library, or null if the library
+     * is available.
+     */
+    public synchronized LinkageError getError() {
+        if (!probed) {
+            try {
+                probe();
+            } catch (LinkageError e) {
+                error = e;
+            }
+            probed = true;
+        }
+        return error;
+    }
+
+    /**
+     * Returns whether the library is available.
+     */
+    public boolean isAvailable() {
+        return getError() == null;
+    }
+
+}
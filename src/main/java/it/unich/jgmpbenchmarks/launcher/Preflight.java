@@ -0,0 +1,216 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.launcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.profile.Profiler;
+
+/**
+ * The correctness checks of a benchmark suite, together with the native
+ * libraries they need. Each suite registers its checks in a static
+ * {@code preflight} method. Every check covers the benchmarks of the suite
+ * matching a regular expression, which are excluded from the run when a
+ * required library is not available or the check does not pass.
+ *
+ * The declarations of a suite, such as its size parameters, precede its checks,
+ * so that they may be read without running the checks.
+ */
+public class Preflight {
+
+    /**
+     * A correctness check.
+     */
+    @FunctionalInterface
+    public interface Check {
+        boolean passes() throws Exception;
+    }
+
+    /**
+     * Stops a preflight at its first check, when only the declarations are read.
+     */
+    private static final class Declared extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Declared() {
+            super(null, null, false, false);
+        }
+    }
+
+    final String suite;
+
+    final List<String> excludes = new ArrayList<>();
+
+    final List<String> skipped = new ArrayList<>();
+
+    final List<String> failed = new ArrayList<>();
+
+    final Map<String, String[]> params = new LinkedHashMap<>();
+
+    final List<Class<? extends Profiler>> profilers = new ArrayList<>();
+
+    final List<Integer> threads = new ArrayList<>();
+
+    final List<String> sizes = new ArrayList<>();
+
+    int passed;
+
+    /**
+     * Whether only the declarations are read.
+     */
+    final boolean declarationsOnly;
+
+    private ForkJoinPool pool;
+
+    Preflight(String suite) {
+        this(suite, false);
+    }
+
+    private Preflight(String suite, boolean declarationsOnly) {
+        this.suite = suite;
+        this.declarationsOnly = declarationsOnly;
+    }
+
+    /**
+     * Returns the declarations of a suite, running its preflight up to the first
+     * check.
+     */
+    static Preflight declarations(String suite, Consumer<Preflight> preflight) {
+        Preflight p = new Preflight(suite, true);
+        try {
+            preflight.accept(p);
+        } catch (Declared e) {
+            // the checks follow the declarations
+        }
+        return p;
+    }
+
+    /**
+     * Returns a small fork/join pool which may be used by the checks of the
+     * parallel benchmarks.
+     */
+    public ForkJoinPool pool() {
+        if (pool == null)
+            pool = new ForkJoinPool(2);
+        return pool;
+    }
+
+    /**
+     * Runs a check for the benchmarks matching the regular expression, unless
+     * some of the specified libraries is not available.
+     */
+    public void check(String benchmarks, Check check, NativeLibrary... libraries) {
+        if (!require(benchmarks, libraries))
+            return;
+        try {
+            if (check.passes()) {
+                passed += 1;
+                return;
+            }
+            failed.add(benchmarks + " (invalid result)");
+        } catch (LinkageError e) {
+            skipped.add(benchmarks + " (" + e + ")");
+        } catch (Exception | Error e) {
+            failed.add(benchmarks + " (" + e + ")");
+        }
+        exclude(benchmarks);
+    }
+
+    /**
+     * Returns whether all the specified libraries are available. Otherwise, the
+     * benchmarks matching the regular expression are excluded. This is useful
+     * when the inputs of the checks need the libraries.
+     */
+    public boolean require(String benchmarks, NativeLibrary... libraries) {
+        if (declarationsOnly)
+            throw new Declared();
+        for (NativeLibrary library : libraries) {
+            if (!library.isAvailable()) {
+                exclude(benchmarks);
+                skipped.add(benchmarks + " (" + library + " not available)");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Excludes the benchmarks matching the regular expression.
+     */
+    public void exclude(String benchmarks) {
+        excludes.add("\\." + suite + "\\.(" + benchmarks + ")$");
+    }
+
+    /**
+     * Restricts the values of a parameter of the suite.
+     */
+    public void param(String name, String... values) {
+        params.put(name, values);
+    }
+
+    /**
+     * Adds a profiler to the default profilers of the suite.
+     */
+    public void profiler(Class<? extends Profiler> profiler) {
+        profilers.add(profiler);
+    }
+
+    /**
+     * Declares the size parameters of the suite, which are used by the
+     * {@link ComplexityReport}. The size of each benchmark is the first of these
+     * parameters it has.
+     */
+    public void size(String... params) {
+        sizes.addAll(Arrays.asList(params));
+    }
+
+    /**
+     * Runs the suite once for each of the specified thread counts, unless the
+     * number of threads is given on the command line.
+     */
+    public void threads(List<Integer> counts) {
+        threads.addAll(counts);
+    }
+
+    /**
+     * Releases the resources used by the checks.
+     */
+    void close() {
+        if (pool != null)
+            pool.shutdown();
+    }
+
+    /**
+     * Prints a summary of the checks.
+     */
+    void report() {
+        System.out.println(suite + ": " + passed + " checks passed, " + skipped.size() + " skipped, " + failed.size()
+                + " failed");
+        for (String s : skipped)
+            System.out.println("  skipped " + s);
+        for (String s : failed)
+            System.out.println("  FAILED  " + s);
+    }
+
+}
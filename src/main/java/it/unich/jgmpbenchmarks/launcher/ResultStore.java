@@ -0,0 +1,241 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.launcher;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+
+/**
+ * An append-only store of benchmark results in a local directory. The JMH
+ * results of each suite are saved in JSON format in the {@code runs}
+ * subdirectory, while the primary score of each benchmark is appended to the
+ * tab separated file {@code index.tsv}, together with the environment of the
+ * run. Existing files are never modified.
+ */
+public class ResultStore {
+
+    final static String INDEX = "index.tsv";
+
+    /**
+     * The prefix of the number of threads among the parameters of the entries
+     * of a thread sweep.
+     */
+    final static String THREADS = "threads=";
+
+    final static String HEADER = "run\tsuite\trevision\tjdk\tjgmp\tgmp\tcpu\tbenchmark\tparams\tmode\tunits\tscore\tlower\tupper\tsamples";
+
+    /**
+     * The primary score of a benchmark in a run.
+     */
+    public static class Entry {
+        public final String run, suite, revision, jdk, jgmp, gmp, cpu, benchmark, params, mode, units;
+
+        /**
+         * The score and the bounds of its confidence interval at 99.9%.
+         */
+        public final double score, lower, upper;
+
+        public final long samples;
+
+        Entry(String[] f) {
+            run = f[0];
+            suite = f[1];
+            revision = f[2];
+            jdk = f[3];
+            jgmp = f[4];
+            gmp = f[5];
+            cpu = f[6];
+            benchmark = f[7];
+            params = f[8];
+            mode = f[9];
+            units = f[10];
+            score = Double.parseDouble(f[11]);
+            lower = Double.parseDouble(f[12]);
+            upper = Double.parseDouble(f[13]);
+            samples = Long.parseLong(f[14]);
+        }
+
+        /**
+         * Returns the key identifying the measure across runs.
+         */
+        public String key() {
+            return benchmark + (params.isEmpty() ? "" : " [" + params + "]") + " " + mode;
+        }
+
+        /**
+         * Returns whether higher scores are better, as for throughput.
+         */
+        public boolean higherIsBetter() {
+            return mode.equals(Mode.Throughput.shortLabel());
+        }
+
+        String toLine() {
+            return String.join("\t", run, suite, revision, jdk, jgmp, gmp, cpu, benchmark, params, mode, units,
+                    Double.toString(score), Double.toString(lower), Double.toString(upper), Long.toString(samples));
+        }
+    }
+
+    final Path directory;
+
+    public ResultStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns a new identifier for a run, based on the current time. The
+     * identifier of the process is appended, since runs started in the same
+     * second would otherwise collide.
+     */
+    public static String newRunId() {
+        return new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + "-" + ProcessHandle.current().pid();
+    }
+
+    /**
+     * Returns the entries for the results of a suite. When the suite has been
+     * run with several thread counts, the number of threads is recorded among
+     * the parameters.
+     */
+    public static List<Entry> entries(String run, String suite, RunEnvironment env, Collection<RunResult> results,
+            boolean threads) {
+        List<Entry> entries = new ArrayList<>();
+        for (RunResult r : results) {
+            BenchmarkParams params = r.getParams();
+            List<String> values = new ArrayList<>();
+            for (String k : new TreeSet<>(params.getParamsKeys()))
+                values.add(k + "=" + params.getParam(k));
+            if (threads)
+                values.add(THREADS + params.getThreads());
+            Result<?> primary = r.getPrimaryResult();
+            double[] ci = primary.getScoreConfidence();
+            String benchmark = params.getBenchmark();
+            benchmark = benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1);
+            entries.add(new Entry(new String[] { run, suite, env.revision, env.jdk, env.jgmp, env.gmp, env.cpu,
+                    benchmark, String.join(",", values), params.getMode().shortLabel(), primary.getScoreUnit(),
+                    Double.toString(primary.getScore()), Double.toString(ci[0]), Double.toString(ci[1]),
+                    Long.toString(primary.getSampleCount()) }));
+        }
+        return entries;
+    }
+
+    /**
+     * Appends the results of a suite to the store.
+     */
+    public void append(String run, String suite, List<Entry> entries, Collection<RunResult> results)
+            throws IOException {
+        Path runs = directory.resolve("runs");
+        Files.createDirectories(runs);
+        Path json = runs.resolve(run + "-" + suite + ".json");
+        try (PrintStream out = new PrintStream(Files.newOutputStream(json, StandardOpenOption.CREATE_NEW), false,
+                "UTF-8")) {
+            ResultFormatFactory.getInstance(ResultFormatType.JSON, out).writeOut(results);
+        }
+        Path index = directory.resolve(INDEX);
+        List<String> lines = new ArrayList<>();
+        if (!Files.exists(index))
+            lines.add(HEADER);
+        for (Entry e : entries)
+            lines.add(e.toLine().replace('\n', ' '));
+        Files.write(index, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Returns all the entries in the store.
+     */
+    public List<Entry> load() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        Path index = directory.resolve(INDEX);
+        if (!Files.exists(index))
+            return entries;
+        for (String line : Files.readAllLines(index, StandardCharsets.UTF_8)) {
+            if (line.isEmpty() || line.equals(HEADER))
+                continue;
+            entries.add(new Entry(line.split("\t", -1)));
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the entries of the most recent run on the specified CPU, other
+     * than the excluded one, which either has the specified identifier, or has
+     * been made on the git revision specified by the reference. The reference
+     * may be anything git resolves to a commit, such as a branch or a tag.
+     */
+    public List<Entry> baseline(String reference, String cpu, String excluded) throws IOException {
+        List<Entry> all = load();
+        String revision = resolve(reference);
+        String run = null;
+        for (Entry e : all)
+            if (e.cpu.equals(cpu) && !e.run.equals(excluded)
+                    && (e.run.equals(reference) || sameRevision(e.revision, revision))
+                    && (run == null || e.run.compareTo(run) > 0))
+                run = e.run;
+        List<Entry> entries = new ArrayList<>();
+        for (Entry e : all)
+            if (e.run.equals(run) && e.cpu.equals(cpu))
+                entries.add(e);
+        return entries;
+    }
+
+    /**
+     * Returns the abbreviated hash of the commit specified by the reference,
+     * keeping its {@code -dirty} suffix, or the reference itself if git cannot
+     * resolve it, as for run identifiers and revisions of other clones.
+     */
+    static String resolve(String reference) {
+        boolean dirty = reference.endsWith(RunEnvironment.DIRTY);
+        String commit = dirty ? reference.substring(0, reference.length() - RunEnvironment.DIRTY.length())
+                : reference;
+        String hash = RunEnvironment.git("rev-parse", "--verify", "--quiet", "--short", commit + "^{commit}");
+        if (hash.isEmpty() || hash.equals(RunEnvironment.UNKNOWN))
+            return reference;
+        return dirty ? hash + RunEnvironment.DIRTY : hash;
+    }
+
+    /**
+     * Returns whether a stored revision is the one specified by the reference,
+     * which may be an abbreviation of at least four characters or a longer form
+     * of the stored hash. A revision with uncommitted changes only matches a
+     * reference with the same {@code -dirty} suffix.
+     */
+    static boolean sameRevision(String revision, String reference) {
+        if (revision.equals(reference))
+            return true;
+        if (revision.equals(RunEnvironment.UNKNOWN) || revision.endsWith(RunEnvironment.DIRTY)
+                || reference.endsWith(RunEnvironment.DIRTY) || reference.length() < 4)
+            return false;
+        return revision.startsWith(reference) || reference.startsWith(revision);
+    }
+
+}
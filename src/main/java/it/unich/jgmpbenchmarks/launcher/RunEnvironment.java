@@ -0,0 +1,128 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.launcher;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import it.unich.jgmp.GMP;
+import it.unich.jgmp.MPZ;
+
+/**
+ * The environment of a benchmark run: git revision of the benchmarks, JDK,
+ * JGMP and GMP versions and CPU. Values which cannot be determined are
+ * reported as {@code unknown}.
+ */
+public class RunEnvironment {
+
+    final static String UNKNOWN = "unknown";
+
+    /**
+     * The suffix of the revision when the tracked files have been modified.
+     */
+    final static String DIRTY = "-dirty";
+
+    public final String revision;
+
+    public final String jdk;
+
+    public final String jgmp;
+
+    public final String gmp;
+
+    public final String cpu;
+
+    RunEnvironment(String revision, String jdk, String jgmp, String gmp, String cpu) {
+        this.revision = revision;
+        this.jdk = jdk;
+        this.jgmp = jgmp;
+        this.gmp = gmp;
+        this.cpu = cpu;
+    }
+
+    /**
+     * Returns the environment of the current JVM.
+     */
+    public static RunEnvironment current() {
+        String revision = git("rev-parse", "--short", "HEAD");
+        if (!revision.equals(UNKNOWN) && !git("status", "--porcelain", "--untracked-files=no").isEmpty())
+            revision += DIRTY;
+        String jdk = System.getProperty("java.vendor") + " " + System.getProperty("java.runtime.version");
+        String jgmp = MPZ.class.getPackage().getImplementationVersion();
+        String gmp = NativeLibrary.JGMP.isAvailable() ? GMP.getVersion() : UNKNOWN;
+        return new RunEnvironment(revision, jdk, jgmp == null ? UNKNOWN : jgmp, gmp, cpu());
+    }
+
+    /**
+     * Returns the first line of the output of a git command, the empty string if
+     * there is no output, or {@code unknown} if the command fails.
+     */
+    static String git(String... args) {
+        String[] command = new String[args.length + 1];
+        command[0] = "git";
+        System.arraycopy(args, 0, command, 1, args.length);
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            String line;
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                line = reader.readLine();
+                while (reader.readLine() != null)
+                    ;
+            }
+            if (process.waitFor() != 0)
+                return UNKNOWN;
+            return line == null ? "" : line.trim();
+        } catch (IOException e) {
+            return UNKNOWN;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return UNKNOWN;
+        }
+    }
+
+    /**
+     * Returns the model name of the CPU, followed by the number of available
+     * processors.
+     */
+    static String cpu() {
+        String model = System.getProperty("os.arch");
+        Path cpuinfo = Paths.get("/proc/cpuinfo");
+        if (Files.isReadable(cpuinfo)) {
+            try {
+                List<String> lines = Files.readAllLines(cpuinfo);
+                for (String line : lines) {
+                    if (line.startsWith("model name")) {
+                        model = line.substring(line.indexOf(':') + 1).trim();
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                // keep the architecture as the model
+            }
+        }
+        return model + " x" + Runtime.getRuntime().availableProcessors();
+    }
+
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.profilers;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+/**
+ * A JMH profiler reporting the peak usage of the Java heap during each
+ * iteration, complementing the allocation rates of the GC profiler when the
+ * live data of an operation is large.
+ *
+ * The peak is the sum of the peak usages of the heap memory pools, which are
+ * tracked by the JVM itself and reset before each iteration. Since the pools
+ * may reach their peaks at different times, the result is an upper bound.
+ */
+public class HeapMemoryProfiler implements InternalProfiler {
+
+    private long startSize;
+
+    static List<MemoryPoolMXBean> heapPools() {
+        List<MemoryPoolMXBean> pools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP && pool.isValid())
+                pools.add(pool);
+        return pools;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Peak usage of the Java heap";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        startSize = 0;
+        for (MemoryPoolMXBean pool : heapPools()) {
+            pool.resetPeakUsage();
+            startSize += pool.getUsage().getUsed();
+        }
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams,
+            IterationParams iterationParams, IterationResult result) {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : heapPools())
+            peak += pool.getPeakUsage().getUsed();
+
+        List<ScalarResult> results = new ArrayList<>();
+        results.add(new ScalarResult("·heap.peak", peak, "bytes", AggregationPolicy.MAX));
+        results.add(new ScalarResult("·heap.peak.delta", peak - startSize, "bytes", AggregationPolicy.MAX));
+        return results;
+    }
+
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.profilers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+/**
+ * A JMH profiler reporting the percentiles of latencies recorded by the
+ * benchmarks themselves with {@link #record}. This is useful when an operation
+ * is made of many tasks running concurrently, and the latency of the single
+ * tasks is more interesting than the latency of the whole operation.
+ *
+ * Latencies are only recorded while the profiler is active, and at most
+ * {@code CAPACITY} latencies are kept for each iteration. The samples are
+ * stored in an array allocated once per profiler and reused by all the
+ * iterations. Recording is lock free, so that it does not pin virtual threads.
+ */
+public class LatencyProfiler implements InternalProfiler {
+
+    /**
+     * Maximum number of latencies recorded in an iteration.
+     */
+    final static int CAPACITY = 1 << 20;
+
+    private static volatile AtomicLongArray latencies;
+
+    private static final AtomicInteger count = new AtomicInteger();
+
+    private final AtomicLongArray samples = new AtomicLongArray(CAPACITY);
+
+    /**
+     * Records a latency, in nanoseconds.
+     */
+    public static void record(long nanos) {
+        AtomicLongArray l = latencies;
+        if (l == null)
+            return;
+        int i = count.getAndIncrement();
+        if (i < CAPACITY)
+            l.set(i, nanos);
+    }
+
+    @Override
+    public String getDescription() {
+        return "Percentiles of the latencies recorded by the benchmarks";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        count.set(0);
+        latencies = samples;
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams,
+            IterationParams iterationParams, IterationResult result) {
+        latencies = null;
+        int n = Math.min(count.get(), CAPACITY);
+        List<ScalarResult> results = new ArrayList<>();
+        if (n == 0)
+            return results;
+        long[] sorted = new long[n];
+        for (int i = 0; i < n; i++)
+            sorted[i] = samples.get(i);
+        Arrays.sort(sorted);
+        results.add(new ScalarResult("·latency.p50", percentile(sorted, 0.5), "us", AggregationPolicy.AVG));
+        results.add(new ScalarResult("·latency.p90", percentile(sorted, 0.9), "us", AggregationPolicy.AVG));
+        results.add(new ScalarResult("·latency.p99", percentile(sorted, 0.99), "us", AggregationPolicy.AVG));
+        results.add(new ScalarResult("·latency.max", sorted[n - 1] / 1e3, "us", AggregationPolicy.MAX));
+        results.add(new ScalarResult("·latency.count", n, "#", AggregationPolicy.SUM));
+        return results;
+    }
+
+    /**
+     * Returns the p-th percentile of the sorted latencies, in microseconds.
+     */
+    static double percentile(long[] sorted, double p) {
+        int i = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(i, 0)] / 1e3;
+    }
+
+}
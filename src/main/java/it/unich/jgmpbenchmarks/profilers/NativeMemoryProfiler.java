@@ -0,0 +1,132 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.profilers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import it.unich.jgmp.AllocationMonitor;
+
+/**
+ * A JMH profiler reporting the native memory allocated by GMP, as tracked by
+ * the JGMP {@link AllocationMonitor}. The monitor is enabled at the beginning
+ * of each iteration and disabled at its end, so that it does not affect the
+ * following iterations. Note that enabling the monitor may change the garbage
+ * collection behaviour of JGMP, as in the {@code monitor} mode of
+ * {@code FactorialBenchmark}, hence the launcher only adds the profiler when it
+ * is requested with {@code -prof native} or by the checks of a suite.
+ *
+ * For each iteration the profiler reports the native footprint at the end of
+ * the iteration, the peak footprint observed by a sampling thread, and the net
+ * growth of the footprint per operation. Native memory of unreachable JGMP
+ * objects is only released when the cleaner thread runs, hence the growth is
+ * an estimate of the cleaner backlog accumulated by each operation.
+ *
+ * Direct buffers are not allocated by GMP, hence the benchmarks which allocate
+ * them record their size with {@link #recordDirect}, and the profiler reports
+ * the average per operation.
+ */
+public class NativeMemoryProfiler implements InternalProfiler {
+
+    /**
+     * Interval between two consecutive samples of the native footprint.
+     */
+    final static long SAMPLING_INTERVAL = TimeUnit.MICROSECONDS.toNanos(500);
+
+    private static final LongAdder direct = new LongAdder();
+
+    private long startSize;
+
+    private volatile long peakSize;
+
+    private volatile boolean sampling;
+
+    private Thread sampler;
+
+    /**
+     * Records the size of the direct buffers allocated by an operation.
+     */
+    public static void recordDirect(long bytes) {
+        direct.add(bytes);
+    }
+
+    @Override
+    public String getDescription() {
+        return "Native memory allocated by GMP, as tracked by the JGMP AllocationMonitor";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        AllocationMonitor.enable();
+        direct.reset();
+        startSize = AllocationMonitor.getAllocatedSize();
+        peakSize = startSize;
+        sampling = true;
+        sampler = new Thread(() -> {
+            while (sampling) {
+                long size = AllocationMonitor.getAllocatedSize();
+                if (size > peakSize)
+                    peakSize = size;
+                LockSupport.parkNanos(SAMPLING_INTERVAL);
+            }
+        }, "jgmp-native-memory-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams,
+            IterationParams iterationParams, IterationResult result) {
+        sampling = false;
+        try {
+            sampler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long endSize = AllocationMonitor.getAllocatedSize();
+        AllocationMonitor.disable();
+        long peak = Math.max(peakSize, endSize);
+        long ops = result.getMetadata().getAllOps();
+        long directSize = direct.sumThenReset();
+
+        List<ScalarResult> results = new ArrayList<>();
+        results.add(new ScalarResult("·native.footprint", endSize, "bytes", AggregationPolicy.AVG));
+        results.add(new ScalarResult("·native.peak", peak, "bytes", AggregationPolicy.MAX));
+        results.add(new ScalarResult("·native.peak.delta", peak - startSize, "bytes", AggregationPolicy.MAX));
+        if (ops != 0)
+            results.add(new ScalarResult("·native.growth.norm", (double) (endSize - startSize) / ops,
+                    "bytes/op", AggregationPolicy.AVG));
+        if (ops != 0 && directSize != 0)
+            results.add(new ScalarResult("·native.direct.norm", (double) directSize / ops, "bytes/op",
+                    AggregationPolicy.AVG));
+        return results;
+    }
+
+}
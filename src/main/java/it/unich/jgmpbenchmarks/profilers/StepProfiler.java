@@ -0,0 +1,71 @@
+/**
+ * Copyright 2022, 2023 Francesca Scozzari <francesca.scozzari@unich.it> and
+ *                      Gianluca Amato <gianluca.amato@unich.it>
+ *
+ * JGMPBenchmarks is a set of benchmarks for JGMP. JGMPBenchmarks is free
+ * software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * JGMPBenchmarks is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of a MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * JGMPBenchmarks. If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.unich.jgmpbenchmarks.profilers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+/**
+ * A JMH profiler reporting the average number of steps of an operation, as
+ * recorded by the benchmarks themselves with {@link #record}. This is useful
+ * for iterative algorithms, where the number of steps needed to reach the
+ * requested precision is as interesting as the time.
+ */
+public class StepProfiler implements InternalProfiler {
+
+    private static final LongAdder steps = new LongAdder();
+
+    /**
+     * Records the number of steps of an operation.
+     */
+    public static void record(long n) {
+        steps.add(n);
+    }
+
+    @Override
+    public String getDescription() {
+        return "Average number of steps per operation recorded by the benchmarks";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        steps.reset();
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams,
+            IterationParams iterationParams, IterationResult result) {
+        long total = steps.sumThenReset();
+        long ops = result.getMetadata().getAllOps();
+        List<ScalarResult> results = new ArrayList<>();
+        if (ops != 0)
+            results.add(new ScalarResult("·steps.norm", (double) total / ops, "steps/op", AggregationPolicy.AVG));
+        return results;
+    }
+
+}